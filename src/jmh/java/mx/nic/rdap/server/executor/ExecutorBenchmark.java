@@ -0,0 +1,82 @@
+package mx.nic.rdap.server.executor;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import mx.nic.rdap.db.exception.InitializationException;
+
+/**
+ * Time to serve a burst of asynchronous requests that block at the data access
+ * implementation, with each value of "async_executor_type". The platform pool
+ * has the default "async_executor_threads" and "async_executor_queue_size".
+ * <p>
+ * The "virtual" executor requires Java 21 or later.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExecutorBenchmark {
+
+	private static final int PLATFORM_THREADS = 50;
+
+	private static final int PLATFORM_QUEUE_SIZE = 1000;
+
+	@Param({ "platform", "virtual" })
+	public String executorType;
+
+	/** Requests of each burst; more than the platform pool can queue are refused. */
+	@Param({ "1000" })
+	public int requests;
+
+	/** Time (in milliseconds) that each request waits for the data access. */
+	@Param({ "1", "10" })
+	public int daoMillis;
+
+	private ExecutorService executor;
+
+	@Setup
+	public void setUp() throws InitializationException {
+		if ("virtual".equals(executorType)) {
+			executor = RequestExecutor.newVirtualThreadPerTaskExecutor();
+		} else {
+			executor = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(PLATFORM_QUEUE_SIZE));
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+	}
+
+	@Benchmark
+	public void burst() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(requests);
+		for (int i = 0; i < requests; i++) {
+			executor.execute(() -> {
+				try {
+					Thread.sleep(daoMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			});
+		}
+		done.await();
+	}
+
+}
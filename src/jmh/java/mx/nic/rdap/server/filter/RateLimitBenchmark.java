@@ -0,0 +1,85 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Per request cost of the structures of {@link RateLimitFilter}, from several
+ * threads: parsing the address of the client, counting its request in
+ * progress and taking a token from its bucket.
+ * <p>
+ * "clients" is the number of distinct addresses the requests come from: a
+ * single one means every thread contends on the same entries, and more than
+ * "maxClients" makes the token buckets fall back to the overflow slots (the
+ * concurrency counters only track the clients with requests in progress, so
+ * they stay small).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class RateLimitBenchmark {
+
+	@Param({ "1", "10000", "200000" })
+	public int clients;
+
+	@Param({ "100000" })
+	public int maxClients;
+
+	private String[] addresses;
+
+	private ClientKey[] keys;
+
+	private ConcurrencyCounters counters;
+
+	private TokenBuckets buckets;
+
+	@Setup
+	public void setUp() {
+		addresses = new String[clients];
+		keys = new ClientKey[clients];
+		for (int i = 0; i < clients; i++) {
+			addresses[i] = "10." + ((i >>> 16) & 0xff) + "." + ((i >>> 8) & 0xff) + "." + (i & 0xff);
+			keys[i] = ClientKey.fromAddress(addresses[i]);
+		}
+
+		counters = new ConcurrencyCounters(Integer.MAX_VALUE, maxClients);
+		// Fast enough that the buckets never run out during the measurement
+		buckets = new TokenBuckets(new double[] { 1e9, 1e9, 0 }, new int[] { 1000, 1000, 0 }, maxClients);
+	}
+
+	private int nextClient() {
+		return (clients == 1) ? 0 : ThreadLocalRandom.current().nextInt(clients);
+	}
+
+	@Benchmark
+	public ClientKey parseAddress() {
+		return ClientKey.fromAddress(addresses[nextClient()]);
+	}
+
+	@Benchmark
+	public boolean acquireAndRelease() {
+		ClientKey key = keys[nextClient()];
+		boolean acquired = counters.acquire(key);
+		if (acquired) {
+			counters.release(key);
+		}
+		return acquired;
+	}
+
+	@Benchmark
+	public long takeToken() {
+		return buckets.tryAcquire(keys[nextClient()], EndpointClass.LOOKUP);
+	}
+
+}
@@ -0,0 +1,57 @@
+package mx.nic.rdap.server.servlet;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import mx.nic.rdap.server.cache.ExpiringCache;
+import mx.nic.rdap.server.servlet.AcceptHeaderFieldParser.Accept;
+
+/**
+ * Cost of choosing the renderer of a request: parsing its "Accept" header
+ * against finding it at a memo like the one of {@link RdapServlet} (which
+ * holds 256 headers for an hour).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class AcceptHeaderBenchmark {
+
+	@Param({ "application/rdap+json",
+			"application/rdap+json, application/json;q=0.9, */*;q=0.1",
+			"text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,*/*;q=0.8" })
+	public String header;
+
+	private ExpiringCache<String, String> memo;
+
+	@Setup
+	public void setUp() {
+		memo = new ExpiringCache<>(256, TimeUnit.HOURS.toMillis(1));
+		memo.put(header, parse());
+	}
+
+	/**
+	 * @return the preferred media range, as the renderer lookup would use it
+	 */
+	@Benchmark
+	public String parse() {
+		PriorityQueue<Accept> accepts = new AcceptHeaderFieldParser(header).getQueue();
+		return accepts.isEmpty() ? null : accepts.remove().getMediaRange();
+	}
+
+	@Benchmark
+	public String memoized() {
+		return memo.get(header);
+	}
+
+}
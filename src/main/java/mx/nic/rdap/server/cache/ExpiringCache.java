@@ -0,0 +1,213 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded map whose entries expire after a fixed time. When the map is full,
+ * the least recently used entry is discarded.
+ * <p>
+ * The map is split in up to 16 segments by the hash of the keys, each one an
+ * independent LRU with its share of the limits, so that the requests of
+ * different keys don't wait for each other. The small maps (less than 64
+ * entries per segment) have a single segment, so they're exact LRUs.
+ *
+ * @param <K>
+ *            Type of the keys
+ * @param <V>
+ *            Type of the cached values
+ */
+public class ExpiringCache<K, V> {
+
+	private static final int MAX_SEGMENTS = 16;
+
+	private static final int MIN_SEGMENT_SIZE = 64;
+
+	private final long ttlNanos;
+
+	private final ToLongFunction<V> weigher;
+
+	private final Segment<K, V>[] segments;
+
+	/**
+	 * @param maxSize
+	 *            Max number of entries
+	 * @param ttlMillis
+	 *            Time (in milliseconds) that an entry is valid
+	 */
+	public ExpiringCache(int maxSize, long ttlMillis) {
+		this(maxSize, 0, ttlMillis, value -> 0);
+	}
+
+	/**
+	 * @param maxSize
+	 *            Max number of entries
+	 * @param maxWeight
+	 *            Max sum of the weights of the values, 0 means that only
+	 *            <code>maxSize</code> is checked
+	 * @param ttlMillis
+	 *            Time (in milliseconds) that an entry is valid
+	 * @param weigher
+	 *            Weight of a value, eg. its size in bytes
+	 */
+	@SuppressWarnings("unchecked")
+	public ExpiringCache(int maxSize, long maxWeight, long ttlMillis, ToLongFunction<V> weigher) {
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.weigher = weigher;
+
+		int count = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxSize / MIN_SEGMENT_SIZE)));
+		this.segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			int segmentSize = maxSize / count + (i < maxSize % count ? 1 : 0);
+			segments[i] = new Segment<>(segmentSize, maxWeight / count);
+		}
+	}
+
+	private Segment<K, V> getSegment(Object key) {
+		int hash = key.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	/**
+	 * @return the value of <code>key</code>, <code>null</code> if it isn't
+	 *         cached or it has expired.
+	 */
+	public V get(K key) {
+		return getSegment(key).get(key, System.nanoTime());
+	}
+
+	/**
+	 * Caches <code>value</code>, unless it alone is heavier than the share of
+	 * the max weight of its segment.
+	 */
+	public void put(K key, V value) {
+		Entry<V> entry = new Entry<>(value, System.nanoTime() + ttlNanos, weigher.applyAsLong(value));
+		getSegment(key).put(key, entry);
+	}
+
+	public void remove(K key) {
+		getSegment(key).remove(key);
+	}
+
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the sum of the weights of the cached values
+	 */
+	public long weight() {
+		long weight = 0;
+		for (Segment<K, V> segment : segments) {
+			weight += segment.weight();
+		}
+		return weight;
+	}
+
+	/**
+	 * Access ordered part of the map, locked as a whole.
+	 */
+	private static class Segment<K, V> {
+
+		private final int maxSize;
+
+		private final long maxWeight;
+
+		private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+		private long weight;
+
+		public Segment(int maxSize, long maxWeight) {
+			this.maxSize = maxSize;
+			this.maxWeight = maxWeight;
+		}
+
+		public synchronized V get(K key, long now) {
+			Entry<V> entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+
+			if (entry.isExpired(now)) {
+				entries.remove(key);
+				weight -= entry.weight;
+				return null;
+			}
+
+			return entry.value;
+		}
+
+		public synchronized void put(K key, Entry<V> entry) {
+			if (maxWeight > 0 && entry.weight > maxWeight) {
+				remove(key);
+				return;
+			}
+
+			Entry<V> previous = entries.put(key, entry);
+			if (previous != null) {
+				weight -= previous.weight;
+			}
+			weight += entry.weight;
+
+			Iterator<Entry<V>> eldest = entries.values().iterator();
+			while (entries.size() > maxSize || (maxWeight > 0 && weight > maxWeight)) {
+				weight -= eldest.next().weight;
+				eldest.remove();
+			}
+		}
+
+		public synchronized void remove(K key) {
+			Entry<V> entry = entries.remove(key);
+			if (entry != null) {
+				weight -= entry.weight;
+			}
+		}
+
+		public synchronized void clear() {
+			entries.clear();
+			weight = 0;
+		}
+
+		public synchronized int size() {
+			return entries.size();
+		}
+
+		public synchronized long weight() {
+			return weight;
+		}
+
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+
+		private final long expiration;
+
+		private final long weight;
+
+		public Entry(V value, long expiration, long weight) {
+			this.value = value;
+			this.expiration = expiration;
+			this.weight = weight;
+		}
+
+		public boolean isExpired(long now) {
+			return now - expiration >= 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+
+/**
+ * Remembers the lookups of objects that don't exist, so that repeated misses
+ * (eg. scanners requesting random domains) are answered without querying the
+ * data access implementation.
+ * <p>
+ * The keys are made of the name of the servlet ("domain", "nameserver",
+ * "entity", "autnum" or "ip") and the requested object, as received at the
+ * path (eg. "domain/example.com"; the domain and nameserver names are in lower
+ * case and without the trailing dot), see {@link #getKey(String, String)}.
+ */
+public class NegativeCache {
+
+	private final static Logger logger = Logger.getLogger(NegativeCache.class.getName());
+
+	private static volatile ExpiringCache<String, Boolean> cache;
+
+	private NegativeCache() {
+		// no code.
+	}
+
+	/**
+	 * Creates the cache if it's enabled at {@link RdapConfiguration}.
+	 */
+	public static synchronized void init() {
+		int size = RdapConfiguration.getNegativeCacheSize();
+		if (size <= 0) {
+			cache = null;
+			return;
+		}
+
+		cache = new ExpiringCache<>(size, RdapConfiguration.getNegativeCacheTtl());
+		logger.info("Negative cache enabled: " + size + " misses, " + RdapConfiguration.getNegativeCacheTtl()
+				+ " ms TTL.");
+	}
+
+	public static boolean isEnabled() {
+		return cache != null;
+	}
+
+	/**
+	 * @param objectType
+	 *            Name of the servlet that serves the object (eg. "domain")
+	 * @param objectId
+	 *            Object as requested at the path (eg. "Example.COM.")
+	 * @return the key of the object, eg. "domain/example.com"
+	 */
+	public static String getKey(String objectType, String objectId) {
+		String id = objectId;
+		// The names are case insensitive and the root label is optional
+		if ("domain".equals(objectType) || "nameserver".equals(objectType)) {
+			id = id.toLowerCase(Locale.ROOT);
+			if (id.endsWith(".")) {
+				id = id.substring(0, id.length() - 1);
+			}
+		}
+		return objectType + "/" + id;
+	}
+
+	/**
+	 * @return <code>true</code> if <code>key</code> is a recent miss
+	 */
+	public static boolean isMiss(String key) {
+		ExpiringCache<String, Boolean> current = cache;
+		return current != null && current.get(key) != null;
+	}
+
+	public static void putMiss(String key) {
+		ExpiringCache<String, Boolean> current = cache;
+		if (current != null) {
+			current.put(key, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Forgets the miss of an object, useful when the object has just been
+	 * created.
+	 *
+	 * @param objectType
+	 *            Name of the servlet that serves the object (eg. "domain")
+	 * @param objectId
+	 *            Object as requested at the path (eg. "example.com")
+	 */
+	public static void invalidate(String objectType, String objectId) {
+		ExpiringCache<String, Boolean> current = cache;
+		if (current != null) {
+			current.remove(getKey(objectType, objectId));
+		}
+	}
+
+	/**
+	 * Forgets all the misses.
+	 */
+	public static void invalidateAll() {
+		ExpiringCache<String, Boolean> current = cache;
+		if (current != null) {
+			current.clear();
+		}
+	}
+
+}
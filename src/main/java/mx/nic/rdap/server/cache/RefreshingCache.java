@@ -0,0 +1,243 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded cache of values loaded from a slow source (eg. a database), which
+ * are loaded again in background once they're older than a TTL.
+ * <p>
+ * Only the first lookup of a key waits for the source (the concurrent first
+ * lookups wait for the same load). When a value is stale, it's still returned
+ * while a background thread loads it again; if the background load fails, the
+ * old value is kept and the load is retried on the next lookup. When the cache
+ * is full, the least recently used entry is discarded.
+ * <p>
+ * A value loaded while its key is invalidated isn't stored, since it might
+ * have been read before the change that caused the invalidation.
+ *
+ * @param <K>
+ *            Type of the keys
+ * @param <V>
+ *            Type of the cached values, <code>null</code> values are cached
+ *            too
+ * @param <X>
+ *            Type of the exception thrown by the source
+ */
+public class RefreshingCache<K, V, X extends Exception> {
+
+	private static final Logger logger = Logger.getLogger(RefreshingCache.class.getName());
+
+	/**
+	 * Loads the value of a key from the source
+	 */
+	public interface Loader<K, V, X extends Exception> {
+
+		V load(K key) throws X;
+
+	}
+
+	private final Loader<K, V, X> loader;
+
+	private final long ttlNanos;
+
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	/** First loads in progress, by key; guarded by {@link #entries} */
+	private final Map<K, CompletableFuture<V>> loads = new HashMap<>();
+
+	private final ExecutorService refreshExecutor;
+
+	/**
+	 * @param name
+	 *            Name of the background thread
+	 * @param maxSize
+	 *            Max number of entries
+	 * @param ttlMillis
+	 *            Time (in milliseconds) after which a value is loaded again
+	 * @param loader
+	 *            Loads the values from the source
+	 */
+	public RefreshingCache(String name, int maxSize, long ttlMillis, Loader<K, V, X> loader) {
+		this.loader = loader;
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+		this.refreshExecutor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @return the value of <code>key</code>
+	 * @throws X
+	 *             if the value isn't cached and it couldn't be loaded
+	 */
+	public V get(K key) throws X {
+		Entry<V> entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+		}
+
+		if (entry == null) {
+			return load(key);
+		}
+
+		if (entry.isStale(System.nanoTime()) && entry.refreshing.compareAndSet(false, true)) {
+			try {
+				refreshExecutor.execute(() -> refresh(key, entry));
+			} catch (RejectedExecutionException e) {
+				// Shutting down, the stale value will do
+				entry.refreshing.set(false);
+			}
+		}
+
+		return entry.value;
+	}
+
+	/**
+	 * Forgets the value of <code>key</code>, so that it's loaded again on its
+	 * next lookup.
+	 */
+	public void invalidate(K key) {
+		synchronized (entries) {
+			entries.remove(key);
+			loads.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (entries) {
+			entries.clear();
+			loads.clear();
+		}
+	}
+
+	/**
+	 * Stops the background loads.
+	 */
+	public void shutdown() {
+		refreshExecutor.shutdownNow();
+	}
+
+	/**
+	 * Loads the value of <code>key</code>, or waits for the load already in
+	 * progress.
+	 */
+	private V load(K key) throws X {
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> current;
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				return entry.value;
+			}
+			current = loads.putIfAbsent(key, load);
+		}
+		if (current != null) {
+			return await(key, current);
+		}
+
+		V value;
+		try {
+			value = loader.load(key);
+		} catch (Throwable e) {
+			synchronized (entries) {
+				loads.remove(key, load);
+			}
+			load.completeExceptionally(e);
+			throw e;
+		}
+
+		synchronized (entries) {
+			// Unless it was invalidated meanwhile
+			if (loads.remove(key, load)) {
+				entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+			}
+		}
+		load.complete(value);
+		return value;
+	}
+
+	/**
+	 * Waits for the first load of <code>key</code> by another thread.
+	 */
+	@SuppressWarnings("unchecked")
+	private V await(K key, CompletableFuture<V> load) throws X {
+		try {
+			return load.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return loader.load(key);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			// The loader only throws X
+			throw (X) cause;
+		}
+	}
+
+	private void refresh(K key, Entry<V> stale) {
+		V value;
+		try {
+			value = loader.load(key);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, "The cached value of [" + key + "] couldn't be refreshed.", e);
+			stale.refreshing.set(false);
+			return;
+		}
+
+		synchronized (entries) {
+			// Unless it was invalidated (or replaced) meanwhile
+			if (entries.get(key) == stale) {
+				entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+			}
+		}
+	}
+
+	private static class Entry<V> {
+
+		private final V value;
+
+		private final long refreshTime;
+
+		/** Indicates if a background load of the value is running */
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+
+		public Entry(V value, long refreshTime) {
+			this.value = value;
+			this.refreshTime = refreshTime;
+		}
+
+		public boolean isStale(long now) {
+			return now - refreshTime >= 0;
+		}
+
+	}
+
+}
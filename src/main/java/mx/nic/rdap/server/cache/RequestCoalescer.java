@@ -0,0 +1,99 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+import mx.nic.rdap.server.servlet.RenderedResponse;
+
+/**
+ * Lets identical concurrent requests share a single response: the first
+ * request builds it, and the ones that arrive while it's being built wait for
+ * it instead of querying the data access implementation again.
+ * <p>
+ * The requests share the rendered response, not the query to the data access
+ * implementation: the results are built for the requesting user (eg. to tell
+ * the objects it owns), so the key must include the visibility class of the
+ * user, just like the {@link ResponseCache} key, and the lookups of the same
+ * object by users of different classes still make their own queries.
+ * <p>
+ * The waiting requests give up after
+ * {@link RdapConfiguration#getRequestCoalescingTimeout()} (or the asynchronous
+ * request timeout, if it's shorter) and are answered with a 503, so that a
+ * slow response can't hold every thread.
+ */
+public class RequestCoalescer {
+
+	private static final ConcurrentMap<String, CompletableFuture<RenderedResponse>> inFlight = new ConcurrentHashMap<>();
+
+	private RequestCoalescer() {
+		// no code.
+	}
+
+	public static boolean isEnabled() {
+		return RdapConfiguration.isRequestCoalescingEnabled();
+	}
+
+	/**
+	 * Builds the response of <code>key</code> using <code>builder</code>, unless
+	 * another request is already building it; in that case waits for the other
+	 * request and returns the same response (or a 503 if it takes too long).
+	 *
+	 * @param key
+	 *            Identifies the response
+	 * @param builder
+	 *            Builds the response, if needed
+	 * @return the response of <code>key</code>
+	 */
+	public static RenderedResponse execute(String key, Supplier<RenderedResponse> builder) {
+		if (!isEnabled()) {
+			return builder.get();
+		}
+
+		CompletableFuture<RenderedResponse> future = new CompletableFuture<>();
+		CompletableFuture<RenderedResponse> current = inFlight.putIfAbsent(key, future);
+		if (current != null) {
+			return await(current);
+		}
+
+		try {
+			RenderedResponse response = builder.get();
+			future.complete(response);
+			return response;
+		} catch (RuntimeException | Error e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, future);
+		}
+	}
+
+	private static RenderedResponse await(CompletableFuture<RenderedResponse> future) {
+		long timeout = RdapConfiguration.getRequestCoalescingTimeout();
+		if (RdapConfiguration.isAsyncRequestsEnabled() && RdapConfiguration.getAsyncRequestTimeout() > 0) {
+			timeout = Math.min(timeout, RdapConfiguration.getAsyncRequestTimeout());
+		}
+		try {
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			return RenderedResponse.error(503, "The request took too long, try again later.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return RenderedResponse.error(503, "The request took too long, try again later.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+}
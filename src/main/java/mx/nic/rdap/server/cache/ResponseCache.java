@@ -0,0 +1,80 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.logging.Logger;
+
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+import mx.nic.rdap.server.servlet.RenderedResponse;
+
+/**
+ * Keeps the already rendered (and privacy filtered) responses, so that repeated
+ * lookups skip the data access, the privacy filters and the renderer.
+ * <p>
+ * The key must identify everything the response depends on: the requested
+ * URL, the renderer and the visibility class of the user (see
+ * {@link mx.nic.rdap.server.privacy.SubjectSnapshot#getVisibilityKey()}).
+ * <p>
+ * The cache is limited by the number of responses and by the size of their
+ * bodies, see {@link RdapConfiguration#getResponseCacheMaxMemory()}.
+ */
+public class ResponseCache {
+
+	private final static Logger logger = Logger.getLogger(ResponseCache.class.getName());
+
+	private static volatile ExpiringCache<String, RenderedResponse> cache;
+
+	private ResponseCache() {
+		// no code.
+	}
+
+	/**
+	 * Creates the cache if it's enabled at {@link RdapConfiguration}.
+	 */
+	public static synchronized void init() {
+		int size = RdapConfiguration.getResponseCacheSize();
+		if (size <= 0) {
+			cache = null;
+			return;
+		}
+
+		int maxMemory = RdapConfiguration.getResponseCacheMaxMemory();
+		cache = new ExpiringCache<>(size, maxMemory * 1024L * 1024L, RdapConfiguration.getResponseCacheTtl(),
+				response -> response.getBody().length);
+		logger.info("Response cache enabled: " + size + " responses, "
+				+ (maxMemory > 0 ? maxMemory + " MB, " : "") + RdapConfiguration.getResponseCacheTtl() + " ms TTL.");
+	}
+
+	public static boolean isEnabled() {
+		return cache != null;
+	}
+
+	/**
+	 * @return the response cached with <code>key</code>, <code>null</code> if
+	 *         there's none.
+	 */
+	public static RenderedResponse get(String key) {
+		ExpiringCache<String, RenderedResponse> current = cache;
+		return current == null ? null : current.get(key);
+	}
+
+	/**
+	 * Caches <code>response</code>, only if it's a successful response.
+	 */
+	public static void put(String key, RenderedResponse response) {
+		ExpiringCache<String, RenderedResponse> current = cache;
+		if (current == null || response.isError()) {
+			return;
+		}
+		current.put(key, response);
+	}
+
+	/**
+	 * Discards all the cached responses, useful when the data has been changed.
+	 */
+	public static void clear() {
+		ExpiringCache<String, RenderedResponse> current = cache;
+		if (current != null) {
+			current.clear();
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.logging.Logger;
+
+import mx.nic.rdap.db.RdapUser;
+import mx.nic.rdap.db.exception.RdapDataAccessException;
+import mx.nic.rdap.db.service.DataAccessService;
+import mx.nic.rdap.db.spi.RdapUserDAO;
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+
+/**
+ * Remembers the custom max search results of the users, so that the searches
+ * don't query the data access implementation before doing their real work.
+ * The limits are loaded again in background once they're older than the
+ * configured TTL.
+ */
+public class UserLimitCache {
+
+	private final static Logger logger = Logger.getLogger(UserLimitCache.class.getName());
+
+	private static volatile RefreshingCache<String, Integer, RdapDataAccessException> cache;
+
+	private UserLimitCache() {
+		// no code.
+	}
+
+	/**
+	 * Creates the cache if it's enabled at {@link RdapConfiguration}.
+	 */
+	public static synchronized void init() {
+		shutdown();
+
+		int size = RdapConfiguration.getUserLimitCacheSize();
+		if (size <= 0) {
+			return;
+		}
+
+		cache = new RefreshingCache<>("rdap-user-limit-refresh", size, RdapConfiguration.getUserLimitCacheTtl(),
+				UserLimitCache::loadLimit);
+		logger.info("User limit cache enabled: " + size + " users, " + RdapConfiguration.getUserLimitCacheTtl()
+				+ " ms TTL.");
+	}
+
+	/**
+	 * Stops the background loads and discards the cache.
+	 */
+	public static synchronized void shutdown() {
+		if (cache != null) {
+			cache.shutdown();
+			cache = null;
+		}
+	}
+
+	public static boolean isEnabled() {
+		return cache != null;
+	}
+
+	/**
+	 * @return the custom max search results of <code>username</code>,
+	 *         <code>null</code> if the user doesn't have one
+	 * @throws RdapDataAccessException
+	 *             if the limit isn't cached and it couldn't be loaded
+	 */
+	public static Integer getLimit(String username) throws RdapDataAccessException {
+		RefreshingCache<String, Integer, RdapDataAccessException> current = cache;
+		if (current == null) {
+			return loadLimit(username);
+		}
+		return current.get(username);
+	}
+
+	/**
+	 * Forgets the limit of <code>username</code>, must be called when it
+	 * changes (otherwise the old limit is used until it's refreshed).
+	 */
+	public static void invalidate(String username) {
+		RefreshingCache<String, Integer, RdapDataAccessException> current = cache;
+		if (current != null) {
+			current.invalidate(username);
+		}
+	}
+
+	/**
+	 * Forgets the limits of all the users.
+	 */
+	public static void invalidateAll() {
+		RefreshingCache<String, Integer, RdapDataAccessException> current = cache;
+		if (current != null) {
+			current.invalidateAll();
+		}
+	}
+
+	private static Integer loadLimit(String username) throws RdapDataAccessException {
+		RdapUserDAO dao = DataAccessService.getRdapUserDAO();
+		if (dao == null) {
+			return null;
+		}
+
+		RdapUser user = dao.getByUsername(username);
+		return user != null ? user.getMaxSearchResults() : null;
+	}
+
+}
@@ -3,24 +3,25 @@ package mx.nic.rdap.server.configuration;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import mx.nic.rdap.core.catalog.Role;
 import mx.nic.rdap.core.db.Autnum;
 import mx.nic.rdap.core.db.Domain;
 import mx.nic.rdap.core.db.IpNetwork;
 import mx.nic.rdap.core.db.Nameserver;
-import mx.nic.rdap.db.RdapUser;
 import mx.nic.rdap.db.exception.InitializationException;
 import mx.nic.rdap.db.exception.RdapDataAccessException;
-import mx.nic.rdap.db.service.DataAccessService;
-import mx.nic.rdap.db.spi.RdapUserDAO;
+import mx.nic.rdap.server.cache.UserLimitCache;
 import mx.nic.rdap.server.catalog.PrivacyStatus;
+import mx.nic.rdap.server.executor.RequestPriority;
 import mx.nic.rdap.server.privacy.PrivacySettingsFactory;
 
 /**
@@ -42,17 +43,65 @@ public class RdapConfiguration {
 	private static final String ALLOW_WILDCARD_ANYWHERE_KEY = "allow_search_wildcard_anywhere";
 	private static final String ALLOW_REGEX_SEARCHES = "allow_regex_searches";
 	private static final String USER_ROLES_KEY = "user_roles";
+	private static final String ASYNC_REQUESTS_ENABLED_KEY = "async_requests_enabled";
+	private static final String ASYNC_EXECUTOR_THREADS_KEY = "async_executor_threads";
+	private static final String ASYNC_EXECUTOR_QUEUE_SIZE_KEY = "async_executor_queue_size";
+	private static final String ASYNC_REQUEST_TIMEOUT_KEY = "async_request_timeout";
+	private static final String ASYNC_EXECUTOR_TYPE_KEY = "async_executor_type";
+	private static final String ASYNC_PRIORITY_WEIGHTS_KEY = "async_priority_weights";
+	private static final String DAO_MAX_CONCURRENT_REQUESTS_KEY = "dao_max_concurrent_requests";
+	private static final String DAO_PERMIT_TIMEOUT_KEY = "dao_permit_timeout";
+	private static final String RESPONSE_CACHE_SIZE_KEY = "response_cache_size";
+	private static final String RESPONSE_CACHE_TTL_KEY = "response_cache_ttl";
+	private static final String RESPONSE_CACHE_MAX_MEMORY_KEY = "response_cache_max_memory";
+	private static final String REQUEST_COALESCING_ENABLED_KEY = "request_coalescing_enabled";
+	private static final String REQUEST_COALESCING_TIMEOUT_KEY = "request_coalescing_timeout";
+	private static final String NEGATIVE_CACHE_SIZE_KEY = "negative_cache_size";
+	private static final String NEGATIVE_CACHE_TTL_KEY = "negative_cache_ttl";
+	private static final String USER_LIMIT_CACHE_SIZE_KEY = "user_limit_cache_size";
+	private static final String USER_LIMIT_CACHE_TTL_KEY = "user_limit_cache_ttl";
+	private static final String PARALLEL_RESULTS_THRESHOLD_KEY = "parallel_results_threshold";
+	private static final String PARALLEL_RESULTS_THREADS_KEY = "parallel_results_threads";
+
+	// Values of ASYNC_EXECUTOR_TYPE_KEY
+	private static final String EXECUTOR_TYPE_PLATFORM = "platform";
+	private static final String EXECUTOR_TYPE_VIRTUAL = "virtual";
 
 	// Settings values
 	private static String serverLanguage;
 	private static Integer minimumSearchPatternLength;
 	private static Integer maxNumberOfResultsForAuthenticatedUser;
 	private static Integer maxNumberOfResultsForUnauthenticatedUser;
-	private static Map<String, Set<Role>> objectOwnerRoles;
+	private static Set<Role> ipNetworkOwnerRoles = EnumSet.noneOf(Role.class);
+	private static Set<Role> autnumOwnerRoles = EnumSet.noneOf(Role.class);
+	private static Set<Role> domainOwnerRoles = EnumSet.noneOf(Role.class);
+	private static Set<Role> nameserverOwnerRoles = EnumSet.noneOf(Role.class);
+
+	/** Owner roles of each class of object received, so that its type is resolved only once */
+	private static final Map<Class<?>, Set<Role>> ownerRolesByClass = new ConcurrentHashMap<>();
 	private static boolean allowMultipleWildcards;
 	private static boolean allowSearchWildcardAnywhere;
 	private static boolean allowRegexSearches;
 	private static Set<String> userRoles;
+	private static boolean asyncRequestsEnabled;
+	private static Integer asyncExecutorThreads;
+	private static Integer asyncExecutorQueueSize;
+	private static Integer asyncRequestTimeout;
+	private static boolean virtualThreadsExecutor;
+	private static int[] asyncPriorityWeights;
+	private static Integer daoMaxConcurrentRequests;
+	private static Integer daoPermitTimeout;
+	private static Integer responseCacheSize;
+	private static Integer responseCacheTtl;
+	private static Integer responseCacheMaxMemory;
+	private static boolean requestCoalescingEnabled;
+	private static Integer requestCoalescingTimeout;
+	private static Integer negativeCacheSize;
+	private static Integer negativeCacheTtl;
+	private static Integer userLimitCacheSize;
+	private static Integer userLimitCacheTtl;
+	private static Integer parallelResultsThreshold;
+	private static Integer parallelResultsThreads;
 
 	private RdapConfiguration() {
 		// no code.
@@ -75,11 +124,39 @@ public class RdapConfiguration {
 	 * @throws InitializationException if there's an error loading the values
 	 */
 	public static void loadConfiguredOwnerRoles() throws InitializationException {
-		objectOwnerRoles = new HashMap<String, Set<Role>>();
-		loadObjectOwnerRoles(OWNER_ROLES_IP_KEY, IpNetwork.class.getName(), objectOwnerRoles);
-		loadObjectOwnerRoles(OWNER_ROLES_AUTNUM_KEY, Autnum.class.getName(), objectOwnerRoles);
-		loadObjectOwnerRoles(OWNER_ROLES_DOMAIN_KEY, Domain.class.getName(), objectOwnerRoles);
-		loadObjectOwnerRoles(OWNER_ROLES_NAMESERVER_KEY, Nameserver.class.getName(), objectOwnerRoles);
+		ipNetworkOwnerRoles = loadObjectOwnerRoles(OWNER_ROLES_IP_KEY);
+		autnumOwnerRoles = loadObjectOwnerRoles(OWNER_ROLES_AUTNUM_KEY);
+		domainOwnerRoles = loadObjectOwnerRoles(OWNER_ROLES_DOMAIN_KEY);
+		nameserverOwnerRoles = loadObjectOwnerRoles(OWNER_ROLES_NAMESERVER_KEY);
+		ownerRolesByClass.clear();
+	}
+
+	/**
+	 * Get the roles that are owners of the object.
+	 * 
+	 * @param object
+	 *            The object to verify its owner, should be any of: {@link IpNetwork}, {@link Autnum},
+	 *            {@link Domain} or {@link Nameserver}
+	 * @return the owner roles of the type of <code>object</code>, an empty set if it can't have owners
+	 */
+	public static Set<Role> getOwnerRoles(Object object) {
+		if (object == null) {
+			return Collections.emptySet();
+		}
+		return ownerRolesByClass.computeIfAbsent(object.getClass(), RdapConfiguration::findOwnerRoles);
+	}
+
+	private static Set<Role> findOwnerRoles(Class<?> clazz) {
+		if (IpNetwork.class.isAssignableFrom(clazz)) {
+			return ipNetworkOwnerRoles;
+		} else if (Autnum.class.isAssignableFrom(clazz)) {
+			return autnumOwnerRoles;
+		} else if (Domain.class.isAssignableFrom(clazz)) {
+			return domainOwnerRoles;
+		} else if (Nameserver.class.isAssignableFrom(clazz)) {
+			return nameserverOwnerRoles;
+		}
+		return Collections.emptySet();
 	}
 
 	/**
@@ -93,22 +170,7 @@ public class RdapConfiguration {
 	 * @return <code>boolean</code> indicating if the role is an owner of the object
 	 */
 	public static boolean isRoleAnOwner(Object object, Role role) {
-		if (object == null) {
-			return false;
-		}
-		String className = null;
-		if (object instanceof IpNetwork) {
-			className = IpNetwork.class.getName();
-		} else if (object instanceof Autnum) {
-			className = Autnum.class.getName();
-		} else if (object instanceof Domain) {
-			className = Domain.class.getName();
-		} else if (object instanceof Nameserver) {
-			className = Nameserver.class.getName();
-		} else {
-			return false;
-		}
-		return objectOwnerRoles.get(className).contains(role);
+		return getOwnerRoles(object).contains(role);
 	}
 
 	/**
@@ -217,6 +279,50 @@ public class RdapConfiguration {
 			}
 		}
 
+		asyncRequestsEnabled = loadBooleanProperty(ASYNC_REQUESTS_ENABLED_KEY, invalidProperties);
+		asyncExecutorThreads = loadIntegerProperty(ASYNC_EXECUTOR_THREADS_KEY, 1, invalidProperties, exceptions);
+		asyncExecutorQueueSize = loadIntegerProperty(ASYNC_EXECUTOR_QUEUE_SIZE_KEY, 0, invalidProperties, exceptions);
+		asyncRequestTimeout = loadIntegerProperty(ASYNC_REQUEST_TIMEOUT_KEY, 0, invalidProperties, exceptions);
+
+		if (isPropertyNullOrEmpty(ASYNC_EXECUTOR_TYPE_KEY)) {
+			invalidProperties.add(ASYNC_EXECUTOR_TYPE_KEY);
+		} else {
+			String executorType = systemProperties.getProperty(ASYNC_EXECUTOR_TYPE_KEY).trim();
+			if (executorType.equalsIgnoreCase(EXECUTOR_TYPE_VIRTUAL)) {
+				virtualThreadsExecutor = true;
+			} else if (executorType.equalsIgnoreCase(EXECUTOR_TYPE_PLATFORM)) {
+				virtualThreadsExecutor = false;
+			} else {
+				invalidProperties.add(ASYNC_EXECUTOR_TYPE_KEY);
+			}
+		}
+
+		// Optional property, no problem if it's null
+		try {
+			asyncPriorityWeights = loadPriorityWeights(ASYNC_PRIORITY_WEIGHTS_KEY);
+		} catch (InitializationException e) {
+			invalidProperties.add(ASYNC_PRIORITY_WEIGHTS_KEY);
+			exceptions.add(e);
+		}
+
+		daoMaxConcurrentRequests = loadIntegerProperty(DAO_MAX_CONCURRENT_REQUESTS_KEY, 0, invalidProperties,
+				exceptions);
+		daoPermitTimeout = loadIntegerProperty(DAO_PERMIT_TIMEOUT_KEY, 0, invalidProperties, exceptions);
+		responseCacheSize = loadIntegerProperty(RESPONSE_CACHE_SIZE_KEY, 0, invalidProperties, exceptions);
+		responseCacheTtl = loadIntegerProperty(RESPONSE_CACHE_TTL_KEY, 0, invalidProperties, exceptions);
+		responseCacheMaxMemory = loadIntegerProperty(RESPONSE_CACHE_MAX_MEMORY_KEY, 0, invalidProperties,
+				exceptions);
+		requestCoalescingEnabled = loadBooleanProperty(REQUEST_COALESCING_ENABLED_KEY, invalidProperties);
+		requestCoalescingTimeout = loadIntegerProperty(REQUEST_COALESCING_TIMEOUT_KEY, 1, invalidProperties,
+				exceptions);
+		negativeCacheSize = loadIntegerProperty(NEGATIVE_CACHE_SIZE_KEY, 0, invalidProperties, exceptions);
+		negativeCacheTtl = loadIntegerProperty(NEGATIVE_CACHE_TTL_KEY, 0, invalidProperties, exceptions);
+		userLimitCacheSize = loadIntegerProperty(USER_LIMIT_CACHE_SIZE_KEY, 0, invalidProperties, exceptions);
+		userLimitCacheTtl = loadIntegerProperty(USER_LIMIT_CACHE_TTL_KEY, 0, invalidProperties, exceptions);
+		parallelResultsThreshold = loadIntegerProperty(PARALLEL_RESULTS_THRESHOLD_KEY, 0, invalidProperties,
+				exceptions);
+		parallelResultsThreads = loadIntegerProperty(PARALLEL_RESULTS_THREADS_KEY, 0, invalidProperties, exceptions);
+
 		// Optional property, no problem if it's null
 		userRoles = new HashSet<String>();
 		try {
@@ -249,6 +355,69 @@ public class RdapConfiguration {
 		return systemProperty == null || systemProperty.trim().isEmpty();
 	}
 
+	/**
+	 * Reads a boolean property, if the value is neither "true" nor "false" the property is marked as invalid.
+	 * 
+	 * @param propertyKey
+	 *            Key of the property
+	 * @param invalidProperties
+	 *            List where the key is added if the value is invalid
+	 * @return the value of the property, <code>false</code> if it's invalid
+	 */
+	private static boolean loadBooleanProperty(String propertyKey, List<String> invalidProperties) {
+		if (isPropertyNullOrEmpty(propertyKey)) {
+			invalidProperties.add(propertyKey);
+			return false;
+		}
+
+		String property = systemProperties.getProperty(propertyKey).trim();
+		if (property.equalsIgnoreCase("true")) {
+			return true;
+		} else if (property.equalsIgnoreCase("false")) {
+			return false;
+		}
+
+		invalidProperties.add(propertyKey);
+		return false;
+	}
+
+	/**
+	 * Reads an integer property, if the value isn't a number or is lower than <code>minValue</code> the property is
+	 * marked as invalid.
+	 * 
+	 * @param propertyKey
+	 *            Key of the property
+	 * @param minValue
+	 *            Minimum value allowed
+	 * @param invalidProperties
+	 *            List where the key is added if the value is invalid
+	 * @param exceptions
+	 *            List where the parsing errors are added
+	 * @return the value of the property, <code>null</code> if it's invalid
+	 */
+	private static Integer loadIntegerProperty(String propertyKey, int minValue, List<String> invalidProperties,
+			List<Exception> exceptions) {
+		if (isPropertyNullOrEmpty(propertyKey)) {
+			invalidProperties.add(propertyKey);
+			return null;
+		}
+
+		Integer value;
+		try {
+			value = Integer.parseInt(systemProperties.getProperty(propertyKey).trim());
+		} catch (NumberFormatException e) {
+			invalidProperties.add(propertyKey);
+			exceptions.add(e);
+			return null;
+		}
+
+		if (value < minValue) {
+			invalidProperties.add(propertyKey);
+			return null;
+		}
+		return value;
+	}
+
 	/**
 	 * @return the server language defined in the configuration file
 	 */
@@ -300,6 +469,151 @@ public class RdapConfiguration {
 		return allowRegexSearches;
 	}
 
+	/**
+	 * @return if the data access requests are processed asynchronously at a dedicated executor
+	 */
+	public static boolean isAsyncRequestsEnabled() {
+		return asyncRequestsEnabled;
+	}
+
+	/**
+	 * @return the number of threads of the executor that processes the asynchronous requests
+	 */
+	public static int getAsyncExecutorThreads() {
+		return asyncExecutorThreads;
+	}
+
+	/**
+	 * @return the max number of asynchronous requests that can wait for a free executor thread
+	 */
+	public static int getAsyncExecutorQueueSize() {
+		return asyncExecutorQueueSize;
+	}
+
+	/**
+	 * @return the timeout (in milliseconds) of an asynchronous request, 0 means no timeout
+	 */
+	public static int getAsyncRequestTimeout() {
+		return asyncRequestTimeout;
+	}
+
+	/**
+	 * @return if the asynchronous requests are processed at a virtual thread per request, instead of a pool of
+	 *         platform threads
+	 */
+	public static boolean isVirtualThreadsExecutor() {
+		return virtualThreadsExecutor;
+	}
+
+	/**
+	 * @return the weight of the queue of each {@link RequestPriority} (indexed by ordinal) at the asynchronous requests
+	 *         executor, <code>null</code> if the requests share a single queue
+	 */
+	public static int[] getAsyncPriorityWeights() {
+		return asyncPriorityWeights == null ? null : asyncPriorityWeights.clone();
+	}
+
+	/**
+	 * @return the max number of requests that can use the same DAO type at the same time, 0 means no limit
+	 */
+	public static int getDaoMaxConcurrentRequests() {
+		return daoMaxConcurrentRequests;
+	}
+
+	/**
+	 * @return the time (in milliseconds) that a request can wait for its DAO type to be available
+	 */
+	public static int getDaoPermitTimeout() {
+		return daoPermitTimeout;
+	}
+
+	/**
+	 * @return the max number of rendered responses kept in memory, 0 means that the responses aren't cached
+	 */
+	public static int getResponseCacheSize() {
+		return responseCacheSize;
+	}
+
+	/**
+	 * @return the time (in milliseconds) that a rendered response is kept in memory
+	 */
+	public static int getResponseCacheTtl() {
+		return responseCacheTtl;
+	}
+
+	/**
+	 * @return the max size (in megabytes) of the bodies of the rendered responses kept in memory, 0 means that only
+	 *         their number is limited
+	 */
+	public static int getResponseCacheMaxMemory() {
+		return responseCacheMaxMemory;
+	}
+
+	/**
+	 * @return if identical concurrent lookups share a single response
+	 */
+	public static boolean isRequestCoalescingEnabled() {
+		return requestCoalescingEnabled;
+	}
+
+	/**
+	 * @return the time (in milliseconds) that a lookup waits for the identical lookup in progress
+	 */
+	public static int getRequestCoalescingTimeout() {
+		return requestCoalescingTimeout;
+	}
+
+	/**
+	 * @return the max number of lookup misses kept in memory, 0 means that the misses aren't cached
+	 */
+	public static int getNegativeCacheSize() {
+		return negativeCacheSize;
+	}
+
+	/**
+	 * @return the time (in milliseconds) that a lookup miss is kept in memory
+	 */
+	public static int getNegativeCacheTtl() {
+		return negativeCacheTtl;
+	}
+
+	/**
+	 * @return the max number of users whose custom search limit is kept in memory, 0 means that the limits aren't
+	 *         cached
+	 */
+	public static int getUserLimitCacheSize() {
+		return userLimitCacheSize;
+	}
+
+	/**
+	 * @return the time (in milliseconds) after which the cached search limit of a user is loaded again
+	 */
+	public static int getUserLimitCacheTtl() {
+		return userLimitCacheTtl;
+	}
+
+	/**
+	 * @return the number of search results from which they're filtered in parallel, 0 if they're always filtered
+	 *         at the request thread
+	 */
+	public static int getParallelResultsThreshold() {
+		return parallelResultsThreshold;
+	}
+
+	/**
+	 * @return the number of threads that filter the search results in parallel, 0 to use one per processor
+	 */
+	public static int getParallelResultsThreads() {
+		return parallelResultsThreads;
+	}
+
+	/**
+	 * @return the custom roles configured at the server, always in lower case
+	 */
+	public static Set<String> getUserRoles() {
+		return Collections.unmodifiableSet(userRoles);
+	}
+
 	/**
 	 * Check if a user role is configured
 	 * 
@@ -321,15 +635,7 @@ public class RdapConfiguration {
 	public static int getMaxNumberOfResultsForUser(String username) throws RdapDataAccessException {
 		if (username != null) {
 			// Find if the user has a custom limit.
-			Integer limit = null;
-
-			RdapUserDAO dao = DataAccessService.getRdapUserDAO();
-			if (dao != null) {
-				RdapUser user = dao.getByUsername(username);
-				if (user != null) {
-					limit = user.getMaxSearchResults();
-				}
-			}
+			Integer limit = UserLimitCache.getLimit(username);
 
 			if (limit != null && limit != 0) {
 				return limit;
@@ -346,21 +652,17 @@ public class RdapConfiguration {
 	 * 
 	 * @param rolesKey
 	 *            Key of the property where the roles are going to be loaded
-	 * @param className
-	 *            Class name of the object, used as key in the <code>Map</code>
-	 * @param objectRolesMap
-	 *            <code>Map</code> where the configured object and roles will be loaded
+	 * @return the configured roles
 	 * @throws InitializationException if there's an error loading the values
 	 */
-	private static void loadObjectOwnerRoles(String rolesKey, String className, Map<String, Set<Role>> objectRolesMap) 
-			throws InitializationException {
+	private static Set<Role> loadObjectOwnerRoles(String rolesKey) throws InitializationException {
 		String ownerRoles = systemProperties.getProperty(rolesKey);
 		if (ownerRoles == null || ownerRoles.trim().isEmpty()) {
 			throw new InitializationException("property '" + rolesKey + "' is not configured");
 		}
 
 		String[] split = ownerRoles.split(",");
-		Set<Role> loadedRoles = new HashSet<Role>();
+		Set<Role> loadedRoles = EnumSet.noneOf(Role.class);
 		for (String role : split) {
 			role = role.trim().toLowerCase();
 			if (role.isEmpty()) {
@@ -375,7 +677,41 @@ public class RdapConfiguration {
 		if (loadedRoles.isEmpty()) {
 			throw new InitializationException("property '" + rolesKey + "' is misconfigured");
 		}
-		objectRolesMap.put(className, loadedRoles);
+		return Collections.unmodifiableSet(loadedRoles);
+	}
+
+	/**
+	 * Load the weights of the priority queues of the asynchronous requests, one for each {@link RequestPriority}
+	 * (separated by commas, in the same order).
+	 * 
+	 * @param weightsKey
+	 *            Key of the property where the weights are going to be loaded
+	 * @return the weights indexed by ordinal, <code>null</code> if the property is empty
+	 * @throws InitializationException
+	 *             if there's an error loading the values
+	 */
+	private static int[] loadPriorityWeights(String weightsKey) throws InitializationException {
+		if (isPropertyNullOrEmpty(weightsKey)) {
+			return null;
+		}
+
+		String[] split = systemProperties.getProperty(weightsKey).split(",");
+		if (split.length != RequestPriority.values().length) {
+			throw new InitializationException("property '" + weightsKey + "' must have "
+					+ RequestPriority.values().length + " values, separated by commas");
+		}
+		int[] weights = new int[split.length];
+		for (int i = 0; i < split.length; i++) {
+			try {
+				weights[i] = Integer.parseInt(split[i].trim());
+			} catch (NumberFormatException e) {
+				throw new InitializationException("invalid weight in property '" + weightsKey + "': " + split[i], e);
+			}
+			if (weights[i] < 1) {
+				throw new InitializationException("the weights of property '" + weightsKey + "' must be at least 1");
+			}
+		}
+		return weights;
 	}
 
 	/**
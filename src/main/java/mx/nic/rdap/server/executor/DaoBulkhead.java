@@ -0,0 +1,83 @@
+package mx.nic.rdap.server.executor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletResponse;
+
+import mx.nic.rdap.db.exception.http.HttpException;
+import mx.nic.rdap.db.spi.DAO;
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+
+/**
+ * Limits the number of requests that can use each type of DAO at the same
+ * time, so that a slow data access (eg. the entity searches) can't take all the
+ * threads and starve the rest of the requests.
+ * <p>
+ * This is mostly useful when the requests are processed at virtual threads,
+ * since there's no pool size that limits them.
+ */
+public class DaoBulkhead {
+
+	private static final ConcurrentMap<Class<?>, Semaphore> permits = new ConcurrentHashMap<>();
+
+	private DaoBulkhead() {
+		// no code.
+	}
+
+	/**
+	 * Waits until <code>dao</code> type can be used by one more request. Every
+	 * successful call must be followed by a {@link #release(DAO)} call.
+	 *
+	 * @param dao
+	 *            DAO that will be used by the request
+	 * @throws HttpException
+	 *             (503) if the DAO type wasn't available during the configured
+	 *             timeout
+	 */
+	public static void acquire(DAO dao) throws HttpException {
+		Semaphore semaphore = getSemaphore(dao);
+		if (semaphore == null) {
+			return;
+		}
+
+		boolean acquired;
+		try {
+			acquired = semaphore.tryAcquire(RdapConfiguration.getDaoPermitTimeout(), TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+
+		if (!acquired) {
+			throw new HttpException(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+					"The server is too busy to attend the request, try again later.");
+		}
+	}
+
+	/**
+	 * Lets another request use <code>dao</code> type.
+	 */
+	public static void release(DAO dao) {
+		Semaphore semaphore = getSemaphore(dao);
+		if (semaphore != null) {
+			semaphore.release();
+		}
+	}
+
+	/**
+	 * @return the semaphore of <code>dao</code> type, <code>null</code> if the
+	 *         concurrency isn't limited.
+	 */
+	private static Semaphore getSemaphore(DAO dao) {
+		int maxConcurrentRequests = RdapConfiguration.getDaoMaxConcurrentRequests();
+		if (maxConcurrentRequests <= 0) {
+			return null;
+		}
+
+		return permits.computeIfAbsent(dao.getClass(), type -> new Semaphore(maxConcurrentRequests, true));
+	}
+
+}
@@ -0,0 +1,174 @@
+package mx.nic.rdap.server.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+
+/**
+ * Holder of the fork-join pool that processes the results of the searches (the
+ * privacy filters, the links, etc.) in parallel, once there are enough of them
+ * to pay for the split.
+ * <p>
+ * The results are split in halves until there are a few parts per thread
+ * (so that the idle threads can steal the rest), and each part writes at its
+ * own positions, so the processed results keep the order of the originals.
+ */
+public class ParallelResults {
+
+	private final static Logger logger = Logger.getLogger(ParallelResults.class.getName());
+
+	/** Time to wait for the pending tasks when the application is stopped. */
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+	private static volatile ForkJoinPool pool;
+
+	private static volatile int threshold;
+
+	/** Parts of the results per thread of the pool. */
+	private static final int PARTS_PER_THREAD = 4;
+
+	private ParallelResults() {
+		// no code.
+	}
+
+	/**
+	 * Creates the pool if the parallel processing of the results is enabled at
+	 * {@link RdapConfiguration}.
+	 */
+	public static synchronized void init() {
+		threshold = RdapConfiguration.getParallelResultsThreshold();
+		if (threshold <= 0) {
+			return;
+		}
+
+		int threads = RdapConfiguration.getParallelResultsThreads();
+		if (threads <= 0) {
+			threads = Runtime.getRuntime().availableProcessors();
+		}
+		pool = new ForkJoinPool(threads, new ResultsThreadFactory(), null, false);
+		logger.info("Search results processed in parallel from " + threshold + " results, " + threads + " threads.");
+	}
+
+	/**
+	 * Waits a little for the tasks being processed and stops the pool.
+	 */
+	public static synchronized void shutdown() {
+		if (pool == null) {
+			return;
+		}
+
+		pool.shutdown();
+		try {
+			if (!pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				pool.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			pool.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		pool = null;
+	}
+
+	/**
+	 * Applies <code>function</code> to each element of <code>list</code>, in
+	 * parallel if the list reaches the configured threshold, at the current
+	 * thread otherwise.
+	 * <p>
+	 * <code>function</code> must not depend on the current thread (eg. on the
+	 * Shiro subject bound to it), and must not modify shared state.
+	 *
+	 * @return a new list with the results of <code>function</code>, in the
+	 *         order of <code>list</code>
+	 */
+	public static <T, R> List<R> map(List<T> list, Function<? super T, ? extends R> function) {
+		ForkJoinPool current = pool;
+		int currentThreshold = threshold;
+		if (current == null || list.size() < currentThreshold) {
+			List<R> result = new ArrayList<>(list.size());
+			for (T element : list) {
+				result.add(function.apply(element));
+			}
+			return result;
+		}
+
+		// Random access is needed to split the list
+		List<T> source = (list instanceof RandomAccess) ? list : new ArrayList<>(list);
+		Object[] result = new Object[source.size()];
+		int partSize = Math.max(1, source.size() / (current.getParallelism() * PARTS_PER_THREAD));
+		current.invoke(new MapAction<>(source, function, result, 0, source.size(), partSize));
+
+		@SuppressWarnings("unchecked")
+		List<R> mapped = (List<R>) new ArrayList<>(Arrays.asList(result));
+		return mapped;
+	}
+
+	/**
+	 * Applies the function to the elements between <code>from</code>
+	 * (inclusive) and <code>to</code> (exclusive), splitting them in halves
+	 * while there are more than <code>partSize</code> of them.
+	 */
+	private static class MapAction<T, R> extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<T> source;
+		private final Function<? super T, ? extends R> function;
+		private final Object[] result;
+		private final int from;
+		private final int to;
+		private final int partSize;
+
+		private MapAction(List<T> source, Function<? super T, ? extends R> function, Object[] result, int from,
+				int to, int partSize) {
+			this.source = source;
+			this.function = function;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+			this.partSize = partSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= partSize) {
+				for (int i = from; i < to; i++) {
+					result[i] = function.apply(source.get(i));
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new MapAction<>(source, function, result, from, middle, partSize),
+					new MapAction<>(source, function, result, middle, to, partSize));
+		}
+
+	}
+
+	/**
+	 * Names the threads so they can be easily spotted at thread dumps.
+	 */
+	private static class ResultsThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("rdap-results-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
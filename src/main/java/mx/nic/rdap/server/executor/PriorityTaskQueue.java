@@ -0,0 +1,334 @@
+package mx.nic.rdap.server.executor;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue of the {@link RequestExecutor} when the priorities are enabled:
+ * a bounded queue per {@link RequestPriority}, so that the bulk traffic can't
+ * fill the room of the critical traffic, drained by smooth weighted round
+ * robin. Each class gets a share of the threads proportional to its weight
+ * while it has requests waiting, and the share of the empty classes goes to
+ * the rest.
+ * <p>
+ * Only {@link Task}s can be queued; a single lock guards everything, the
+ * operations are just a few array accesses. The executor only uses the
+ * non-blocking {@link #offer(Runnable)}, but {@link #put(Runnable)} and the
+ * timed {@link #offer(Runnable, long, TimeUnit)} wait for room at the class of
+ * the task, as any {@link BlockingQueue}.
+ */
+class PriorityTaskQueue extends AbstractQueue<Runnable> implements BlockingQueue<Runnable> {
+
+	/**
+	 * A task and its class.
+	 */
+	static class Task implements Runnable {
+
+		private final Runnable runnable;
+
+		private final RequestPriority priority;
+
+		Task(Runnable runnable, RequestPriority priority) {
+			this.runnable = runnable;
+			this.priority = priority;
+		}
+
+		@Override
+		public void run() {
+			runnable.run();
+		}
+
+	}
+
+	private final ArrayDeque<Runnable>[] queues;
+
+	private final int capacity;
+
+	private final int[] weights;
+
+	/** Credit of each class at the weighted round robin. */
+	private final int[] credits;
+
+	private int count;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition notEmpty = lock.newCondition();
+
+	/** Signaled when a task of each class leaves the queue. */
+	private final Condition[] notFull;
+
+	/**
+	 * @param capacity
+	 *            Max number of tasks waiting at each class
+	 * @param weights
+	 *            Weight of each {@link RequestPriority}, indexed by ordinal
+	 */
+	@SuppressWarnings("unchecked")
+	PriorityTaskQueue(int capacity, int[] weights) {
+		this.queues = new ArrayDeque[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			queues[i] = new ArrayDeque<>();
+		}
+		this.capacity = capacity;
+		this.weights = weights.clone();
+		this.credits = new int[weights.length];
+		this.notFull = new Condition[weights.length];
+		for (int i = 0; i < weights.length; i++) {
+			notFull[i] = lock.newCondition();
+		}
+	}
+
+	private static int indexOf(Runnable task) {
+		if (!(task instanceof Task)) {
+			throw new IllegalArgumentException("Only prioritized tasks can be queued.");
+		}
+		return ((Task) task).priority.ordinal();
+	}
+
+	@Override
+	public boolean offer(Runnable task) {
+		int index = indexOf(task);
+		lock.lock();
+		try {
+			if (queues[index].size() >= capacity) {
+				return false;
+			}
+			enqueue(index, task);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean offer(Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+		int index = indexOf(task);
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (queues[index].size() >= capacity) {
+				if (nanos <= 0) {
+					return false;
+				}
+				nanos = notFull[index].awaitNanos(nanos);
+			}
+			enqueue(index, task);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Runnable task) throws InterruptedException {
+		int index = indexOf(task);
+		lock.lockInterruptibly();
+		try {
+			while (queues[index].size() >= capacity) {
+				notFull[index].await();
+			}
+			enqueue(index, task);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds <code>task</code> to the queue of class <code>index</code>, must be
+	 * called with the lock held and room at the queue.
+	 */
+	private void enqueue(int index, Runnable task) {
+		queues[index].addLast(task);
+		count++;
+		notEmpty.signal();
+	}
+
+	/**
+	 * Removes the next task, must be called with the lock held and
+	 * <code>count &gt; 0</code>.
+	 */
+	private Runnable dequeue() {
+		int totalWeight = 0;
+		int selected = -1;
+		for (int i = 0; i < queues.length; i++) {
+			if (queues[i].isEmpty()) {
+				continue;
+			}
+			credits[i] += weights[i];
+			totalWeight += weights[i];
+			if (selected < 0 || credits[i] > credits[selected]) {
+				selected = i;
+			}
+		}
+		credits[selected] -= totalWeight;
+		count--;
+		notFull[selected].signal();
+		return queues[selected].pollFirst();
+	}
+
+	@Override
+	public Runnable poll() {
+		lock.lock();
+		try {
+			return (count == 0) ? null : dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable poll(long timeout, TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				if (nanos <= 0) {
+					return null;
+				}
+				nanos = notEmpty.awaitNanos(nanos);
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable take() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (count == 0) {
+				notEmpty.await();
+			}
+			return dequeue();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public Runnable peek() {
+		lock.lock();
+		try {
+			for (ArrayDeque<Runnable> queue : queues) {
+				if (!queue.isEmpty()) {
+					return queue.peekFirst();
+				}
+			}
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(Object task) {
+		if (!(task instanceof Task)) {
+			return false;
+		}
+		lock.lock();
+		try {
+			int index = ((Task) task).priority.ordinal();
+			if (queues[index].removeFirstOccurrence(task)) {
+				count--;
+				notFull[index].signal();
+				return true;
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		lock.lock();
+		try {
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int remainingCapacity() {
+		lock.lock();
+		try {
+			return capacity * queues.length - count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> target) {
+		return drainTo(target, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Runnable> target, int maxElements) {
+		lock.lock();
+		try {
+			int drained = 0;
+			while (count > 0 && drained < maxElements) {
+				target.add(dequeue());
+				drained++;
+			}
+			return drained;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * The iterator walks a snapshot of the tasks, so it's only good for
+	 * monitoring and cleanup (eg. {@link java.util.concurrent.ThreadPoolExecutor#purge()}).
+	 */
+	@Override
+	public Iterator<Runnable> iterator() {
+		List<Runnable> snapshot = new ArrayList<>();
+		lock.lock();
+		try {
+			for (ArrayDeque<Runnable> queue : queues) {
+				snapshot.addAll(queue);
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		Iterator<Runnable> iterator = snapshot.iterator();
+		return new Iterator<Runnable>() {
+			private Runnable last;
+
+			@Override
+			public boolean hasNext() {
+				return iterator.hasNext();
+			}
+
+			@Override
+			public Runnable next() {
+				last = iterator.next();
+				return last;
+			}
+
+			@Override
+			public void remove() {
+				if (last == null) {
+					throw new IllegalStateException();
+				}
+				PriorityTaskQueue.this.remove(last);
+				last = null;
+			}
+		};
+	}
+
+}
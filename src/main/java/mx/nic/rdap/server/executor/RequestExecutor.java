@@ -0,0 +1,174 @@
+package mx.nic.rdap.server.executor;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mx.nic.rdap.db.exception.InitializationException;
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+
+/**
+ * Holder of the executor that processes the asynchronous requests, so that the
+ * container threads are released while the data access implementation does its
+ * job.
+ */
+public class RequestExecutor {
+
+	private final static Logger logger = Logger.getLogger(RequestExecutor.class.getName());
+
+	/** Time to wait for the pending requests when the application is stopped. */
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+	private static volatile ExecutorService executor;
+
+	/** If the tasks must be wrapped with their {@link RequestPriority}. */
+	private static volatile boolean prioritized;
+
+	private RequestExecutor() {
+		// no code.
+	}
+
+	/**
+	 * Creates the executor if the asynchronous requests are enabled at
+	 * {@link RdapConfiguration}.
+	 *
+	 * @throws InitializationException
+	 *             if the virtual threads are configured but the running JVM
+	 *             doesn't support them
+	 */
+	public static synchronized void init() throws InitializationException {
+		if (!RdapConfiguration.isAsyncRequestsEnabled()) {
+			if (RdapConfiguration.isVirtualThreadsExecutor()) {
+				logger.log(Level.WARNING, "The virtual threads executor is configured, but it won't be used because "
+						+ "the asynchronous requests are disabled.");
+			}
+			return;
+		}
+
+		if (RdapConfiguration.isVirtualThreadsExecutor()) {
+			executor = newVirtualThreadPerTaskExecutor();
+			logger.info("Asynchronous requests enabled: a virtual thread per request.");
+			return;
+		}
+
+		int threads = RdapConfiguration.getAsyncExecutorThreads();
+		int queueSize = RdapConfiguration.getAsyncExecutorQueueSize();
+		int[] weights = RdapConfiguration.getAsyncPriorityWeights();
+		BlockingQueue<Runnable> queue;
+		if (weights != null && queueSize > 0) {
+			queue = new PriorityTaskQueue(queueSize, weights);
+			prioritized = true;
+		} else if (queueSize > 0) {
+			queue = new ArrayBlockingQueue<>(queueSize);
+		} else {
+			queue = new SynchronousQueue<>();
+		}
+
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue,
+				new RequestThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+		if (prioritized) {
+			logger.info("Asynchronous requests enabled: " + threads + " threads, " + queueSize
+					+ " queued requests per priority, weights " + Arrays.toString(weights) + ".");
+		} else {
+			logger.info("Asynchronous requests enabled: " + threads + " threads, " + queueSize + " queued requests.");
+		}
+	}
+
+	/**
+	 * Stops accepting requests and waits a little for the ones being processed.
+	 */
+	public static synchronized void shutdown() {
+		if (executor == null) {
+			return;
+		}
+
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		prioritized = false;
+	}
+
+	/**
+	 * @return <code>true</code> if the asynchronous requests can be sent to
+	 *         {@link #execute(Runnable)}
+	 */
+	public static boolean isEnabled() {
+		return executor != null;
+	}
+
+	/**
+	 * Queues <code>task</code> to be executed at one of the executor threads.
+	 *
+	 * @param task
+	 *            Task to execute
+	 * @param priority
+	 *            Class of the request, picks its queue if the priorities are
+	 *            enabled
+	 * @throws RejectedExecutionException
+	 *             if the executor is saturated (or the queue of
+	 *             <code>priority</code> is full) or isn't running
+	 */
+	public static void execute(Runnable task, RequestPriority priority) {
+		ExecutorService current = executor;
+		if (current == null) {
+			throw new RejectedExecutionException("The request executor isn't running.");
+		}
+		current.execute(prioritized ? new PriorityTaskQueue.Task(task, priority) : task);
+	}
+
+	/**
+	 * The project is compiled for Java 8, so the virtual threads executor
+	 * (available since Java 21) is looked up at runtime.
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() throws InitializationException {
+		Method factory;
+		try {
+			factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException e) {
+			throw new InitializationException("Virtual threads aren't supported by the JVM (Java "
+					+ System.getProperty("java.version") + "), Java 21 or later is required.", e);
+		}
+
+		try {
+			return (ExecutorService) factory.invoke(null);
+		} catch (IllegalAccessException | InvocationTargetException e) {
+			throw new InitializationException("The virtual threads executor couldn't be created.", e);
+		}
+	}
+
+	/**
+	 * Names the threads so they can be easily spotted at thread dumps.
+	 */
+	private static class RequestThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger counter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "rdap-request-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
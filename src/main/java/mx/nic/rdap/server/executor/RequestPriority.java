@@ -0,0 +1,33 @@
+package mx.nic.rdap.server.executor;
+
+/**
+ * Classes of asynchronous requests, each one waits at its own queue of the
+ * {@link RequestExecutor} when the priorities are enabled. The classes are
+ * declared from the most to the least critical.
+ */
+public enum RequestPriority {
+
+	/** Lookups of authenticated users (eg. registrars) */
+	AUTHENTICATED_LOOKUP,
+	/** Searches of authenticated users */
+	AUTHENTICATED_SEARCH,
+	/** Anonymous lookups */
+	ANONYMOUS_LOOKUP,
+	/** Anonymous searches, the bulk traffic */
+	ANONYMOUS_SEARCH;
+
+	/**
+	 * @param authenticated
+	 *            if the request was done by an authenticated user
+	 * @param search
+	 *            if the request is a search
+	 * @return the class of the request
+	 */
+	public static RequestPriority of(boolean authenticated, boolean search) {
+		if (authenticated) {
+			return search ? AUTHENTICATED_SEARCH : AUTHENTICATED_LOOKUP;
+		}
+		return search ? ANONYMOUS_SEARCH : ANONYMOUS_LOOKUP;
+	}
+
+}
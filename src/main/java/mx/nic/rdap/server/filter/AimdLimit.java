@@ -0,0 +1,134 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global concurrency limit of {@link LoadSheddingFilter}, adapted to the
+ * latency of the data access implementation with AIMD (additive increase,
+ * multiplicative decrease):
+ * <ul>
+ * <li>A request slower than the latency threshold means the backend is
+ * saturating, so the limit is multiplied by the backoff ratio. Only the
+ * requests admitted after the last decrease can decrease it again, otherwise
+ * the requests that were already queued would collapse the limit at once.
+ * The slow requests that race to decrease it compare-and-set the time of the
+ * last decrease, so only one of them wins.</li>
+ * <li>A request within the threshold, done while the limit was actually being
+ * used, increases the limit by one per limit requests (ie. by one per
+ * "round").</li>
+ * </ul>
+ * Everything is lock free: the limit is a <code>double</code> updated with
+ * compare-and-set.
+ */
+public class AimdLimit {
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final long latencyThreshold;
+
+	private final double backoffRatio;
+
+	/** The current limit, as the bits of a <code>double</code>. */
+	private final AtomicLong limit;
+
+	/** Requests in progress. */
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/** Time (nanoTime) of the last decrease. */
+	private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+
+	/**
+	 * @param initialLimit
+	 *            Simultaneous requests allowed at the beginning
+	 * @param minLimit
+	 *            The limit never goes below this
+	 * @param maxLimit
+	 *            The limit never goes above this
+	 * @param latencyThreshold
+	 *            Nanoseconds; slower requests decrease the limit
+	 * @param backoffRatio
+	 *            Factor applied to the limit on each decrease, between 0 and 1
+	 */
+	public AimdLimit(int initialLimit, int minLimit, int maxLimit, long latencyThreshold, double backoffRatio) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.latencyThreshold = latencyThreshold;
+		this.backoffRatio = backoffRatio;
+		int initial = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+		this.limit = new AtomicLong(Double.doubleToLongBits(initial));
+	}
+
+	/**
+	 * Counts a new request, if the limit allows it.
+	 *
+	 * @return the time (nanoTime) at which the request was admitted, needed by
+	 *         {@link #release(long, long)}; -1 if the request must be refused.
+	 */
+	public long tryAcquire() {
+		int currentLimit = getLimit();
+		while (true) {
+			int current = inFlight.get();
+			if (current >= currentLimit) {
+				return -1;
+			}
+			if (inFlight.compareAndSet(current, current + 1)) {
+				return System.nanoTime();
+			}
+		}
+	}
+
+	/**
+	 * Forgets a request and adapts the limit to its latency.
+	 *
+	 * @param admitted
+	 *            Value returned by {@link #tryAcquire()}
+	 * @param latency
+	 *            Nanoseconds spent at the data access implementation, -1 if it
+	 *            wasn't reached (the limit isn't adapted then)
+	 */
+	public void release(long admitted, long latency) {
+		int current = inFlight.getAndDecrement();
+		if (latency < 0) {
+			return;
+		}
+
+		if (latency > latencyThreshold) {
+			long last = lastDecrease.get();
+			if (admitted - last > 0 && lastDecrease.compareAndSet(last, System.nanoTime())) {
+				update(-1);
+			}
+		} else if (current * 2 >= getLimit()) {
+			update(1);
+		}
+	}
+
+	private void update(int direction) {
+		while (true) {
+			long bits = limit.get();
+			double current = Double.longBitsToDouble(bits);
+			double next = (direction < 0) ? current * backoffRatio : current + 1.0 / current;
+			next = Math.min(maxLimit, Math.max(minLimit, next));
+			if (next == current || limit.compareAndSet(bits, Double.doubleToLongBits(next))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of simultaneous requests currently allowed
+	 */
+	public int getLimit() {
+		return (int) Double.longBitsToDouble(limit.get());
+	}
+
+	/**
+	 * @return the number of requests in progress
+	 */
+	public int getInFlight() {
+		return inFlight.get();
+	}
+
+}
@@ -0,0 +1,240 @@
+package mx.nic.rdap.server.filter;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Compact representation of a client, used as key by {@link RateLimitFilter}.
+ * <p>
+ * The anonymous clients are identified by their IP address, as a 128 bits
+ * number (two <code>long</code>s); IPv4 addresses are stored as IPv4-mapped
+ * IPv6 addresses (<code>::ffff:a.b.c.d</code>). The authenticated clients are
+ * identified by their username.
+ */
+public final class ClientKey {
+
+	private static final long IPV4_MAPPED_PREFIX = 0xFFFF00000000L;
+
+	/** Key shared by all the addresses that can't be parsed. */
+	static final ClientKey UNKNOWN = new ClientKey(-1L, -1L);
+
+	private final long high;
+
+	private final long low;
+
+	/** <code>null</code> if the client is identified by its address */
+	private final String username;
+
+	private ClientKey(long high, long low) {
+		this(high, low, null);
+	}
+
+	private ClientKey(long high, long low, String username) {
+		this.high = high;
+		this.low = low;
+		this.username = username;
+	}
+
+	/**
+	 * @param username
+	 *            Name of an authenticated user
+	 * @return the key of <code>username</code>
+	 */
+	public static ClientKey fromUsername(String username) {
+		return new ClientKey(0L, 0L, username);
+	}
+
+	/**
+	 * @param address
+	 *            IP address as returned by
+	 *            {@link javax.servlet.ServletRequest#getRemoteAddr()}
+	 * @return the key of <code>address</code>, {@link #UNKNOWN} if it isn't a
+	 *         literal IP address
+	 */
+	public static ClientKey fromAddress(String address) {
+		if (address == null || address.isEmpty()) {
+			return UNKNOWN;
+		}
+
+		long ipv4 = parseIpv4(address);
+		if (ipv4 >= 0) {
+			return new ClientKey(0L, IPV4_MAPPED_PREFIX | ipv4);
+		}
+
+		// Only literals reach InetAddress, so no name is resolved
+		if (address.indexOf(':') < 0) {
+			return UNKNOWN;
+		}
+		try {
+			InetAddress inetAddress = InetAddress.getByName(address);
+			byte[] bytes = inetAddress.getAddress();
+			if (inetAddress instanceof Inet4Address) {
+				return new ClientKey(0L, IPV4_MAPPED_PREFIX | toLong(bytes, 0, 4));
+			}
+			return new ClientKey(toLong(bytes, 0, 8), toLong(bytes, 8, 8));
+		} catch (UnknownHostException e) {
+			return UNKNOWN;
+		}
+	}
+
+	/**
+	 * @param value
+	 *            Value returned by {@link #toString()}
+	 * @return the key that <code>value</code> represents
+	 */
+	public static ClientKey parse(String value) {
+		if (value.startsWith("user ")) {
+			return fromUsername(value.substring(5));
+		}
+		return fromAddress(value);
+	}
+
+	/**
+	 * @return the dotted-quad <code>address</code> as an unsigned number, -1 if
+	 *         it isn't an IPv4 address
+	 */
+	private static long parseIpv4(String address) {
+		long result = 0;
+		int octets = 0;
+		int octet = -1;
+		for (int i = 0; i < address.length(); i++) {
+			char c = address.charAt(i);
+			if (c >= '0' && c <= '9') {
+				octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+				if (octet > 255) {
+					return -1;
+				}
+			} else if (c == '.' && octet >= 0 && octets < 3) {
+				result = (result << 8) | octet;
+				octets++;
+				octet = -1;
+			} else {
+				return -1;
+			}
+		}
+
+		if (octet < 0 || octets != 3) {
+			return -1;
+		}
+		return (result << 8) | octet;
+	}
+
+	private static long toLong(byte[] bytes, int offset, int length) {
+		long result = 0;
+		for (int i = offset; i < offset + length; i++) {
+			result = (result << 8) | (bytes[i] & 0xFF);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the key of the network of this address, whose prefix length is
+	 *         <code>ipv4PrefixLength</code> or <code>ipv6PrefixLength</code>
+	 *         depending on the address family (eg. the /64 of an IPv6
+	 *         address); <code>this</code> if the prefix is the whole address
+	 */
+	public ClientKey toPrefix(int ipv4PrefixLength, int ipv6PrefixLength) {
+		if (username != null || equals(UNKNOWN)) {
+			return this;
+		}
+
+		if (isIpv4()) {
+			if (ipv4PrefixLength >= 32) {
+				return this;
+			}
+			long mask = (ipv4PrefixLength <= 0) ? 0L : (0xFFFFFFFFL << (32 - ipv4PrefixLength)) & 0xFFFFFFFFL;
+			return new ClientKey(0L, IPV4_MAPPED_PREFIX | (low & mask));
+		}
+
+		if (ipv6PrefixLength >= 128) {
+			return this;
+		}
+		long highMask = -1L;
+		long lowMask = 0L;
+		if (ipv6PrefixLength <= 0) {
+			highMask = 0L;
+		} else if (ipv6PrefixLength < 64) {
+			highMask = -1L << (64 - ipv6PrefixLength);
+		} else if (ipv6PrefixLength > 64) {
+			lowMask = -1L << (128 - ipv6PrefixLength);
+		}
+		return new ClientKey(high & highMask, low & lowMask);
+	}
+
+	/**
+	 * @return the first 64 bits of the address
+	 */
+	long getHigh() {
+		return high;
+	}
+
+	/**
+	 * @return the last 64 bits of the address (the IPv4 address is at the
+	 *         last 32)
+	 */
+	long getLow() {
+		return low;
+	}
+
+	public boolean isIpv4() {
+		return username == null && high == 0L && (low >>> 32) == 0xFFFFL;
+	}
+
+	/**
+	 * @return the name of the authenticated user, <code>null</code> if the
+	 *         client is identified by its address
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	@Override
+	public int hashCode() {
+		if (username != null) {
+			return username.hashCode();
+		}
+		long hash = high * 31 + low;
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ClientKey)) {
+			return false;
+		}
+		ClientKey other = (ClientKey) obj;
+		if (username != null || other.username != null) {
+			return username != null && username.equals(other.username);
+		}
+		return high == other.high && low == other.low;
+	}
+
+	@Override
+	public String toString() {
+		if (username != null) {
+			return "user " + username;
+		}
+		if (equals(UNKNOWN)) {
+			return "unknown";
+		}
+		if (isIpv4()) {
+			return ((low >>> 24) & 0xFF) + "." + ((low >>> 16) & 0xFF) + "." + ((low >>> 8) & 0xFF) + "."
+					+ (low & 0xFF);
+		}
+
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 8; i++) {
+			long word = i < 4 ? high >>> (48 - 16 * i) : low >>> (48 - 16 * (i - 4));
+			if (i > 0) {
+				builder.append(':');
+			}
+			builder.append(Long.toHexString(word & 0xFFFF));
+		}
+		return builder.toString();
+	}
+
+}
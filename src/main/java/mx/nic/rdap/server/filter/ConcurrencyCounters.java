@@ -0,0 +1,160 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Requests in progress of each client of {@link RateLimitFilter}.
+ * <p>
+ * The counters live at a {@link ConcurrentHashMap}, whose entries are updated
+ * atomically and only lock their own bin, so clients don't contend with each
+ * other. A client is forgotten as soon as it doesn't have requests in
+ * progress, and the number of clients tracked at the same time is bounded.
+ * <p>
+ * The clients that don't fit are counted at a fixed number of shared overflow
+ * slots, chosen by the hash of the client, each one with the limit of a
+ * single client; so a full table doesn't refuse every new client, only the
+ * new clients whose slot is busy.
+ */
+public class ConcurrencyCounters {
+
+	/** Number of overflow slots, a power of two. */
+	static final int OVERFLOW_SLOTS = 256;
+
+	/**
+	 * Clients doing requests RIGHT NOW, and how many requests each one is
+	 * doing.
+	 */
+	private final ConcurrentHashMap<ClientKey, Integer> clients = new ConcurrentHashMap<>();
+	/** Number of entries of {@link #clients}, kept apart since size() isn't cheap. */
+	private final AtomicInteger clientCount = new AtomicInteger();
+	/** Maximum number of requests any client can send simultaneously. */
+	private final int limit;
+	/** Maximum number of clients tracked simultaneously. */
+	private final int maxClients;
+	/** Requests in progress of the clients that didn't fit at {@link #clients}. */
+	private final AtomicIntegerArray overflow = new AtomicIntegerArray(OVERFLOW_SLOTS);
+
+	/**
+	 * Outcome of {@link ConcurrencyCounters#tryAcquire(ClientKey)}.
+	 */
+	public enum Admission {
+		/** The request was counted. */
+		ACCEPTED,
+		/** The client already has too many requests in progress. */
+		CLIENT_LIMIT,
+		/**
+		 * There are too many clients, and the overflow slot of the client is
+		 * at the limit.
+		 */
+		TOO_MANY_CLIENTS
+	}
+
+	/**
+	 * @param limit
+	 *            Maximum number of requests any client can send simultaneously
+	 * @param maxClients
+	 *            Maximum number of clients tracked simultaneously
+	 */
+	public ConcurrencyCounters(int limit, int maxClients) {
+		this.limit = limit;
+		this.maxClients = maxClients;
+	}
+
+	/**
+	 * Counts a new request of <code>client</code>.
+	 *
+	 * @return <code>false</code> if the client already has too many requests
+	 *         in progress, or there are too many clients and its overflow
+	 *         slot is at the limit.
+	 */
+	public boolean acquire(ClientKey client) {
+		return tryAcquire(client) == Admission.ACCEPTED;
+	}
+
+	/**
+	 * Counts a new request of <code>client</code>.
+	 *
+	 * @return whether the request was counted, and why not if it wasn't.
+	 */
+	public Admission tryAcquire(ClientKey client) {
+		// compute() is atomic per key
+		Admission[] admission = { null };
+		clients.compute(client, (key, count) -> {
+			if (count == null) {
+				if (clientCount.incrementAndGet() > maxClients) {
+					clientCount.decrementAndGet();
+					return null;
+				}
+				admission[0] = Admission.ACCEPTED;
+				return 1;
+			}
+			if (count >= limit) {
+				admission[0] = Admission.CLIENT_LIMIT;
+				return count;
+			}
+			admission[0] = Admission.ACCEPTED;
+			return count + 1;
+		});
+		return (admission[0] != null) ? admission[0] : acquireOverflow(client);
+	}
+
+	private Admission acquireOverflow(ClientKey client) {
+		int slot = getOverflowSlot(client);
+		while (true) {
+			int count = overflow.get(slot);
+			if (count >= limit) {
+				return Admission.TOO_MANY_CLIENTS;
+			}
+			if (overflow.compareAndSet(slot, count, count + 1)) {
+				return Admission.ACCEPTED;
+			}
+		}
+	}
+
+	private static int getOverflowSlot(ClientKey client) {
+		int hash = client.hashCode();
+		return (hash ^ (hash >>> 16)) & (OVERFLOW_SLOTS - 1);
+	}
+
+	/**
+	 * Forgets a request of <code>client</code>, and the client itself if it
+	 * doesn't have more requests in progress. If the client isn't tracked, the
+	 * request was counted at its overflow slot.
+	 * <p>
+	 * A client can have requests at both places (eg. if it was tracked once
+	 * there was room); the request released isn't always the one that was
+	 * counted there, but the counts are balanced once all of them are done.
+	 */
+	public void release(ClientKey client) {
+		boolean[] released = { false };
+		clients.computeIfPresent(client, (key, count) -> {
+			released[0] = true;
+			if (count > 1) {
+				return count - 1;
+			}
+			clientCount.decrementAndGet();
+			return null;
+		});
+		if (released[0]) {
+			return;
+		}
+
+		int slot = getOverflowSlot(client);
+		while (true) {
+			int count = overflow.get(slot);
+			if (count <= 0 || overflow.compareAndSet(slot, count, count - 1)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of clients with requests in progress
+	 */
+	public int getClientCount() {
+		return clientCount.get();
+	}
+
+}
@@ -0,0 +1,137 @@
+package mx.nic.rdap.server.filter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate counter of a stream of items in constant memory: a matrix of
+ * <code>depth</code> rows of <code>width</code> counters, each item adds to
+ * one counter per row (picked by a different hash) and its count is the
+ * minimum of them. The estimate is never lower than the real count, and
+ * overestimates by at most <code>e / width</code> of the total with
+ * probability <code>1 - e^-depth</code>.
+ * <p>
+ * The items are hashed (their UTF-8 bytes) with a 64-bit hash seeded randomly
+ * by each sketch, so the collisions can't be crafted in advance; its two
+ * halves pick the counter of every row (<code>h1 + row * h2</code>), which
+ * keeps the rows independent enough for the bound above.
+ * <p>
+ * The counters are updated atomically without locks.
+ */
+public class CountMinSketch {
+
+	private final int depth;
+
+	/** <code>width - 1</code>, the width is a power of two. */
+	private final int mask;
+
+	private final AtomicLongArray counters;
+
+	private final long seed = ThreadLocalRandom.current().nextLong();
+
+	/**
+	 * @param width
+	 *            Counters per row, rounded up to a power of two
+	 * @param depth
+	 *            Number of rows
+	 */
+	public CountMinSketch(int width, int depth) {
+		int roundedWidth = Integer.highestOneBit(Math.max(2, width - 1)) << 1;
+		this.depth = Math.max(1, depth);
+		this.mask = roundedWidth - 1;
+		this.counters = new AtomicLongArray(roundedWidth * this.depth);
+	}
+
+	/**
+	 * Counts <code>count</code> more occurrences of <code>item</code>.
+	 *
+	 * @return the estimated count of <code>item</code>, including these
+	 */
+	public long add(String item, long count) {
+		long hash = hash(item);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate, counters.addAndGet(getIndex(hash, row), count));
+		}
+		return estimate;
+	}
+
+	/**
+	 * @return the estimated count of <code>item</code>
+	 */
+	public long estimate(String item) {
+		long hash = hash(item);
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < depth; row++) {
+			estimate = Math.min(estimate, counters.get(getIndex(hash, row)));
+		}
+		return estimate;
+	}
+
+	/**
+	 * Halves all the counters, so that the old occurrences weigh less than the
+	 * recent ones. The concurrent additions might be partially halved, which
+	 * is fine for an approximation.
+	 */
+	public void halve() {
+		for (int i = 0; i < counters.length(); i++) {
+			long value = counters.get(i);
+			if (value != 0) {
+				counters.addAndGet(i, -(value / 2));
+			}
+		}
+	}
+
+	/**
+	 * @return the index of the counter of <code>hash</code> at
+	 *         <code>row</code>
+	 */
+	private int getIndex(long hash, int row) {
+		int h1 = (int) (hash >>> 32);
+		// Odd, so that it never maps the rows to the same counter
+		int h2 = (int) hash | 1;
+		return row * (mask + 1) + ((h1 + row * h2) & mask);
+	}
+
+	/**
+	 * @return the seeded 64-bit hash of the UTF-8 bytes of <code>item</code>
+	 */
+	private long hash(String item) {
+		byte[] bytes = item.getBytes(StandardCharsets.UTF_8);
+		long hash = seed ^ (bytes.length * 0x9E3779B97F4A7C15L);
+		int i = 0;
+		for (; i + 8 <= bytes.length; i += 8) {
+			hash = Long.rotateLeft(hash ^ mix(getLong(bytes, i, 8)), 27) * 0x9E3779B97F4A7C15L + 0x52DCE729L;
+		}
+		if (i < bytes.length) {
+			hash ^= mix(getLong(bytes, i, bytes.length - i));
+		}
+		return mix(hash);
+	}
+
+	/**
+	 * @return the <code>length</code> (at most 8) bytes of <code>bytes</code>
+	 *         from <code>offset</code>, as a little-endian <code>long</code>
+	 */
+	private static long getLong(byte[] bytes, int offset, int length) {
+		long value = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			value = (value << 8) | (bytes[offset + i] & 0xFF);
+		}
+		return value;
+	}
+
+	/**
+	 * Finalizer of MurmurHash3, spreads the bits of the hash.
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+
+}
@@ -0,0 +1,62 @@
+package mx.nic.rdap.server.filter;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Groups of endpoints that have their own request rate at
+ * {@link RateLimitFilter}, since a search is way more expensive than a lookup.
+ */
+public enum EndpointClass {
+
+	/** Single object requests (domain, nameserver, entity, autnum and ip) */
+	LOOKUP("lookup"),
+	/** Searches (domains, nameservers and entities) */
+	SEARCH("search"),
+	/** Anything else (eg. help) */
+	OTHER("other");
+
+	private final String name;
+
+	private EndpointClass(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the prefix of the init parameters of this class at the filter
+	 *         configuration (eg. "lookup" for "lookupRate")
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the class of the endpoint requested by <code>request</code>
+	 */
+	public static EndpointClass of(ServletRequest request) {
+		if (!(request instanceof HttpServletRequest)) {
+			return OTHER;
+		}
+
+		String servletPath = ((HttpServletRequest) request).getServletPath();
+		if (servletPath == null) {
+			return OTHER;
+		}
+
+		switch (servletPath) {
+		case "/domain":
+		case "/nameserver":
+		case "/entity":
+		case "/autnum":
+		case "/ip":
+			return LOOKUP;
+		case "/domains":
+		case "/nameservers":
+		case "/entities":
+			return SEARCH;
+		default:
+			return OTHER;
+		}
+	}
+
+}
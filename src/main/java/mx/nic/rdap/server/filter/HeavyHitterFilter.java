@@ -0,0 +1,157 @@
+package mx.nic.rdap.server.filter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * If active, tracks which clients and which queries dominate the load, without
+ * logging every request. The results are served by
+ * {@link mx.nic.rdap.server.servlet.HeavyHittersServlet}.
+ * <p>
+ * The clients are grouped by network ("ipv4PrefixLength", default 24, and
+ * "ipv6PrefixLength", default 48), and the queries by their lowercase path
+ * (plus the parameters, for the searches). Each one is a
+ * {@link HeavyHitters}: "topSize" (default 20) items are reported, counted
+ * with a sketch of "sketchWidth" (default 2048) by "sketchDepth" (default 4)
+ * counters, halved every "decayInterval" seconds (default 60). "adminRole"
+ * (default "admin") is the role required to read the results, and "realmName"
+ * (default "rdap-server", as the "authcBasic.applicationName" of shiro.ini) is
+ * the realm announced to the clients that must authenticate to read them.
+ */
+public class HeavyHitterFilter implements Filter {
+
+	private final static Logger logger = Logger.getLogger(HeavyHitterFilter.class.getName());
+
+	/** Attribute of the servlet context where the active filter is stored. */
+	public static final String CONTEXT_ATTRIBUTE = HeavyHitterFilter.class.getName();
+
+	/** The queries are truncated to this length, so the top can't hold huge strings. */
+	private static final int MAX_QUERY_LENGTH = 255;
+
+	private HeavyHitters clients;
+	private HeavyHitters queries;
+
+	private int ipv4PrefixLength;
+	private int ipv6PrefixLength;
+
+	private String adminRole;
+
+	private String realmName;
+
+	private ServletContext servletContext;
+
+	@Override
+	public void init(FilterConfig config) {
+		int topSize = getIntParameter(config, "topSize", 20);
+		int width = getIntParameter(config, "sketchWidth", 2048);
+		int depth = getIntParameter(config, "sketchDepth", 4);
+		long decayInterval = TimeUnit.SECONDS.toNanos(getIntParameter(config, "decayInterval", 60));
+		clients = new HeavyHitters(topSize, width, depth, decayInterval);
+		queries = new HeavyHitters(topSize, width, depth, decayInterval);
+
+		ipv4PrefixLength = getIntParameter(config, "ipv4PrefixLength", 24);
+		ipv6PrefixLength = getIntParameter(config, "ipv6PrefixLength", 48);
+		String role = config.getInitParameter("adminRole");
+		adminRole = (role == null) ? "admin" : role;
+		String realm = config.getInitParameter("realmName");
+		realmName = (realm == null) ? "rdap-server" : realm;
+
+		servletContext = config.getServletContext();
+		servletContext.setAttribute(CONTEXT_ATTRIBUTE, this);
+		logger.info("Tracking the top " + topSize + " clients and queries.");
+	}
+
+	private static int getIntParameter(FilterConfig config, String name, int defaultValue) {
+		String value = config.getInitParameter(name);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		ClientKey client = ClientKey.fromAddress(request.getRemoteAddr()).toPrefix(ipv4PrefixLength,
+				ipv6PrefixLength);
+		clients.add(client.toString());
+
+		if (request instanceof HttpServletRequest) {
+			String query = getNormalizedQuery((HttpServletRequest) request);
+			if (query != null) {
+				queries.add(query);
+			}
+		}
+
+		chain.doFilter(request, response);
+	}
+
+	/**
+	 * @return the query of <code>request</code> in lowercase (eg.
+	 *         "/domain/example.mx" or "/domains?name=exa*"), <code>null</code>
+	 *         if it isn't a lookup or a search
+	 */
+	private static String getNormalizedQuery(HttpServletRequest request) {
+		EndpointClass endpointClass = EndpointClass.of(request);
+		if (endpointClass == EndpointClass.OTHER) {
+			return null;
+		}
+
+		StringBuilder query = new StringBuilder(request.getServletPath());
+		if (request.getPathInfo() != null) {
+			query.append(request.getPathInfo());
+		}
+		if (endpointClass == EndpointClass.SEARCH && request.getQueryString() != null) {
+			query.append('?').append(request.getQueryString());
+		}
+		if (query.length() > MAX_QUERY_LENGTH) {
+			query.setLength(MAX_QUERY_LENGTH);
+		}
+		return query.toString().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return the busiest client networks
+	 */
+	public HeavyHitters getClients() {
+		return clients;
+	}
+
+	/**
+	 * @return the most requested objects and searches
+	 */
+	public HeavyHitters getQueries() {
+		return queries;
+	}
+
+	/**
+	 * @return the role required to read the results
+	 */
+	public String getAdminRole() {
+		return adminRole;
+	}
+
+	/**
+	 * @return the realm of the Basic authentication required to read the
+	 *         results
+	 */
+	public String getRealmName() {
+		return realmName;
+	}
+
+	@Override
+	public void destroy() {
+		if (servletContext != null) {
+			servletContext.removeAttribute(CONTEXT_ATTRIBUTE);
+		}
+	}
+
+}
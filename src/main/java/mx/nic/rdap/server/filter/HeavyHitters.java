@@ -0,0 +1,129 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The most frequent items of a stream (eg. clients or queried names), in
+ * constant memory: a {@link CountMinSketch} estimates the count of every item,
+ * and only the <code>size</code> items with the highest estimates are
+ * remembered.
+ * <p>
+ * Most items are below the smallest remembered count, so they only touch the
+ * sketch; the lock is taken only by the candidates to the top. The counts are
+ * halved every decay interval, so the top follows the current load instead of
+ * the load since startup.
+ */
+public class HeavyHitters {
+
+	private final CountMinSketch sketch;
+
+	private final int size;
+
+	/** The top items and their estimated counts, guarded by itself. */
+	private final Map<String, Long> top = new HashMap<>();
+
+	/** Smallest count at {@link #top} once it's full, 0 otherwise. */
+	private volatile long threshold;
+
+	private final long decayInterval;
+
+	private final AtomicLong nextDecay;
+
+	/**
+	 * @param size
+	 *            Number of items remembered
+	 * @param width
+	 *            Width of the sketch
+	 * @param depth
+	 *            Depth of the sketch
+	 * @param decayInterval
+	 *            Nanoseconds between two halvings of the counts
+	 */
+	public HeavyHitters(int size, int width, int depth, long decayInterval) {
+		this.sketch = new CountMinSketch(width, depth);
+		this.size = size;
+		this.decayInterval = decayInterval;
+		this.nextDecay = new AtomicLong(System.nanoTime() + decayInterval);
+	}
+
+	/**
+	 * Counts an occurrence of <code>item</code>.
+	 */
+	public void add(String item) {
+		decayIfNeeded();
+
+		long estimate = sketch.add(item, 1);
+		if (estimate <= threshold) {
+			return;
+		}
+
+		synchronized (top) {
+			if (top.containsKey(item) || top.size() < size) {
+				top.put(item, estimate);
+			} else {
+				Map.Entry<String, Long> smallest = getSmallest();
+				if (estimate <= smallest.getValue()) {
+					return;
+				}
+				top.remove(smallest.getKey());
+				top.put(item, estimate);
+			}
+			threshold = (top.size() < size) ? 0 : getSmallest().getValue();
+		}
+	}
+
+	private Map.Entry<String, Long> getSmallest() {
+		Map.Entry<String, Long> smallest = null;
+		for (Map.Entry<String, Long> entry : top.entrySet()) {
+			if (smallest == null || entry.getValue() < smallest.getValue()) {
+				smallest = entry;
+			}
+		}
+		return smallest;
+	}
+
+	private void decayIfNeeded() {
+		long next = nextDecay.get();
+		long now = System.nanoTime();
+		if (now - next < 0 || !nextDecay.compareAndSet(next, now + decayInterval)) {
+			return;
+		}
+
+		sketch.halve();
+		synchronized (top) {
+			Iterator<Map.Entry<String, Long>> iterator = top.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Long> entry = iterator.next();
+				long halved = entry.getValue() / 2;
+				if (halved == 0) {
+					iterator.remove();
+				} else {
+					entry.setValue(halved);
+				}
+			}
+			threshold = (top.size() < size) ? 0 : getSmallest().getValue();
+		}
+	}
+
+	/**
+	 * @return the top items and their estimated counts, from the most to the
+	 *         least frequent
+	 */
+	public List<Map.Entry<String, Long>> getTop() {
+		List<Map.Entry<String, Long>> result = new ArrayList<>();
+		synchronized (top) {
+			for (Map.Entry<String, Long> entry : top.entrySet()) {
+				result.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+			}
+		}
+		result.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+		return result;
+	}
+
+}
@@ -0,0 +1,320 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.FilterConfig;
+
+import mx.nic.rdap.server.filter.ConcurrencyCounters.Admission;
+
+/**
+ * The limits of one kind of client of {@link RateLimitFilter} (eg. networks,
+ * authenticated users, or a specific user): requests in progress, requests per
+ * second by {@link EndpointClass}, and cost units per second.
+ * <p>
+ * The limits are read from the init parameters of the filter, by prefix: the
+ * parameter "limit" with prefix "user" is "userLimit", and with prefix
+ * "partner.example." is "partner.example.limit". Several prefixes can be given,
+ * the first one that has a value wins.
+ * <p>
+ * If the filter shares its state with other nodes, the tier also counts the
+ * tokens taken by each client (see {@link RateLimitSync}); the rate buckets
+ * are indexed by {@link EndpointClass} ordinal, the budget comes after them.
+ */
+class LimitTier {
+
+	private final static Logger logger = Logger.getLogger(LimitTier.class.getName());
+
+	/** Requests in progress of each client, <code>null</code> if not limited. */
+	private final ConcurrencyCounters counters;
+	/** Requests per second allowed to each client, by endpoint class. */
+	private final TokenBuckets tokenBuckets;
+	/** Cost units per second allowed to each client, <code>null</code> if not limited. */
+	private final TokenBuckets budgets;
+
+	/** Identifies the tier at the shared state, eg. "user". */
+	private final String name;
+
+	/**
+	 * Tokens taken at this node by each client since the last sync, indexed
+	 * by bucket; <code>null</code> if the state isn't shared.
+	 */
+	private ConcurrentHashMap<ClientKey, AtomicLongArray> usage;
+
+	private LimitTier(String name, ConcurrencyCounters counters, TokenBuckets tokenBuckets, TokenBuckets budgets) {
+		this.name = name;
+		this.counters = counters;
+		this.tokenBuckets = tokenBuckets;
+		this.budgets = budgets;
+	}
+
+	/**
+	 * @param config
+	 *            Configuration of the filter
+	 * @param description
+	 *            The clients of this tier, only used to log the limits (eg.
+	 *            "network")
+	 * @param defaultLimit
+	 *            Simultaneous requests of each client if they aren't configured, 0
+	 *            means unlimited
+	 * @param maxClients
+	 *            Max number of clients tracked
+	 * @param maxCost
+	 *            Cost of the most expensive request, the budget burst can't be
+	 *            smaller
+	 * @param prefixes
+	 *            Prefixes of the init parameters, by priority
+	 */
+	static LimitTier load(FilterConfig config, String description, int defaultLimit, int maxClients, int maxCost,
+			String... prefixes) {
+		String limitParameter = getParameter(config, "limit", prefixes);
+		int limit = (limitParameter == null) ? defaultLimit : Integer.parseInt(limitParameter);
+		ConcurrencyCounters counters = null;
+		if (limit > 0) {
+			counters = new ConcurrencyCounters(limit, maxClients);
+			logger.info("Going to allow " + limit + " simultaneous requests per " + description + ".");
+		}
+
+		EndpointClass[] endpointClasses = EndpointClass.values();
+		double[] rates = new double[endpointClasses.length];
+		int[] bursts = new int[endpointClasses.length];
+		for (EndpointClass endpointClass : endpointClasses) {
+			String rate = getParameter(config, endpointClass.getName() + "Rate", "rate", prefixes);
+			String burst = getParameter(config, endpointClass.getName() + "Burst", "burst", prefixes);
+
+			int i = endpointClass.ordinal();
+			rates[i] = (rate == null) ? 0 : Double.parseDouble(rate);
+			// By default, one second worth of requests
+			bursts[i] = (burst == null) ? (int) Math.ceil(rates[i]) : Integer.parseInt(burst);
+			if (rates[i] > 0) {
+				logger.info("Going to allow " + rates[i] + " " + endpointClass.getName() + " requests per second per "
+						+ description + ", in bursts of up to " + bursts[i] + " requests.");
+			}
+		}
+		TokenBuckets tokenBuckets = new TokenBuckets(rates, bursts, maxClients);
+
+		String budgetRateParameter = getParameter(config, "budgetRate", prefixes);
+		double budgetRate = (budgetRateParameter == null) ? 0 : Double.parseDouble(budgetRateParameter);
+		TokenBuckets budgets = null;
+		if (budgetRate > 0) {
+			String budgetBurstParameter = getParameter(config, "budgetBurst", prefixes);
+			// By default, the most expensive request must fit
+			int budgetBurst = (budgetBurstParameter == null) ? Math.max((int) Math.ceil(budgetRate), maxCost)
+					: Integer.parseInt(budgetBurstParameter);
+			if (budgetBurst < maxCost) {
+				// The most expensive requests would never fit, they'd be refused forever
+				logger.log(Level.WARNING, "The budget burst per " + description + " (" + budgetBurst
+						+ ") is smaller than the cost of the most expensive request; using " + maxCost + ".");
+				budgetBurst = maxCost;
+			}
+			budgets = new TokenBuckets(new double[] { budgetRate }, new int[] { budgetBurst }, maxClients);
+			logger.info("Going to allow " + budgetRate + " cost units per second per " + description
+					+ ", in bursts of up to " + budgetBurst + " units.");
+		}
+
+		return new LimitTier(description, counters, tokenBuckets, budgets);
+	}
+
+	/**
+	 * @return the value of the first prefixed <code>name</code> init parameter
+	 *         that exists, <code>null</code> if none does
+	 */
+	private static String getParameter(FilterConfig config, String name, String... prefixes) {
+		for (String prefix : prefixes) {
+			String value = config.getInitParameter(getParameterName(prefix, name));
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Like {@link #getParameter(FilterConfig, String, String...)}, but each
+	 * prefix tries the specific <code>name</code> before the generic
+	 * <code>fallbackName</code> (eg. "userLookupRate", "userRate", "lookupRate",
+	 * "rate").
+	 */
+	private static String getParameter(FilterConfig config, String name, String fallbackName, String... prefixes) {
+		for (String prefix : prefixes) {
+			String value = config.getInitParameter(getParameterName(prefix, name));
+			if (value == null) {
+				value = config.getInitParameter(getParameterName(prefix, fallbackName));
+			}
+			if (value != null) {
+				return value;
+			}
+		}
+		return null;
+	}
+
+	static String getParameterName(String prefix, String name) {
+		if (prefix.isEmpty() || prefix.endsWith(".")) {
+			return prefix + name;
+		}
+		return prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
+	/**
+	 * @return <code>true</code> if this tier limits anything
+	 */
+	boolean isEnabled() {
+		return counters != null || tokenBuckets.isEnabled() || budgets != null;
+	}
+
+	/**
+	 * Takes a token from the rate bucket of <code>client</code> for
+	 * <code>endpointClass</code>, and <code>cost</code> units from its budget;
+	 * nothing is taken if either of them refuses the request.
+	 *
+	 * @return 0 if the request is allowed, otherwise the time (in nanoseconds)
+	 *         that the client must wait; -1 if the client can't be tracked
+	 *         because there are too many clients.
+	 */
+	long tryAcquireRate(ClientKey client, EndpointClass endpointClass, long cost) {
+		long wait = tokenBuckets.tryAcquire(client, endpointClass);
+		if (wait == 0 && budgets != null) {
+			wait = budgets.tryAcquire(client, 0, cost);
+			if (wait != 0) {
+				tokenBuckets.refund(client, endpointClass.ordinal(), 1);
+			}
+		}
+		if (wait == 0 && usage != null) {
+			if (tokenBuckets.isLimited(endpointClass)) {
+				recordUsage(client, endpointClass.ordinal(), 1);
+			}
+			if (budgets != null) {
+				recordUsage(client, getBudgetIndex(), cost);
+			}
+		}
+		return wait;
+	}
+
+	/**
+	 * Gives back the token and the units taken by
+	 * {@link #tryAcquireRate(ClientKey, EndpointClass, long)}, when the
+	 * request is refused by a later check.
+	 */
+	void refundRate(ClientKey client, EndpointClass endpointClass, long cost) {
+		tokenBuckets.refund(client, endpointClass.ordinal(), 1);
+		if (budgets != null) {
+			budgets.refund(client, 0, cost);
+		}
+		if (usage != null) {
+			if (tokenBuckets.isLimited(endpointClass)) {
+				recordUsage(client, endpointClass.ordinal(), -1);
+			}
+			if (budgets != null) {
+				recordUsage(client, getBudgetIndex(), -cost);
+			}
+		}
+	}
+
+	/**
+	 * Counts a new request of <code>client</code>.
+	 *
+	 * @return whether the request was counted, and why not if it wasn't.
+	 */
+	Admission acquire(ClientKey client) {
+		return (counters == null) ? Admission.ACCEPTED : counters.tryAcquire(client);
+	}
+
+	void release(ClientKey client) {
+		if (counters != null) {
+			counters.release(client);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the requests are charged to a budget
+	 */
+	boolean hasBudget() {
+		return budgets != null;
+	}
+
+	/**
+	 * Charges <code>cost</code> units to the budget of <code>client</code>,
+	 * even if it doesn't have them.
+	 */
+	void charge(ClientKey client, long cost) {
+		if (budgets != null) {
+			budgets.charge(client, 0, cost);
+			if (usage != null) {
+				recordUsage(client, getBudgetIndex(), cost);
+			}
+		}
+	}
+
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Starts counting the tokens taken by each client, so they can be shared
+	 * with the other nodes. Must be called before the filter serves requests.
+	 */
+	void trackUsage() {
+		usage = new ConcurrentHashMap<>();
+	}
+
+	private int getBudgetIndex() {
+		return EndpointClass.values().length;
+	}
+
+	private void recordUsage(ClientKey client, int index, long tokens) {
+		AtomicLongArray clientUsage = usage.get(client);
+		if (clientUsage == null) {
+			clientUsage = usage.computeIfAbsent(client, key -> new AtomicLongArray(getBudgetIndex() + 1));
+		}
+		clientUsage.addAndGet(index, tokens);
+	}
+
+	/**
+	 * Moves the tokens taken at this node since the last call to
+	 * <code>target</code>, keyed by {@link RateLimitSync#getKey(String, int, ClientKey)}.
+	 * The clients that didn't take tokens are forgotten.
+	 */
+	void drainUsage(Map<String, Long> target) {
+		Iterator<Map.Entry<ClientKey, AtomicLongArray>> iterator = usage.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<ClientKey, AtomicLongArray> entry = iterator.next();
+			AtomicLongArray clientUsage = entry.getValue();
+			boolean idle = true;
+			for (int i = 0; i < clientUsage.length(); i++) {
+				long tokens = clientUsage.getAndSet(i, 0);
+				if (tokens > 0) {
+					target.put(RateLimitSync.getKey(name, i, entry.getKey()), tokens);
+					idle = false;
+				}
+			}
+			if (idle) {
+				// A token taken right now might be lost, the shared state is approximate anyway
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Takes from the bucket <code>index</code> of <code>client</code> the
+	 * tokens that it took at the other nodes.
+	 */
+	void chargeRemoteUsage(ClientKey client, int index, long tokens) {
+		if (index < getBudgetIndex()) {
+			tokenBuckets.charge(client, index, tokens);
+		} else if (budgets != null) {
+			budgets.charge(client, 0, tokens);
+		}
+	}
+
+	/**
+	 * @return the number of clients with requests in progress
+	 */
+	int getClientCount() {
+		return (counters == null) ? 0 : counters.getClientCount();
+	}
+
+}
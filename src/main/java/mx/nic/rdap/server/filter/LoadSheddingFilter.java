@@ -0,0 +1,168 @@
+package mx.nic.rdap.server.filter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import mx.nic.rdap.server.servlet.DataAccessServlet;
+
+/**
+ * If active, bounds the requests in progress of the whole server, so that an
+ * aggregate load spike doesn't pile up at the data access implementation.
+ * <p>
+ * The bound is an {@link AimdLimit}, which shrinks when the data access
+ * implementation gets slower than "latencyThreshold" (milliseconds, default
+ * 500) and grows back while it's fast enough. The excess requests are refused
+ * right away with a 503. The other init parameters are "initialLimit" (default
+ * 100), "minLimit" (default 10), "maxLimit" (default 1000) and "backoffRatio"
+ * (default 0.9).
+ * <p>
+ * Only the requests that reached the data access implementation (those that
+ * carry {@link DataAccessServlet#DAO_TIME_ATTRIBUTE}) adapt the limit. The
+ * hits of the response cache and of the negative cache, the requests that
+ * waited for a coalesced one, and the requests that failed before the data
+ * access still count against the limit while in
+ * progress, but say nothing about the latency of the backend. So when most of
+ * the traffic is served from the caches, the limit moves slowly.
+ */
+public class LoadSheddingFilter implements Filter {
+
+	private final static Logger logger = Logger.getLogger(LoadSheddingFilter.class.getName());
+
+	private AimdLimit limit;
+
+	/** Requests refused since the last report, they're logged in bulk. */
+	private final LongAdder refusedRequests = new LongAdder();
+	private volatile long lastReport = System.nanoTime();
+	private static final long REPORT_INTERVAL = 60_000_000_000L;
+
+	@Override
+	public void init(FilterConfig config) {
+		int initialLimit = getIntParameter(config, "initialLimit", 100);
+		int minLimit = getIntParameter(config, "minLimit", 10);
+		int maxLimit = getIntParameter(config, "maxLimit", 1000);
+		int latencyThreshold = getIntParameter(config, "latencyThreshold", 500);
+		String backoffRatioParameter = config.getInitParameter("backoffRatio");
+		double backoffRatio = (backoffRatioParameter == null) ? 0.9 : Double.parseDouble(backoffRatioParameter);
+		if (backoffRatio <= 0 || backoffRatio >= 1) {
+			throw new IllegalArgumentException("backoffRatio must be between 0 and 1: " + backoffRatio);
+		}
+
+		limit = new AimdLimit(initialLimit, minLimit, maxLimit, TimeUnit.MILLISECONDS.toNanos(latencyThreshold),
+				backoffRatio);
+		logger.info("Going to allow between " + minLimit + " and " + maxLimit
+				+ " simultaneous requests, adapted to a latency threshold of " + latencyThreshold + " ms.");
+	}
+
+	private static int getIntParameter(FilterConfig config, String name, int defaultValue) {
+		String value = config.getInitParameter(name);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		long admitted = limit.tryAcquire();
+		if (admitted == -1) {
+			refuse(response);
+			return;
+		}
+
+		try {
+			chain.doFilter(request, response);
+		} catch (IOException | ServletException | RuntimeException | Error e) {
+			if (!request.isAsyncStarted()) {
+				complete(request, admitted);
+			}
+			throw e;
+		}
+
+		if (request.isAsyncStarted()) {
+			// The request is still being processed; forget about it once it's done.
+			request.getAsyncContext().addListener(new AsyncListener() {
+				@Override
+				public void onComplete(AsyncEvent event) {
+					complete(request, admitted);
+				}
+
+				@Override
+				public void onTimeout(AsyncEvent event) {
+					// onComplete will follow.
+				}
+
+				@Override
+				public void onError(AsyncEvent event) {
+					// onComplete will follow.
+				}
+
+				@Override
+				public void onStartAsync(AsyncEvent event) {
+					// Nothing needed.
+				}
+			});
+			return;
+		}
+
+		complete(request, admitted);
+	}
+
+	/**
+	 * Releases a finished request, reporting the time that the data access
+	 * implementation took (if it was reached).
+	 */
+	private void complete(ServletRequest request, long admitted) {
+		Object daoTime = request.getAttribute(DataAccessServlet.DAO_TIME_ATTRIBUTE);
+		limit.release(admitted, (daoTime instanceof Long) ? (Long) daoTime : -1);
+	}
+
+	private void refuse(ServletResponse response) throws IOException {
+		reportRefusals();
+
+		if (!(response instanceof HttpServletResponse)) {
+			return; // I have no clue.
+		}
+
+		HttpServletResponse httpResponse = (HttpServletResponse) response;
+		httpResponse.setHeader("Retry-After", "1");
+		httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The server is too busy, try again later.");
+	}
+
+	/**
+	 * Logs the number of refused requests at most once per minute, instead of
+	 * once per request.
+	 */
+	private void reportRefusals() {
+		refusedRequests.increment();
+		long now = System.nanoTime();
+		long last = lastReport;
+		if (now - last < REPORT_INTERVAL) {
+			return;
+		}
+
+		synchronized (refusedRequests) {
+			if (lastReport != last) {
+				return; // Someone else reported it.
+			}
+			lastReport = now;
+		}
+		logger.info("Shed " + refusedRequests.sumThenReset() + " requests because the server was too busy. "
+				+ "Current limit: " + limit.getLimit() + " simultaneous requests.");
+	}
+
+	@Override
+	public void destroy() {
+		// Nothing needed.
+	}
+
+}
@@ -0,0 +1,110 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterConfig;
+
+/**
+ * {@link RateLimitStore} that lives in the JVM: all the filters that use it
+ * share their usage, as if they were nodes of a cluster. Useful for tests and
+ * as a reference for the real backends.
+ * <p>
+ * The store keeps the total tokens of each bucket, and the total that each
+ * node had already seen; a bucket is forgotten once it doesn't change for a
+ * while. A node that joins late isn't charged the usage before it joined.
+ */
+public class LocalRateLimitStore implements RateLimitStore {
+
+	/** Time after which a bucket without changes is forgotten. */
+	private static final long EXPIRATION = TimeUnit.MINUTES.toNanos(10);
+
+	/** State shared by the instances created by the filters. */
+	private static final LocalRateLimitStore SHARED = new LocalRateLimitStore(true);
+
+	/** <code>null</code> if this instance delegates to {@link #SHARED}. */
+	private final Map<String, Bucket> buckets;
+
+	/** Nodes that did at least one exchange. */
+	private final Set<String> nodes = new HashSet<>();
+
+	private static class Bucket {
+		private long total;
+		private long lastChange;
+		/** Total at the last exchange of each node. */
+		private final Map<String, Long> seen = new HashMap<>();
+	}
+
+	/**
+	 * Creates an instance that shares its state with the rest of the instances
+	 * created with this constructor (ie. the one used by the filters).
+	 */
+	public LocalRateLimitStore() {
+		this.buckets = null;
+	}
+
+	/**
+	 * @param isolated
+	 *            <code>true</code> if this instance has its own state, eg.
+	 *            to simulate a cluster in a test without touching the shared
+	 *            state
+	 */
+	public LocalRateLimitStore(boolean isolated) {
+		this.buckets = isolated ? new HashMap<>() : null;
+	}
+
+	@Override
+	public void init(FilterConfig config) {
+		// Nothing needed.
+	}
+
+	@Override
+	public Map<String, Long> exchange(String node, Map<String, Long> localUsage) {
+		if (buckets == null) {
+			return SHARED.exchange(node, localUsage);
+		}
+
+		long now = System.nanoTime();
+		Map<String, Long> remoteUsage = new HashMap<>();
+		synchronized (buckets) {
+			boolean newNode = nodes.add(node);
+			for (Map.Entry<String, Long> entry : localUsage.entrySet()) {
+				Bucket bucket = buckets.computeIfAbsent(entry.getKey(), key -> new Bucket());
+				bucket.total += entry.getValue();
+				bucket.lastChange = now;
+			}
+
+			Iterator<Map.Entry<String, Bucket>> iterator = buckets.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Bucket> entry = iterator.next();
+				Bucket bucket = entry.getValue();
+				if (now - bucket.lastChange > EXPIRATION) {
+					iterator.remove();
+					continue;
+				}
+
+				Long seen = bucket.seen.put(node, bucket.total);
+				if (newNode) {
+					// The previous usage is none of its business
+					continue;
+				}
+				Long local = localUsage.get(entry.getKey());
+				long remote = bucket.total - (seen == null ? 0 : seen) - (local == null ? 0 : local);
+				if (remote > 0) {
+					remoteUsage.put(entry.getKey(), remote);
+				}
+			}
+		}
+		return remoteUsage;
+	}
+
+	@Override
+	public void close() {
+		// Nothing needed, the shared state outlives the filters.
+	}
+
+}
@@ -0,0 +1,248 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * Blocklist of the clients that keep exceeding their limits at
+ * {@link RateLimitFilter}, checked by {@link PenaltyBoxFilter} in constant
+ * time and without allocating anything.
+ * <p>
+ * The IPv4 networks up to /24 are bits of a bitmap that covers the whole IPv4
+ * space (eg. 2 MB for /24 networks); longer IPv4 networks (eg. single
+ * addresses) and the IPv6 /64 networks live at open-addressed hash sets of
+ * <code>long</code>s. All of them are kept in two generations: each period the
+ * current generation becomes the previous one and the oldest one is
+ * discarded, so a client is blocked for one to two periods after its last
+ * offense.
+ * <p>
+ * The offenses are counted with a {@link CountMinSketch}, halved each period;
+ * a client is blocked once it reaches the configured number of offenses.
+ */
+public class PenaltyBox {
+
+	private final static Logger logger = Logger.getLogger(PenaltyBox.class.getName());
+
+	/** Tries of the open addressing before giving up, so that a full set doesn't loop. */
+	private static final int MAX_PROBES = 16;
+
+	/** Longest IPv4 prefix kept at a bitmap; the longer ones go to a hash set. */
+	private static final int MAX_BITMAP_PREFIX_LENGTH = 24;
+
+	private final int ipv4PrefixLength;
+
+	private final int ipv4Capacity;
+
+	private final int ipv6Capacity;
+
+	private final int offenseThreshold;
+
+	private final long period;
+
+	private final CountMinSketch offenses = new CountMinSketch(4096, 4);
+
+	private volatile Generation current;
+
+	private volatile Generation previous;
+
+	private final AtomicLong nextRotation;
+
+	/**
+	 * Blocked networks of a period.
+	 */
+	private class Generation {
+
+		/** A bit per IPv4 network, if the networks are short enough. */
+		private final AtomicLongArray ipv4Bitmap;
+
+		/** Longer IPv4 networks, if the bitmap would be too large. */
+		private final LongSet ipv4Set;
+
+		/** IPv6 /64 networks (upper 64 bits). */
+		private final LongSet ipv6Set = new LongSet(ipv6Capacity);
+
+		private Generation() {
+			if (ipv4PrefixLength <= MAX_BITMAP_PREFIX_LENGTH) {
+				this.ipv4Bitmap = new AtomicLongArray(Math.max(1, (1 << ipv4PrefixLength) >>> 6));
+				this.ipv4Set = null;
+			} else {
+				this.ipv4Bitmap = null;
+				this.ipv4Set = new LongSet(ipv4Capacity);
+			}
+		}
+
+	}
+
+	/**
+	 * Open-addressed hash set of nonzero <code>long</code>s, up to a capacity.
+	 */
+	private static class LongSet {
+
+		private final int capacity;
+
+		/** The values, 0 means empty. */
+		private final AtomicLongArray table;
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private LongSet(int capacity) {
+			this.capacity = capacity;
+			// At least twice the capacity, rounded up to a power of two, so the probes are short
+			this.table = new AtomicLongArray(Integer.highestOneBit(capacity * 2 - 1) << 1);
+		}
+
+		private boolean contains(long value) {
+			int mask = table.length() - 1;
+			int slot = hash(value) & mask;
+			for (int probe = 0; probe < MAX_PROBES; probe++) {
+				long current = table.get(slot);
+				if (current == value) {
+					return true;
+				}
+				if (current == 0) {
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return false;
+		}
+
+		/**
+		 * @return <code>true</code> if <code>value</code> wasn't in the set
+		 */
+		private boolean add(long value) {
+			if (size.get() >= capacity) {
+				return false; // Full; the network is still limited by the RateLimitFilter
+			}
+			int mask = table.length() - 1;
+			int slot = hash(value) & mask;
+			for (int probe = 0; probe < MAX_PROBES; probe++) {
+				long current = table.get(slot);
+				if (current == value) {
+					return false;
+				}
+				if (current == 0) {
+					if (table.compareAndSet(slot, 0, value)) {
+						size.incrementAndGet();
+						return true;
+					}
+					continue; // Someone took the slot, look at it again
+				}
+				slot = (slot + 1) & mask;
+			}
+			return false;
+		}
+
+		private static int hash(long value) {
+			value *= 0x9E3779B97F4A7C15L;
+			return (int) (value ^ (value >>> 32));
+		}
+
+	}
+
+	/**
+	 * @param ipv4PrefixLength
+	 *            Length of the blocked IPv4 networks, between 8 and 32
+	 * @param ipv4Capacity
+	 *            Max number of blocked IPv4 networks per period, if they're
+	 *            longer than /24 (the shorter ones are always kept)
+	 * @param ipv6Capacity
+	 *            Max number of blocked IPv6 networks per period
+	 * @param offenseThreshold
+	 *            Offenses after which a client is blocked
+	 * @param period
+	 *            Nanoseconds of each generation
+	 */
+	public PenaltyBox(int ipv4PrefixLength, int ipv4Capacity, int ipv6Capacity, int offenseThreshold, long period) {
+		this.ipv4PrefixLength = Math.min(32, Math.max(8, ipv4PrefixLength));
+		this.ipv4Capacity = Math.min(1 << 29, Math.max(1, ipv4Capacity));
+		this.ipv6Capacity = Math.min(1 << 29, Math.max(1, ipv6Capacity));
+		this.offenseThreshold = Math.max(1, offenseThreshold);
+		this.period = period;
+		this.current = new Generation();
+		this.previous = new Generation();
+		this.nextRotation = new AtomicLong(System.nanoTime() + period);
+	}
+
+	/**
+	 * @return <code>true</code> if <code>client</code> (an address) is in the
+	 *         penalty box
+	 */
+	public boolean isBlocked(ClientKey client) {
+		rotateIfNeeded();
+		if (client.getUsername() != null || client.equals(ClientKey.UNKNOWN)) {
+			return false;
+		}
+		if (client.isIpv4()) {
+			return isBlocked(current, client) || isBlocked(previous, client);
+		}
+		long network = client.getHigh();
+		return network != 0 && (current.ipv6Set.contains(network) || previous.ipv6Set.contains(network));
+	}
+
+	private boolean isBlocked(Generation generation, ClientKey client) {
+		if (generation.ipv4Bitmap == null) {
+			return generation.ipv4Set.contains(getIpv4SetValue(client));
+		}
+		int index = getIpv4Index(client);
+		return (generation.ipv4Bitmap.get(index >>> 6) & (1L << (index & 63))) != 0;
+	}
+
+	/**
+	 * Counts a refused request of <code>client</code> (an address), and blocks
+	 * it if it has too many.
+	 */
+	public void offend(ClientKey client) {
+		if (client.getUsername() != null || client.equals(ClientKey.UNKNOWN)) {
+			return;
+		}
+		if (offenses.add(client.toPrefix(ipv4PrefixLength, 64).toString(), 1) < offenseThreshold) {
+			return;
+		}
+
+		Generation generation = current;
+		boolean added;
+		if (client.isIpv4()) {
+			if (generation.ipv4Bitmap == null) {
+				added = generation.ipv4Set.add(getIpv4SetValue(client));
+			} else {
+				int index = getIpv4Index(client);
+				long bit = 1L << (index & 63);
+				added = (generation.ipv4Bitmap.getAndAccumulate(index >>> 6, bit, (a, b) -> a | b) & bit) == 0;
+			}
+		} else {
+			long network = client.getHigh();
+			added = network != 0 && generation.ipv6Set.add(network);
+		}
+		if (added) {
+			logger.info("Client " + client.toPrefix(ipv4PrefixLength, 64) + " was put in the penalty box.");
+		}
+	}
+
+	private int getIpv4Index(ClientKey client) {
+		return (int) ((client.getLow() & 0xFFFFFFFFL) >>> (32 - ipv4PrefixLength));
+	}
+
+	/**
+	 * @return the network of <code>client</code> as a nonzero value (the
+	 *         network 0.0.0.0 is a valid one)
+	 */
+	private long getIpv4SetValue(ClientKey client) {
+		return (1L << 32) | ((client.getLow() & 0xFFFFFFFFL) >>> (32 - ipv4PrefixLength));
+	}
+
+	private void rotateIfNeeded() {
+		long next = nextRotation.get();
+		long now = System.nanoTime();
+		if (now - next < 0 || !nextRotation.compareAndSet(next, now + period)) {
+			return;
+		}
+
+		previous = current;
+		current = new Generation();
+		offenses.halve();
+	}
+
+}
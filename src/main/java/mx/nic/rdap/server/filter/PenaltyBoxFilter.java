@@ -0,0 +1,136 @@
+package mx.nic.rdap.server.filter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * If active, refuses right away the requests of the clients at the
+ * {@link PenaltyBox}, with a pre-encoded response that doesn't touch Shiro,
+ * the servlets or the renderers. Must be mapped before any other filter.
+ * <p>
+ * The {@link RateLimitFilter} puts the clients in the box once they're refused
+ * "offenses" times (default 10) in a "period" (seconds, default 300) by their
+ * own limits; the refusals caused by the filter tracking too many clients
+ * don't count. They're released one to two periods later. The IPv4 clients are
+ * blocked by address, as the {@link RateLimitFilter} limits them by default,
+ * up to "ipv4Capacity" addresses (default 65536) per period; and the IPv6
+ * clients by /64, up to "ipv6Capacity" networks (default 65536) per period.
+ * <p>
+ * "ipv4PrefixLength" (default 32, at least 8) blocks whole IPv4 networks
+ * instead. Beware that it blocks the neighbors of the offending address too:
+ * with 24, one abusive address blocks the other 255 addresses of its network
+ * (eg. the other users of a NAT or a hosting provider). Networks up to /24 are
+ * kept at a bitmap, so they don't need "ipv4Capacity".
+ */
+public class PenaltyBoxFilter implements Filter {
+
+	private final static Logger logger = Logger.getLogger(PenaltyBoxFilter.class.getName());
+
+	/** Attribute of the servlet context where the active penalty box is stored. */
+	public static final String CONTEXT_ATTRIBUTE = PenaltyBox.class.getName();
+
+	private static final byte[] BLOCKED_RESPONSE = ("{\"errorCode\":429,\"title\":\"Too Many Requests\","
+			+ "\"description\":[\"Too many refused requests, try again later.\"]}").getBytes(StandardCharsets.UTF_8);
+
+	private PenaltyBox penaltyBox;
+
+	private String retryAfter;
+
+	private ServletContext servletContext;
+
+	/** Requests refused since the last report, they're logged in bulk. */
+	private final LongAdder refusedRequests = new LongAdder();
+	private volatile long lastReport = System.nanoTime();
+	private static final long REPORT_INTERVAL = 60_000_000_000L;
+
+	@Override
+	public void init(FilterConfig config) {
+		int offenses = getIntParameter(config, "offenses", 10);
+		int period = getIntParameter(config, "period", 300);
+		int ipv4PrefixLength = getIntParameter(config, "ipv4PrefixLength", 32);
+		int ipv4Capacity = getIntParameter(config, "ipv4Capacity", 65536);
+		int ipv6Capacity = getIntParameter(config, "ipv6Capacity", 65536);
+		penaltyBox = new PenaltyBox(ipv4PrefixLength, ipv4Capacity, ipv6Capacity, offenses,
+				TimeUnit.SECONDS.toNanos(period));
+		retryAfter = Integer.toString(period);
+
+		servletContext = config.getServletContext();
+		servletContext.setAttribute(CONTEXT_ATTRIBUTE, penaltyBox);
+		logger.info("Clients refused " + offenses + " times are blocked for " + period + " to " + (2 * period)
+				+ " seconds.");
+	}
+
+	private static int getIntParameter(FilterConfig config, String name, int defaultValue) {
+		String value = config.getInitParameter(name);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * @return the penalty box of the application, <code>null</code> if the
+	 *         filter isn't active
+	 */
+	static PenaltyBox getPenaltyBox(ServletContext servletContext) {
+		Object attribute = servletContext.getAttribute(CONTEXT_ATTRIBUTE);
+		return (attribute instanceof PenaltyBox) ? (PenaltyBox) attribute : null;
+	}
+
+	@Override
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		if (!penaltyBox.isBlocked(ClientKey.fromAddress(request.getRemoteAddr()))) {
+			chain.doFilter(request, response);
+			return;
+		}
+
+		reportRefusals();
+		if (response instanceof HttpServletResponse) {
+			HttpServletResponse httpResponse = (HttpServletResponse) response;
+			httpResponse.setStatus(429);
+			httpResponse.setHeader("Retry-After", retryAfter);
+		}
+		response.setContentType("application/rdap+json");
+		response.setContentLength(BLOCKED_RESPONSE.length);
+		response.getOutputStream().write(BLOCKED_RESPONSE);
+	}
+
+	/**
+	 * Logs the number of refused requests at most once per minute, instead of
+	 * once per request.
+	 */
+	private void reportRefusals() {
+		refusedRequests.increment();
+		long now = System.nanoTime();
+		long last = lastReport;
+		if (now - last < REPORT_INTERVAL) {
+			return;
+		}
+
+		synchronized (refusedRequests) {
+			if (lastReport != last) {
+				return; // Someone else reported it.
+			}
+			lastReport = now;
+		}
+		logger.info("Refused " + refusedRequests.sumThenReset() + " requests from clients in the penalty box.");
+	}
+
+	@Override
+	public void destroy() {
+		if (servletContext != null) {
+			servletContext.removeAttribute(CONTEXT_ATTRIBUTE);
+		}
+	}
+
+}
@@ -1,10 +1,17 @@
 package mx.nic.rdap.server.filter;
 
 import java.io.IOException;
-import java.net.InetAddress;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -13,79 +20,419 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.UnavailableSecurityManagerException;
+
+import mx.nic.rdap.server.filter.ConcurrencyCounters.Admission;
+import mx.nic.rdap.server.servlet.DataAccessServlet;
+import mx.nic.rdap.server.util.Util;
+
 /**
- * If active, prevents any IP from doing too many requests at once.
+ * If active, prevents any client from doing too many requests at once and,
+ * optionally, from doing too many requests per second.
+ * <p>
+ * The requests in progress are counted with {@link ConcurrencyCounters}
+ * ("limit" init parameter, default 20; "maxClients" bounds the number of
+ * clients tracked, default 100000; the clients beyond it share a fixed number
+ * of overflow slots instead of being refused).
+ * <p>
+ * The requests per second are limited with {@link TokenBuckets}, the rate
+ * ("Rate" init parameters, requests per second) and burst size ("Burst" init
+ * parameters, requests) can be set for each {@link EndpointClass} (eg.
+ * "lookupRate", "searchBurst"); "rate" and "burst" apply to the classes without
+ * their own values. The rate isn't limited by default.
+ * <p>
+ * The limits apply to networks instead of single addresses when
+ * "ipv4PrefixLength" (default 32) or "ipv6PrefixLength" (default 64) are
+ * shorter than the address, since a client usually owns a whole IPv6 /64. In
+ * that case each address can also have its own, nested, limits:
+ * "addressLimit", "addressRate" and "addressBurst" (the rate applies to each
+ * endpoint class, unless there's "addressLookupRate" and such).
+ * <p>
+ * Besides, each client can have a budget charged by the cost of its requests,
+ * since a search is way more expensive than a lookup: "budgetRate" (cost
+ * units per second, not limited by default) and "budgetBurst" (cost units,
+ * at least the cost of the most expensive request).
+ * The cost of each {@link RequestCost} class can be set with the "Cost" init
+ * parameters (eg. "regexSearchCost"); "daoCostPerMillisecond" charges an extra
+ * cost, once the request is done, for each millisecond that the data access
+ * implementation took.
+ * <p>
+ * The authenticated requests are limited by username instead of address, so
+ * the users don't share their limits with the anonymous clients behind the
+ * same address. Their limits are the same parameters prefixed with "user"
+ * (eg. "userLimit", "userSearchRate", "userBudgetRate"), which default to the
+ * limits of the anonymous clients. The users listed at "partners" (separated
+ * by commas) have their own limits, prefixed with "partner.&lt;username&gt;."
+ * (eg. "partner.example.limit"), which default to the "user" limits. The
+ * filter must be mapped after the ShiroFilter, otherwise all the requests are
+ * anonymous.
+ * <p>
+ * When several nodes serve behind a load balancer, they can share the usage
+ * of their clients through a {@link RateLimitStore}: "store" is the class of
+ * the store, "storeSyncInterval" the milliseconds between two syncs (default
+ * 1000) and "storeNode" the identifier of the node (random by default). The
+ * rates and budgets are then enforced cluster-wide, with a delay of up to one
+ * sync; the simultaneous requests are still limited per node.
+ * <p>
+ * If the {@link PenaltyBoxFilter} is active, the anonymous clients that keep
+ * getting refused are put in its {@link PenaltyBox}.
  */
 public class RateLimitFilter implements Filter {
 
 	private final static Logger logger = Logger.getLogger(RateLimitFilter.class.getName());
 
+	/** Limits of each anonymous client (network). */
+	private LimitTier networkTier;
+	/** Limits of each address of a network, <code>null</code> if not limited. */
+	private LimitTier addressTier;
+	/** Limits of each authenticated user. */
+	private LimitTier userTier;
+	/** Limits of specific users, by username. */
+	private Map<String, LimitTier> partnerTiers;
+
+	/** Shares the usage with the other nodes, <code>null</code> if the filter is on its own. */
+	private RateLimitSync sync;
+
+	private int ipv4PrefixLength;
+	private int ipv6PrefixLength;
+
+	/** Cost of each {@link RequestCost}, indexed by ordinal. */
+	private int[] costs;
+	/** Extra cost charged for each millisecond spent by the data access implementation. */
+	private double daoCostPerMillisecond;
+
+	/** Requests refused since the last report, they're logged in bulk. */
+	private final LongAdder refusedRequests = new LongAdder();
+	private volatile long lastReport = System.nanoTime();
+	private static final long REPORT_INTERVAL = 60_000_000_000L;
+
+	@Override
+	public void init(FilterConfig config) throws ServletException {
+		int maxClients = getIntParameter(config, "maxClients", 100000);
+		logger.info("Going to track up to " + maxClients + " simultaneous clients.");
+
+		RequestCost[] requestCosts = RequestCost.values();
+		costs = new int[requestCosts.length];
+		int maxCost = 1;
+		for (RequestCost requestCost : requestCosts) {
+			costs[requestCost.ordinal()] = getIntParameter(config, requestCost.getName() + "Cost",
+					requestCost.getDefaultCost());
+			maxCost = Math.max(maxCost, costs[requestCost.ordinal()]);
+		}
+		String daoCostParameter = config.getInitParameter("daoCostPerMillisecond");
+		daoCostPerMillisecond = (daoCostParameter == null) ? 0 : Double.parseDouble(daoCostParameter);
+
+		networkTier = LimitTier.load(config, "client", 20, maxClients, maxCost, "");
+
+		ipv4PrefixLength = getIntParameter(config, "ipv4PrefixLength", 32);
+		ipv6PrefixLength = getIntParameter(config, "ipv6PrefixLength", 64);
+		if (ipv4PrefixLength < 32 || ipv6PrefixLength < 128) {
+			logger.info("The limits apply to IPv4 /" + ipv4PrefixLength + " and IPv6 /" + ipv6PrefixLength
+					+ " networks.");
+			LimitTier tier = LimitTier.load(config, "address", 0, maxClients, maxCost, "address");
+			addressTier = tier.isEnabled() ? tier : null;
+		}
+
+		userTier = LimitTier.load(config, "user", 20, maxClients, maxCost, "user", "");
+		partnerTiers = new HashMap<>();
+		String partners = config.getInitParameter("partners");
+		if (partners != null) {
+			for (String partner : partners.split(",")) {
+				partner = partner.trim();
+				if (!partner.isEmpty()) {
+					partnerTiers.put(partner, LimitTier.load(config, "user " + partner, 20, maxClients,
+							maxCost, "partner." + partner + ".", "user", ""));
+				}
+			}
+		}
+
+		String storeClass = config.getInitParameter("store");
+		if (storeClass != null) {
+			startSync(config, storeClass);
+		}
+	}
+
 	/**
-	 * Clients doing requests RIGHT NOW. I haven't set an upper limit to how
-	 * much this can grow because Tomcat's maxConnections already does it.
+	 * Starts sharing the usage of the clients with the other nodes, through the
+	 * {@link RateLimitStore} <code>storeClass</code>.
 	 */
-	private HashMap<InetAddress, ClientRequestCount> clients = new HashMap<>();
-	/** Maximum number of requests any client can send simultaneously. */
-	private int limit;
+	private void startSync(FilterConfig config, String storeClass) throws ServletException {
+		RateLimitStore store;
+		try {
+			store = (RateLimitStore) Class.forName(storeClass).getConstructor().newInstance();
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			throw new ServletException("The rate limit store '" + storeClass + "' couldn't be created.", e);
+		}
+		store.init(config);
 
-	@Override
-	public void init(FilterConfig config) {
-		String limit = config.getInitParameter("limit");
-		this.limit = (limit == null) ? 20 : Integer.parseInt(limit);
-		logger.info("Going to allow  " + this.limit + " simultaneous requests per client.");
+		String node = config.getInitParameter("storeNode");
+		if (node == null) {
+			node = UUID.randomUUID().toString();
+		}
+		List<LimitTier> tiers = new ArrayList<>();
+		tiers.add(networkTier);
+		if (addressTier != null) {
+			tiers.add(addressTier);
+		}
+		tiers.add(userTier);
+		tiers.addAll(partnerTiers.values());
+
+		int interval = getIntParameter(config, "storeSyncInterval", 1000);
+		sync = new RateLimitSync(store, node, tiers);
+		sync.start(interval);
+		logger.info("Sharing the rate limits at " + storeClass + " every " + interval + " ms, as node " + node
+				+ ".");
+	}
+
+	private static int getIntParameter(FilterConfig config, String name, int defaultValue) {
+		String value = config.getInitParameter(name);
+		return (value == null) ? defaultValue : Integer.parseInt(value);
 	}
 
 	@Override
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
 			throws IOException, ServletException {
-		InetAddress remoteAddr = InetAddress.getByName(request.getRemoteAddr());
-		logger.info("Received a request from " + request.getRemoteAddr() + ".");
-
-		ClientRequestCount requestCount = new ClientRequestCount();
-		synchronized (clients) {
-			ClientRequestCount oldRequestCount = clients.putIfAbsent(remoteAddr, requestCount);
-			if (oldRequestCount != null) {
-				if (oldRequestCount.getCount() >= limit) {
-					refuse(response);
-					return;
+		ClientKey client;
+		// Only used when the client is anonymous
+		ClientKey address;
+		// Only used when the client is a network
+		ClientKey nestedAddress;
+		LimitTier tier;
+		String username = getUsername();
+		if (username != null) {
+			client = ClientKey.fromUsername(username);
+			address = null;
+			nestedAddress = null;
+			tier = partnerTiers.getOrDefault(username, userTier);
+		} else {
+			address = ClientKey.fromAddress(request.getRemoteAddr());
+			client = address.toPrefix(ipv4PrefixLength, ipv6PrefixLength);
+			nestedAddress = (client != address && addressTier != null) ? address : null;
+			tier = networkTier;
+		}
+
+		// The simultaneous requests are checked first, so that the retries of
+		// a client at its limit don't drain its rate buckets
+		Admission admission = acquire(tier, client, nestedAddress);
+		if (admission != Admission.ACCEPTED) {
+			// Only the client's own limits count, not the lack of room for more clients
+			if (admission == Admission.CLIENT_LIMIT) {
+				offend(request, address);
+			}
+			refuse(response, client);
+			return;
+		}
+
+		EndpointClass endpointClass = EndpointClass.of(request);
+		long cost = costs[RequestCost.of(request).ordinal()];
+		long wait = tryAcquireRate(tier, client, nestedAddress, endpointClass, cost);
+		if (wait != 0) {
+			release(tier, client, nestedAddress);
+			if (wait > 0) {
+				offend(request, address);
+			}
+			refuseRate(response, client, wait);
+			return;
+		}
+
+		try {
+			chain.doFilter(request, response);
+		} catch (IOException | ServletException | RuntimeException | Error e) {
+			if (!request.isAsyncStarted()) {
+				complete(request, tier, client, nestedAddress);
+			}
+			throw e;
+		}
+
+		if (request.isAsyncStarted()) {
+			// The request is still being processed; forget about it once it's done.
+			request.getAsyncContext().addListener(new AsyncListener() {
+				@Override
+				public void onComplete(AsyncEvent event) {
+					complete(request, tier, client, nestedAddress);
 				}
 
-				oldRequestCount.plusPlus();
-				requestCount = oldRequestCount;
+				@Override
+				public void onTimeout(AsyncEvent event) {
+					// onComplete will follow.
+				}
+
+				@Override
+				public void onError(AsyncEvent event) {
+					// onComplete will follow.
+				}
+
+				@Override
+				public void onStartAsync(AsyncEvent event) {
+					// Nothing needed.
+				}
+			});
+			return;
+		}
+
+		complete(request, tier, client, nestedAddress);
+	}
+
+	/**
+	 * @return the name of the authenticated user of the current request,
+	 *         <code>null</code> if it's anonymous or Shiro isn't available
+	 */
+	private static String getUsername() {
+		try {
+			return Util.getUsername(SecurityUtils.getSubject());
+		} catch (UnavailableSecurityManagerException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Counts a refusal of <code>address</code> at the {@link PenaltyBox}, if
+	 * it's active. Must be called only when the client's own limits refused
+	 * it, not when there's no room for more clients (eg. during a distributed
+	 * flood, when legitimate new clients are refused too). The authenticated users (<code>address</code> is
+	 * <code>null</code>) aren't put in the box.
+	 */
+	private static void offend(ServletRequest request, ClientKey address) {
+		if (address == null) {
+			return;
+		}
+		PenaltyBox penaltyBox = PenaltyBoxFilter.getPenaltyBox(request.getServletContext());
+		if (penaltyBox != null) {
+			penaltyBox.offend(address);
+		}
+	}
+
+	/**
+	 * Counts a new request of <code>client</code>, and of its
+	 * <code>address</code> if the address has its own limit.
+	 *
+	 * @return whether the request was counted, and why not if it wasn't.
+	 */
+	private Admission acquire(LimitTier tier, ClientKey client, ClientKey address) {
+		Admission admission = tier.acquire(client);
+		if (admission != Admission.ACCEPTED || address == null) {
+			return admission;
+		}
+		admission = addressTier.acquire(address);
+		if (admission != Admission.ACCEPTED) {
+			tier.release(client);
+		}
+		return admission;
+	}
+
+	/**
+	 * Takes the tokens of a request of <code>client</code>, and of its
+	 * <code>address</code> if the address has its own limit. If the address
+	 * refuses it, the tokens of the client are given back.
+	 *
+	 * @return see {@link LimitTier#tryAcquireRate(ClientKey, EndpointClass, long)}
+	 */
+	private long tryAcquireRate(LimitTier tier, ClientKey client, ClientKey address, EndpointClass endpointClass,
+			long cost) {
+		long wait = tier.tryAcquireRate(client, endpointClass, cost);
+		if (wait == 0 && address != null) {
+			wait = addressTier.tryAcquireRate(address, endpointClass, cost);
+			if (wait != 0) {
+				tier.refundRate(client, endpointClass, cost);
 			}
+		}
+		return wait;
+	}
 
-			logger.info("Simultaneous requests: " + requestCount);
+	private void release(LimitTier tier, ClientKey client, ClientKey address) {
+		tier.release(client);
+		if (address != null) {
+			addressTier.release(address);
 		}
+	}
 
-		chain.doFilter(request, response);
+	/**
+	 * Releases a finished request and charges the time that the data access
+	 * implementation took, if needed.
+	 */
+	private void complete(ServletRequest request, LimitTier tier, ClientKey client, ClientKey address) {
+		release(tier, client, address);
 
-		synchronized (clients) {
-			logger.info("Substracting from this client's simultaneous connections.");
-			int count = requestCount.minusMinus();
-			if (count == 0) {
-				logger.info("Ok, I can now forget about this client.");
-				clients.remove(remoteAddr);
+		if (daoCostPerMillisecond <= 0) {
+			return;
+		}
+		Object daoTime = request.getAttribute(DataAccessServlet.DAO_TIME_ATTRIBUTE);
+		if (daoTime instanceof Long) {
+			long cost = (long) ((Long) daoTime / 1_000_000.0 * daoCostPerMillisecond);
+			tier.charge(client, cost);
+			if (address != null) {
+				addressTier.charge(address, cost);
 			}
-			logger.info("Number of clients: " + clients.size());
 		}
 	}
 
-	private void refuse(ServletResponse response) throws IOException {
-		logger.info("Client has too many requests. Refusing.");
+	private void refuse(ServletResponse response, ClientKey client) throws IOException {
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Client " + client + " has too many requests. Refusing.");
+		}
+		reportRefusals();
 
 		if (!(response instanceof HttpServletResponse)) {
-			logger.info("Response is not HTTP.");
 			return; // I have no clue.
 		}
 
 		HttpServletResponse httpResponse = (HttpServletResponse) response;
 		httpResponse.sendError(429, "Too many simultaneous requests!");
-		logger.info("Sent 429.");
+	}
+
+	/**
+	 * Refuses a request of a client that exceeded its requests per second.
+	 *
+	 * @param wait
+	 *            Nanoseconds until the client can do another request, -1 if
+	 *            unknown
+	 */
+	private void refuseRate(ServletResponse response, ClientKey client, long wait) throws IOException {
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine("Client " + client + " exceeded its request rate. Refusing.");
+		}
+		reportRefusals();
+
+		if (!(response instanceof HttpServletResponse)) {
+			return; // I have no clue.
+		}
+
+		HttpServletResponse httpResponse = (HttpServletResponse) response;
+		// Seconds, rounded up so that the client doesn't come back too early
+		long retryAfter = wait > 0 ? Math.max(1, (wait + 999_999_999L) / 1_000_000_000L) : 1;
+		httpResponse.setHeader("Retry-After", Long.toString(retryAfter));
+		httpResponse.sendError(429, "Too many requests!");
+	}
+
+	/**
+	 * Logs the number of refused requests at most once per minute, instead of
+	 * once per request.
+	 */
+	private void reportRefusals() {
+		refusedRequests.increment();
+		long now = System.nanoTime();
+		long last = lastReport;
+		if (now - last < REPORT_INTERVAL) {
+			return;
+		}
+
+		synchronized (refusedRequests) {
+			if (lastReport != last) {
+				return; // Someone else reported it.
+			}
+			lastReport = now;
+		}
+		logger.info("Refused " + refusedRequests.sumThenReset() + " requests from clients with too many requests. "
+				+ "Clients with requests in progress: " + networkTier.getClientCount());
 	}
 
 	@Override
 	public void destroy() {
-		// Nothing needed.
+		if (sync != null) {
+			sync.stop();
+			sync = null;
+		}
 	}
 
 }
@@ -0,0 +1,55 @@
+package mx.nic.rdap.server.filter;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+
+/**
+ * Backend where the nodes of a cluster share the usage of their
+ * {@link RateLimitFilter}s, so that the limits of each client hold
+ * cluster-wide.
+ * <p>
+ * The nodes don't query the store on each request: they keep limiting with
+ * their local state, and every once in a while they publish the tokens taken
+ * at them and take from their local buckets the tokens taken at the other
+ * nodes (see {@link RateLimitSync}). The implementation is picked with the
+ * "store" init parameter of the filter (a class name), and must have a
+ * constructor without arguments.
+ */
+public interface RateLimitStore {
+
+	/**
+	 * Prepares the store, before any call to
+	 * {@link #exchange(String, Map)}.
+	 *
+	 * @param config
+	 *            Configuration of the filter, the store can read its own init
+	 *            parameters (eg. "store.url")
+	 * @throws ServletException
+	 *             if the store can't be used
+	 */
+	void init(FilterConfig config) throws ServletException;
+
+	/**
+	 * Publishes the tokens taken at <code>node</code> since its last call,
+	 * and returns the tokens taken at the other nodes during the same time.
+	 *
+	 * @param node
+	 *            Identifier of the calling node
+	 * @param localUsage
+	 *            Tokens taken at <code>node</code>, by bucket key
+	 * @return tokens taken at the other nodes, by bucket key; the buckets
+	 *         without tokens can be missing
+	 * @throws IOException
+	 *             if the store can't be reached, the usage is lost then
+	 */
+	Map<String, Long> exchange(String node, Map<String, Long> localUsage) throws IOException;
+
+	/**
+	 * Releases the resources of the store.
+	 */
+	void close();
+
+}
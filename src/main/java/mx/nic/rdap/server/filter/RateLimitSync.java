@@ -0,0 +1,108 @@
+package mx.nic.rdap.server.filter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Shares the usage of the {@link LimitTier}s of a {@link RateLimitFilter} with
+ * the other nodes, through a {@link RateLimitStore}.
+ * <p>
+ * Every sync interval a background thread publishes the tokens taken at this
+ * node and charges to the local buckets the tokens taken at the other nodes,
+ * so a client that spreads its requests among N nodes still gets (roughly)
+ * the limit once, instead of N times. The requests never wait for the store;
+ * if it fails, the nodes keep limiting on their own.
+ * <p>
+ * The requests in progress aren't shared, they're inherently local.
+ */
+class RateLimitSync {
+
+	private final static Logger logger = Logger.getLogger(RateLimitSync.class.getName());
+
+	private final RateLimitStore store;
+
+	private final String node;
+
+	private final Map<String, LimitTier> tiers = new HashMap<>();
+
+	private final ScheduledExecutorService scheduler;
+
+	/**
+	 * @param store
+	 *            Backend shared by the nodes
+	 * @param node
+	 *            Identifier of this node
+	 * @param tiers
+	 *            Tiers whose usage is shared
+	 */
+	RateLimitSync(RateLimitStore store, String node, List<LimitTier> tiers) {
+		this.store = store;
+		this.node = node;
+		for (LimitTier tier : tiers) {
+			tier.trackUsage();
+			this.tiers.put(tier.getName(), tier);
+		}
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "rdap-rate-limit-sync");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param interval
+	 *            Milliseconds between two exchanges with the store
+	 */
+	void start(long interval) {
+		scheduler.scheduleWithFixedDelay(this::sync, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	void stop() {
+		scheduler.shutdownNow();
+		store.close();
+	}
+
+	/**
+	 * @return the key of the bucket <code>index</code> of <code>client</code>
+	 *         at <code>tier</code>, as known by the store
+	 */
+	static String getKey(String tier, int index, ClientKey client) {
+		return tier + '|' + index + '|' + client;
+	}
+
+	/**
+	 * Exchanges the usage with the store once, the scheduler calls it every
+	 * sync interval.
+	 */
+	void sync() {
+		Map<String, Long> localUsage = new HashMap<>();
+		for (LimitTier tier : tiers.values()) {
+			tier.drainUsage(localUsage);
+		}
+
+		Map<String, Long> remoteUsage;
+		try {
+			remoteUsage = store.exchange(node, localUsage);
+		} catch (IOException | RuntimeException e) {
+			logger.log(Level.WARNING, "The rate limits couldn't be shared with the other nodes.", e);
+			return;
+		}
+
+		for (Map.Entry<String, Long> entry : remoteUsage.entrySet()) {
+			String[] parts = entry.getKey().split("\\|", 3);
+			LimitTier tier = (parts.length == 3) ? tiers.get(parts[0]) : null;
+			if (tier == null) {
+				continue; // Configured at other nodes only
+			}
+			tier.chargeRemoteUsage(ClientKey.parse(parts[2]), Integer.parseInt(parts[1]), entry.getValue());
+		}
+	}
+
+}
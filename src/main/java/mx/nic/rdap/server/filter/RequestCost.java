@@ -0,0 +1,81 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.Enumeration;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+import mx.nic.rdap.server.catalog.RequestSearchType;
+import mx.nic.rdap.server.servlet.RdapSearchRequest;
+
+/**
+ * Classes of requests by how expensive they are for the data access
+ * implementation, used by {@link RateLimitFilter} to charge each request to
+ * the budget of its client.
+ */
+public enum RequestCost {
+
+	/** Single object requests (domain, nameserver, entity, autnum and ip) */
+	LOOKUP("lookup", 1),
+	/** Searches of an exact value */
+	SEARCH("search", 5),
+	/** Searches with wildcards */
+	PARTIAL_SEARCH("partialSearch", 20),
+	/** Searches with regular expressions */
+	REGEX_SEARCH("regexSearch", 50),
+	/** Anything else (eg. help) */
+	OTHER("other", 1);
+
+	private final String name;
+
+	private final int defaultCost;
+
+	private RequestCost(String name, int defaultCost) {
+		this.name = name;
+		this.defaultCost = defaultCost;
+	}
+
+	/**
+	 * @return the prefix of the init parameter of this class at the filter
+	 *         configuration (eg. "regexSearch" for "regexSearchCost")
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return the cost of this class if it isn't configured
+	 */
+	public int getDefaultCost() {
+		return defaultCost;
+	}
+
+	/**
+	 * @return the cost class of <code>request</code>
+	 */
+	public static RequestCost of(ServletRequest request) {
+		switch (EndpointClass.of(request)) {
+		case LOOKUP:
+			return LOOKUP;
+		case SEARCH:
+			break;
+		default:
+			return OTHER;
+		}
+
+		HttpServletRequest httpRequest = (HttpServletRequest) request;
+		if (RdapSearchRequest.getSearchType(httpRequest) == RequestSearchType.REGEX_SEARCH) {
+			return REGEX_SEARCH;
+		}
+
+		Enumeration<String> parameterNames = httpRequest.getParameterNames();
+		while (parameterNames.hasMoreElements()) {
+			String value = httpRequest.getParameter(parameterNames.nextElement());
+			if (value != null && value.indexOf('*') >= 0) {
+				return PARTIAL_SEARCH;
+			}
+		}
+		return SEARCH;
+	}
+
+}
@@ -0,0 +1,259 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets of the clients of {@link RateLimitFilter}: each client has the
+ * same set of buckets (eg. one per {@link EndpointClass}), and a request can
+ * take one or more tokens from a bucket.
+ * <p>
+ * Each bucket is a single <code>long</code> updated with compare-and-set: the
+ * time at which the bucket will be full again (the "theoretical arrival time"
+ * of the generic cell rate algorithm, which is equivalent to a token bucket).
+ * So, once a client has its buckets, a request doesn't allocate anything.
+ * <p>
+ * The buckets of a client are discarded once all of them are full; the number
+ * of clients is bounded, when it's reached the full buckets are discarded
+ * immediately, and if there aren't any the new clients share a fixed number of
+ * overflow buckets, chosen by the hash of the client (see
+ * {@link ConcurrencyCounters}).
+ */
+public class TokenBuckets {
+
+	/** Minimum time between two sweeps of the full buckets. */
+	private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+	/** Nanoseconds between two tokens of each bucket, 0 if the bucket isn't limited. */
+	private final long[] emissionIntervals;
+
+	/** Time (nanoseconds) to fill each bucket from empty, ie. the burst size. */
+	private final long[] burstTimes;
+
+	private final int maxClients;
+
+	private final ConcurrentHashMap<ClientKey, AtomicLongArray> buckets = new ConcurrentHashMap<>();
+
+	/** Buckets of the clients that didn't fit at {@link #buckets}, never discarded. */
+	private final AtomicLongArray[] overflowBuckets = new AtomicLongArray[ConcurrencyCounters.OVERFLOW_SLOTS];
+
+	private final AtomicInteger clientCount = new AtomicInteger();
+
+	private final ReentrantLock sweepLock = new ReentrantLock();
+
+	private volatile long lastSweep;
+
+	/** Origin of the times, so they're never negative. */
+	private final long origin = System.nanoTime();
+
+	/**
+	 * @param rates
+	 *            Tokens per second of each bucket, 0 means unlimited
+	 * @param bursts
+	 *            Size of each bucket, ie. the tokens that can be taken at once
+	 * @param maxClients
+	 *            Max number of clients whose buckets are kept
+	 */
+	public TokenBuckets(double[] rates, int[] bursts, int maxClients) {
+		int bucketCount = rates.length;
+		this.emissionIntervals = new long[bucketCount];
+		this.burstTimes = new long[bucketCount];
+		for (int i = 0; i < bucketCount; i++) {
+			if (rates[i] > 0) {
+				emissionIntervals[i] = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rates[i]));
+				burstTimes[i] = emissionIntervals[i] * Math.max(1, bursts[i]);
+			}
+		}
+		this.maxClients = maxClients;
+		for (int i = 0; i < overflowBuckets.length; i++) {
+			overflowBuckets[i] = new AtomicLongArray(bucketCount);
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if at least one bucket is limited
+	 */
+	public boolean isEnabled() {
+		for (long interval : emissionIntervals) {
+			if (interval > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public boolean isLimited(EndpointClass endpointClass) {
+		return emissionIntervals[endpointClass.ordinal()] > 0;
+	}
+
+	/**
+	 * Takes a token from the bucket of <code>client</code> for
+	 * <code>endpointClass</code>.
+	 *
+	 * @return 0 if the token was taken, otherwise the time (in nanoseconds)
+	 *         that the client must wait for a token; -1 if the client isn't
+	 *         tracked because there are too many clients, and its overflow
+	 *         bucket is empty.
+	 */
+	public long tryAcquire(ClientKey client, EndpointClass endpointClass) {
+		return tryAcquire(client, endpointClass.ordinal(), 1);
+	}
+
+	/**
+	 * Takes <code>tokens</code> tokens from the bucket <code>bucket</code> of
+	 * <code>client</code>, or none if there aren't enough.
+	 *
+	 * @return 0 if the tokens were taken, otherwise the time (in nanoseconds)
+	 *         that the client must wait for the tokens; -1 if the client isn't
+	 *         tracked because there are too many clients, and its overflow
+	 *         bucket doesn't have enough tokens (the wait isn't the client's
+	 *         own doing).
+	 */
+	public long tryAcquire(ClientKey client, int bucket, long tokens) {
+		long interval = emissionIntervals[bucket];
+		if (interval == 0) {
+			return 0;
+		}
+
+		long now = now();
+		AtomicLongArray clientBuckets = getBuckets(client, now);
+		boolean overflow = clientBuckets == null;
+		if (overflow) {
+			clientBuckets = getOverflowBuckets(client);
+		}
+
+		long burstTime = burstTimes[bucket];
+		while (true) {
+			long fullAt = clientBuckets.get(bucket);
+			long newFullAt = Math.max(fullAt, now) + interval * tokens;
+			long wait = newFullAt - now - burstTime;
+			if (wait > 0) {
+				return overflow ? -1 : wait;
+			}
+			if (clientBuckets.compareAndSet(bucket, fullAt, newFullAt)) {
+				return 0;
+			}
+		}
+	}
+
+	/**
+	 * Takes <code>tokens</code> tokens from the bucket <code>bucket</code> of
+	 * <code>client</code> even if there aren't enough; the bucket goes into
+	 * debt and the next requests of the client will have to wait for it. Useful
+	 * to charge the cost of a request once it's known.
+	 */
+	public void charge(ClientKey client, int bucket, long tokens) {
+		long interval = emissionIntervals[bucket];
+		if (interval == 0 || tokens <= 0) {
+			return;
+		}
+
+		long now = now();
+		AtomicLongArray clientBuckets = getBuckets(client, now);
+		if (clientBuckets == null) {
+			clientBuckets = getOverflowBuckets(client);
+		}
+
+		while (true) {
+			long fullAt = clientBuckets.get(bucket);
+			if (clientBuckets.compareAndSet(bucket, fullAt, Math.max(fullAt, now) + interval * tokens)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gives back <code>tokens</code> tokens taken from the bucket
+	 * <code>bucket</code> of <code>client</code> (or of its overflow bucket, if
+	 * it isn't tracked), when the request that took them is refused by a later
+	 * check.
+	 */
+	public void refund(ClientKey client, int bucket, long tokens) {
+		long interval = emissionIntervals[bucket];
+		if (interval == 0 || tokens <= 0) {
+			return;
+		}
+
+		AtomicLongArray clientBuckets = buckets.get(client);
+		if (clientBuckets == null) {
+			clientBuckets = getOverflowBuckets(client);
+		}
+
+		while (true) {
+			long fullAt = clientBuckets.get(bucket);
+			if (clientBuckets.compareAndSet(bucket, fullAt, fullAt - interval * tokens)) {
+				return;
+			}
+		}
+	}
+
+	private AtomicLongArray getBuckets(ClientKey client, long now) {
+		AtomicLongArray clientBuckets = buckets.get(client);
+		return (clientBuckets != null) ? clientBuckets : addClient(client, now);
+	}
+
+	private AtomicLongArray getOverflowBuckets(ClientKey client) {
+		int hash = client.hashCode();
+		return overflowBuckets[(hash ^ (hash >>> 16)) & (overflowBuckets.length - 1)];
+	}
+
+	private AtomicLongArray addClient(ClientKey client, long now) {
+		if (clientCount.get() >= maxClients || now - lastSweep > SWEEP_INTERVAL) {
+			sweep(now);
+		}
+
+		AtomicLongArray newBuckets = new AtomicLongArray(emissionIntervals.length);
+		if (clientCount.incrementAndGet() > maxClients) {
+			clientCount.decrementAndGet();
+			return buckets.get(client);
+		}
+
+		AtomicLongArray current = buckets.putIfAbsent(client, newBuckets);
+		if (current != null) {
+			clientCount.decrementAndGet();
+			return current;
+		}
+		return newBuckets;
+	}
+
+	/**
+	 * Discards the clients whose buckets are full, since they behave just like
+	 * clients without buckets.
+	 */
+	private void sweep(long now) {
+		if (!sweepLock.tryLock()) {
+			return;
+		}
+		try {
+			lastSweep = now;
+			Iterator<Map.Entry<ClientKey, AtomicLongArray>> iterator = buckets.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<ClientKey, AtomicLongArray> entry = iterator.next();
+				if (isFull(entry.getValue(), now) && buckets.remove(entry.getKey(), entry.getValue())) {
+					clientCount.decrementAndGet();
+				}
+			}
+		} finally {
+			sweepLock.unlock();
+		}
+	}
+
+	private static boolean isFull(AtomicLongArray clientBuckets, long now) {
+		for (int i = 0; i < clientBuckets.length(); i++) {
+			if (clientBuckets.get(i) > now) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long now() {
+		return System.nanoTime() - origin;
+	}
+
+}
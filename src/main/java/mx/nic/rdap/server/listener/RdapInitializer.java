@@ -16,7 +16,12 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 
 import mx.nic.rdap.db.service.DataAccessService;
+import mx.nic.rdap.server.cache.NegativeCache;
+import mx.nic.rdap.server.cache.ResponseCache;
+import mx.nic.rdap.server.cache.UserLimitCache;
 import mx.nic.rdap.server.configuration.RdapConfiguration;
+import mx.nic.rdap.server.executor.ParallelResults;
+import mx.nic.rdap.server.executor.RequestExecutor;
 import mx.nic.rdap.server.notices.UserNotices;
 import mx.nic.rdap.server.renderer.RendererPool;
 import mx.nic.rdap.server.util.PrivacyUtil;
@@ -55,7 +60,12 @@ public class RdapInitializer implements ServletContextListener {
 
 			RdapConfiguration.loadRdapConfiguration();
 			RdapConfiguration.loadConfiguredOwnerRoles();
+			RequestExecutor.init();
+			ParallelResults.init();
 			PrivacyUtil.loadAllPrivacySettings();
+			ResponseCache.init();
+			NegativeCache.init();
+			UserLimitCache.init();
 			loadUserNotices();
 
 			Properties dataAccessConfig = loadConfig(DATA_ACCESS_FILE, DATA_ACCESS_PARAM_NAME);
@@ -70,6 +80,9 @@ public class RdapInitializer implements ServletContextListener {
 
 	@Override
 	public void contextDestroyed(ServletContextEvent event) {
+		RequestExecutor.shutdown();
+		ParallelResults.shutdown();
+		UserLimitCache.shutdown();
 		servletContext = null;
 	}
 
@@ -7,7 +7,7 @@ public class AuthenticatedPrivacySetting implements PrivacySetting {
 
 	@Override
 	public boolean isHidden(UserInfo userInfo) {
-		return userInfo.getSubject() == null || !userInfo.getSubject().isAuthenticated();
+		return !userInfo.isAuthenticated();
 	}
 
 }
@@ -1,14 +1,14 @@
 package mx.nic.rdap.server.privacy;
 
 import java.util.List;
-import java.util.Map;
 
 import org.apache.shiro.SecurityUtils;
-import org.apache.shiro.subject.Subject;
 
 import mx.nic.rdap.core.db.Autnum;
+import mx.nic.rdap.server.privacy.PrivacyFields.AutnumField;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
 import mx.nic.rdap.server.util.PrivacyUtil;
-import mx.nic.rdap.server.util.Util;
 
 public class AutnumPrivacyFilter {
 
@@ -21,136 +21,116 @@ public class AutnumPrivacyFilter {
 	 * 
 	 * @param autnum
 	 *            {@link Autnum} to be filtered
-	 * @return true if the result was filter, otherwise false
+	 * @return <code>autnum</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>autnum</code> isn't modified
 	 */
-	public static boolean filterAutnum(Autnum autnum) {
+	public static Autnum filterAutnum(Autnum autnum) {
+		return filterAutnum(autnum, SubjectSnapshot.of(SecurityUtils.getSubject()));
+	}
 
-		Subject subject = SecurityUtils.getSubject();
-		UserInfo userInfo = new UserInfo(subject,
-				PrivacyUtil.isSubjectOwner(Util.getUsername(subject), autnum));
+	/**
+	 * Hides information that is inaccessible to the user of
+	 * <code>subjectSnapshot</code>
+	 * 
+	 * @param autnum
+	 *            {@link Autnum} to be filtered
+	 * @param subjectSnapshot
+	 *            Authentication state and roles of the current user
+	 * @return <code>autnum</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>autnum</code> isn't modified
+	 */
+	public static Autnum filterAutnum(Autnum autnum, SubjectSnapshot subjectSnapshot) {
+		UserInfo userInfo = new UserInfo(subjectSnapshot, subjectSnapshot.isOwner(autnum));
 
 		return filterAutnum(autnum, userInfo);
 	}
 
-	private static boolean filterAutnum(Autnum autnum, UserInfo userInfo) {
-		boolean isPrivate = false;
+	private static Autnum filterAutnum(Autnum autnum, UserInfo userInfo) {
+		PrivacyPlan<AutnumField> privacyPlan = PrivacyUtil.getAutnumPrivacyPlan();
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getAutnumPrivacySettings();
-
-		for (String key : privacySettings.keySet()) {
-			PrivacySetting setting = privacySettings.get(key);
-			boolean isHidden = setting.isHidden(userInfo);
-			switch (key) {
-			case "handle":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getHandle())) {
-					autnum.setHandle(null);
-					isPrivate = true;
-				}
-				break;
-			case "entities":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getEntities())) {
-					autnum.setEntities(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= EntityPrivacyFilter.filterAnidatedEntities(autnum.getEntities(), userInfo);
-				}
-				break;
-			case "status":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getStatus())) {
-					autnum.setStatus(null);
-					isPrivate = true;
-				}
-				break;
-			case "remarks":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getRemarks())) {
-					autnum.setRemarks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterRemarks(autnum.getRemarks(), userInfo,
-							PrivacyUtil.getAutnumRemarkPrivacySettings(),
-							PrivacyUtil.getAutnumRemarksLinksPrivacySettings());
-				}
-				break;
-			case "links":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getLinks())) {
-					autnum.setLinks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterLinks(autnum.getLinks(), userInfo,
-							PrivacyUtil.getAutnumLinkPrivacySettings());
-				}
-				break;
-			case "port43":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getPort43())) {
-					autnum.setPort43(null);
-					isPrivate = true;
-				}
-				break;
-			case "events":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getEvents())) {
-					autnum.setEvents(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterEvents(autnum.getEvents(), userInfo,
-							PrivacyUtil.getAutnumEventPrivacySettings(),
-							PrivacyUtil.getAutnumEventsLinksPrivacySettings());
-				}
-				break;
-			case "startAutnum":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getStartAutnum())) {
-					autnum.setStartAutnum(null);
-					isPrivate = true;
-				}
-				break;
-			case "endAutnum":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getEndAutnum())) {
-					autnum.setEndAutnum(null);
-					isPrivate = true;
-				}
-				break;
-			case "name":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getName())) {
-					autnum.setName(null);
-					isPrivate = true;
-				}
-				break;
-			case "type":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getType())) {
-					autnum.setType(null);
-					isPrivate = true;
-				}
-				break;
-			case "country":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getCountryCode())) {
-					autnum.setCountry(null);
-					isPrivate = true;
-				}
-				break;
-
-			case "lang":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(autnum.getLang())) {
-					autnum.setLang(null);
-					isPrivate = true;
-				}
-				break;
-			}
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<Autnum> view = new CopyOnWrite<>(autnum, CopyUtil::copyOf);
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.HANDLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getHandle())) {
+			view.edit().setHandle(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.ENTITIES)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getEntities())) {
+			view.edit().setEntities(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, AutnumField.ENTITIES)) {
+			view.replace(autnum.getEntities(),
+					EntityPrivacyFilter.filterAnidatedEntities(autnum.getEntities(), userInfo),
+					Autnum::setEntities);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.STATUS)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getStatus())) {
+			view.edit().setStatus(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.REMARKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getRemarks())) {
+			view.edit().setRemarks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, AutnumField.REMARKS)) {
+			view.replace(autnum.getRemarks(), ObjectPrivacyFilter.filterRemarks(autnum.getRemarks(), userInfo,
+					PrivacyUtil.getAutnumRemarkPrivacyPlan(),
+					PrivacyUtil.getAutnumRemarksLinksPrivacyPlan()),
+					Autnum::setRemarks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.LINKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, AutnumField.LINKS)) {
+			view.replace(autnum.getLinks(), ObjectPrivacyFilter.filterLinks(autnum.getLinks(), userInfo,
+					PrivacyUtil.getAutnumLinkPrivacyPlan()),
+					Autnum::setLinks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.PORT43)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getPort43())) {
+			view.edit().setPort43(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.EVENTS)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getEvents())) {
+			view.edit().setEvents(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, AutnumField.EVENTS)) {
+			view.replace(autnum.getEvents(), ObjectPrivacyFilter.filterEvents(autnum.getEvents(), userInfo,
+					PrivacyUtil.getAutnumEventPrivacyPlan(),
+					PrivacyUtil.getAutnumEventsLinksPrivacyPlan()),
+					Autnum::setEvents);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.START_AUTNUM)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getStartAutnum())) {
+			view.edit().setStartAutnum(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.END_AUTNUM)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getEndAutnum())) {
+			view.edit().setEndAutnum(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getName())) {
+			view.edit().setName(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.TYPE)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getType())) {
+			view.edit().setType(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.COUNTRY)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getCountryCode())) {
+			view.edit().setCountry(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, AutnumField.LANG)
+				&& !ObjectPrivacyFilter.isValueEmpty(autnum.getLang())) {
+			view.edit().setLang(null);
 		}
 
-		return isPrivate;
+		return view.get();
 	}
 
-	public static boolean filterAnidatedAutnums(List<Autnum> autnums, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	public static List<Autnum> filterAnidatedAutnums(List<Autnum> autnums, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(autnums)) {
-			return false;
-		}
-		
-		for(Autnum a : autnums) {
-			isPrivate |= filterAutnum(a, userInfo);
+			return autnums;
 		}
 
-		return isPrivate;
+		return CopyOnWrite.map(autnums, a -> filterAutnum(a, userInfo));
 	}
 
 }
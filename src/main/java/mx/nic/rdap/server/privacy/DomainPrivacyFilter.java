@@ -1,12 +1,8 @@
 package mx.nic.rdap.server.privacy;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import org.apache.shiro.SecurityUtils;
-import org.apache.shiro.subject.Subject;
 
 import mx.nic.rdap.core.db.Domain;
 import mx.nic.rdap.core.db.DsData;
@@ -14,8 +10,14 @@ import mx.nic.rdap.core.db.KeyData;
 import mx.nic.rdap.core.db.SecureDNS;
 import mx.nic.rdap.core.db.Variant;
 import mx.nic.rdap.core.db.VariantName;
+import mx.nic.rdap.server.privacy.PrivacyFields.DomainField;
+import mx.nic.rdap.server.privacy.PrivacyFields.DsDataField;
+import mx.nic.rdap.server.privacy.PrivacyFields.KeyDataField;
+import mx.nic.rdap.server.privacy.PrivacyFields.SecureDnsField;
+import mx.nic.rdap.server.privacy.PrivacyFields.VariantField;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
 import mx.nic.rdap.server.util.PrivacyUtil;
-import mx.nic.rdap.server.util.Util;
 
 public class DomainPrivacyFilter {
 
@@ -28,391 +30,312 @@ public class DomainPrivacyFilter {
 	 * 
 	 * @param domain
 	 *            {@link Domain} to be filtered
-	 * @return true if the result was filter, otherwise false
+	 * @return <code>domain</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>domain</code> isn't modified
 	 */
-	public static boolean filterDomain(Domain domain) {
-		boolean isPrivate = false;
-
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getDomainPrivacySettings();
-		Subject subject = SecurityUtils.getSubject();
-		UserInfo userInfo = new UserInfo(subject,
-				PrivacyUtil.isSubjectOwner(Util.getUsername(subject), domain));
+	public static Domain filterDomain(Domain domain) {
+		return filterDomain(domain, SubjectSnapshot.of(SecurityUtils.getSubject()));
+	}
 
-		for (String key : privacySettings.keySet()) {
-			PrivacySetting setting = privacySettings.get(key);
-			boolean isHidden = setting.isHidden(userInfo);
-			switch (key) {
-			case "handle":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getHandle())) {
-					domain.setHandle(null);
-					isPrivate = true;
-				}
-				break;
-			case "ldhName":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getLdhName())) {
-					domain.setLdhName(null);
-					isPrivate = true;
-				}
-				break;
-			case "unicodeName":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getUnicodeName())) {
-					domain.setUnicodeName(null);
-					isPrivate = true;
-				}
-				break;
-			case "variants":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getVariants())) {
-					domain.setVariants(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= filterVariants(domain.getVariants(), userInfo);
-				}
-				break;
-			case "nameservers":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getNameServers())) {
-					domain.setNameServers(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= NameserverPrivacyFilter.filterAnidatedNameserver(domain.getNameServers(), userInfo);
-				}
-				break;
-			case "secureDNS":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getSecureDNS())) {
-					domain.setSecureDNS(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= filterDomainSecureDns(domain.getSecureDNS(), userInfo);
-				}
-				break;
-			case "entities":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getEntities())) {
-					domain.setEntities(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= EntityPrivacyFilter.filterAnidatedEntities(domain.getEntities(), userInfo);
-				}
-				break;
-			case "status":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getStatus())) {
-					domain.setStatus(null);
-					isPrivate = true;
-				}
-				break;
-			case "publicIds":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getPublicIds())) {
-					domain.setPublicIds(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterPublicId(domain.getPublicIds(), userInfo,
-							PrivacyUtil.getDomainPublicIdsPrivacySettings());
-				}
-				break;
-			case "remarks":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getRemarks())) {
-					domain.setRemarks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterRemarks(domain.getRemarks(), userInfo,
-							PrivacyUtil.getDomainRemarkPrivacySettings(),
-							PrivacyUtil.getDomainRemarksLinksPrivacySettings());
-				}
-				break;
-			case "links":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getLinks())) {
-					domain.setLinks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterLinks(domain.getLinks(), userInfo,
-							PrivacyUtil.getDomainLinkPrivacySettings());
-				}
-				break;
-			case "port43":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getPort43())) {
-					domain.setPort43(null);
-					isPrivate = true;
-				}
-				break;
-			case "events":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getEvents())) {
-					domain.setEvents(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterEvents(domain.getEvents(), userInfo,
-							PrivacyUtil.getDomainEventPrivacySettings(),
-							PrivacyUtil.getDomainEventsLinksPrivacySettings());
-				}
-				break;
-			case "network":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getIpNetwork())) {
-					domain.setIpNetwork(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= IpNetworkPrivacyFilter.filterIpNetwork(domain.getIpNetwork(), userInfo);
-				}
-				break;
-			case "lang":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(domain.getLang())) {
-					domain.setLang(null);
-					isPrivate = true;
-				}
-				break;
-			}
+	/**
+	 * Hides information that is inaccessible to the user of
+	 * <code>subjectSnapshot</code>
+	 * 
+	 * @param domain
+	 *            {@link Domain} to be filtered
+	 * @param subjectSnapshot
+	 *            Authentication state and roles of the current user
+	 * @return <code>domain</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>domain</code> isn't modified
+	 */
+	public static Domain filterDomain(Domain domain, SubjectSnapshot subjectSnapshot) {
+		PrivacyPlan<DomainField> privacyPlan = PrivacyUtil.getDomainPrivacyPlan();
+		UserInfo userInfo = new UserInfo(subjectSnapshot, subjectSnapshot.isOwner(domain));
+
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<Domain> view = new CopyOnWrite<>(domain, CopyUtil::copyOf);
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.HANDLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getHandle())) {
+			view.edit().setHandle(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.LDH_NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getLdhName())) {
+			view.edit().setLdhName(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.UNICODE_NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getUnicodeName())) {
+			view.edit().setUnicodeName(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.VARIANTS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getVariants())) {
+			view.edit().setVariants(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.VARIANTS)) {
+			view.replace(domain.getVariants(), filterVariants(domain.getVariants(), userInfo),
+					Domain::setVariants);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.NAMESERVERS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getNameServers())) {
+			view.edit().setNameServers(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.NAMESERVERS)) {
+			view.replace(domain.getNameServers(),
+					NameserverPrivacyFilter.filterAnidatedNameserver(domain.getNameServers(), userInfo),
+					Domain::setNameServers);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.SECURE_DNS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getSecureDNS())) {
+			view.edit().setSecureDNS(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.SECURE_DNS)) {
+			view.replace(domain.getSecureDNS(), filterDomainSecureDns(domain.getSecureDNS(), userInfo),
+					Domain::setSecureDNS);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.ENTITIES)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getEntities())) {
+			view.edit().setEntities(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.ENTITIES)) {
+			view.replace(domain.getEntities(),
+					EntityPrivacyFilter.filterAnidatedEntities(domain.getEntities(), userInfo),
+					Domain::setEntities);
 		}
-		return isPrivate;
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.STATUS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getStatus())) {
+			view.edit().setStatus(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.PUBLIC_IDS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getPublicIds())) {
+			view.edit().setPublicIds(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.PUBLIC_IDS)) {
+			view.replace(domain.getPublicIds(), ObjectPrivacyFilter.filterPublicId(domain.getPublicIds(), userInfo,
+					PrivacyUtil.getDomainPublicIdsPrivacyPlan()),
+					Domain::setPublicIds);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.REMARKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getRemarks())) {
+			view.edit().setRemarks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.REMARKS)) {
+			view.replace(domain.getRemarks(), ObjectPrivacyFilter.filterRemarks(domain.getRemarks(), userInfo,
+					PrivacyUtil.getDomainRemarkPrivacyPlan(),
+					PrivacyUtil.getDomainRemarksLinksPrivacyPlan()),
+					Domain::setRemarks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.LINKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.LINKS)) {
+			view.replace(domain.getLinks(), ObjectPrivacyFilter.filterLinks(domain.getLinks(), userInfo,
+					PrivacyUtil.getDomainLinkPrivacyPlan()),
+					Domain::setLinks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.PORT43)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getPort43())) {
+			view.edit().setPort43(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.EVENTS)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getEvents())) {
+			view.edit().setEvents(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.EVENTS)) {
+			view.replace(domain.getEvents(), ObjectPrivacyFilter.filterEvents(domain.getEvents(), userInfo,
+					PrivacyUtil.getDomainEventPrivacyPlan(),
+					PrivacyUtil.getDomainEventsLinksPrivacyPlan()),
+					Domain::setEvents);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.NETWORK)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getIpNetwork())) {
+			view.edit().setIpNetwork(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, DomainField.NETWORK)) {
+			view.replace(domain.getIpNetwork(), IpNetworkPrivacyFilter.filterIpNetwork(domain.getIpNetwork(), userInfo),
+					Domain::setIpNetwork);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, DomainField.LANG)
+				&& !ObjectPrivacyFilter.isValueEmpty(domain.getLang())) {
+			view.edit().setLang(null);
+		}
+		return view.get();
 	}
 
-	private static boolean filterDomainSecureDns(SecureDNS secureDNS, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static SecureDNS filterDomainSecureDns(SecureDNS secureDNS, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(secureDNS)) {
-			return false;
+			return secureDNS;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getSecureDnsPrivacySettings();
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (Entry<String, PrivacySetting> entry : entrySet) {
-			String key = entry.getKey();
-			PrivacySetting setting = entry.getValue();
-			boolean isHidden = setting.isHidden(userInfo);
-			switch (key) {
-			case "zoneSigned":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(secureDNS.getZoneSigned())) {
-					secureDNS.setZoneSigned(null);
-					isPrivate = true;
-				}
-				break;
-			case "delegationSigned":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(secureDNS.getDelegationSigned())) {
-					secureDNS.setDelegationSigned(null);
-					isPrivate = true;
-				}
-				break;
-			case "maxSigLife":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(secureDNS.getMaxSigLife())) {
-					secureDNS.setMaxSigLife(null);
-					isPrivate = true;
-				}
-				break;
-			case "dsData":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(secureDNS.getDsData())) {
-					secureDNS.setDsData(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= filterDomainDsData(secureDNS.getDsData(), userInfo);
-				}
-				break;
-			case "keyData":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(secureDNS.getKeyData())) {
-					secureDNS.setKeyData(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= filterDomainKeyData(secureDNS.getKeyData(), userInfo);
-				}
-				break;
-
-			}
+		PrivacyPlan<SecureDnsField> privacyPlan = PrivacyUtil.getSecureDnsPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<SecureDNS> view = new CopyOnWrite<>(secureDNS, CopyUtil::copyOf);
+		if (ObjectPrivacyFilter.isHidden(hidden, SecureDnsField.ZONE_SIGNED)
+				&& !ObjectPrivacyFilter.isValueEmpty(secureDNS.getZoneSigned())) {
+			view.edit().setZoneSigned(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, SecureDnsField.DELEGATION_SIGNED)
+				&& !ObjectPrivacyFilter.isValueEmpty(secureDNS.getDelegationSigned())) {
+			view.edit().setDelegationSigned(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, SecureDnsField.MAX_SIG_LIFE)
+				&& !ObjectPrivacyFilter.isValueEmpty(secureDNS.getMaxSigLife())) {
+			view.edit().setMaxSigLife(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, SecureDnsField.DS_DATA)
+				&& !ObjectPrivacyFilter.isValueEmpty(secureDNS.getDsData())) {
+			view.edit().setDsData(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, SecureDnsField.DS_DATA)) {
+			view.replace(secureDNS.getDsData(), filterDomainDsData(secureDNS.getDsData(), userInfo),
+					SecureDNS::setDsData);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, SecureDnsField.KEY_DATA)
+				&& !ObjectPrivacyFilter.isValueEmpty(secureDNS.getKeyData())) {
+			view.edit().setKeyData(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, SecureDnsField.KEY_DATA)) {
+			view.replace(secureDNS.getKeyData(), filterDomainKeyData(secureDNS.getKeyData(), userInfo),
+					SecureDNS::setKeyData);
 		}
 
-		return isPrivate;
+		return view.get();
 	}
 
-	private static boolean filterDomainKeyData(List<KeyData> keys, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static List<KeyData> filterDomainKeyData(List<KeyData> keys, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(keys)) {
-			return isPrivate;
+			return keys;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getKeyDataPrivacySettings();
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (KeyData k : keys) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				PrivacySetting setting = entry.getValue();
-				boolean isHidden = setting.isHidden(userInfo);
-				switch (key) {
-				case "flags":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(k.getFlags())) {
-						k.setFlags(null);
-						isPrivate = true;
-					}
-					break;
-				case "protocol":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(k.getProtocol())) {
-						k.setProtocol(null);
-						isPrivate = true;
-					}
-					break;
-				case "publicKey":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(k.getPublicKey())) {
-						k.setPublicKey(null);
-						isPrivate = true;
-					}
-					break;
-				case "algorithm":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(k.getAlgorithm())) {
-						k.setAlgorithm(null);
-						isPrivate = true;
-					}
-					break;
-				case "events":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(k.getEvents())) {
-						k.setEvents(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= ObjectPrivacyFilter.filterEvents(k.getEvents(), userInfo,
-								PrivacyUtil.getKeyDataEventsPrivacySettings(),
-								PrivacyUtil.getKeyDataEventsLinksPrivacySettings());
-					}
-					break;
-				case "links":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(k.getLinks())) {
-						k.setLinks(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= ObjectPrivacyFilter.filterLinks(k.getLinks(), userInfo,
-								PrivacyUtil.getKeyDataLinksPrivacySettings());
-					}
-					break;
-				}
+		PrivacyPlan<KeyDataField> privacyPlan = PrivacyUtil.getKeyDataPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		return CopyOnWrite.map(keys, k -> {
+			CopyOnWrite<KeyData> view = new CopyOnWrite<>(k, CopyUtil::copyOf);
+			if (ObjectPrivacyFilter.isHidden(hidden, KeyDataField.FLAGS)
+					&& !ObjectPrivacyFilter.isValueEmpty(k.getFlags())) {
+				view.edit().setFlags(null);
 			}
-		}
-
-		return isPrivate;
+			if (ObjectPrivacyFilter.isHidden(hidden, KeyDataField.PROTOCOL)
+					&& !ObjectPrivacyFilter.isValueEmpty(k.getProtocol())) {
+				view.edit().setProtocol(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, KeyDataField.PUBLIC_KEY)
+					&& !ObjectPrivacyFilter.isValueEmpty(k.getPublicKey())) {
+				view.edit().setPublicKey(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, KeyDataField.ALGORITHM)
+					&& !ObjectPrivacyFilter.isValueEmpty(k.getAlgorithm())) {
+				view.edit().setAlgorithm(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, KeyDataField.EVENTS)
+					&& !ObjectPrivacyFilter.isValueEmpty(k.getEvents())) {
+				view.edit().setEvents(null);
+			} else if (ObjectPrivacyFilter.isConfigured(configured, KeyDataField.EVENTS)) {
+				view.replace(k.getEvents(), ObjectPrivacyFilter.filterEvents(k.getEvents(), userInfo,
+						PrivacyUtil.getKeyDataEventsPrivacyPlan(),
+						PrivacyUtil.getKeyDataEventsLinksPrivacyPlan()),
+						KeyData::setEvents);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, KeyDataField.LINKS)
+					&& !ObjectPrivacyFilter.isValueEmpty(k.getLinks())) {
+				view.edit().setLinks(null);
+			} else if (ObjectPrivacyFilter.isConfigured(configured, KeyDataField.LINKS)) {
+				view.replace(k.getLinks(), ObjectPrivacyFilter.filterLinks(k.getLinks(), userInfo,
+						PrivacyUtil.getKeyDataLinksPrivacyPlan()),
+						KeyData::setLinks);
+			}
+			return view.get();
+		});
 	}
 
-	private static boolean filterDomainDsData(List<DsData> dsDatas, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static List<DsData> filterDomainDsData(List<DsData> dsDatas, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(dsDatas)) {
-			return isPrivate;
+			return dsDatas;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getDsDataPrivacySettings();
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (DsData ds : dsDatas) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				PrivacySetting setting = entry.getValue();
-				boolean isHidden = setting.isHidden(userInfo);
-				switch (key) {
-				case "keyTag":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ds.getKeytag())) {
-						ds.setKeytag(null);
-						isPrivate = true;
-					}
-					break;
-				case "algorithm":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ds.getAlgorithm())) {
-						ds.setAlgorithm(null);
-						isPrivate = true;
-					}
-					break;
-				case "digest":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ds.getDigest())) {
-						ds.setDigest(null);
-						isPrivate = true;
-					}
-					break;
-				case "digestType":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ds.getDigestType())) {
-						ds.setDigestType(null);
-						isPrivate = true;
-					}
-					break;
-				case "events":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ds.getEvents())) {
-						ds.setEvents(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= ObjectPrivacyFilter.filterEvents(ds.getEvents(), userInfo,
-								PrivacyUtil.getDsDataEventsPrivacySettings(),
-								PrivacyUtil.getDsDataEventsLinksPrivacySettings());
-					}
-					break;
-				case "links":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ds.getLinks())) {
-						ds.setLinks(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= ObjectPrivacyFilter.filterLinks(ds.getLinks(), userInfo,
-								PrivacyUtil.getDsDataLinksPrivacySettings());
-					}
-					break;
-				}
+		PrivacyPlan<DsDataField> privacyPlan = PrivacyUtil.getDsDataPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		return CopyOnWrite.map(dsDatas, ds -> {
+			CopyOnWrite<DsData> view = new CopyOnWrite<>(ds, CopyUtil::copyOf);
+			if (ObjectPrivacyFilter.isHidden(hidden, DsDataField.KEY_TAG)
+					&& !ObjectPrivacyFilter.isValueEmpty(ds.getKeytag())) {
+				view.edit().setKeytag(null);
 			}
-		}
-		return isPrivate;
+			if (ObjectPrivacyFilter.isHidden(hidden, DsDataField.ALGORITHM)
+					&& !ObjectPrivacyFilter.isValueEmpty(ds.getAlgorithm())) {
+				view.edit().setAlgorithm(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, DsDataField.DIGEST)
+					&& !ObjectPrivacyFilter.isValueEmpty(ds.getDigest())) {
+				view.edit().setDigest(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, DsDataField.DIGEST_TYPE)
+					&& !ObjectPrivacyFilter.isValueEmpty(ds.getDigestType())) {
+				view.edit().setDigestType(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, DsDataField.EVENTS)
+					&& !ObjectPrivacyFilter.isValueEmpty(ds.getEvents())) {
+				view.edit().setEvents(null);
+			} else if (ObjectPrivacyFilter.isConfigured(configured, DsDataField.EVENTS)) {
+				view.replace(ds.getEvents(), ObjectPrivacyFilter.filterEvents(ds.getEvents(), userInfo,
+						PrivacyUtil.getDsDataEventsPrivacyPlan(),
+						PrivacyUtil.getDsDataEventsLinksPrivacyPlan()),
+						DsData::setEvents);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, DsDataField.LINKS)
+					&& !ObjectPrivacyFilter.isValueEmpty(ds.getLinks())) {
+				view.edit().setLinks(null);
+			} else if (ObjectPrivacyFilter.isConfigured(configured, DsDataField.LINKS)) {
+				view.replace(ds.getLinks(), ObjectPrivacyFilter.filterLinks(ds.getLinks(), userInfo,
+						PrivacyUtil.getDsDataLinksPrivacyPlan()),
+						DsData::setLinks);
+			}
+			return view.get();
+		});
 	}
 
-	private static boolean filterVariants(List<Variant> variants, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static List<Variant> filterVariants(List<Variant> variants, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(variants)) {
-			return false;
+			return variants;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getDomainVariantsPrivacySettings();
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (Variant v : variants) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				boolean isHidden = entry.getValue().isHidden(userInfo);
-				switch (key) {
-				case "relation":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(v.getRelations())) {
-						v.setRelations(null);
-						isPrivate = true;
-					}
-					break;
-				case "idnTable":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(v.getIdnTable())) {
-						v.setIdnTable(null);
-						isPrivate = true;
-					}
-					break;
-				case "variantNames":
-					if (isHidden && !ObjectPrivacyFilter.isValueEmpty(v.getVariantNames())) {
-						v.setVariantNames(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= filterVariantNames(v.getVariantNames(), userInfo);
-					}
-					break;
-				}
+		PrivacyPlan<VariantField> privacyPlan = PrivacyUtil.getDomainVariantsPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		return CopyOnWrite.map(variants, v -> {
+			CopyOnWrite<Variant> view = new CopyOnWrite<>(v, CopyUtil::copyOf);
+			if (ObjectPrivacyFilter.isHidden(hidden, VariantField.RELATION)
+					&& !ObjectPrivacyFilter.isValueEmpty(v.getRelations())) {
+				view.edit().setRelations(null);
 			}
-
-		}
-		return isPrivate;
-
+			if (ObjectPrivacyFilter.isHidden(hidden, VariantField.IDN_TABLE)
+					&& !ObjectPrivacyFilter.isValueEmpty(v.getIdnTable())) {
+				view.edit().setIdnTable(null);
+			}
+			if (ObjectPrivacyFilter.isHidden(hidden, VariantField.VARIANT_NAMES)
+					&& !ObjectPrivacyFilter.isValueEmpty(v.getVariantNames())) {
+				view.edit().setVariantNames(null);
+			} else if (ObjectPrivacyFilter.isConfigured(configured, VariantField.VARIANT_NAMES)) {
+				view.replace(v.getVariantNames(), filterVariantNames(v.getVariantNames(), userInfo),
+						Variant::setVariantNames);
+			}
+			return view.get();
+		});
 	}
 
-	private static boolean filterVariantNames(List<VariantName> names, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static List<VariantName> filterVariantNames(List<VariantName> names, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(names)) {
-			return false;
+			return names;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getDomainVariantsPrivacySettings();
+		PrivacyPlan<VariantField> privacyPlan = PrivacyUtil.getDomainVariantsPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
 
-		for (VariantName vn : names) {
-			String key = "ldhName";
-			boolean isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vn.getLdhName())) {
-				vn.setLdhName(null);
-				isPrivate = true;
+		return CopyOnWrite.map(names, vn -> {
+			CopyOnWrite<VariantName> view = new CopyOnWrite<>(vn, CopyUtil::copyOf);
+			if (ObjectPrivacyFilter.isHidden(hidden, VariantField.LDH_NAME)
+					&& !ObjectPrivacyFilter.isValueEmpty(vn.getLdhName())) {
+				view.edit().setLdhName(null);
 			}
 
-			key = "unicodeName";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vn.getUnicodeName())) {
-				vn.setUnicodeName(null);
-				isPrivate = true;
+			if (ObjectPrivacyFilter.isHidden(hidden, VariantField.UNICODE_NAME)
+					&& !ObjectPrivacyFilter.isValueEmpty(vn.getUnicodeName())) {
+				view.edit().setUnicodeName(null);
 			}
-		}
-
-		return isPrivate;
+			return view.get();
+		});
 	}
 
 }
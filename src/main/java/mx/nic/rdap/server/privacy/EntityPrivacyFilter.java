@@ -1,16 +1,18 @@
 package mx.nic.rdap.server.privacy;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.shiro.SecurityUtils;
-import org.apache.shiro.subject.Subject;
 
 import mx.nic.rdap.core.db.Entity;
 import mx.nic.rdap.core.db.VCard;
 import mx.nic.rdap.core.db.VCardPostalInfo;
+import mx.nic.rdap.server.privacy.PrivacyFields.EntityField;
+import mx.nic.rdap.server.privacy.PrivacyFields.VCardField;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
 import mx.nic.rdap.server.util.PrivacyUtil;
-import mx.nic.rdap.server.util.Util;
 
 public class EntityPrivacyFilter {
 
@@ -23,297 +25,249 @@ public class EntityPrivacyFilter {
 	 * 
 	 * @param entity
 	 *            {@link Entity} to be filtered
-	 * @return true if the result was filter, otherwise false
+	 * @return <code>entity</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>entity</code> isn't modified
 	 */
-	public static boolean filterEntity(Entity entity) {
-		Subject subject = SecurityUtils.getSubject();
-		UserInfo userInfo = new UserInfo(subject,
-				PrivacyUtil.isSubjectOwner(Util.getUsername(subject), entity));
+	public static Entity filterEntity(Entity entity) {
+		return filterEntity(entity, SubjectSnapshot.of(SecurityUtils.getSubject()));
+	}
+
+	/**
+	 * Hides information that is inaccessible to the user of
+	 * <code>subjectSnapshot</code>
+	 * 
+	 * @param entity
+	 *            {@link Entity} to be filtered
+	 * @param subjectSnapshot
+	 *            Authentication state and roles of the current user
+	 * @return <code>entity</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>entity</code> isn't modified
+	 */
+	public static Entity filterEntity(Entity entity, SubjectSnapshot subjectSnapshot) {
+		UserInfo userInfo = new UserInfo(subjectSnapshot, subjectSnapshot.isOwner(entity));
 
 		return filterEntity(entity, userInfo);
 	}
 
-	public static boolean filterEntity(Entity entity, UserInfo userInfo) {
-		boolean isPrivate = false;
-
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getEntityPrivacySettings();
+	public static Entity filterEntity(Entity entity, UserInfo userInfo) {
+		PrivacyPlan<EntityField> privacyPlan = PrivacyUtil.getEntityPrivacyPlan();
 
-		for (String key : privacySettings.keySet()) {
-			PrivacySetting setting = privacySettings.get(key);
-			boolean isHidden = setting.isHidden(userInfo);
-			switch (key) {
-			case "handle":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getHandle())) {
-					entity.setHandle(null);
-					isPrivate = true;
-				}
-				break;
-			case "vcardArray":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getVCardList())) {
-					entity.setvCardList(null);
-					isPrivate = true;
-				} else {
-					if (!entity.getVCardList().isEmpty()) {
-						isPrivate |= filterVcard(entity.getVCardList().get(0), userInfo);
-					}
-				}
-				break;
-			case "roles":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getRoles())) {
-					entity.setRoles(null);
-					isPrivate = true;
-				}
-			case "publicIds":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getPublicIds())) {
-					entity.setPublicIds(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterPublicId(entity.getPublicIds(), userInfo,
-							PrivacyUtil.getEntityPublicIdsPrivacySettings());
-				}
-				break;
-			case "entities":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getEntities())) {
-					entity.setEntities(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= filterAnidatedEntities(entity.getEntities(), userInfo);
-				}
-				break;
-			case "remarks":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getRemarks())) {
-					entity.setRemarks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterRemarks(entity.getRemarks(), userInfo,
-							PrivacyUtil.getEntityRemarkPrivacySettings(),
-							PrivacyUtil.getEntityRemarksLinksPrivacySettings());
-				}
-				break;
-			case "links":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getLinks())) {
-					entity.setLinks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterLinks(entity.getLinks(), userInfo,
-							PrivacyUtil.getEntityLinkPrivacySettings());
-				}
-				break;
-			case "events":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getEvents())) {
-					entity.setEvents(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterEvents(entity.getEvents(), userInfo,
-							PrivacyUtil.getEntityEventPrivacySettings(),
-							PrivacyUtil.getEntityEventsLinksPrivacySettings());
-				}
-				break;
-			// case "asEventActor":
-			// XXX entity doesn't have getAsEventActor;
-			// if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getAsEventActor())) {}
-			// break;
-			case "status":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getStatus())) {
-					entity.setStatus(null);
-					isPrivate = true;
-				}
-				break;
-			case "port43":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getPort43())) {
-					entity.setPort43(null);
-					isPrivate = true;
-				}
-				break;
-			case "networks":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getIpNetworks())) {
-					entity.setIpNetworks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= IpNetworkPrivacyFilter.filterIpNetworks(entity.getIpNetworks(), userInfo);
-				}
-				break;
-			case "autnums":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getAutnums())) {
-					entity.setAutnums(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= AutnumPrivacyFilter.filterAnidatedAutnums(entity.getAutnums(), userInfo);
-				}
-			case "lang":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(entity.getLang())) {
-					entity.setLang(null);
-					isPrivate = true;
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<Entity> view = new CopyOnWrite<>(entity, CopyUtil::copyOf);
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.HANDLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getHandle())) {
+			view.edit().setHandle(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.VCARD_ARRAY)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getVCardList())) {
+			view.edit().setvCardList(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.VCARD_ARRAY)) {
+			List<VCard> vCardList = entity.getVCardList();
+			if (!vCardList.isEmpty()) {
+				VCard vcard = filterVcard(vCardList.get(0), userInfo);
+				if (vcard != vCardList.get(0)) {
+					vCardList = new ArrayList<>(vCardList);
+					vCardList.set(0, vcard);
+					view.edit().setvCardList(vCardList);
 				}
-				break;
 			}
 		}
-		return isPrivate;
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.ROLES)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getRoles())) {
+			view.edit().setRoles(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.PUBLIC_IDS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getPublicIds())) {
+			view.edit().setPublicIds(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.PUBLIC_IDS)) {
+			view.replace(entity.getPublicIds(), ObjectPrivacyFilter.filterPublicId(entity.getPublicIds(), userInfo,
+					PrivacyUtil.getEntityPublicIdsPrivacyPlan()),
+					Entity::setPublicIds);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.ENTITIES)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getEntities())) {
+			view.edit().setEntities(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.ENTITIES)) {
+			view.replace(entity.getEntities(), filterAnidatedEntities(entity.getEntities(), userInfo),
+					Entity::setEntities);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.REMARKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getRemarks())) {
+			view.edit().setRemarks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.REMARKS)) {
+			view.replace(entity.getRemarks(), ObjectPrivacyFilter.filterRemarks(entity.getRemarks(), userInfo,
+					PrivacyUtil.getEntityRemarkPrivacyPlan(),
+					PrivacyUtil.getEntityRemarksLinksPrivacyPlan()),
+					Entity::setRemarks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.LINKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.LINKS)) {
+			view.replace(entity.getLinks(), ObjectPrivacyFilter.filterLinks(entity.getLinks(), userInfo,
+					PrivacyUtil.getEntityLinkPrivacyPlan()),
+					Entity::setLinks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.EVENTS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getEvents())) {
+			view.edit().setEvents(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.EVENTS)) {
+			view.replace(entity.getEvents(), ObjectPrivacyFilter.filterEvents(entity.getEvents(), userInfo,
+					PrivacyUtil.getEntityEventPrivacyPlan(),
+					PrivacyUtil.getEntityEventsLinksPrivacyPlan()),
+					Entity::setEvents);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.STATUS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getStatus())) {
+			view.edit().setStatus(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.PORT43)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getPort43())) {
+			view.edit().setPort43(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.NETWORKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getIpNetworks())) {
+			view.edit().setIpNetworks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.NETWORKS)) {
+			view.replace(entity.getIpNetworks(),
+					IpNetworkPrivacyFilter.filterIpNetworks(entity.getIpNetworks(), userInfo),
+					Entity::setIpNetworks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.AUTNUMS)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getAutnums())) {
+			view.edit().setAutnums(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, EntityField.AUTNUMS)) {
+			view.replace(entity.getAutnums(),
+					AutnumPrivacyFilter.filterAnidatedAutnums(entity.getAutnums(), userInfo), Entity::setAutnums);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, EntityField.LANG)
+				&& !ObjectPrivacyFilter.isValueEmpty(entity.getLang())) {
+			view.edit().setLang(null);
+		}
+		return view.get();
 	}
 
-	public static boolean filterAnidatedEntities(List<Entity> entities, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	public static List<Entity> filterAnidatedEntities(List<Entity> entities, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(entities)) {
-			return false;
-		}
-
-		for (Entity e : entities) {
-			isPrivate |= filterEntity(e, userInfo);
+			return entities;
 		}
 
-		return isPrivate;
+		return CopyOnWrite.map(entities, e -> filterEntity(e, userInfo));
 	}
 
-	private static boolean filterVcard(VCard vcard, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static VCard filterVcard(VCard vcard, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(vcard)) {
-			return false;
+			return vcard;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getVCardPrivacySettings();
+		PrivacyPlan<VCardField> privacyPlan = PrivacyUtil.getVCardPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<VCard> view = new CopyOnWrite<>(vcard, CopyUtil::copyOf);
 
-		String key = "name";
-		boolean isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getName())) {
-			isPrivate = true;
-			vcard.setName(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getName())) {
+			view.edit().setName(null);
 		}
 
-		key = "companyName";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getCompanyName())) {
-			isPrivate = true;
-			vcard.setCompanyName(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.COMPANY_NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getCompanyName())) {
+			view.edit().setCompanyName(null);
 		}
 
-		key = "companyUrl";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getCompanyURL())) {
-			isPrivate = true;
-			vcard.setCompanyURL(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.COMPANY_URL)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getCompanyURL())) {
+			view.edit().setCompanyURL(null);
 		}
 
-		key = "mail";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getEmail())) {
-			isPrivate = true;
-			vcard.setEmail(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.MAIL)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getEmail())) {
+			view.edit().setEmail(null);
 		}
 
-		key = "voice";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getVoice())) {
-			isPrivate = true;
-			vcard.setVoice(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.VOICE)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getVoice())) {
+			view.edit().setVoice(null);
 		}
 
-		key = "cellphone";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getCellphone())) {
-			isPrivate = true;
-			vcard.setCellphone(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.CELLPHONE)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getCellphone())) {
+			view.edit().setCellphone(null);
 		}
 
-		key = "fax";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getFax())) {
-			isPrivate = true;
-			vcard.setFax(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.FAX) && !ObjectPrivacyFilter.isValueEmpty(vcard.getFax())) {
+			view.edit().setFax(null);
 		}
 
-		key = "jobTitle";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getJobTitle())) {
-			isPrivate = true;
-			vcard.setJobTitle(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.JOB_TITLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getJobTitle())) {
+			view.edit().setJobTitle(null);
 		}
 
-		key = "postalInfo";
-		isHidden = privacySettings.get(key).isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(vcard.getPostalInfo())) {
-			isPrivate = true;
+		if (ObjectPrivacyFilter.isHidden(hidden, VCardField.POSTAL_INFO)
+				&& !ObjectPrivacyFilter.isValueEmpty(vcard.getPostalInfo())) {
 			List<VCardPostalInfo> postalInfoNull = null;
-			vcard.setPostalInfo(postalInfoNull);
-		} else {
-			isPrivate |= filterPostalInfo(vcard.getPostalInfo(), userInfo);
+			view.edit().setPostalInfo(postalInfoNull);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, VCardField.POSTAL_INFO)) {
+			view.replace(vcard.getPostalInfo(), filterPostalInfo(vcard.getPostalInfo(), userInfo),
+					VCard::setPostalInfo);
 		}
 
-		return isPrivate;
+		return view.get();
 	}
 
-	private static boolean filterPostalInfo(List<VCardPostalInfo> postalInfos, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	private static List<VCardPostalInfo> filterPostalInfo(List<VCardPostalInfo> postalInfos, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(postalInfos)) {
-			return false;
+			return postalInfos;
 		}
 
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getVCardPrivacySettings();
-		String key;
-		boolean isHidden;
-		for (VCardPostalInfo postalInfo : postalInfos) {
+		PrivacyPlan<VCardField> privacyPlan = PrivacyUtil.getVCardPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		return CopyOnWrite.map(postalInfos, postalInfo -> {
+			CopyOnWrite<VCardPostalInfo> view = new CopyOnWrite<>(postalInfo, CopyUtil::copyOf);
 
-			key = "type";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getType())) {
-				isPrivate = true;
-				postalInfo.setType(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.TYPE)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getType())) {
+				view.edit().setType(null);
 			}
 
-			key = "street1";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getStreet1())) {
-				isPrivate = true;
-				postalInfo.setStreet1(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.STREET1)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getStreet1())) {
+				view.edit().setStreet1(null);
 			}
 
-			key = "street2";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getStreet2())) {
-				isPrivate = true;
-				postalInfo.setStreet2(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.STREET2)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getStreet2())) {
+				view.edit().setStreet2(null);
 			}
 
-			key = "street3";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getStreet3())) {
-				isPrivate = true;
-				postalInfo.setStreet3(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.STREET3)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getStreet3())) {
+				view.edit().setStreet3(null);
 			}
 
-			key = "postalCode";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getPostalCode())) {
-				isPrivate = true;
-				postalInfo.setPostalCode(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.POSTAL_CODE)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getPostalCode())) {
+				view.edit().setPostalCode(null);
 			}
 
-			key = "city";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getCity())) {
-				isPrivate = true;
-				postalInfo.setCity(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.CITY)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getCity())) {
+				view.edit().setCity(null);
 			}
 
-			key = "state";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getState())) {
-				isPrivate = true;
-				postalInfo.setState(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.STATE)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getState())) {
+				view.edit().setState(null);
 			}
 
-			key = "country";
-			isHidden = privacySettings.get(key).isHidden(userInfo);
-			if (isHidden && !ObjectPrivacyFilter.isValueEmpty(postalInfo.getCountry())) {
-				isPrivate = true;
-				postalInfo.setCountry(null);
+			if (ObjectPrivacyFilter.isHidden(hidden, VCardField.COUNTRY)
+					&& !ObjectPrivacyFilter.isValueEmpty(postalInfo.getCountry())) {
+				view.edit().setCountry(null);
 			}
-
-		}
-
-		return isPrivate;
+			return view.get();
+		});
 	}
 
 }
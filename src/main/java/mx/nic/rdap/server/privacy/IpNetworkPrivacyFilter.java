@@ -1,14 +1,14 @@
 package mx.nic.rdap.server.privacy;
 
 import java.util.List;
-import java.util.Map;
 
 import org.apache.shiro.SecurityUtils;
-import org.apache.shiro.subject.Subject;
 
 import mx.nic.rdap.core.db.IpNetwork;
+import mx.nic.rdap.server.privacy.PrivacyFields.IpNetworkField;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
 import mx.nic.rdap.server.util.PrivacyUtil;
-import mx.nic.rdap.server.util.Util;
 
 public class IpNetworkPrivacyFilter {
 
@@ -21,153 +21,127 @@ public class IpNetworkPrivacyFilter {
 	 * 
 	 * @param ip
 	 *            {@link IpNetwork} to be filtered
-	 * @return true if the result was filter, otherwise false
+	 * @return <code>ip</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>ip</code> isn't modified
 	 */
-	public static boolean filterIpNetwork(IpNetwork ip) {
+	public static IpNetwork filterIpNetwork(IpNetwork ip) {
+		return filterIpNetwork(ip, SubjectSnapshot.of(SecurityUtils.getSubject()));
+	}
 
-		Subject subject = SecurityUtils.getSubject();
-		UserInfo userInfo = new UserInfo(subject,
-				PrivacyUtil.isSubjectOwner(Util.getUsername(subject), ip));
+	/**
+	 * Hides information that is inaccessible to the user of
+	 * <code>subjectSnapshot</code>
+	 * 
+	 * @param ip
+	 *            {@link IpNetwork} to be filtered
+	 * @param subjectSnapshot
+	 *            Authentication state and roles of the current user
+	 * @return <code>ip</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>ip</code> isn't modified
+	 */
+	public static IpNetwork filterIpNetwork(IpNetwork ip, SubjectSnapshot subjectSnapshot) {
+		UserInfo userInfo = new UserInfo(subjectSnapshot, subjectSnapshot.isOwner(ip));
 
 		return filterIpNetwork(ip, userInfo);
 	}
 
-	public static boolean filterIpNetwork(IpNetwork ip, UserInfo userInfo) {
-		boolean isPrivate = false;
-
+	public static IpNetwork filterIpNetwork(IpNetwork ip, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(ip)) {
-			return false;
-		}
-
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getIpNetworkPrivacySettings();
-
-		for (String key : privacySettings.keySet()) {
-			PrivacySetting setting = privacySettings.get(key);
-			boolean isHidden = setting.isHidden(userInfo);
-			switch (key) {
-			case "handle":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getHandle())) {
-					ip.setHandle(null);
-					isPrivate = true;
-				}
-				break;
-			case "startAddress":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getStartAddress())) {
-					ip.setStartAddress(null);
-					isPrivate = true;
-				}
-				break;
-			case "endAddress":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getEndAddress())) {
-					ip.setEndAddress(null);
-					isPrivate = true;
-				}
-				break;
-			case "ipVersion":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getIpVersion())) {
-					ip.setIpVersion(null);
-					isPrivate = true;
-				}
-				break;
-			case "entities":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getEntities())) {
-					ip.setEntities(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= EntityPrivacyFilter.filterAnidatedEntities(ip.getEntities(), userInfo);
-				}
-				break;
-			case "status":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getStatus())) {
-					ip.setStatus(null);
-					isPrivate = true;
-				}
-				break;
-			case "remarks":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getRemarks())) {
-					ip.setRemarks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterRemarks(ip.getRemarks(), userInfo,
-							PrivacyUtil.getIpNetworkRemarkPrivacySettings(),
-							PrivacyUtil.getIpNetworkRemarksLinksPrivacySettings());
-				}
-				break;
-			case "links":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getLinks())) {
-					ip.setLinks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterLinks(ip.getLinks(), userInfo,
-							PrivacyUtil.getIpNetworkLinkPrivacySettings());
-				}
-				break;
-			case "port43":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getPort43())) {
-					ip.setPort43(null);
-					isPrivate = true;
-				}
-				break;
-			case "events":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getEvents())) {
-					ip.setEvents(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterEvents(ip.getEvents(), userInfo,
-							PrivacyUtil.getIpNetworkEventPrivacySettings(),
-							PrivacyUtil.getIpNetworkEventsLinksPrivacySettings());
-				}
-				break;
-			case "name":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getName())) {
-					ip.setName(null);
-					isPrivate = true;
-				}
-				break;
-			case "type":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getType())) {
-					ip.setType(null);
-					isPrivate = true;
-				}
-				break;
-			case "country":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getCountry())) {
-					ip.setCountry(null);
-					isPrivate = true;
-				}
-				break;
-			case "parentHandle":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getParentHandle())) {
-					ip.setParentHandle(null);
-					isPrivate = true;
-				}
-				break;
-
-			case "lang":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ip.getLang())) {
-					ip.setLang(null);
-					isPrivate = true;
-				}
-				break;
-			}
-		}
-
-		return isPrivate;
-	}
+			return ip;
+		}
 
-	public static boolean filterIpNetworks(List<IpNetwork> ips, UserInfo userInfo) {
-		boolean isPrivate = false;
+		PrivacyPlan<IpNetworkField> privacyPlan = PrivacyUtil.getIpNetworkPrivacyPlan();
 
-		if (ObjectPrivacyFilter.isValueEmpty(ips)) {
-			return false;
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<IpNetwork> view = new CopyOnWrite<>(ip, CopyUtil::copyOf);
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.HANDLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getHandle())) {
+			view.edit().setHandle(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.START_ADDRESS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getStartAddress())) {
+			view.edit().setStartAddress(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.END_ADDRESS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getEndAddress())) {
+			view.edit().setEndAddress(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.IP_VERSION)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getIpVersion())) {
+			view.edit().setIpVersion(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.ENTITIES)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getEntities())) {
+			view.edit().setEntities(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, IpNetworkField.ENTITIES)) {
+			view.replace(ip.getEntities(), EntityPrivacyFilter.filterAnidatedEntities(ip.getEntities(), userInfo),
+					IpNetwork::setEntities);
 		}
-		
-		for(IpNetwork ip : ips) {
-			isPrivate |= filterIpNetwork(ip, userInfo);
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.STATUS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getStatus())) {
+			view.edit().setStatus(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.REMARKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getRemarks())) {
+			view.edit().setRemarks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, IpNetworkField.REMARKS)) {
+			view.replace(ip.getRemarks(), ObjectPrivacyFilter.filterRemarks(ip.getRemarks(), userInfo,
+					PrivacyUtil.getIpNetworkRemarkPrivacyPlan(),
+					PrivacyUtil.getIpNetworkRemarksLinksPrivacyPlan()),
+					IpNetwork::setRemarks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.LINKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, IpNetworkField.LINKS)) {
+			view.replace(ip.getLinks(), ObjectPrivacyFilter.filterLinks(ip.getLinks(), userInfo,
+					PrivacyUtil.getIpNetworkLinkPrivacyPlan()),
+					IpNetwork::setLinks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.PORT43)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getPort43())) {
+			view.edit().setPort43(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.EVENTS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getEvents())) {
+			view.edit().setEvents(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, IpNetworkField.EVENTS)) {
+			view.replace(ip.getEvents(), ObjectPrivacyFilter.filterEvents(ip.getEvents(), userInfo,
+					PrivacyUtil.getIpNetworkEventPrivacyPlan(),
+					PrivacyUtil.getIpNetworkEventsLinksPrivacyPlan()),
+					IpNetwork::setEvents);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getName())) {
+			view.edit().setName(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.TYPE)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getType())) {
+			view.edit().setType(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.COUNTRY)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getCountry())) {
+			view.edit().setCountry(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.PARENT_HANDLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getParentHandle())) {
+			view.edit().setParentHandle(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, IpNetworkField.LANG)
+				&& !ObjectPrivacyFilter.isValueEmpty(ip.getLang())) {
+			view.edit().setLang(null);
+		}
+
+		return view.get();
+	}
+
+	public static List<IpNetwork> filterIpNetworks(List<IpNetwork> ips, UserInfo userInfo) {
+		if (ObjectPrivacyFilter.isValueEmpty(ips)) {
+			return ips;
 		}
-		
 
-		return isPrivate;
+		return CopyOnWrite.map(ips, ip -> filterIpNetwork(ip, userInfo));
 	}
 
 
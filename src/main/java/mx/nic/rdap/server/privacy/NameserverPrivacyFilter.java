@@ -1,15 +1,15 @@
 package mx.nic.rdap.server.privacy;
 
 import java.util.List;
-import java.util.Map;
 
 import org.apache.shiro.SecurityUtils;
-import org.apache.shiro.subject.Subject;
 
 import mx.nic.rdap.core.db.Nameserver;
 import mx.nic.rdap.core.db.struct.NameserverIpAddressesStruct;
+import mx.nic.rdap.server.privacy.PrivacyFields.NameserverField;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
 import mx.nic.rdap.server.util.PrivacyUtil;
-import mx.nic.rdap.server.util.Util;
 
 public class NameserverPrivacyFilter {
 
@@ -22,148 +22,131 @@ public class NameserverPrivacyFilter {
 	 * 
 	 * @param ns
 	 *            {@link Nameserver} to be filtered
-	 * @return true if the result was filter, otherwise false
+	 * @return <code>ns</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>ns</code> isn't modified
 	 */
-	public static boolean filterNameserver(Nameserver ns) {
+	public static Nameserver filterNameserver(Nameserver ns) {
+		return filterNameserver(ns, SubjectSnapshot.of(SecurityUtils.getSubject()));
+	}
 
-		Subject subject = SecurityUtils.getSubject();
-		UserInfo userInfo = new UserInfo(subject,
-				PrivacyUtil.isSubjectOwner(Util.getUsername(subject), ns));
+	/**
+	 * Hides information that is inaccessible to the user of
+	 * <code>subjectSnapshot</code>
+	 * 
+	 * @param ns
+	 *            {@link Nameserver} to be filtered
+	 * @param subjectSnapshot
+	 *            Authentication state and roles of the current user
+	 * @return <code>ns</code> if nothing was hidden, otherwise a redacted
+	 *         copy of it; <code>ns</code> isn't modified
+	 */
+	public static Nameserver filterNameserver(Nameserver ns, SubjectSnapshot subjectSnapshot) {
+		UserInfo userInfo = new UserInfo(subjectSnapshot, subjectSnapshot.isOwner(ns));
 
 		return filterNameserver(ns, userInfo);
 	}
 	
-	public static boolean filterAnidatedNameserver(List<Nameserver> nameservers, UserInfo userInfo) {
-		boolean isPrivate = false;
-		
+	public static List<Nameserver> filterAnidatedNameserver(List<Nameserver> nameservers, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(nameservers)) {
-			return false;
+			return nameservers;
 		}
 
-		for(Nameserver ns : nameservers) {
-			isPrivate |= filterNameserver(ns, userInfo);
-		}
-		
-		return isPrivate;
+		return CopyOnWrite.map(nameservers, ns -> filterNameserver(ns, userInfo));
 	}
 
-	private static boolean filterNameserver(Nameserver ns, UserInfo userInfo) {
-		boolean isPrivate = false;
-
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getNameserverPrivacySettings();
-
-		for (String key : privacySettings.keySet()) {
-			PrivacySetting setting = privacySettings.get(key);
-			boolean isHidden = setting.isHidden(userInfo);
-			switch (key) {
-			case "handle":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getHandle())) {
-					ns.setHandle(null);
-					isPrivate = true;
-				}
-				break;
-			case "ldhName":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getLdhName())) {
-					ns.setLdhName(null);
-					isPrivate = true;
-				}
-				break;
-			case "unicodeName":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getUnicodeName())) {
-					ns.setUnicodeName(null);
-					isPrivate = true;
-				}
-				break;
-			case "ipAddresses":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getIpAddresses())) {
-					ns.setIpAddresses(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= filterIpAddress(ns.getIpAddresses(), userInfo);
-				}
-				break;
-			case "entities":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getEntities())) {
-					ns.setEntities(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= EntityPrivacyFilter.filterAnidatedEntities(ns.getEntities(), userInfo);
-				}
-				break;
-			case "status":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getStatus())) {
-					ns.setStatus(null);
-					isPrivate = true;
-				}
-				break;
-			case "remarks":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getRemarks())) {
-					ns.setRemarks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterRemarks(ns.getRemarks(), userInfo,
-							PrivacyUtil.getNameserverRemarkPrivacySettings(),
-							PrivacyUtil.getNameserverRemarksLinksPrivacySettings());
-				}
-				break;
-			case "links":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getLinks())) {
-					ns.setLinks(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterLinks(ns.getLinks(), userInfo,
-							PrivacyUtil.getNameserverLinkPrivacySettings());
-				}
-				break;
-			case "port43":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getPort43())) {
-					ns.setPort43(null);
-					isPrivate = true;
-				}
-				break;
-			case "events":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getEvents())) {
-					ns.setEvents(null);
-					isPrivate = true;
-				} else {
-					isPrivate |= ObjectPrivacyFilter.filterEvents(ns.getEvents(), userInfo,
-							PrivacyUtil.getNameserverEventPrivacySettings(),
-							PrivacyUtil.getNameserverEventsLinksPrivacySettings());
-				}
-				break;
-
-			case "lang":
-				if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ns.getLang())) {
-					ns.setLang(null);
-					isPrivate = true;
-				}
-				break;
-			}
+	private static Nameserver filterNameserver(Nameserver ns, UserInfo userInfo) {
+		PrivacyPlan<NameserverField> privacyPlan = PrivacyUtil.getNameserverPrivacyPlan();
+
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		CopyOnWrite<Nameserver> view = new CopyOnWrite<>(ns, CopyUtil::copyOf);
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.HANDLE)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getHandle())) {
+			view.edit().setHandle(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.LDH_NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getLdhName())) {
+			view.edit().setLdhName(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.UNICODE_NAME)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getUnicodeName())) {
+			view.edit().setUnicodeName(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.IP_ADDRESSES)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getIpAddresses())) {
+			view.edit().setIpAddresses(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, NameserverField.IP_ADDRESSES)) {
+			view.replace(ns.getIpAddresses(), filterIpAddress(ns.getIpAddresses(), userInfo),
+					Nameserver::setIpAddresses);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.ENTITIES)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getEntities())) {
+			view.edit().setEntities(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, NameserverField.ENTITIES)) {
+			view.replace(ns.getEntities(), EntityPrivacyFilter.filterAnidatedEntities(ns.getEntities(), userInfo),
+					Nameserver::setEntities);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.STATUS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getStatus())) {
+			view.edit().setStatus(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.REMARKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getRemarks())) {
+			view.edit().setRemarks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, NameserverField.REMARKS)) {
+			view.replace(ns.getRemarks(), ObjectPrivacyFilter.filterRemarks(ns.getRemarks(), userInfo,
+					PrivacyUtil.getNameserverRemarkPrivacyPlan(),
+					PrivacyUtil.getNameserverRemarksLinksPrivacyPlan()),
+					Nameserver::setRemarks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.LINKS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, NameserverField.LINKS)) {
+			view.replace(ns.getLinks(), ObjectPrivacyFilter.filterLinks(ns.getLinks(), userInfo,
+					PrivacyUtil.getNameserverLinkPrivacyPlan()),
+					Nameserver::setLinks);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.PORT43)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getPort43())) {
+			view.edit().setPort43(null);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.EVENTS)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getEvents())) {
+			view.edit().setEvents(null);
+		} else if (ObjectPrivacyFilter.isConfigured(configured, NameserverField.EVENTS)) {
+			view.replace(ns.getEvents(), ObjectPrivacyFilter.filterEvents(ns.getEvents(), userInfo,
+					PrivacyUtil.getNameserverEventPrivacyPlan(),
+					PrivacyUtil.getNameserverEventsLinksPrivacyPlan()),
+					Nameserver::setEvents);
+		}
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.LANG)
+				&& !ObjectPrivacyFilter.isValueEmpty(ns.getLang())) {
+			view.edit().setLang(null);
 		}
-		return isPrivate;
+		return view.get();
 	}
 
-	private static boolean filterIpAddress(NameserverIpAddressesStruct ips, UserInfo userInfo) {
-		boolean isPrivate = false;
+	private static NameserverIpAddressesStruct filterIpAddress(NameserverIpAddressesStruct ips, UserInfo userInfo) {
 		if (ObjectPrivacyFilter.isValueEmpty(ips)) {
-			return false;
+			return ips;
 		}
 		
-		Map<String, PrivacySetting> privacySettings = PrivacyUtil.getNameserverPrivacySettings();
+		PrivacyPlan<NameserverField> privacyPlan = PrivacyUtil.getNameserverPrivacyPlan();
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		CopyOnWrite<NameserverIpAddressesStruct> view = new CopyOnWrite<>(ips, CopyUtil::copyOf);
 
-		boolean isHidden = privacySettings.get("v4").isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ips.getIpv4Adresses())) {
-			isPrivate = true;
-			ips.setIpv4Adresses(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.V4)
+				&& !ObjectPrivacyFilter.isValueEmpty(ips.getIpv4Adresses())) {
+			view.edit().setIpv4Adresses(null);
 		}
 
-		isHidden = privacySettings.get("v6").isHidden(userInfo);
-		if (isHidden && !ObjectPrivacyFilter.isValueEmpty(ips.getIpv6Adresses())) {
-			isPrivate = true;
-			ips.setIpv6Adresses(null);
+		if (ObjectPrivacyFilter.isHidden(hidden, NameserverField.V6)
+				&& !ObjectPrivacyFilter.isValueEmpty(ips.getIpv6Adresses())) {
+			view.edit().setIpv6Adresses(null);
 		}
 
-		return isPrivate;
+		return view.get();
 	}
 
 }
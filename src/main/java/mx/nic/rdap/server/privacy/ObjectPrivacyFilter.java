@@ -1,217 +1,171 @@
 package mx.nic.rdap.server.privacy;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import mx.nic.rdap.core.db.Event;
 import mx.nic.rdap.core.db.Link;
 import mx.nic.rdap.core.db.PublicId;
 import mx.nic.rdap.core.db.Remark;
-
+import mx.nic.rdap.server.privacy.PrivacyFields.EventField;
+import mx.nic.rdap.server.privacy.PrivacyFields.LinkField;
+import mx.nic.rdap.server.privacy.PrivacyFields.PublicIdField;
+import mx.nic.rdap.server.privacy.PrivacyFields.RemarkField;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
+
+/**
+ * Filters of the elements shared by every object. Like the other privacy
+ * filters, they never modify their arguments: they return them as they are if
+ * nothing is hidden, or a redacted {@link CopyOnWrite} copy otherwise.
+ */
 public class ObjectPrivacyFilter {
 
 	private ObjectPrivacyFilter() {
 		// Empty
 	}
 
-	static boolean filterEvents(List<Event> events, UserInfo userInfo, Map<String, PrivacySetting> privacySettings,
-			Map<String, PrivacySetting> linkPrivacySettings) {
-		boolean isPrivate = false;
+	static List<Event> filterEvents(List<Event> events, UserInfo userInfo, PrivacyPlan<EventField> privacyPlan,
+			PrivacyPlan<LinkField> linkPrivacyPlan) {
 		if (isValueEmpty(events)) {
-			return false;
-		}
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (Event e : events) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				PrivacySetting setting = entry.getValue();
-				boolean isHidden = setting.isHidden(userInfo);
-				switch (key) {
-				case "eventAction":
-					if (isHidden && !isValueEmpty(e.getEventAction())) {
-						e.setEventAction(null);
-						isPrivate = true;
-					}
-					break;
-				case "eventActor":
-					if (isHidden && !isValueEmpty(e.getEventActor())) {
-						e.setEventActor(null);
-						isPrivate = true;
-					}
-					break;
-				case "eventDate":
-					if (isHidden && !isValueEmpty(e.getEventDate())) {
-						e.setEventDate(null);
-						isPrivate = true;
-					}
-					break;
-				case "links":
-					if (isHidden && !isValueEmpty(e.getLinks())) {
-						e.setLinks(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= filterLinks(e.getLinks(), userInfo, linkPrivacySettings);
-					}
-					break;
-				}
-			}
+			return events;
 		}
-
-		return isPrivate;
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		return CopyOnWrite.map(events, e -> filterEvent(e, hidden, configured, userInfo, linkPrivacyPlan));
 	}
 
-	static boolean filterLinks(List<Link> links, UserInfo userInfo, Map<String, PrivacySetting> privacySettings) {
-		boolean isPrivate = false;
+	private static Event filterEvent(Event e, long hidden, long configured, UserInfo userInfo,
+			PrivacyPlan<LinkField> linkPrivacyPlan) {
+		CopyOnWrite<Event> view = new CopyOnWrite<>(e, CopyUtil::copyOf);
+		if (isHidden(hidden, EventField.EVENT_ACTION) && !isValueEmpty(e.getEventAction())) {
+			view.edit().setEventAction(null);
+		}
+		if (isHidden(hidden, EventField.EVENT_ACTOR) && !isValueEmpty(e.getEventActor())) {
+			view.edit().setEventActor(null);
+		}
+		if (isHidden(hidden, EventField.EVENT_DATE) && !isValueEmpty(e.getEventDate())) {
+			view.edit().setEventDate(null);
+		}
+		if (isHidden(hidden, EventField.LINKS) && !isValueEmpty(e.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (isConfigured(configured, EventField.LINKS)) {
+			view.replace(e.getLinks(), filterLinks(e.getLinks(), userInfo, linkPrivacyPlan), Event::setLinks);
+		}
+		return view.get();
+	}
 
+	static List<Link> filterLinks(List<Link> links, UserInfo userInfo, PrivacyPlan<LinkField> privacyPlan) {
 		if (isValueEmpty(links)) {
-			return false;
-		}
-
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (Link l : links) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				PrivacySetting setting = entry.getValue();
-				boolean isHidden = setting.isHidden(userInfo);
-				switch (key) {
-				case "value":
-					if (isHidden && !isValueEmpty(l.getValue())) {
-						l.setValue(null);
-						isPrivate = true;
-					}
-					break;
-				case "rel":
-					if (isHidden && !isValueEmpty(l.getRel())) {
-						l.setRel(null);
-						isPrivate = true;
-					}
-					break;
-				case "href":
-					if (isHidden && !isValueEmpty(l.getHref())) {
-						l.setHref(null);
-						isPrivate = true;
-					}
-					break;
-				case "hreflang":
-					if (isHidden && !isValueEmpty(l.getHreflang())) {
-						l.setHreflang(null);
-						isPrivate = true;
-					}
-					break;
-				case "title":
-					if (isHidden && !isValueEmpty(l.getTitle())) {
-						l.setTitle(null);
-						isPrivate = true;
-					}
-					break;
-				case "media":
-					if (isHidden && !isValueEmpty(l.getMedia())) {
-						l.setMedia(null);
-						isPrivate = true;
-					}
-					break;
-				case "type":
-					if (isHidden && !isValueEmpty(l.getType())) {
-						l.setType(null);
-						isPrivate = true;
-					}
-					break;
-
-				}
-			}
+			return links;
 		}
-		return isPrivate;
+
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		if (hidden == 0) {
+			// Links don't have nested elements
+			return links;
+		}
+
+		return CopyOnWrite.map(links, l -> filterLink(l, hidden));
 	}
 
-	static boolean filterRemarks(List<Remark> remarks, UserInfo userInfo, Map<String, PrivacySetting> privacySettings,
-			Map<String, PrivacySetting> linkPrivacySettings) {
-		boolean isPrivate = false;
+	private static Link filterLink(Link l, long hidden) {
+		CopyOnWrite<Link> view = new CopyOnWrite<>(l, CopyUtil::copyOf);
+		if (isHidden(hidden, LinkField.VALUE) && !isValueEmpty(l.getValue())) {
+			view.edit().setValue(null);
+		}
+		if (isHidden(hidden, LinkField.REL) && !isValueEmpty(l.getRel())) {
+			view.edit().setRel(null);
+		}
+		if (isHidden(hidden, LinkField.HREF) && !isValueEmpty(l.getHref())) {
+			view.edit().setHref(null);
+		}
+		if (isHidden(hidden, LinkField.HREFLANG) && !isValueEmpty(l.getHreflang())) {
+			view.edit().setHreflang(null);
+		}
+		if (isHidden(hidden, LinkField.TITLE) && !isValueEmpty(l.getTitle())) {
+			view.edit().setTitle(null);
+		}
+		if (isHidden(hidden, LinkField.MEDIA) && !isValueEmpty(l.getMedia())) {
+			view.edit().setMedia(null);
+		}
+		if (isHidden(hidden, LinkField.TYPE) && !isValueEmpty(l.getType())) {
+			view.edit().setType(null);
+		}
+		return view.get();
+	}
 
+	static List<Remark> filterRemarks(List<Remark> remarks, UserInfo userInfo, PrivacyPlan<RemarkField> privacyPlan,
+			PrivacyPlan<LinkField> linkPrivacyPlan) {
 		if (isValueEmpty(remarks)) {
-			return false;
-		}
-
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (Remark r : remarks) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				PrivacySetting setting = entry.getValue();
-				boolean isHidden = setting.isHidden(userInfo);
-				switch (key) {
-				case "title":
-					if (isHidden && !isValueEmpty(r.getTitle())) {
-						r.setTitle(null);
-						isPrivate = true;
-					}
-					break;
-				case "type":
-					if (isHidden && !isValueEmpty(r.getType())) {
-						r.setType(null);
-						isPrivate = true;
-					}
-					break;
-				case "description":
-					if (isHidden && !isValueEmpty(r.getDescriptions())) {
-						r.setDescriptions(null);
-						isPrivate = true;
-					}
-					break;
-				case "links":
-					if (isHidden && !isValueEmpty(r.getLinks())) {
-						r.setLinks(null);
-						isPrivate = true;
-					} else {
-						isPrivate |= filterLinks(r.getLinks(), userInfo, linkPrivacySettings);
-					}
-					break;
-				case "lang":
-					if (isHidden && !isValueEmpty(r.getLanguage())) {
-						r.setLanguage(null);
-						isPrivate = true;
-					}
-					break;
-
-				}
-			}
+			return remarks;
 		}
 
-		return isPrivate;
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		long configured = privacyPlan.getConfiguredFields();
+		return CopyOnWrite.map(remarks, r -> filterRemark(r, hidden, configured, userInfo, linkPrivacyPlan));
 	}
 
-	static boolean filterPublicId(List<PublicId> publicIds, UserInfo userInfo,
-			Map<String, PrivacySetting> privacySettings) {
-		boolean isPrivate = false;
+	private static Remark filterRemark(Remark r, long hidden, long configured, UserInfo userInfo,
+			PrivacyPlan<LinkField> linkPrivacyPlan) {
+		CopyOnWrite<Remark> view = new CopyOnWrite<>(r, CopyUtil::copyOf);
+		if (isHidden(hidden, RemarkField.TITLE) && !isValueEmpty(r.getTitle())) {
+			view.edit().setTitle(null);
+		}
+		if (isHidden(hidden, RemarkField.TYPE) && !isValueEmpty(r.getType())) {
+			view.edit().setType(null);
+		}
+		if (isHidden(hidden, RemarkField.DESCRIPTION) && !isValueEmpty(r.getDescriptions())) {
+			view.edit().setDescriptions(null);
+		}
+		if (isHidden(hidden, RemarkField.LINKS) && !isValueEmpty(r.getLinks())) {
+			view.edit().setLinks(null);
+		} else if (isConfigured(configured, RemarkField.LINKS)) {
+			view.replace(r.getLinks(), filterLinks(r.getLinks(), userInfo, linkPrivacyPlan), Remark::setLinks);
+		}
+		if (isHidden(hidden, RemarkField.LANG) && !isValueEmpty(r.getLanguage())) {
+			view.edit().setLanguage(null);
+		}
+		return view.get();
+	}
 
+	static List<PublicId> filterPublicId(List<PublicId> publicIds, UserInfo userInfo,
+			PrivacyPlan<PublicIdField> privacyPlan) {
 		if (isValueEmpty(publicIds)) {
-			return false;
-		}
-		Set<Entry<String, PrivacySetting>> entrySet = privacySettings.entrySet();
-		for (PublicId pid : publicIds) {
-			for (Entry<String, PrivacySetting> entry : entrySet) {
-				String key = entry.getKey();
-				PrivacySetting setting = entry.getValue();
-				boolean isHidden = setting.isHidden(userInfo);
-				switch (key) {
-				case "identifier":
-					if (isHidden && !isValueEmpty(pid.getPublicId())) {
-						pid.setPublicId(null);
-						isPrivate = true;
-					}
-					break;
-				case "type":
-					if (isHidden && !isValueEmpty(pid.getType())) {
-						pid.setType(null);
-						isPrivate = true;
-					}
-					break;
-
-				}
-			}
+			return publicIds;
+		}
+
+		long hidden = privacyPlan.getHiddenFields(userInfo);
+		if (hidden == 0) {
+			return publicIds;
 		}
 
-		return isPrivate;
+		return CopyOnWrite.map(publicIds, pid -> {
+			CopyOnWrite<PublicId> view = new CopyOnWrite<>(pid, CopyUtil::copyOf);
+			if (isHidden(hidden, PublicIdField.IDENTIFIER) && !isValueEmpty(pid.getPublicId())) {
+				view.edit().setPublicId(null);
+			}
+			if (isHidden(hidden, PublicIdField.TYPE) && !isValueEmpty(pid.getType())) {
+				view.edit().setType(null);
+			}
+			return view.get();
+		});
+	}
+
+	/**
+	 * @return <code>true</code> if <code>field</code> is one of the <code>hidden</code> fields.
+	 * @see PrivacyPlan#getHiddenFields(UserInfo)
+	 */
+	static boolean isHidden(long hidden, Enum<?> field) {
+		return PrivacyPlan.isHidden(hidden, field);
+	}
+
+	/**
+	 * @return <code>true</code> if <code>field</code> has a privacy setting; the nested values of the fields
+	 *         without one aren't filtered, just like the fields themselves.
+	 * @see PrivacyPlan#getConfiguredFields()
+	 */
+	static boolean isConfigured(long configured, Enum<?> field) {
+		return PrivacyPlan.isHidden(configured, field);
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -0,0 +1,14 @@
+package mx.nic.rdap.server.privacy;
+
+/**
+ * A field of an object that can be hidden by the privacy settings, identified
+ * by its key at the privacy properties file.
+ */
+public interface PrivacyField {
+
+	/**
+	 * @return the key of the field at the privacy properties file
+	 */
+	String getKey();
+
+}
@@ -0,0 +1,376 @@
+package mx.nic.rdap.server.privacy;
+
+/**
+ * The fields that can be hidden at each privacy properties file.
+ */
+public class PrivacyFields {
+
+	private PrivacyFields() {
+		// no code.
+	}
+
+	/**
+	 * Fields of <code>domain.properties</code>
+	 */
+	public enum DomainField implements PrivacyField {
+		HANDLE("handle"),
+		LDH_NAME("ldhName"),
+		UNICODE_NAME("unicodeName"),
+		VARIANTS("variants"),
+		NAMESERVERS("nameservers"),
+		SECURE_DNS("secureDNS"),
+		ENTITIES("entities"),
+		STATUS("status"),
+		PUBLIC_IDS("publicIds"),
+		REMARKS("remarks"),
+		LINKS("links"),
+		PORT43("port43"),
+		EVENTS("events"),
+		NETWORK("network"),
+		LANG("lang");
+
+		private String key;
+
+		private DomainField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>entity.properties</code>
+	 */
+	public enum EntityField implements PrivacyField {
+		HANDLE("handle"),
+		VCARD_ARRAY("vcardArray"),
+		ROLES("roles"),
+		PUBLIC_IDS("publicIds"),
+		ENTITIES("entities"),
+		REMARKS("remarks"),
+		LINKS("links"),
+		EVENTS("events"),
+		STATUS("status"),
+		PORT43("port43"),
+		NETWORKS("networks"),
+		AUTNUMS("autnums"),
+		LANG("lang");
+
+		private String key;
+
+		private EntityField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>vcard.properties</code>
+	 */
+	public enum VCardField implements PrivacyField {
+		NAME("name"),
+		COMPANY_NAME("companyName"),
+		COMPANY_URL("companyUrl"),
+		MAIL("mail"),
+		VOICE("voice"),
+		CELLPHONE("cellphone"),
+		FAX("fax"),
+		JOB_TITLE("jobTitle"),
+		POSTAL_INFO("postalInfo"),
+		TYPE("type"),
+		STREET1("street1"),
+		STREET2("street2"),
+		STREET3("street3"),
+		POSTAL_CODE("postalCode"),
+		CITY("city"),
+		STATE("state"),
+		COUNTRY("country");
+
+		private String key;
+
+		private VCardField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>nameserver.properties</code>
+	 */
+	public enum NameserverField implements PrivacyField {
+		HANDLE("handle"),
+		LDH_NAME("ldhName"),
+		UNICODE_NAME("unicodeName"),
+		IP_ADDRESSES("ipAddresses"),
+		V4("v4"),
+		V6("v6"),
+		ENTITIES("entities"),
+		STATUS("status"),
+		REMARKS("remarks"),
+		LINKS("links"),
+		PORT43("port43"),
+		EVENTS("events"),
+		LANG("lang");
+
+		private String key;
+
+		private NameserverField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>autnum.properties</code>
+	 */
+	public enum AutnumField implements PrivacyField {
+		HANDLE("handle"),
+		ENTITIES("entities"),
+		STATUS("status"),
+		REMARKS("remarks"),
+		LINKS("links"),
+		PORT43("port43"),
+		EVENTS("events"),
+		START_AUTNUM("startAutnum"),
+		END_AUTNUM("endAutnum"),
+		NAME("name"),
+		TYPE("type"),
+		COUNTRY("country"),
+		LANG("lang");
+
+		private String key;
+
+		private AutnumField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>ip_network.properties</code>
+	 */
+	public enum IpNetworkField implements PrivacyField {
+		HANDLE("handle"),
+		START_ADDRESS("startAddress"),
+		END_ADDRESS("endAddress"),
+		IP_VERSION("ipVersion"),
+		NAME("name"),
+		TYPE("type"),
+		COUNTRY("country"),
+		PARENT_HANDLE("parentHandle"),
+		STATUS("status"),
+		ENTITIES("entities"),
+		REMARKS("remarks"),
+		LINKS("links"),
+		PORT43("port43"),
+		EVENTS("events"),
+		LANG("lang");
+
+		private String key;
+
+		private IpNetworkField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>*_events.properties</code>
+	 */
+	public enum EventField implements PrivacyField {
+		EVENT_ACTION("eventAction"),
+		EVENT_ACTOR("eventActor"),
+		EVENT_DATE("eventDate"),
+		LINKS("links");
+
+		private String key;
+
+		private EventField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>*_links.properties</code>
+	 */
+	public enum LinkField implements PrivacyField {
+		VALUE("value"),
+		REL("rel"),
+		HREF("href"),
+		HREFLANG("hreflang"),
+		TITLE("title"),
+		MEDIA("media"),
+		TYPE("type");
+
+		private String key;
+
+		private LinkField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>*_remarks.properties</code>
+	 */
+	public enum RemarkField implements PrivacyField {
+		TITLE("title"),
+		TYPE("type"),
+		DESCRIPTION("description"),
+		LINKS("links"),
+		LANG("lang");
+
+		private String key;
+
+		private RemarkField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>*_public_id.properties</code>
+	 */
+	public enum PublicIdField implements PrivacyField {
+		TYPE("type"),
+		IDENTIFIER("identifier");
+
+		private String key;
+
+		private PublicIdField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>domain_variants.properties</code>
+	 */
+	public enum VariantField implements PrivacyField {
+		RELATION("relation"),
+		IDN_TABLE("idnTable"),
+		VARIANT_NAMES("variantNames"),
+		LDH_NAME("ldhName"),
+		UNICODE_NAME("unicodeName");
+
+		private String key;
+
+		private VariantField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>secure_dns.properties</code>
+	 */
+	public enum SecureDnsField implements PrivacyField {
+		ZONE_SIGNED("zoneSigned"),
+		DELEGATION_SIGNED("delegationSigned"),
+		MAX_SIG_LIFE("maxSigLife"),
+		DS_DATA("dsData"),
+		KEY_DATA("keyData");
+
+		private String key;
+
+		private SecureDnsField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>ds_data.properties</code>
+	 */
+	public enum DsDataField implements PrivacyField {
+		KEY_TAG("keyTag"),
+		ALGORITHM("algorithm"),
+		DIGEST("digest"),
+		DIGEST_TYPE("digestType"),
+		EVENTS("events"),
+		LINKS("links");
+
+		private String key;
+
+		private DsDataField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+	/**
+	 * Fields of <code>key_data.properties</code>
+	 */
+	public enum KeyDataField implements PrivacyField {
+		FLAGS("flags"),
+		PROTOCOL("protocol"),
+		PUBLIC_KEY("publicKey"),
+		ALGORITHM("algorithm"),
+		EVENTS("events"),
+		LINKS("links");
+
+		private String key;
+
+		private KeyDataField(String key) {
+			this.key = key;
+		}
+
+		@Override
+		public String getKey() {
+			return key;
+		}
+	}
+
+}
@@ -0,0 +1,104 @@
+package mx.nic.rdap.server.privacy;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The privacy settings of a properties file compiled for fast evaluation: the
+ * settings are indexed by the ordinal of their field, and the fields hidden to
+ * a user are represented as a bitmask (bit <code>n</code> is the field with
+ * ordinal <code>n</code>).
+ *
+ * @param <E>
+ *            The fields of the properties file
+ */
+public class PrivacyPlan<E extends Enum<E> & PrivacyField> {
+
+	private static final AtomicInteger planCount = new AtomicInteger();
+
+	/** Index of the plan, used to memoize the hidden fields of each user */
+	private final int id;
+
+	/** Setting of each field, indexed by ordinal; <code>null</code> if the field isn't configured */
+	private final PrivacySetting[] settings;
+
+	/** Fields with a setting, as a bitmask */
+	private final long configuredFields;
+
+	/** Fields hidden to the users that aren't authenticated */
+	private final long anonymousHiddenFields;
+
+	/**
+	 * @param fieldsType
+	 *            Enum of the fields of the properties file
+	 * @param privacySettings
+	 *            Settings loaded from the properties file, the unknown keys are
+	 *            ignored
+	 */
+	public PrivacyPlan(Class<E> fieldsType, Map<String, PrivacySetting> privacySettings) {
+		E[] fields = fieldsType.getEnumConstants();
+		if (fields.length > Long.SIZE) {
+			throw new IllegalArgumentException(fieldsType.getName() + " has too many fields.");
+		}
+
+		this.id = planCount.getAndIncrement();
+		this.settings = new PrivacySetting[fields.length];
+		long configured = 0;
+		for (E field : fields) {
+			settings[field.ordinal()] = privacySettings.get(field.getKey());
+			if (settings[field.ordinal()] != null) {
+				configured |= 1L << field.ordinal();
+			}
+		}
+		this.configuredFields = configured;
+		this.anonymousHiddenFields = computeHiddenFields(new UserInfo(SubjectSnapshot.of(null), false));
+	}
+
+	/**
+	 * @return the fields that must be hidden to <code>userInfo</code>, as a
+	 *         bitmask.
+	 */
+	public long getHiddenFields(UserInfo userInfo) {
+		if (!userInfo.isObjectOwner() && !userInfo.isAuthenticated()) {
+			return anonymousHiddenFields;
+		}
+
+		return userInfo.getHiddenFields(this);
+	}
+
+	/**
+	 * @return the fields that have a setting at the properties file, as a
+	 *         bitmask. The rest are never hidden, and their nested values
+	 *         (eg. the links of a remark) aren't filtered either.
+	 */
+	public long getConfiguredFields() {
+		return configuredFields;
+	}
+
+	long computeHiddenFields(UserInfo userInfo) {
+		long hiddenFields = 0;
+		for (int i = 0; i < settings.length; i++) {
+			if (settings[i] != null && settings[i].isHidden(userInfo)) {
+				hiddenFields |= 1L << i;
+			}
+		}
+		return hiddenFields;
+	}
+
+	int getId() {
+		return id;
+	}
+
+	static int getPlanCount() {
+		return planCount.get();
+	}
+
+	/**
+	 * @return <code>true</code> if <code>field</code> is part of the
+	 *         <code>hiddenFields</code> bitmask.
+	 */
+	public static boolean isHidden(long hiddenFields, Enum<?> field) {
+		return (hiddenFields & (1L << field.ordinal())) != 0;
+	}
+
+}
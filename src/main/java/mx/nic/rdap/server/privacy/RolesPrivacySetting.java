@@ -2,8 +2,6 @@ package mx.nic.rdap.server.privacy;
 
 import java.util.Set;
 
-import org.apache.shiro.subject.Subject;
-
 /**
  * Privacy setting for configuration values related to roles, it can be mixed with "owner" role
  */
@@ -27,8 +25,7 @@ public class RolesPrivacySetting extends OwnerPrivacySetting {
 	@Override
 	public boolean isHidden(UserInfo userInfo) {
 		// Must be logged in
-		Subject subject = userInfo.getSubject();
-		if (subject == null || !subject.isAuthenticated()) {
+		if (!userInfo.isAuthenticated()) {
 			return true;
 		}
 
@@ -44,12 +41,16 @@ public class RolesPrivacySetting extends OwnerPrivacySetting {
 
 		// If it had at least one role then isn't hidden
 		for (String role : allowedRoles) {
-			if (subject.hasRole(role)) {
-				result = false;
+			if (userInfo.hasRole(role)) {
+				return false;
 			}
 		}
 
 		return result;
 	}
 
+	public boolean isOwnerSet() {
+		return isOwnerSet;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package mx.nic.rdap.server.privacy;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.shiro.subject.Subject;
+
+import mx.nic.rdap.core.db.RdapObject;
+import mx.nic.rdap.server.configuration.RdapConfiguration;
+import mx.nic.rdap.server.util.PrivacyUtil;
+
+/**
+ * Authentication state and roles of a {@link Subject}, taken once per request
+ * so that the privacy settings don't query the security realm for each field
+ * of each filtered object.
+ * <p>
+ * Only the roles configured at {@link RdapConfiguration#getUserRoles()} are
+ * checked, since those are the only ones that can be used at the privacy
+ * settings.
+ */
+public class SubjectSnapshot {
+
+	private static final SubjectSnapshot ANONYMOUS = new SubjectSnapshot(null, false, null, Collections.emptySet());
+
+	private final Subject subject;
+
+	private final boolean authenticated;
+
+	private final String username;
+
+	private final Set<String> roles;
+
+	/** Computed on demand, once per request */
+	private volatile VisibilityClass visibilityClass;
+
+	private SubjectSnapshot(Subject subject, boolean authenticated, String username, Set<String> roles) {
+		this.subject = subject;
+		this.authenticated = authenticated;
+		this.username = username;
+		this.roles = roles;
+	}
+
+	/**
+	 * @param subject
+	 *            Subject of the request, can be <code>null</code>
+	 * @return the current authentication state and roles of
+	 *         <code>subject</code>
+	 */
+	public static SubjectSnapshot of(Subject subject) {
+		if (subject == null || !subject.isAuthenticated()) {
+			return subject == null ? ANONYMOUS : new SubjectSnapshot(subject, false, null, Collections.emptySet());
+		}
+
+		Set<String> roles = new HashSet<>();
+		for (String role : RdapConfiguration.getUserRoles()) {
+			if (subject.hasRole(role)) {
+				roles.add(role);
+			}
+		}
+		String username = subject.getPrincipal() != null ? subject.getPrincipal().toString() : null;
+		return new SubjectSnapshot(subject, true, username, Collections.unmodifiableSet(roles));
+	}
+
+	public Subject getSubject() {
+		return subject;
+	}
+
+	public boolean isAuthenticated() {
+		return authenticated;
+	}
+
+	/**
+	 * @return the authenticated username, <code>null</code> if there's no user
+	 *         authenticated
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * @return the configured roles of the subject, always in lower case
+	 */
+	public Set<String> getRoles() {
+		return roles;
+	}
+
+	public boolean hasRole(String role) {
+		return roles.contains(role);
+	}
+
+	/**
+	 * @return what the user is allowed to see, shared with the users of the
+	 *         same privileges
+	 */
+	public VisibilityClass getVisibilityClass() {
+		if (!authenticated) {
+			// Not cached: the anonymous snapshot outlives the privacy settings
+			return VisibilityClass.getAnonymous();
+		}
+		VisibilityClass result = visibilityClass;
+		if (result == null) {
+			result = VisibilityClass.of(this);
+			visibilityClass = result;
+		}
+		return result;
+	}
+
+	/**
+	 * @return a key of what the user is allowed to see of any object, to be
+	 *         used by the caches of responses: the visibility class, plus the
+	 *         username if the class sees more of the objects it owns (since
+	 *         the object isn't known yet)
+	 */
+	public String getVisibilityKey() {
+		VisibilityClass visibility = getVisibilityClass();
+		return visibility.isOwnershipRelevant() ? visibility + ";" + username : visibility.toString();
+	}
+
+	/**
+	 * @return a fingerprint of what the user sees of <code>object</code>, see
+	 *         {@link VisibilityClass#getFingerprint(boolean)}
+	 */
+	public long getFingerprint(RdapObject object) {
+		return getVisibilityClass().getFingerprint(isOwner(object));
+	}
+
+	/**
+	 * @return <code>true</code> if the user owns <code>object</code> and that
+	 *         changes what the user sees of it; the entities of the object
+	 *         aren't even looked at if the visibility class of the user
+	 *         doesn't depend on the ownership (eg. the anonymous users, or
+	 *         if there aren't "owner" privacy settings)
+	 */
+	public boolean isOwner(RdapObject object) {
+		return getVisibilityClass().isOwnershipRelevant() && PrivacyUtil.isSubjectOwner(username, object);
+	}
+
+	/**
+	 * @return the fields of <code>plan</code> hidden to <code>userInfo</code>;
+	 *         they're read from the {@link VisibilityClass} of the user, which
+	 *         evaluates them once for all the users of the same privileges, so
+	 *         the objects of a response can be filtered at several threads
+	 *         without locking.
+	 */
+	long getHiddenFields(PrivacyPlan<?> plan, UserInfo userInfo) {
+		return getVisibilityClass().getHiddenFields(plan, userInfo);
+	}
+
+}
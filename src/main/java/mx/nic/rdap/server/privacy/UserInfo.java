@@ -7,21 +7,44 @@ import org.apache.shiro.subject.Subject;
  */
 public class UserInfo {
 
-	private Subject subject;
+	private SubjectSnapshot subjectSnapshot;
 
 	private boolean isObjectOwner;
 
 	public UserInfo(Subject subject, boolean isObjectOwner) {
-		this.subject = subject;
+		this(SubjectSnapshot.of(subject), isObjectOwner);
+	}
+
+	/**
+	 * @param subjectSnapshot
+	 *            Authentication state and roles of the user, taken once per
+	 *            request
+	 * @param isObjectOwner
+	 *            Indicates if the user owns the filtered object
+	 */
+	public UserInfo(SubjectSnapshot subjectSnapshot, boolean isObjectOwner) {
+		this.subjectSnapshot = subjectSnapshot;
 		this.isObjectOwner = isObjectOwner;
 	}
 
 	public Subject getSubject() {
-		return subject;
+		return subjectSnapshot.getSubject();
 	}
 
 	public void setSubject(Subject subject) {
-		this.subject = subject;
+		this.subjectSnapshot = SubjectSnapshot.of(subject);
+	}
+
+	public SubjectSnapshot getSubjectSnapshot() {
+		return subjectSnapshot;
+	}
+
+	public boolean isAuthenticated() {
+		return subjectSnapshot.isAuthenticated();
+	}
+
+	public boolean hasRole(String role) {
+		return subjectSnapshot.hasRole(role);
 	}
 
 	public boolean isObjectOwner() {
@@ -32,4 +55,11 @@ public class UserInfo {
 		this.isObjectOwner = isObjectOwner;
 	}
 
+	/**
+	 * @return the fields of <code>plan</code> hidden to this user
+	 */
+	long getHiddenFields(PrivacyPlan<?> plan) {
+		return subjectSnapshot.getHiddenFields(plan, this);
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+package mx.nic.rdap.server.privacy;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import mx.nic.rdap.server.util.PrivacyUtil;
+
+/**
+ * What a group of users is allowed to see: the fields of every
+ * {@link PrivacyPlan} hidden to them, at the objects they own and at the rest.
+ * Two users of the same visibility class see exactly the same values of any
+ * object after the privacy filters are applied, whatever their usernames and
+ * roles are, so they can share the responses (and anything derived from them).
+ * <p>
+ * The classes are interned: each distinct class has a small numeric id, and
+ * the class of each set of roles is computed only once. Use
+ * {@link SubjectSnapshot#getVisibilityClass()} to get the class of a request.
+ */
+public final class VisibilityClass {
+
+	/** The known classes, by the fields they hide */
+	private static final ConcurrentHashMap<HiddenFields, VisibilityClass> CLASSES = new ConcurrentHashMap<>();
+
+	/** Class of the authenticated users, by their configured roles */
+	private static final ConcurrentHashMap<Set<String>, VisibilityClass> CLASSES_BY_ROLES = new ConcurrentHashMap<>();
+
+	/** Never reset, so that the ids of discarded classes aren't reused */
+	private static final AtomicInteger nextId = new AtomicInteger(1);
+
+	/**
+	 * Class of the users that aren't authenticated, evaluated again whenever
+	 * the privacy settings are loaded (see {@link #clear()})
+	 */
+	private static volatile VisibilityClass anonymous = new VisibilityClass(0,
+			evaluate(SubjectSnapshot.of(null), false));
+
+	private final int id;
+
+	/** Hidden fields of each {@link PrivacyPlan}, indexed by the plan id */
+	private final long[] hidden;
+
+	/** Hidden fields of each {@link PrivacyPlan} at the objects owned by the user */
+	private final long[] ownerHidden;
+
+	/**
+	 * Plans evaluated by the class, indexed by the plan id; the rest (eg. a
+	 * plan that isn't at {@link PrivacyUtil}) are evaluated on each call
+	 */
+	private final boolean[] known;
+
+	private final boolean ownershipRelevant;
+
+	private VisibilityClass(int id, HiddenFields fields) {
+		this.id = id;
+		this.hidden = fields.hidden;
+		this.ownerHidden = fields.ownerHidden;
+		this.known = fields.known;
+		this.ownershipRelevant = !Arrays.equals(hidden, ownerHidden);
+	}
+
+	/**
+	 * @return the class of the users that aren't authenticated
+	 */
+	public static VisibilityClass getAnonymous() {
+		return anonymous;
+	}
+
+	/**
+	 * @return the class of the user of <code>subjectSnapshot</code>
+	 */
+	static VisibilityClass of(SubjectSnapshot subjectSnapshot) {
+		if (!subjectSnapshot.isAuthenticated()) {
+			return anonymous;
+		}
+		return CLASSES_BY_ROLES.computeIfAbsent(subjectSnapshot.getRoles(),
+				roles -> CLASSES.computeIfAbsent(evaluate(subjectSnapshot, true),
+						key -> new VisibilityClass(nextId.getAndIncrement(), key)));
+	}
+
+	/**
+	 * @param canOwn
+	 *            <code>false</code> if the user can't own objects (the
+	 *            anonymous users), so the owner settings aren't evaluated
+	 * @return the fields hidden to the user of <code>subjectSnapshot</code> by
+	 *         each plan at {@link PrivacyUtil}
+	 */
+	private static HiddenFields evaluate(SubjectSnapshot subjectSnapshot, boolean canOwn) {
+		int planCount = PrivacyPlan.getPlanCount();
+		long[] hidden = new long[planCount];
+		long[] ownerHidden = new long[planCount];
+		boolean[] known = new boolean[planCount];
+		UserInfo user = new UserInfo(subjectSnapshot, false);
+		UserInfo owner = new UserInfo(subjectSnapshot, true);
+		for (PrivacyPlan<?> plan : PrivacyUtil.getPrivacyPlans()) {
+			hidden[plan.getId()] = plan.computeHiddenFields(user);
+			ownerHidden[plan.getId()] = canOwn ? plan.computeHiddenFields(owner) : hidden[plan.getId()];
+			known[plan.getId()] = true;
+		}
+		return new HiddenFields(hidden, ownerHidden, known);
+	}
+
+	/**
+	 * Forgets the known classes, must be called whenever the privacy settings
+	 * are loaded.
+	 */
+	public static void clear() {
+		CLASSES_BY_ROLES.clear();
+		CLASSES.clear();
+		anonymous = new VisibilityClass(0, evaluate(SubjectSnapshot.of(null), false));
+	}
+
+	/**
+	 * @return the id of the class, <code>0</code> for the anonymous users
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return <code>true</code> if the users of this class see more of the
+	 *         objects they own, so their responses also depend on the object
+	 */
+	public boolean isOwnershipRelevant() {
+		return ownershipRelevant;
+	}
+
+	/**
+	 * @return the fields of <code>plan</code> hidden to the users of this
+	 *         class, computed for <code>userInfo</code> if the class doesn't
+	 *         know them (a plan that isn't at {@link PrivacyUtil})
+	 */
+	long getHiddenFields(PrivacyPlan<?> plan, UserInfo userInfo) {
+		long[] fields = userInfo.isObjectOwner() ? ownerHidden : hidden;
+		int planId = plan.getId();
+		if (planId >= fields.length || !known[planId]) {
+			return plan.computeHiddenFields(userInfo);
+		}
+		return fields[planId];
+	}
+
+	/**
+	 * @param isObjectOwner
+	 *            Indicates if the user owns the object
+	 * @return a fingerprint of what the users of this class see of an object;
+	 *         equal fingerprints mean equal filtered objects
+	 */
+	public long getFingerprint(boolean isObjectOwner) {
+		return ((long) id << 1) | (isObjectOwner && ownershipRelevant ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof VisibilityClass && ((VisibilityClass) obj).id == id;
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+	@Override
+	public String toString() {
+		return id == 0 ? "anonymous" : "class" + id;
+	}
+
+	/**
+	 * Key of {@link VisibilityClass#CLASSES}; the plans known are the same for
+	 * all the classes evaluated from the same privacy settings, so they aren't
+	 * compared.
+	 */
+	private static final class HiddenFields {
+
+		private final long[] hidden;
+
+		private final long[] ownerHidden;
+
+		private final boolean[] known;
+
+		private HiddenFields(long[] hidden, long[] ownerHidden, boolean[] known) {
+			this.hidden = hidden;
+			this.ownerHidden = ownerHidden;
+			this.known = known;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof HiddenFields)) {
+				return false;
+			}
+			HiddenFields other = (HiddenFields) obj;
+			return Arrays.equals(hidden, other.hidden) && Arrays.equals(ownerHidden, other.ownerHidden);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * Arrays.hashCode(hidden) + Arrays.hashCode(ownerHidden);
+		}
+
+	}
+
+}
@@ -3,17 +3,16 @@ package mx.nic.rdap.server.result;
 import java.util.ArrayList;
 
 import mx.nic.rdap.core.db.Autnum;
-import mx.nic.rdap.core.db.Entity;
 import mx.nic.rdap.core.db.Link;
 import mx.nic.rdap.renderer.object.RequestResponse;
+import mx.nic.rdap.server.util.CopyOnWrite;
 
 public class AutnumResult extends RdapSingleResult {
 
 	public AutnumResult(String header, String contextPath, Autnum autnum, String username) {
+		autnum = addSelfLinks(header, contextPath, autnum);
 		setRdapObject(autnum);
 		
-		addSelfLinks(header, contextPath, autnum);
-		
 		validateResponse();
 		
 		setResultType(ResultType.AUTNUM);
@@ -48,16 +47,15 @@ public class AutnumResult extends RdapSingleResult {
 	}
 
 	/**
-	 * Generates a link with the self information and add it to the domain
+	 * Generates a link with the self information and add it to a copy of the
+	 * autnum
 	 */
-	private static void addSelfLinks(String header, String contextPath, Autnum autnum) {
-		Link self = new Link(header, contextPath, "autnum", autnum.getStartAutnum().toString());
-		autnum.getLinks().add(self);
+	private static Autnum addSelfLinks(String header, String contextPath, Autnum autnum) {
+		Autnum linked = withLink(autnum, new Link(header, contextPath, "autnum", autnum.getStartAutnum().toString()));
 
-		for (Entity ent : autnum.getEntities()) {
-			self = new Link(header, contextPath, "entity", ent.getHandle());
-			ent.getLinks().add(self);
-		}
+		linked.setEntities(CopyOnWrite.map(autnum.getEntities(),
+				ent -> withLink(ent, new Link(header, contextPath, "entity", ent.getHandle()))));
+		return linked;
 	}
 
 	
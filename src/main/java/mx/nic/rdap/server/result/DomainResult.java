@@ -3,10 +3,10 @@ package mx.nic.rdap.server.result;
 import java.util.ArrayList;
 
 import mx.nic.rdap.core.db.Domain;
-import mx.nic.rdap.core.db.Entity;
+import mx.nic.rdap.core.db.IpNetwork;
 import mx.nic.rdap.core.db.Link;
-import mx.nic.rdap.core.db.Nameserver;
 import mx.nic.rdap.renderer.object.RequestResponse;
+import mx.nic.rdap.server.util.CopyOnWrite;
 
 /**
  * A result from a Domain request
@@ -14,9 +14,9 @@ import mx.nic.rdap.renderer.object.RequestResponse;
 public class DomainResult extends RdapSingleResult {
 
 	public DomainResult(String header, String contextPath, Domain domain, String userName) {
+		domain = addSelfLinks(header, contextPath, domain);
 		setRdapObject(domain);
 		
-		addSelfLinks(header, contextPath, domain);
 		validateResponse();
 		
 		setResultType(ResultType.DOMAIN);
@@ -52,26 +52,27 @@ public class DomainResult extends RdapSingleResult {
 	}
 
 	/**
-	 * Generates a link with the self information and add it to the domain
+	 * Generates a link with the self information and add it to a copy of the
+	 * domain
+	 * 
+	 * @return the copy of <code>domain</code> with the links, <code>domain</code>
+	 *         isn't modified
 	 */
-	public static void addSelfLinks(String header, String contextPath, Domain domain) {
-		Link self = new Link(header, contextPath, "domain", domain.getFQDN());
-		domain.getLinks().add(self);
+	public static Domain addSelfLinks(String header, String contextPath, Domain domain) {
+		Domain linked = withLink(domain, new Link(header, contextPath, "domain", domain.getFQDN()));
 
-		for (Nameserver ns : domain.getNameServers()) {
-			self = new Link(header, contextPath, "nameserver", ns.getLdhName());
-			ns.getLinks().add(self);
-		}
+		linked.setNameServers(CopyOnWrite.map(domain.getNameServers(),
+				ns -> withLink(ns, new Link(header, contextPath, "nameserver", ns.getLdhName()))));
 
-		for (Entity ent : domain.getEntities()) {
-			self = new Link(header, contextPath, "entity", ent.getHandle());
-			ent.getLinks().add(self);
-		}
+		linked.setEntities(CopyOnWrite.map(domain.getEntities(),
+				ent -> withLink(ent, new Link(header, contextPath, "entity", ent.getHandle()))));
 
-		if (domain.getIpNetwork() != null) {
-			self = new Link(header, contextPath, "ip", domain.getIpNetwork().getStartAddress().getHostAddress());
-			domain.getIpNetwork().getLinks().add(self);
+		IpNetwork ip = domain.getIpNetwork();
+		if (ip != null) {
+			linked.setIpNetwork(
+					withLink(ip, new Link(header, contextPath, "ip", ip.getStartAddress().getHostAddress())));
 		}
+		return linked;
 	}
 	
 }
@@ -8,6 +8,7 @@ import mx.nic.rdap.core.db.Domain;
 import mx.nic.rdap.core.db.Remark;
 import mx.nic.rdap.db.struct.SearchResultStruct;
 import mx.nic.rdap.renderer.object.SearchResponse;
+import mx.nic.rdap.server.executor.ParallelResults;
 
 /**
  * A result from a Domain search request
@@ -22,13 +23,10 @@ public class DomainSearchResult extends RdapSearchResult {
 	
 	public DomainSearchResult(String header, String contextPath, SearchResultStruct<Domain> result, String userName) {
 		notices = new ArrayList<Remark>();
-		this.domains = new ArrayList<Domain>();
 		this.setMaxNumberOfResultsForUser(result.getSearchResultsLimitForUser());
 		this.resultSetWasLimitedByUserConfiguration = result.getResultSetWasLimitedByUserConfiguration();
-		for (Domain domain : result.getResults()) {
-			DomainResult.addSelfLinks(header, contextPath, domain);
-			this.domains.add(domain);
-		}
+		this.domains = ParallelResults.map(result.getResults(),
+				domain -> DomainResult.addSelfLinks(header, contextPath, domain));
 		setRdapObjects(domains);
 		fillNotices();
 		
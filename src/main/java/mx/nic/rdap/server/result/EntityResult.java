@@ -3,9 +3,9 @@ package mx.nic.rdap.server.result;
 import java.util.ArrayList;
 
 import mx.nic.rdap.core.db.Entity;
-import mx.nic.rdap.core.db.IpNetwork;
 import mx.nic.rdap.core.db.Link;
 import mx.nic.rdap.renderer.object.RequestResponse;
+import mx.nic.rdap.server.util.CopyOnWrite;
 
 /**
  * A result from an Entity request
@@ -13,9 +13,9 @@ import mx.nic.rdap.renderer.object.RequestResponse;
 public class EntityResult extends RdapSingleResult {
 
 	public EntityResult(String header, String contextPath, Entity entity, String userName) {
+		entity = addSelfLinks(header, contextPath, entity);
 		setRdapObject(entity);
 		
-		addSelfLinks(header, contextPath, entity);
 		validateResponse();
 		
 		setResultType(ResultType.ENTITY);
@@ -50,22 +50,21 @@ public class EntityResult extends RdapSingleResult {
 	}
 
 	/**
-	 * Generates a link with the self information and add it to the domain and
-	 * its attributes
+	 * Generates a link with the self information and add it to a copy of the
+	 * entity and its attributes
+	 * 
+	 * @return the copy of <code>entity</code> with the links, <code>entity</code>
+	 *         isn't modified
 	 */
-	public static void addSelfLinks(String header, String contextPath, Entity entity) {
-		Link self = new Link(header, contextPath, "entity", entity.getHandle());
-		entity.getLinks().add(self);
+	public static Entity addSelfLinks(String header, String contextPath, Entity entity) {
+		Entity linked = withLink(entity, new Link(header, contextPath, "entity", entity.getHandle()));
 
-		for (Entity ent : entity.getEntities()) {
-			self = new Link(header, contextPath, "entity", ent.getHandle());
-			ent.getLinks().add(self);
-		}
+		linked.setEntities(CopyOnWrite.map(entity.getEntities(),
+				ent -> withLink(ent, new Link(header, contextPath, "entity", ent.getHandle()))));
 
-		for (IpNetwork ip : entity.getIpNetworks()) {
-			self = new Link(header, contextPath, "ip", ip.getStartAddress().getHostAddress() + "/" + ip.getPrefix());
-			ip.getLinks().add(self);
-		}
+		linked.setIpNetworks(CopyOnWrite.map(entity.getIpNetworks(), ip -> withLink(ip,
+				new Link(header, contextPath, "ip", ip.getStartAddress().getHostAddress() + "/" + ip.getPrefix()))));
+		return linked;
 	}
 
 	
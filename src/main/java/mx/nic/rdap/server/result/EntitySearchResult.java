@@ -8,6 +8,7 @@ import mx.nic.rdap.core.db.Entity;
 import mx.nic.rdap.core.db.Remark;
 import mx.nic.rdap.db.struct.SearchResultStruct;
 import mx.nic.rdap.renderer.object.SearchResponse;
+import mx.nic.rdap.server.executor.ParallelResults;
 
 /**
  * A result from an Entity search request.
@@ -22,13 +23,10 @@ public class EntitySearchResult extends RdapSearchResult {
 	
 	public EntitySearchResult(String header, String contextPath, SearchResultStruct<Entity> result, String userName) {
 		notices = new ArrayList<Remark>();
-		this.entities = new ArrayList<Entity>();
 		this.setMaxNumberOfResultsForUser(result.getSearchResultsLimitForUser());
 		this.resultSetWasLimitedByUserConfiguration = result.getResultSetWasLimitedByUserConfiguration();
-		for (Entity entity : result.getResults()) {
-			EntityResult.addSelfLinks(header, contextPath, entity);
-			this.entities.add(entity);
-		}
+		this.entities = ParallelResults.map(result.getResults(),
+				entity -> EntityResult.addSelfLinks(header, contextPath, entity));
 		validateResponse();
 		fillNotices();
 		setRdapObjects(entities);
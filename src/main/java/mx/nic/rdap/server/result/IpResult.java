@@ -2,18 +2,17 @@ package mx.nic.rdap.server.result;
 
 import java.util.ArrayList;
 
-import mx.nic.rdap.core.db.Entity;
 import mx.nic.rdap.core.db.IpNetwork;
 import mx.nic.rdap.core.db.Link;
 import mx.nic.rdap.renderer.object.RequestResponse;
+import mx.nic.rdap.server.util.CopyOnWrite;
 
 public class IpResult extends RdapSingleResult {
 
 	public IpResult(String header, String contextPath, IpNetwork ipNetwork, String userName) {
+		ipNetwork = addSelfLinks(header, contextPath, ipNetwork);
 		setRdapObject(ipNetwork);
 		
-		addSelfLinks(header, contextPath, ipNetwork);
-		
 		setResultType(ResultType.IP);
 		RequestResponse<IpNetwork> ipNetworkResponse = new RequestResponse<>();
 		ipNetworkResponse.setNotices(notices);
@@ -50,15 +49,13 @@ public class IpResult extends RdapSingleResult {
 	 * 
 	 * @param ipNetwork
 	 */
-	private void addSelfLinks(String header, String contextPath, IpNetwork ipNetwork) {
-		Link self = new Link(header, contextPath, "ip",
-				ipNetwork.getStartAddress().getHostAddress() + "/" + ipNetwork.getPrefix());
-		ipNetwork.getLinks().add(self);
+	private static IpNetwork addSelfLinks(String header, String contextPath, IpNetwork ipNetwork) {
+		IpNetwork linked = withLink(ipNetwork, new Link(header, contextPath, "ip",
+				ipNetwork.getStartAddress().getHostAddress() + "/" + ipNetwork.getPrefix()));
 
-		for (Entity ent : ipNetwork.getEntities()) {
-			self = new Link(header, contextPath, "entity", ent.getHandle());
-			ent.getLinks().add(self);
-		}
+		linked.setEntities(CopyOnWrite.map(ipNetwork.getEntities(),
+				ent -> withLink(ent, new Link(header, contextPath, "entity", ent.getHandle()))));
+		return linked;
 	}
 
 }
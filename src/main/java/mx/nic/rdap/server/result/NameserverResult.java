@@ -2,10 +2,10 @@ package mx.nic.rdap.server.result;
 
 import java.util.ArrayList;
 
-import mx.nic.rdap.core.db.Entity;
 import mx.nic.rdap.core.db.Link;
 import mx.nic.rdap.core.db.Nameserver;
 import mx.nic.rdap.renderer.object.RequestResponse;
+import mx.nic.rdap.server.util.CopyOnWrite;
 
 /**
  * A result from a Nameserver request
@@ -13,10 +13,9 @@ import mx.nic.rdap.renderer.object.RequestResponse;
 public class NameserverResult extends RdapSingleResult {
 
 	public NameserverResult(String header, String contextPath, Nameserver nameserver, String userName) {
+		nameserver = addSelfLinks(header, contextPath, nameserver);
 		setRdapObject(nameserver);
 		
-		addSelfLinks(header, contextPath, nameserver);
-		
 		setResultType(ResultType.NAMESERVER);
 		RequestResponse<Nameserver> nameserverResponse = new RequestResponse<>();
 		nameserverResponse.setNotices(notices);
@@ -49,18 +48,19 @@ public class NameserverResult extends RdapSingleResult {
 	}
 
 	/**
-	 * Generates a link with the self information and add it to the domain
+	 * Generates a link with the self information and add it to a copy of the
+	 * nameserver
 	 * 
 	 * @param nameserver
+	 * @return the copy of <code>nameserver</code> with the links,
+	 *         <code>nameserver</code> isn't modified
 	 */
-	public static void addSelfLinks(String header, String contextPath, Nameserver nameserver) {
-		Link self = new Link(header, contextPath, "nameserver", nameserver.getLdhName());
-		nameserver.getLinks().add(self);
+	public static Nameserver addSelfLinks(String header, String contextPath, Nameserver nameserver) {
+		Nameserver linked = withLink(nameserver, new Link(header, contextPath, "nameserver", nameserver.getLdhName()));
 
-		for (Entity ent : nameserver.getEntities()) {
-			self = new Link(header, contextPath, "entity", ent.getHandle());
-			ent.getLinks().add(self);
-		}
+		linked.setEntities(CopyOnWrite.map(nameserver.getEntities(),
+				ent -> withLink(ent, new Link(header, contextPath, "entity", ent.getHandle()))));
+		return linked;
 	}
 	
 }
@@ -8,6 +8,7 @@ import mx.nic.rdap.core.db.Nameserver;
 import mx.nic.rdap.core.db.Remark;
 import mx.nic.rdap.db.struct.SearchResultStruct;
 import mx.nic.rdap.renderer.object.SearchResponse;
+import mx.nic.rdap.server.executor.ParallelResults;
 
 /**
  * A result from a Nameserver search request
@@ -24,13 +25,10 @@ public class NameserverSearchResult extends RdapSearchResult {
 	public NameserverSearchResult(String header, String contextPath, SearchResultStruct<Nameserver> result,
 			String userName) {
 		notices = new ArrayList<Remark>();
-		this.nameservers = new ArrayList<Nameserver>();
 		this.setMaxNumberOfResultsForUser(result.getSearchResultsLimitForUser());
 		this.resultSetWasLimitedByUserConfiguration = result.getResultSetWasLimitedByUserConfiguration();
-		for (Nameserver nameserver : result.getResults()) {
-			NameserverResult.addSelfLinks(header, contextPath, nameserver);
-			this.nameservers.add(nameserver);
-		}
+		this.nameservers = ParallelResults.map(result.getResults(),
+				nameserver -> NameserverResult.addSelfLinks(header, contextPath, nameserver));
 		setRdapObjects(nameservers);
 		fillNotices();
 
@@ -2,8 +2,12 @@ package mx.nic.rdap.server.result;
 
 import java.util.List;
 
+import mx.nic.rdap.core.db.Link;
+import mx.nic.rdap.core.db.RdapObject;
 import mx.nic.rdap.core.db.Remark;
 import mx.nic.rdap.renderer.object.RdapResponse;
+import mx.nic.rdap.server.util.CopyOnWrite;
+import mx.nic.rdap.server.util.CopyUtil;
 
 /**
  * A response to the user.
@@ -49,4 +53,15 @@ public abstract class RdapResult {
 	public RdapResponse getRdapResponse() {
 		return rdapResponse;
 	}
+
+	/**
+	 * @return a copy of <code>rdapObject</code> with <code>link</code> at the end
+	 *         of its links; <code>rdapObject</code> isn't modified, so it can be
+	 *         shared with other requests
+	 */
+	protected static <T extends RdapObject> T withLink(T rdapObject, Link link) {
+		T copy = CopyUtil.copyOfObject(rdapObject);
+		copy.setLinks(CopyOnWrite.append(rdapObject.getLinks(), link));
+		return copy;
+	}
 }
@@ -29,12 +29,87 @@ public class AcceptHeaderFieldParser {
 			return;
 		}
 
-		String[] mediaTypes = acceptField.split(",");
-		for (String mediaType : mediaTypes) {
-			queue.add(new Accept(mediaType));
+		// Parsed by hand (instead of regular expressions and splits) since it's done on every request
+		int length = acceptField.length();
+		int start = 0;
+		while (start < length) {
+			int end = acceptField.indexOf(',', start);
+			if (end < 0) {
+				end = length;
+			}
+			Accept accept = parseMediaRange(acceptField, start, end);
+			if (accept != null) {
+				queue.add(accept);
+			}
+			start = end + 1;
 		}
 	}
 
+	/**
+	 * Parses the media range found at <code>field</code> between
+	 * <code>start</code> (inclusive) and <code>end</code> (exclusive).
+	 * 
+	 * @return the parsed media range, or <code>null</code> if it's empty or its
+	 *         qvalue is malformed. (A malformed qvalue used to make the whole
+	 *         header fail with a {@link NumberFormatException}; now only its
+	 *         media range is ignored, and if none is left the caller falls back
+	 *         to its default.)
+	 */
+	private Accept parseMediaRange(String field, int start, int end) {
+		int paramsStart = field.indexOf(';', start);
+		if (paramsStart < 0 || paramsStart > end) {
+			paramsStart = end;
+		}
+
+		String mediaRange = trim(field, start, paramsStart);
+		if (mediaRange.isEmpty()) {
+			return null;
+		}
+
+		float qvalue = 1f;
+		int paramStart = paramsStart + 1;
+		while (paramStart < end) {
+			int paramEnd = field.indexOf(';', paramStart);
+			if (paramEnd < 0 || paramEnd > end) {
+				paramEnd = end;
+			}
+
+			int first = skipWhitespace(field, paramStart, paramEnd);
+			if (first + 1 < paramEnd && (field.charAt(first) == 'q' || field.charAt(first) == 'Q')) {
+				int equals = skipWhitespace(field, first + 1, paramEnd);
+				if (equals < paramEnd && field.charAt(equals) == '=') {
+					try {
+						qvalue = Float.parseFloat(trim(field, equals + 1, paramEnd));
+					} catch (NumberFormatException e) {
+						return null;
+					}
+					if (Float.isNaN(qvalue) || qvalue < 0f || qvalue > 1f) {
+						return null;
+					}
+					break;
+				}
+			}
+			paramStart = paramEnd + 1;
+		}
+
+		return new Accept(mediaRange, qvalue);
+	}
+
+	private static int skipWhitespace(String string, int start, int end) {
+		while (start < end && Character.isWhitespace(string.charAt(start))) {
+			start++;
+		}
+		return start;
+	}
+
+	private static String trim(String string, int start, int end) {
+		start = skipWhitespace(string, start, end);
+		while (end > start && Character.isWhitespace(string.charAt(end - 1))) {
+			end--;
+		}
+		return string.substring(start, end);
+	}
+
 	/**
 	 * @see #queue
 	 */
@@ -43,34 +118,24 @@ public class AcceptHeaderFieldParser {
 	}
 
 	protected class Accept implements Comparable<Accept> {
-		private static final String QVALUE_PREFIX = "q=";
-
 		private String mediaRange;
+		private String type;
+		private String subtype;
 		private float qvalue;
 
-		/**
-		 * Remember to catch {@link NumberFormatException} and
-		 * {@link IllegalArgumentException}.
-		 */
-		private Accept(String acceptString) {
-			acceptString = acceptString.replaceAll("\\s+", "");
-			String[] accept = acceptString.split(";");
-
-			this.mediaRange = accept[0];
-
-			for (int i = 1; i < accept.length; i++) {
-				if (accept[i].startsWith(QVALUE_PREFIX)) {
-					this.qvalue = parseQ(accept[i]);
-					return;
-				}
+		private Accept(String mediaRange, float qvalue) {
+			this.mediaRange = mediaRange;
+			this.qvalue = qvalue;
+
+			int slash = mediaRange.indexOf('/');
+			if (slash < 0) {
+				this.type = mediaRange;
+				this.subtype = null;
+			} else {
+				this.type = mediaRange.substring(0, slash);
+				int nextSlash = mediaRange.indexOf('/', slash + 1);
+				this.subtype = mediaRange.substring(slash + 1, nextSlash < 0 ? mediaRange.length() : nextSlash);
 			}
-
-			this.qvalue = 1f;
-		}
-
-		private float parseQ(String string) {
-			String q = string.substring(QVALUE_PREFIX.length() + 1);
-			return Float.parseFloat(q);
 		}
 
 		public String getMediaRange() {
@@ -92,26 +157,23 @@ public class AcceptHeaderFieldParser {
 				return 0;
 			}
 
-			String[] thisTokens = mediaRange.split("/");
-			String[] otherTokens = other.mediaRange.split("/");
-
-			result = compareTokens(thisTokens[0], otherTokens[0]);
+			result = compareTokens(type, other.type);
 			if (result != 0) {
 				return result;
 			}
 
-			if (thisTokens.length < 2 && otherTokens.length < 2) {
+			if (subtype == null && other.subtype == null) {
 				return 0;
 			}
 
-			if (thisTokens.length < 2) {
-				return compareTokens("*", otherTokens[1]);
+			if (subtype == null) {
+				return compareTokens("*", other.subtype);
 			}
-			if (otherTokens.length < 2) {
-				return compareTokens(thisTokens[1], "*");
+			if (other.subtype == null) {
+				return compareTokens(subtype, "*");
 			}
 
-			return compareTokens(thisTokens[1], otherTokens[1]);
+			return compareTokens(subtype, other.subtype);
 		}
 
 		private int compareTokens(String t1, String t2) {
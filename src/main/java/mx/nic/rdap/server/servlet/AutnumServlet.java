@@ -15,7 +15,7 @@ import mx.nic.rdap.server.result.AutnumResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = "autnum", urlPatterns = { "/autnum/*" })
+@WebServlet(name = "autnum", urlPatterns = { "/autnum/*" }, asyncSupported = true)
 public class AutnumServlet extends DataAccessServlet<AutnumDAO> {
 
 	private static final long serialVersionUID = 1L;
@@ -35,6 +35,11 @@ public class AutnumServlet extends DataAccessServlet<AutnumDAO> {
 		return "autnum";
 	}
 
+	@Override
+	protected boolean isResponseCacheable() {
+		return true;
+	}
+
 	@Override
 	protected RdapResult doRdapDaGet(HttpServletRequest httpRequest, AutnumDAO dao)
 			throws HttpException, RdapDataAccessException {
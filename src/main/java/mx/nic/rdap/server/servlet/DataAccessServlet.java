@@ -6,6 +6,7 @@ import mx.nic.rdap.db.exception.RdapDataAccessException;
 import mx.nic.rdap.db.exception.http.HttpException;
 import mx.nic.rdap.db.exception.http.NotImplementedException;
 import mx.nic.rdap.db.spi.DAO;
+import mx.nic.rdap.server.executor.DaoBulkhead;
 import mx.nic.rdap.server.result.RdapResult;
 
 /**
@@ -16,6 +17,12 @@ public abstract class DataAccessServlet<T extends DAO> extends RdapServlet {
 	/** Warning shutupper. */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Request attribute with the time (in nanoseconds, as a {@link Long}) spent
+	 * by the data access implementation building the response.
+	 */
+	public static final String DAO_TIME_ATTRIBUTE = "mx.nic.rdap.server.daoTime";
+
 	/**
 	 * Used to initialize {@link #dao} with whatever the servlet is supposed to
 	 * serve.
@@ -35,7 +42,23 @@ public abstract class DataAccessServlet<T extends DAO> extends RdapServlet {
 			throw new NotImplementedException("This server does not implement " + getServedObjectName() + " requests.");
 		}
 
-		return doRdapDaGet(request, dao);
+		DaoBulkhead.acquire(dao);
+		long start = System.nanoTime();
+		try {
+			return doRdapDaGet(request, dao);
+		} finally {
+			request.setAttribute(DAO_TIME_ATTRIBUTE, System.nanoTime() - start);
+			DaoBulkhead.release(dao);
+		}
+	}
+
+	/**
+	 * The data access implementation can take a while to respond, so these requests can be processed
+	 * asynchronously.
+	 */
+	@Override
+	protected boolean supportsAsyncDispatch() {
+		return true;
 	}
 
 	/**
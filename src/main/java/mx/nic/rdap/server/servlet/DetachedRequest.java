@@ -0,0 +1,204 @@
+package mx.nic.rdap.server.servlet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+/**
+ * Copy of the values of a request that the servlets read to build its response
+ * (path, query, parameters, headers and attributes), taken at the container
+ * thread before the request is processed at the
+ * {@link mx.nic.rdap.server.executor.RequestExecutor}.
+ * <p>
+ * Once the asynchronous request is completed (eg. by its timeout) the
+ * container can recycle the original request, so the executor must only read
+ * the values copied here. The attributes set while the response is built are
+ * kept here too, and copied to the original request by
+ * {@link #copyAttributesTo(ServletRequest)} only if it's still active.
+ */
+class DetachedRequest extends HttpServletRequestWrapper {
+
+	private final String method;
+	private final String pathInfo;
+	private final String queryString;
+	private final String requestURI;
+	private final String contextPath;
+	private final String servletPath;
+	private final String scheme;
+	private final String remoteAddr;
+
+	/** Values of each header, the names are case insensitive */
+	private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+	private final Map<String, String[]> parameters;
+
+	private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+	/** Attributes set after the copy, see {@link #copyAttributesTo(ServletRequest)} */
+	private final Map<String, Object> newAttributes = new ConcurrentHashMap<>();
+
+	/**
+	 * Copies the values of <code>request</code>, must be called at the
+	 * container thread.
+	 */
+	DetachedRequest(HttpServletRequest request) {
+		super(request);
+		this.method = request.getMethod();
+		this.pathInfo = request.getPathInfo();
+		this.queryString = request.getQueryString();
+		this.requestURI = request.getRequestURI();
+		this.contextPath = request.getContextPath();
+		this.servletPath = request.getServletPath();
+		this.scheme = request.getScheme();
+		this.remoteAddr = request.getRemoteAddr();
+
+		for (Enumeration<String> names = request.getHeaderNames(); names != null && names.hasMoreElements();) {
+			String name = names.nextElement();
+			headers.put(name, Collections.list(request.getHeaders(name)));
+		}
+		parameters = Collections.unmodifiableMap(new LinkedHashMap<>(request.getParameterMap()));
+		for (Enumeration<String> names = request.getAttributeNames(); names.hasMoreElements();) {
+			String name = names.nextElement();
+			Object value = request.getAttribute(name);
+			if (value != null) {
+				attributes.put(name, value);
+			}
+		}
+	}
+
+	/**
+	 * Sets the attributes set to this request at <code>request</code>, the
+	 * original one. Must be called only while it's still active.
+	 */
+	void copyAttributesTo(ServletRequest request) {
+		for (Map.Entry<String, Object> attribute : newAttributes.entrySet()) {
+			request.setAttribute(attribute.getKey(), attribute.getValue());
+		}
+	}
+
+	@Override
+	public String getMethod() {
+		return method;
+	}
+
+	@Override
+	public String getPathInfo() {
+		return pathInfo;
+	}
+
+	@Override
+	public String getQueryString() {
+		return queryString;
+	}
+
+	@Override
+	public String getRequestURI() {
+		return requestURI;
+	}
+
+	@Override
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	@Override
+	public String getServletPath() {
+		return servletPath;
+	}
+
+	@Override
+	public String getScheme() {
+		return scheme;
+	}
+
+	@Override
+	public String getRemoteAddr() {
+		return remoteAddr;
+	}
+
+	@Override
+	public DispatcherType getDispatcherType() {
+		return DispatcherType.ASYNC;
+	}
+
+	@Override
+	public boolean isAsyncSupported() {
+		return false;
+	}
+
+	@Override
+	public String getHeader(String name) {
+		List<String> values = headers.get(name);
+		return (values == null || values.isEmpty()) ? null : values.get(0);
+	}
+
+	@Override
+	public Enumeration<String> getHeaders(String name) {
+		List<String> values = headers.get(name);
+		return Collections.enumeration(values == null ? Collections.<String> emptyList() : values);
+	}
+
+	@Override
+	public Enumeration<String> getHeaderNames() {
+		return Collections.enumeration(new ArrayList<>(headers.keySet()));
+	}
+
+	@Override
+	public String getParameter(String name) {
+		String[] values = parameters.get(name);
+		return (values == null || values.length == 0) ? null : values[0];
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return parameters;
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(parameters.keySet());
+	}
+
+	@Override
+	public String[] getParameterValues(String name) {
+		String[] values = parameters.get(name);
+		return (values == null) ? null : values.clone();
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(new ArrayList<>(attributes.keySet()));
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+		if (value == null) {
+			removeAttribute(name);
+			return;
+		}
+		attributes.put(name, value);
+		newAttributes.put(name, value);
+	}
+
+	@Override
+	public void removeAttribute(String name) {
+		attributes.remove(name);
+		newAttributes.remove(name);
+	}
+
+}
@@ -22,7 +22,7 @@ import mx.nic.rdap.server.result.DomainSearchResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = "domains", urlPatterns = { "/domains" })
+@WebServlet(name = "domains", urlPatterns = { "/domains" }, asyncSupported = true)
 public class DomainSearchServlet extends DataAccessServlet<DomainDAO> {
 
 	private static final long serialVersionUID = 1L;
@@ -43,6 +43,11 @@ public class DomainSearchServlet extends DataAccessServlet<DomainDAO> {
 		return "domains";
 	}
 
+	@Override
+	protected boolean isSearch() {
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
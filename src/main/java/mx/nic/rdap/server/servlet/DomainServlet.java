@@ -1,5 +1,7 @@
 package mx.nic.rdap.server.servlet;
 
+import java.util.Locale;
+
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 
@@ -17,7 +19,7 @@ import mx.nic.rdap.server.result.DomainResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = "domain", urlPatterns = { "/domain/*" })
+@WebServlet(name = "domain", urlPatterns = { "/domain/*" }, asyncSupported = true)
 public class DomainServlet extends DataAccessServlet<DomainDAO> {
 
 	private static final long serialVersionUID = 1L;
@@ -37,6 +39,23 @@ public class DomainServlet extends DataAccessServlet<DomainDAO> {
 		return "domain";
 	}
 
+	@Override
+	protected boolean isResponseCacheable() {
+		return true;
+	}
+
+	/**
+	 * The names are case insensitive and the root label (trailing dot) is optional.
+	 */
+	@Override
+	protected String getNormalizedPathInfo(HttpServletRequest request) {
+		String path = super.getNormalizedPathInfo(request).toLowerCase(Locale.ROOT);
+		if (path.endsWith(".")) {
+			path = path.substring(0, path.length() - 1);
+		}
+		return path;
+	}
+
 	@Override
 	protected RdapResult doRdapDaGet(HttpServletRequest httpRequest, DomainDAO dao)
 			throws HttpException, RdapDataAccessException {
@@ -16,7 +16,7 @@ import mx.nic.rdap.server.result.EntitySearchResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = 	"entities", urlPatterns = { "/entities" })
+@WebServlet(name = 	"entities", urlPatterns = { "/entities" }, asyncSupported = true)
 public class EntitySearchServlet extends DataAccessServlet<EntityDAO> {
 
 	private static final long serialVersionUID = -8023237096799052268L;
@@ -34,6 +34,11 @@ public class EntitySearchServlet extends DataAccessServlet<EntityDAO> {
 		return "entities";
 	}
 
+	@Override
+	protected boolean isSearch() {
+		return true;
+	}
+
 	@Override
 	protected RdapResult doRdapDaGet(HttpServletRequest httpRequest, EntityDAO dao)
 			throws HttpException, RdapDataAccessException {
@@ -14,7 +14,7 @@ import mx.nic.rdap.server.result.EntityResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = "entity", urlPatterns = { "/entity/*" })
+@WebServlet(name = "entity", urlPatterns = { "/entity/*" }, asyncSupported = true)
 public class EntityServlet extends DataAccessServlet<EntityDAO> {
 
 	private static final long serialVersionUID = 1L;
@@ -34,6 +34,11 @@ public class EntityServlet extends DataAccessServlet<EntityDAO> {
 		return "entity";
 	}
 
+	@Override
+	protected boolean isResponseCacheable() {
+		return true;
+	}
+
 	@Override
 	protected RdapResult doRdapDaGet(HttpServletRequest httpRequest, EntityDAO dao)
 			throws HttpException, RdapDataAccessException {
@@ -0,0 +1,66 @@
+package mx.nic.rdap.server.servlet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+
+import mx.nic.rdap.server.filter.HeavyHitterFilter;
+import mx.nic.rdap.server.filter.HeavyHitters;
+
+/**
+ * Administrative endpoint that reports the busiest clients and queries seen by
+ * the {@link HeavyHitterFilter}, as plain text (one "count name" line per
+ * item). Only the users with the admin role of the filter can read it, and it
+ * doesn't exist if the filter isn't active.
+ */
+@WebServlet(name = "heavy-hitters", urlPatterns = { "/admin/heavy-hitters" })
+public class HeavyHittersServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		Object attribute = getServletContext().getAttribute(HeavyHitterFilter.CONTEXT_ATTRIBUTE);
+		if (!(attribute instanceof HeavyHitterFilter)) {
+			response.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		HeavyHitterFilter filter = (HeavyHitterFilter) attribute;
+		Subject subject = SecurityUtils.getSubject();
+		if (!subject.isAuthenticated()) {
+			response.setHeader("WWW-Authenticate", "Basic realm=\"" + filter.getRealmName() + "\"");
+			response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+			return;
+		}
+		if (!subject.hasRole(filter.getAdminRole())) {
+			response.sendError(HttpServletResponse.SC_FORBIDDEN);
+			return;
+		}
+
+		response.setContentType("text/plain");
+		response.setCharacterEncoding("UTF-8");
+		response.setHeader("Cache-Control", "no-store");
+		PrintWriter writer = response.getWriter();
+		writeTop(writer, "Clients", filter.getClients());
+		writer.println();
+		writeTop(writer, "Queries", filter.getQueries());
+		writer.flush();
+	}
+
+	private static void writeTop(PrintWriter writer, String title, HeavyHitters heavyHitters) {
+		writer.println(title + ":");
+		for (Map.Entry<String, Long> entry : heavyHitters.getTop()) {
+			writer.println(entry.getValue() + " " + entry.getKey());
+		}
+	}
+
+}
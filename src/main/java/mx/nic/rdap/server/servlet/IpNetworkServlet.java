@@ -17,7 +17,7 @@ import mx.nic.rdap.server.result.IpResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = "ip", urlPatterns = { "/ip/*" })
+@WebServlet(name = "ip", urlPatterns = { "/ip/*" }, asyncSupported = true)
 public class IpNetworkServlet extends DataAccessServlet<IpNetworkDAO> {
 
 	private static final long serialVersionUID = 1L;
@@ -37,6 +37,11 @@ public class IpNetworkServlet extends DataAccessServlet<IpNetworkDAO> {
 		return "IP network";
 	}
 
+	@Override
+	protected boolean isResponseCacheable() {
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
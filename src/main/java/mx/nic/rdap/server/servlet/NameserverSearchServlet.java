@@ -22,7 +22,7 @@ import mx.nic.rdap.server.result.NameserverSearchResult;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.util.Util;
 
-@WebServlet(name = "nameservers", urlPatterns = { "/nameservers" })
+@WebServlet(name = "nameservers", urlPatterns = { "/nameservers" }, asyncSupported = true)
 public class NameserverSearchServlet extends DataAccessServlet<NameserverDAO> {
 	private static final long serialVersionUID = 1L;
 	private static final String IP_PARAMETER_KEY = "ip";
@@ -38,6 +38,11 @@ public class NameserverSearchServlet extends DataAccessServlet<NameserverDAO> {
 		return "nameservers";
 	}
 
+	@Override
+	protected boolean isSearch() {
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -74,28 +74,38 @@ public class RdapSearchRequest {
 					"The request must contain at least one of the following parameters: " + Arrays.asList(parameters));
 		}
 
-		if (RdapConfiguration.allowRegexSearches()) {
-			String searchTypeValue = request.getParameter(SEARCH_TYPE_KEY_PARAM);
-			if (searchTypeValue == null) {
-				searchTypeValue = SEARCHTYPE_PARTIAL_VALUE;
-			}
-			switch (searchTypeValue) {
-			case SEARCHTYPE_REGEX_VALUE:
-				searchReq.type = RequestSearchType.REGEX_SEARCH;
-				break;
-			default:
-				searchReq.type = RequestSearchType.PARTIAL_SEARCH;
-				break;
-			}
-		} else {
-			searchReq.type = RequestSearchType.PARTIAL_SEARCH;
-		}
+		searchReq.type = getSearchType(request);
 
 		searchReq.validateSearchRequest(isEntityObject, isIp);
 
 		return searchReq;
 	}
 
+	/**
+	 * Returns the type of search requested by <code>request</code>, without validating the rest of the request.
+	 * 
+	 * @param request
+	 *            request received by the server
+	 * @return {@link RequestSearchType#REGEX_SEARCH} if it was requested and it's allowed, otherwise
+	 *         {@link RequestSearchType#PARTIAL_SEARCH}
+	 */
+	public static RequestSearchType getSearchType(HttpServletRequest request) {
+		if (!RdapConfiguration.allowRegexSearches()) {
+			return RequestSearchType.PARTIAL_SEARCH;
+		}
+
+		String searchTypeValue = request.getParameter(SEARCH_TYPE_KEY_PARAM);
+		if (searchTypeValue == null) {
+			searchTypeValue = SEARCHTYPE_PARTIAL_VALUE;
+		}
+		switch (searchTypeValue) {
+		case SEARCHTYPE_REGEX_VALUE:
+			return RequestSearchType.REGEX_SEARCH;
+		default:
+			return RequestSearchType.PARTIAL_SEARCH;
+		}
+	}
+
 	private void validateSearchRequest(boolean isEntityObject, boolean isIp)
 			throws RdapDataAccessException {
 		switch (this.type) {
@@ -1,17 +1,32 @@
 package mx.nic.rdap.server.servlet;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.PriorityQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.shiro.SecurityUtils;
+import org.apache.shiro.subject.Subject;
+
 import mx.nic.rdap.core.db.Autnum;
 import mx.nic.rdap.core.db.Domain;
 import mx.nic.rdap.core.db.Entity;
@@ -27,18 +42,28 @@ import mx.nic.rdap.renderer.object.HelpResponse;
 import mx.nic.rdap.renderer.object.RdapResponse;
 import mx.nic.rdap.renderer.object.RequestResponse;
 import mx.nic.rdap.renderer.object.SearchResponse;
+import mx.nic.rdap.server.cache.ExpiringCache;
+import mx.nic.rdap.server.cache.NegativeCache;
+import mx.nic.rdap.server.cache.RequestCoalescer;
+import mx.nic.rdap.server.cache.ResponseCache;
 import mx.nic.rdap.server.configuration.RdapConfiguration;
+import mx.nic.rdap.server.executor.ParallelResults;
+import mx.nic.rdap.server.executor.RequestExecutor;
+import mx.nic.rdap.server.executor.RequestPriority;
 import mx.nic.rdap.server.notices.UserNotices;
 import mx.nic.rdap.server.privacy.AutnumPrivacyFilter;
 import mx.nic.rdap.server.privacy.DomainPrivacyFilter;
 import mx.nic.rdap.server.privacy.EntityPrivacyFilter;
 import mx.nic.rdap.server.privacy.IpNetworkPrivacyFilter;
 import mx.nic.rdap.server.privacy.NameserverPrivacyFilter;
+import mx.nic.rdap.server.privacy.SubjectSnapshot;
 import mx.nic.rdap.server.renderer.RendererPool;
 import mx.nic.rdap.server.renderer.RendererWrapper;
 import mx.nic.rdap.server.result.RdapResult;
 import mx.nic.rdap.server.servlet.AcceptHeaderFieldParser.Accept;
+import mx.nic.rdap.server.util.CopyUtil;
 import mx.nic.rdap.server.util.PrivacyUtil;
+import mx.nic.rdap.server.util.Util;
 
 /**
  * Base class of all RDAP servlets.
@@ -50,102 +75,308 @@ public abstract class RdapServlet extends HttpServlet {
 	
 	private final static Logger logger = Logger.getLogger(RdapServlet.class.getName());
 
+	/**
+	 * Max number of distinct "Accept" headers whose renderer is remembered, so that clients sending random headers
+	 * can't exhaust the memory. The least recently used header is forgotten first.
+	 */
+	private static final int MAX_MEMOIZED_ACCEPT_HEADERS = 256;
+
+	/**
+	 * Time (in milliseconds) a renderer is remembered. The renderers don't change after the startup, so it only makes
+	 * the headers that aren't used anymore go away.
+	 */
+	private static final long MEMOIZED_ACCEPT_HEADER_TTL = TimeUnit.HOURS.toMillis(1);
+
+	/** Renderer selected for each "Accept" header received. */
+	private static final ExpiringCache<String, RendererWrapper> RENDERERS_BY_ACCEPT_HEADER = new ExpiringCache<>(
+			MAX_MEMOIZED_ACCEPT_HEADERS, MEMOIZED_ACCEPT_HEADER_TTL);
+
 	@Override
 	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		if (shouldDispatchAsync(request)) {
+			dispatchAsync(request, response);
+			return;
+		}
+
+		buildResponse(request).writeTo(response);
+	}
+
+	/**
+	 * Builds the response of <code>request</code>, reusing a cached or in-flight response if possible.
+	 */
+	private RenderedResponse buildResponse(HttpServletRequest request) {
+		RendererWrapper renderer = findRenderer(request);
+		// Taken once, both the cache key and the privacy filters depend on it
+		SubjectSnapshot subjectSnapshot = SubjectSnapshot.of(SecurityUtils.getSubject());
+		if (!isResponseCacheable()) {
+			return renderResponse(request, renderer, subjectSnapshot);
+		}
+
+		String objectKey = getNegativeCacheKey(request);
+		if (NegativeCache.isMiss(objectKey)) {
+			return RenderedResponse.error(404, null);
+		}
+
+		if (!ResponseCache.isEnabled() && !RequestCoalescer.isEnabled()) {
+			return rememberMiss(objectKey, renderResponse(request, renderer, subjectSnapshot));
+		}
+
+		String key = getResponseCacheKey(request, renderer, subjectSnapshot);
+		RenderedResponse cached = ResponseCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+
+		return RequestCoalescer.execute(key, () -> {
+			RenderedResponse rendered = rememberMiss(objectKey, renderResponse(request, renderer, subjectSnapshot));
+			ResponseCache.put(key, rendered);
+			return rendered;
+		});
+	}
+
+	private static RenderedResponse rememberMiss(String objectKey, RenderedResponse rendered) {
+		if (rendered.getStatus() == HttpServletResponse.SC_NOT_FOUND) {
+			NegativeCache.putMiss(objectKey);
+		}
+		return rendered;
+	}
+
+	/**
+	 * Runs {@link #doRdapGet(HttpServletRequest)} and renders its result using <code>renderer</code>, filtered for
+	 * the user of <code>subjectSnapshot</code>.
+	 */
+	private RenderedResponse renderResponse(HttpServletRequest request, RendererWrapper renderer,
+			SubjectSnapshot subjectSnapshot) {
 		RdapResult result;
 
 		try {
 			result = doRdapGet(request);
 		} catch (HttpException e) {
-			response.sendError(e.getHttpResponseStatusCode(), e.getMessage());
-			return;
+			return RenderedResponse.error(e.getHttpResponseStatusCode(), e.getMessage());
 		} catch (RdapDataAccessException e) {
 			// Handled as an "Internal Server Error", it probably has some good things to log
 			logger.log(Level.SEVERE, e.getMessage(), e);
-			response.sendError(500, e.getMessage());
-			return;
+			return RenderedResponse.error(500, e.getMessage());
 		}
 
 		if (result == null) {
-			response.sendError(404);
-			return;
+			return RenderedResponse.error(404, null);
 		}
 
-		RendererWrapper renderer = findRenderer(request);
-		response.setCharacterEncoding("UTF-8");
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		PrintWriter printWriter = new PrintWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+		renderResult(renderer.getRenderer(), result, printWriter, subjectSnapshot);
+		printWriter.flush();
 
-		response.setContentType(renderer.getMimeType());
-		// Recommendation of RFC 7480 section 5.6
-		response.setHeader("Access-Control-Allow-Origin", "*");
-		renderResult(renderer.getRenderer(), result, response.getWriter());
+		return RenderedResponse.ok(renderer.getMimeType(), body.toByteArray());
 	}
 
-	@SuppressWarnings("unchecked")
-	private void renderResult(Renderer renderer, RdapResult result, PrintWriter printWriter) {
-		// Set the language
-		if (result.getRdapResponse() instanceof RequestResponse) {
-			RequestResponse<RdapObject> requestResponse = (RequestResponse<RdapObject>) result.getRdapResponse();
-			requestResponse.getRdapObject().setLang(RdapConfiguration.getServerLanguage());
-		} else if (result.getRdapResponse() instanceof SearchResponse) {
-			SearchResponse<RdapObject> searchResponse = (SearchResponse<RdapObject>) result.getRdapResponse();
-			searchResponse.getRdapObjects().forEach(rdapObject -> rdapObject.setLang(RdapConfiguration.getServerLanguage()));
+	/**
+	 * Indicates if the rendered responses of the servlet can be stored at the {@link ResponseCache} and shared by
+	 * identical concurrent requests (see {@link RequestCoalescer}); its misses are also stored at the
+	 * {@link NegativeCache}. Only servlets whose responses depend solely on
+	 * the requested URL, the renderer and the visibility class of the user should return <code>true</code>.
+	 */
+	protected boolean isResponseCacheable() {
+		return false;
+	}
+
+	/**
+	 * Returns the path info of <code>request</code> (the requested object) in a canonical form, so that requests of
+	 * the same object written in different ways share their responses. Used only if {@link #isResponseCacheable()}.
+	 */
+	protected String getNormalizedPathInfo(HttpServletRequest request) {
+		return request.getPathInfo() == null ? "" : request.getPathInfo();
+	}
+
+	/**
+	 * Returns the key of the requested object at the {@link NegativeCache}, the same one that
+	 * {@link NegativeCache#invalidate(String, String)} discards.
+	 */
+	String getNegativeCacheKey(HttpServletRequest request) {
+		String path = getNormalizedPathInfo(request);
+		return NegativeCache.getKey(getServletName(), path.startsWith("/") ? path.substring(1) : path);
+	}
+
+	private String getResponseCacheKey(HttpServletRequest request, RendererWrapper renderer,
+			SubjectSnapshot subjectSnapshot) {
+		StringBuilder key = new StringBuilder();
+		// The server URL is used to build the links of the response
+		key.append(Util.getServerUrl(request)).append(request.getContextPath()).append(request.getServletPath());
+		key.append(getNormalizedPathInfo(request));
+		if (request.getQueryString() != null) {
+			key.append('?').append(request.getQueryString());
+		}
+		key.append(' ').append(renderer.getMimeType());
+		key.append(' ').append(subjectSnapshot.getVisibilityKey());
+		return key.toString();
+	}
+
+	/**
+	 * Indicates if the servlet can process its requests at the {@link RequestExecutor}. Servlets that block on
+	 * external resources (eg. the data access implementation) should return <code>true</code>.
+	 */
+	protected boolean supportsAsyncDispatch() {
+		return false;
+	}
+
+	/**
+	 * Indicates if the servlet answers searches, which are queued behind the lookups at the {@link RequestExecutor}
+	 * when it's saturated.
+	 */
+	protected boolean isSearch() {
+		return false;
+	}
+
+	private boolean shouldDispatchAsync(HttpServletRequest request) {
+		return supportsAsyncDispatch() && RequestExecutor.isEnabled() && request.isAsyncSupported()
+				&& request.getDispatcherType() == DispatcherType.REQUEST;
+	}
+
+	/**
+	 * Releases the container thread and builds the response at the {@link RequestExecutor}. The response is
+	 * written only once, either by the executor or by the timeout, whichever comes first.
+	 * <p>
+	 * The container can recycle <code>request</code> as soon as the timeout completes it, so the executor works on
+	 * a {@link DetachedRequest} copied here, and doesn't start a request that was already answered.
+	 */
+	private void dispatchAsync(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		AsyncContext asyncContext = request.startAsync();
+		asyncContext.setTimeout(RdapConfiguration.getAsyncRequestTimeout());
+		AtomicBoolean answered = new AtomicBoolean(false);
+		asyncContext.addListener(new AsyncTimeoutListener(answered));
+
+		DetachedRequest detachedRequest = new DetachedRequest(request);
+		// Shiro binds the subject to the container thread, so it must travel along with the task
+		Subject subject = SecurityUtils.getSubject();
+		Runnable task = subject.associateWith(() -> {
+			if (answered.get()) {
+				// Timed out while queued, nobody is waiting for the response
+				return;
+			}
+
+			RenderedResponse rendered;
+			try {
+				rendered = buildResponse(detachedRequest);
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE, e.getMessage(), e);
+				rendered = RenderedResponse.error(500, null);
+			}
+			completeAsync(asyncContext, answered, rendered, detachedRequest);
+		});
+
+		try {
+			RequestExecutor.execute(task, RequestPriority.of(subject.isAuthenticated(), isSearch()));
+		} catch (RejectedExecutionException e) {
+			completeAsync(asyncContext, answered, RenderedResponse.error(503, "The server is too busy, try again later."),
+					null);
+		}
+	}
+
+	/**
+	 * Writes <code>rendered</code> and completes <code>asyncContext</code>, unless it was already answered. The
+	 * attributes set to <code>detachedRequest</code> (if any) are copied to the request before it's completed.
+	 */
+	private static void completeAsync(AsyncContext asyncContext, AtomicBoolean answered, RenderedResponse rendered,
+			DetachedRequest detachedRequest) {
+		if (!answered.compareAndSet(false, true)) {
+			// The request timed out, it was already answered
+			return;
+		}
+
+		try {
+			if (detachedRequest != null) {
+				detachedRequest.copyAttributesTo(asyncContext.getRequest());
+			}
+			rendered.writeTo((HttpServletResponse) asyncContext.getResponse());
+		} catch (IOException e) {
+			// Most likely the client is gone
+			logger.log(Level.FINE, e.getMessage(), e);
+		} finally {
+			asyncContext.complete();
+		}
+	}
+
+	/**
+	 * Answers with a 503 if the executor didn't answer on time.
+	 */
+	private static class AsyncTimeoutListener implements AsyncListener {
+
+		private final AtomicBoolean answered;
+
+		public AsyncTimeoutListener(AtomicBoolean answered) {
+			this.answered = answered;
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			completeAsync(event.getAsyncContext(), answered,
+					RenderedResponse.error(503, "The request took too long, try again later."), null);
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			// Nothing needed.
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			answered.set(true);
 		}
 
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// Nothing needed.
+		}
+
+	}
+
+	@SuppressWarnings("unchecked")
+	private void renderResult(Renderer renderer, RdapResult result, PrintWriter printWriter,
+			SubjectSnapshot subjectSnapshot) {
 		// Add TOS notice if exists
 		List<Remark> tos = UserNotices.getTos();
 		if (tos != null && !tos.isEmpty()) {
 			RdapResponse response = result.getRdapResponse();
-			if (response.getNotices() == null) {
-				response.setNotices(new ArrayList<>());
+			List<Remark> notices = new ArrayList<>();
+			if (response.getNotices() != null) {
+				notices.addAll(response.getNotices());
 			}
-			response.getNotices().addAll(tos);
+			notices.addAll(tos);
+			response.setNotices(notices);
 		}
 
-		// Filter objects according to privacy settings
-		boolean wasFiltered = false;
+		// Filter objects according to privacy settings; the objects returned by
+		// the DAO are never modified, each response gets its own views of them
 		switch (result.getResultType()) {
 		case AUTNUM:
 			RequestResponse<Autnum> autnumRequestResponse = (RequestResponse<Autnum>) result.getRdapResponse();
-			wasFiltered = AutnumPrivacyFilter.filterAutnum(autnumRequestResponse.getRdapObject());
-			if (wasFiltered) {
-				PrivacyUtil.addPrivacyRemarkAndStatus(autnumRequestResponse.getRdapObject());
-			}
+			autnumRequestResponse.setRdapObject(getView(autnumRequestResponse.getRdapObject(),
+					AutnumPrivacyFilter::filterAutnum, subjectSnapshot));
 			renderer.renderAutnum(autnumRequestResponse, printWriter);
 			break;
 		case DOMAIN:
 			RequestResponse<Domain> domainRequestResponse = (RequestResponse<Domain>) result.getRdapResponse();
-			wasFiltered = DomainPrivacyFilter.filterDomain(domainRequestResponse.getRdapObject());
-			if (wasFiltered) {
-				PrivacyUtil.addPrivacyRemarkAndStatus(domainRequestResponse.getRdapObject());
-			}
+			domainRequestResponse.setRdapObject(getView(domainRequestResponse.getRdapObject(),
+					DomainPrivacyFilter::filterDomain, subjectSnapshot));
 			renderer.renderDomain(domainRequestResponse, printWriter);
 			break;
 		case DOMAINS:
 			SearchResponse<Domain> domainSearchResponse = (SearchResponse<Domain>) result.getRdapResponse();
-			for (Domain domain : domainSearchResponse.getRdapObjects()) {
-				wasFiltered = DomainPrivacyFilter.filterDomain(domain);
-				if (wasFiltered) {
-					PrivacyUtil.addPrivacyRemarkAndStatus(domain);
-				}
-			}
+			domainSearchResponse.setRdapObjects(getViews(domainSearchResponse.getRdapObjects(),
+					DomainPrivacyFilter::filterDomain, subjectSnapshot));
 			renderer.renderDomains(domainSearchResponse, printWriter);
 			break;
 		case ENTITIES:
 			SearchResponse<Entity> entitySearchResponse = (SearchResponse<Entity>) result.getRdapResponse();
-			for (Entity entity : entitySearchResponse.getRdapObjects()) {
-				wasFiltered = EntityPrivacyFilter.filterEntity(entity);
-				if (wasFiltered) {
-					PrivacyUtil.addPrivacyRemarkAndStatus(entity);
-				}
-			}
+			entitySearchResponse.setRdapObjects(getViews(entitySearchResponse.getRdapObjects(),
+					EntityPrivacyFilter::filterEntity, subjectSnapshot));
 			renderer.renderEntities(entitySearchResponse, printWriter);
 			break;
 		case ENTITY:
 			RequestResponse<Entity> entityRequestResponse = (RequestResponse<Entity>) result.getRdapResponse();
-			wasFiltered = EntityPrivacyFilter.filterEntity(entityRequestResponse.getRdapObject());
-			if (wasFiltered) {
-				PrivacyUtil.addPrivacyRemarkAndStatus(entityRequestResponse.getRdapObject());
-			}
+			entityRequestResponse.setRdapObject(getView(entityRequestResponse.getRdapObject(),
+					EntityPrivacyFilter::filterEntity, subjectSnapshot));
 			renderer.renderEntity(entityRequestResponse, printWriter);
 			break;
 		case EXCEPTION:
@@ -156,28 +387,20 @@ public abstract class RdapServlet extends HttpServlet {
 			break;
 		case IP:
 			RequestResponse<IpNetwork> ipRequestResponse = (RequestResponse<IpNetwork>) result.getRdapResponse();
-			wasFiltered = IpNetworkPrivacyFilter.filterIpNetwork(ipRequestResponse.getRdapObject());
-			if (wasFiltered) {
-				PrivacyUtil.addPrivacyRemarkAndStatus(ipRequestResponse.getRdapObject());
-			}
+			ipRequestResponse.setRdapObject(getView(ipRequestResponse.getRdapObject(),
+					IpNetworkPrivacyFilter::filterIpNetwork, subjectSnapshot));
 			renderer.renderIpNetwork(ipRequestResponse, printWriter);
 			break;
 		case NAMESERVER:
 			RequestResponse<Nameserver> nameserverRequestResponse = (RequestResponse<Nameserver>) result.getRdapResponse();
-			wasFiltered = NameserverPrivacyFilter.filterNameserver(nameserverRequestResponse.getRdapObject());
-			if (wasFiltered) {
-				PrivacyUtil.addPrivacyRemarkAndStatus(nameserverRequestResponse.getRdapObject());
-			}
+			nameserverRequestResponse.setRdapObject(getView(nameserverRequestResponse.getRdapObject(),
+					NameserverPrivacyFilter::filterNameserver, subjectSnapshot));
 			renderer.renderNameserver(nameserverRequestResponse, printWriter);
 			break;
 		case NAMESERVERS:
 			SearchResponse<Nameserver> nameserverSearchResponse = (SearchResponse<Nameserver>) result.getRdapResponse();
-			for (Nameserver nameserver : nameserverSearchResponse.getRdapObjects()) {
-				wasFiltered = NameserverPrivacyFilter.filterNameserver(nameserver);
-				if (wasFiltered) {
-					PrivacyUtil.addPrivacyRemarkAndStatus(nameserver);
-				}
-			}
+			nameserverSearchResponse.setRdapObjects(getViews(nameserverSearchResponse.getRdapObjects(),
+					NameserverPrivacyFilter::filterNameserver, subjectSnapshot));
 			renderer.renderNameservers(nameserverSearchResponse, printWriter);
 			break;
 		default:
@@ -186,6 +409,38 @@ public abstract class RdapServlet extends HttpServlet {
 
 	}
 
+	/**
+	 * @return the view of <code>rdapObject</code> that is rendered: in the
+	 *         language of the server, without the fields hidden from the user
+	 *         of <code>subjectSnapshot</code> and with the privacy remark if
+	 *         something was hidden. <code>rdapObject</code> isn't modified.
+	 */
+	private static <T extends RdapObject> T getView(T rdapObject, BiFunction<T, SubjectSnapshot, T> privacyFilter,
+			SubjectSnapshot subjectSnapshot) {
+		T view = rdapObject;
+		String language = RdapConfiguration.getServerLanguage();
+		if (!Objects.equals(language, view.getLang())) {
+			view = CopyUtil.copyOfObject(view);
+			view.setLang(language);
+		}
+
+		T filtered = privacyFilter.apply(view, subjectSnapshot);
+		if (filtered != view) {
+			PrivacyUtil.addPrivacyRemarkAndStatus(filtered);
+		}
+		return filtered;
+	}
+
+	/**
+	 * @return the views of <code>rdapObjects</code>, in the same order; they're
+	 *         made in parallel if there are many of them
+	 * @see #getView(RdapObject, BiFunction, SubjectSnapshot)
+	 */
+	private static <T extends RdapObject> List<T> getViews(List<T> rdapObjects,
+			BiFunction<T, SubjectSnapshot, T> privacyFilter, SubjectSnapshot subjectSnapshot) {
+		return ParallelResults.map(rdapObjects, rdapObject -> getView(rdapObject, privacyFilter, subjectSnapshot));
+	}
+
 	/**
 	 * Handles the `request` GET request and builds a response. Think of it as a
 	 * {@link HttpServlet#doGet(HttpServletRequest, HttpServletResponse)}, except
@@ -206,9 +461,26 @@ public abstract class RdapServlet extends HttpServlet {
 	 * <code>httpRequest</code>.
 	 */
 	private RendererWrapper findRenderer(HttpServletRequest httpRequest) {
+		String acceptHeader = httpRequest.getHeader("Accept");
+		if (acceptHeader == null) {
+			return RendererPool.getDefaultRenderer();
+		}
+
+		// The clients send a handful of distinct headers, so most of the time the renderer is already known
+		RendererWrapper renderer = RENDERERS_BY_ACCEPT_HEADER.get(acceptHeader);
+		if (renderer != null) {
+			return renderer;
+		}
+
+		renderer = negotiateRenderer(acceptHeader);
+		RENDERERS_BY_ACCEPT_HEADER.put(acceptHeader, renderer);
+		return renderer;
+	}
+
+	private static RendererWrapper negotiateRenderer(String acceptHeader) {
 		RendererWrapper renderer;
 
-		AcceptHeaderFieldParser parser = new AcceptHeaderFieldParser(httpRequest.getHeader("Accept"));
+		AcceptHeaderFieldParser parser = new AcceptHeaderFieldParser(acceptHeader);
 		PriorityQueue<Accept> accepts = parser.getQueue();
 
 		while (!accepts.isEmpty()) {
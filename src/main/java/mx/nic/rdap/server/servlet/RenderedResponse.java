@@ -0,0 +1,97 @@
+package mx.nic.rdap.server.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A response that has already been built (rendered or identified as an error)
+ * and only needs to be written to the client.
+ */
+public class RenderedResponse {
+
+	private int status;
+
+	private String errorMessage;
+
+	private String contentType;
+
+	private byte[] body;
+
+	private RenderedResponse() {
+		// no code.
+	}
+
+	/**
+	 * @param contentType
+	 *            MIME type of <code>body</code>.
+	 * @param body
+	 *            UTF-8 encoded response.
+	 * @return a successful response.
+	 */
+	public static RenderedResponse ok(String contentType, byte[] body) {
+		RenderedResponse response = new RenderedResponse();
+		response.status = HttpServletResponse.SC_OK;
+		response.contentType = contentType;
+		response.body = body;
+		return response;
+	}
+
+	/**
+	 * @param status
+	 *            HTTP error code.
+	 * @param errorMessage
+	 *            Description of the error, can be <code>null</code>.
+	 * @return an error response, the container will render it through the
+	 *         error page.
+	 */
+	public static RenderedResponse error(int status, String errorMessage) {
+		RenderedResponse response = new RenderedResponse();
+		response.status = status;
+		response.errorMessage = errorMessage;
+		return response;
+	}
+
+	/**
+	 * Writes this response to <code>response</code>.
+	 */
+	public void writeTo(HttpServletResponse response) throws IOException {
+		if (body == null) {
+			if (errorMessage == null) {
+				response.sendError(status);
+			} else {
+				response.sendError(status, errorMessage);
+			}
+			return;
+		}
+
+		response.setStatus(status);
+		response.setCharacterEncoding("UTF-8");
+		response.setContentType(contentType);
+		// Recommendation of RFC 7480 section 5.6
+		response.setHeader("Access-Control-Allow-Origin", "*");
+		response.setContentLength(body.length);
+		response.getOutputStream().write(body);
+	}
+
+	public boolean isError() {
+		return body == null;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public byte[] getBody() {
+		return body;
+	}
+
+}
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.logging.Level;
@@ -16,9 +17,16 @@ import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.authc.SimpleAuthenticationInfo;
 import org.apache.shiro.authc.UnknownAccountException;
 import org.apache.shiro.authc.UsernamePasswordToken;
+import org.apache.shiro.authz.AuthorizationException;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
 import org.apache.shiro.realm.jdbc.JdbcRealm;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.util.Destroyable;
 import org.apache.shiro.util.JdbcUtils;
 
+import mx.nic.rdap.server.cache.RefreshingCache;
+
 /**
  * Custom realm, extends from {@link JdbcRealm}, used to authenticate users. This realm can be overwritten, deleted,
  * altered to satisfy any other needs (eg. another kind of authentication, load user/password from other place, etc.).
@@ -27,7 +35,7 @@ import org.apache.shiro.util.JdbcUtils;
  * <br/><br/>
  * Based on <a href="https://mehmetceliksoy.wordpress.com/2015/06/28/shiro-jdbc-realm/">Shiro JDBC Realm</a>
  */
-public class CustomSecurityRealm extends JdbcRealm {
+public class CustomSecurityRealm extends JdbcRealm implements Destroyable {
 
 	/**
 	 * This realm doesn't have logic to load user/roles permissions
@@ -36,6 +44,31 @@ public class CustomSecurityRealm extends JdbcRealm {
 
 	private static final Logger logger = Logger.getLogger(CustomSecurityRealm.class.getName());
 
+	/**
+	 * Max number of users whose verified credentials are remembered, 0 disables
+	 * the cache
+	 */
+	private int credentialsCacheSize = 0;
+
+	/**
+	 * Time (in milliseconds) that a verified credential is remembered
+	 */
+	private long credentialsCacheTtl = 300000;
+
+	private VerifiedCredentialsCache credentialsCache;
+
+	/**
+	 * Max number of users whose roles are remembered, 0 disables the cache
+	 */
+	private int rolesCacheSize = 0;
+
+	/**
+	 * Time (in milliseconds) after which the roles of a user are loaded again
+	 */
+	private long rolesCacheTtl = 60000;
+
+	private RefreshingCache<String, Set<String>, SQLException> rolesCache;
+
 	public CustomSecurityRealm() {
 		super();
 		// NO SALT by default
@@ -53,6 +86,28 @@ public class CustomSecurityRealm extends JdbcRealm {
 		//this.saltStyle = SaltStyle.EXTERNAL;
 	}
 
+	@Override
+	protected void onInit() {
+		super.onInit();
+		if (credentialsCacheSize > 0) {
+			credentialsCache = new VerifiedCredentialsCache(credentialsCacheSize, credentialsCacheTtl);
+			logger.info("Credentials cache enabled: " + credentialsCacheSize + " users, " + credentialsCacheTtl
+					+ " ms TTL.");
+		}
+		if (rolesCacheSize > 0) {
+			rolesCache = new RefreshingCache<>("rdap-roles-refresh", rolesCacheSize, rolesCacheTtl,
+					this::loadRoleNamesForUser);
+			logger.info("Roles cache enabled: " + rolesCacheSize + " users, " + rolesCacheTtl + " ms TTL.");
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (rolesCache != null) {
+			rolesCache.shutdown();
+		}
+	}
+
 	@Override
 	protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
 
@@ -64,6 +119,14 @@ public class CustomSecurityRealm extends JdbcRealm {
 			throw new AccountException("Null usernames are not allowed by this realm.");
 		}
 
+		// Recently verified, skip the database
+		if (credentialsCache != null) {
+			AuthenticationInfo verifiedInfo = credentialsCache.get(username, upToken.getPassword());
+			if (verifiedInfo != null) {
+				return new VerifiedAuthenticationInfo(verifiedInfo, upToken);
+			}
+		}
+
 		Connection conn = null;
 		AuthenticationInfo info = null;
 		try {
@@ -88,6 +151,117 @@ public class CustomSecurityRealm extends JdbcRealm {
 		return info;
 	}	
 
+	@Override
+	protected void assertCredentialsMatch(AuthenticationToken token, AuthenticationInfo info)
+			throws AuthenticationException {
+		if (credentialsCache == null) {
+			super.assertCredentialsMatch(token, info);
+			return;
+		}
+
+		// The info was taken from the cache for this token, so the password was already verified
+		if (info instanceof VerifiedAuthenticationInfo && ((VerifiedAuthenticationInfo) info).token == token) {
+			return;
+		}
+
+		super.assertCredentialsMatch(token, info);
+		UsernamePasswordToken upToken = (UsernamePasswordToken) token;
+		credentialsCache.put(upToken.getUsername(), upToken.getPassword(), info);
+	}
+
+	@Override
+	protected void doClearCache(PrincipalCollection principals) {
+		super.doClearCache(principals);
+		if (principals == null || principals.getPrimaryPrincipal() == null) {
+			return;
+		}
+		String username = principals.getPrimaryPrincipal().toString();
+		if (credentialsCache != null) {
+			credentialsCache.invalidate(username);
+		}
+		if (rolesCache != null) {
+			rolesCache.invalidate(username);
+		}
+	}
+
+	/**
+	 * Forgets the verified credentials of <code>username</code>, must be called
+	 * when its password changes (otherwise the old password keeps working until
+	 * it expires from the cache).
+	 * 
+	 * @param username
+	 *            User whose credentials changed
+	 */
+	public void clearCachedCredentials(String username) {
+		if (credentialsCache != null) {
+			credentialsCache.invalidate(username);
+		}
+	}
+
+	/**
+	 * Forgets all the verified credentials
+	 */
+	public void clearAllCachedCredentials() {
+		if (credentialsCache != null) {
+			credentialsCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Forgets the cached roles of <code>username</code>, so that they're loaded
+	 * again on its next request.
+	 * 
+	 * @param username
+	 *            User whose roles changed
+	 */
+	public void clearCachedRoles(String username) {
+		if (rolesCache != null) {
+			rolesCache.invalidate(username);
+		}
+	}
+
+	/**
+	 * Forgets the cached roles of all the users
+	 */
+	public void clearAllCachedRoles() {
+		if (rolesCache != null) {
+			rolesCache.invalidateAll();
+		}
+	}
+
+	@Override
+	protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+		if (rolesCache == null) {
+			return super.doGetAuthorizationInfo(principals);
+		}
+
+		// Null principals are invalid
+		if (principals == null) {
+			throw new AuthorizationException("PrincipalCollection method argument cannot be null.");
+		}
+
+		String username = (String) getAvailablePrincipal(principals);
+		try {
+			return new SimpleAuthorizationInfo(rolesCache.get(username));
+		} catch (SQLException e) {
+			final String message = "There was a SQL error while authorizing user [" + username + "]";
+			logger.log(Level.SEVERE, message, e);
+
+			// Rethrow any SQL errors as an authorization exception
+			throw new AuthorizationException(message, e);
+		}
+	}
+
+	private Set<String> loadRoleNamesForUser(String username) throws SQLException {
+		Connection conn = null;
+		try {
+			conn = dataSource.getConnection();
+			return Collections.unmodifiableSet(getRoleNamesForUser(conn, username));
+		} finally {
+			JdbcUtils.closeConnection(conn);
+		}
+	}
+
 	private String getPasswordForUser(Connection conn, String username) throws SQLException {
 		PreparedStatement ps = null;
 		ResultSet rs = null;
@@ -146,4 +320,75 @@ public class CustomSecurityRealm extends JdbcRealm {
 		return roleNames;
 	}
 
-}
\ No newline at end of file
+	public int getCredentialsCacheSize() {
+		return credentialsCacheSize;
+	}
+
+	/**
+	 * @param credentialsCacheSize
+	 *            Max number of users whose verified credentials are remembered,
+	 *            0 disables the cache
+	 */
+	public void setCredentialsCacheSize(int credentialsCacheSize) {
+		this.credentialsCacheSize = credentialsCacheSize;
+	}
+
+	public long getCredentialsCacheTtl() {
+		return credentialsCacheTtl;
+	}
+
+	/**
+	 * @param credentialsCacheTtl
+	 *            Time (in milliseconds) that a verified credential is
+	 *            remembered
+	 */
+	public void setCredentialsCacheTtl(long credentialsCacheTtl) {
+		this.credentialsCacheTtl = credentialsCacheTtl;
+	}
+
+	public int getRolesCacheSize() {
+		return rolesCacheSize;
+	}
+
+	/**
+	 * @param rolesCacheSize
+	 *            Max number of users whose roles are remembered, 0 disables
+	 *            the cache
+	 */
+	public void setRolesCacheSize(int rolesCacheSize) {
+		this.rolesCacheSize = rolesCacheSize;
+	}
+
+	public long getRolesCacheTtl() {
+		return rolesCacheTtl;
+	}
+
+	/**
+	 * @param rolesCacheTtl
+	 *            Time (in milliseconds) after which the roles of a user are
+	 *            loaded again
+	 */
+	public void setRolesCacheTtl(long rolesCacheTtl) {
+		this.rolesCacheTtl = rolesCacheTtl;
+	}
+
+	/**
+	 * Info found at the {@link VerifiedCredentialsCache} for a token, so that
+	 * {@link CustomSecurityRealm#assertCredentialsMatch(AuthenticationToken, AuthenticationInfo)}
+	 * doesn't verify (nor digest) the password again. It's bound to the token,
+	 * so it's worthless for any other authentication attempt.
+	 */
+	private static class VerifiedAuthenticationInfo extends SimpleAuthenticationInfo {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient AuthenticationToken token;
+
+		public VerifiedAuthenticationInfo(AuthenticationInfo info, AuthenticationToken token) {
+			super(info.getPrincipals(), info.getCredentials());
+			this.token = token;
+		}
+
+	}
+
+}
@@ -0,0 +1,117 @@
+package mx.nic.rdap.server.shiro;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+
+import mx.nic.rdap.server.cache.ExpiringCache;
+
+/**
+ * Remembers the credentials that were successfully verified by a realm, so
+ * that the repeated requests of a client don't query the database nor hash the
+ * password again (the password hashing is intentionally slow).
+ * <p>
+ * The passwords aren't stored: each user maps to a keyed digest (HMAC-SHA256)
+ * of its username and password, the key is random and lives only in memory.
+ * Only the last verified password of each user is remembered.
+ */
+public class VerifiedCredentialsCache {
+
+	private static final String MAC_ALGORITHM = "HmacSHA256";
+
+	private final ExpiringCache<String, VerifiedCredentials> cache;
+
+	private final SecretKeySpec key;
+
+	/**
+	 * @param maxSize
+	 *            Max number of users remembered
+	 * @param ttlMillis
+	 *            Time (in milliseconds) that a verified credential is valid
+	 */
+	public VerifiedCredentialsCache(int maxSize, long ttlMillis) {
+		byte[] keyBytes = new byte[32];
+		new SecureRandom().nextBytes(keyBytes);
+		this.key = new SecretKeySpec(keyBytes, MAC_ALGORITHM);
+		this.cache = new ExpiringCache<>(maxSize, ttlMillis);
+	}
+
+	/**
+	 * @return the {@link AuthenticationInfo} of <code>username</code> if
+	 *         <code>password</code> was recently verified, otherwise
+	 *         <code>null</code>
+	 */
+	public AuthenticationInfo get(String username, char[] password) {
+		VerifiedCredentials verified = cache.get(username);
+		if (verified == null) {
+			return null;
+		}
+
+		return MessageDigest.isEqual(verified.digest, digest(username, password)) ? verified.info : null;
+	}
+
+	/**
+	 * Remembers that <code>password</code> is valid for <code>username</code>.
+	 */
+	public void put(String username, char[] password, AuthenticationInfo info) {
+		cache.put(username, new VerifiedCredentials(digest(username, password), info));
+	}
+
+	/**
+	 * Forgets the verified credentials of <code>username</code>, useful when
+	 * its password or roles change.
+	 */
+	public void invalidate(String username) {
+		cache.remove(username);
+	}
+
+	public void invalidateAll() {
+		cache.clear();
+	}
+
+	private byte[] digest(String username, char[] password) {
+		Mac mac;
+		try {
+			mac = Mac.getInstance(MAC_ALGORITHM);
+			mac.init(key);
+		} catch (GeneralSecurityException e) {
+			// Every Java platform must support HmacSHA256
+			throw new IllegalStateException(e);
+		}
+
+		mac.update(username.getBytes(StandardCharsets.UTF_8));
+		mac.update((byte) 0);
+		if (password != null) {
+			// Encoded straight from the array, so that no String copy of the password is left in memory
+			ByteBuffer encoded = StandardCharsets.UTF_8.encode(CharBuffer.wrap(password));
+			mac.update(encoded);
+			if (encoded.hasArray()) {
+				Arrays.fill(encoded.array(), (byte) 0);
+			}
+		}
+		return mac.doFinal();
+	}
+
+	private static class VerifiedCredentials {
+
+		private final byte[] digest;
+
+		private final AuthenticationInfo info;
+
+		public VerifiedCredentials(byte[] digest, AuthenticationInfo info) {
+			this.digest = digest;
+			this.info = info;
+		}
+
+	}
+
+}
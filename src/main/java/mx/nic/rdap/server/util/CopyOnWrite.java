@@ -0,0 +1,105 @@
+package mx.nic.rdap.server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Copy-on-write view of an object returned by the data access layer.
+ * <p>
+ * The privacy filters and the results read the original object, and the first
+ * change makes a shallow copy of it (see {@link CopyUtil}), so the original is
+ * never modified and can be shared (eg. cached) by every request at the same
+ * time. The objects that don't change aren't copied at all, and the copies
+ * share the fields that don't change with the original; the lists that change
+ * are replaced, never modified.
+ *
+ * @param <T>
+ *            Type of the object
+ */
+public final class CopyOnWrite<T> {
+
+	private final T original;
+
+	private final UnaryOperator<T> copier;
+
+	private T view;
+
+	/**
+	 * @param original
+	 *            Object to read
+	 * @param copier
+	 *            Makes the shallow copy of <code>original</code> at the first
+	 *            edit, usually one of the {@link CopyUtil} methods
+	 */
+	public CopyOnWrite(T original, UnaryOperator<T> copier) {
+		this.original = original;
+		this.copier = copier;
+		this.view = original;
+	}
+
+	/**
+	 * @return a copy of the original object that can be modified, made the
+	 *         first time this is called
+	 */
+	public T edit() {
+		if (view == original) {
+			view = copier.apply(original);
+		}
+		return view;
+	}
+
+	/**
+	 * Sets <code>filtered</code> with <code>setter</code> if it isn't
+	 * <code>value</code>, the current value of the field.
+	 */
+	public <V> void replace(V value, V filtered, BiConsumer<T, V> setter) {
+		if (filtered != value) {
+			setter.accept(edit(), filtered);
+		}
+	}
+
+	/**
+	 * @return the original object if it wasn't edited, its modified copy
+	 *         otherwise
+	 */
+	public T get() {
+		return view;
+	}
+
+	/**
+	 * @return <code>list</code> if <code>function</code> returns the same
+	 *         elements, otherwise a new list with the elements it returns
+	 */
+	public static <T> List<T> map(List<T> list, UnaryOperator<T> function) {
+		if (list == null) {
+			return null;
+		}
+
+		List<T> result = null;
+		for (int i = 0; i < list.size(); i++) {
+			T element = list.get(i);
+			T mapped = function.apply(element);
+			if (result == null && mapped != element) {
+				result = new ArrayList<>(list.size());
+				result.addAll(list.subList(0, i));
+			}
+			if (result != null) {
+				result.add(mapped);
+			}
+		}
+		return (result == null) ? list : result;
+	}
+
+	/**
+	 * @return a copy of <code>list</code> (an empty list if it's
+	 *         <code>null</code>) with <code>element</code> at the end
+	 */
+	public static <T> List<T> append(List<T> list, T element) {
+		List<T> result = (list == null) ? new ArrayList<>() : new ArrayList<>(list);
+		result.add(element);
+		return result;
+	}
+
+}
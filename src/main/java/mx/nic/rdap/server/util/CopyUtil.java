@@ -0,0 +1,252 @@
+package mx.nic.rdap.server.util;
+
+import mx.nic.rdap.core.db.Autnum;
+import mx.nic.rdap.core.db.Domain;
+import mx.nic.rdap.core.db.DsData;
+import mx.nic.rdap.core.db.Entity;
+import mx.nic.rdap.core.db.Event;
+import mx.nic.rdap.core.db.IpNetwork;
+import mx.nic.rdap.core.db.KeyData;
+import mx.nic.rdap.core.db.Link;
+import mx.nic.rdap.core.db.Nameserver;
+import mx.nic.rdap.core.db.PublicId;
+import mx.nic.rdap.core.db.RdapObject;
+import mx.nic.rdap.core.db.Remark;
+import mx.nic.rdap.core.db.SecureDNS;
+import mx.nic.rdap.core.db.VCard;
+import mx.nic.rdap.core.db.VCardPostalInfo;
+import mx.nic.rdap.core.db.Variant;
+import mx.nic.rdap.core.db.VariantName;
+import mx.nic.rdap.core.db.struct.NameserverIpAddressesStruct;
+
+/**
+ * Shallow copies of the objects returned by the data access layer, used by
+ * {@link CopyOnWrite}.
+ * <p>
+ * Each copy is a new instance of the base class with the properties the
+ * server renders, set through their setters; the copy shares their values
+ * (including the lists) with the original, so the lists must be replaced,
+ * never modified. The objects are always copied as their base class, so the
+ * state of a subclass (eg. of a data access implementation) isn't copied.
+ */
+public class CopyUtil {
+
+	private CopyUtil() {
+		// No code.
+	}
+
+	/**
+	 * @return a copy of <code>object</code>, of its base class
+	 * @throws IllegalArgumentException
+	 *             if <code>object</code> isn't a domain, entity, nameserver,
+	 *             autnum or IP network
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends RdapObject> T copyOfObject(T object) {
+		if (object instanceof Domain) {
+			return (T) copyOf((Domain) object);
+		}
+		if (object instanceof Entity) {
+			return (T) copyOf((Entity) object);
+		}
+		if (object instanceof Nameserver) {
+			return (T) copyOf((Nameserver) object);
+		}
+		if (object instanceof Autnum) {
+			return (T) copyOf((Autnum) object);
+		}
+		if (object instanceof IpNetwork) {
+			return (T) copyOf((IpNetwork) object);
+		}
+		throw new IllegalArgumentException("Unknown RDAP object: " + object.getClass().getName());
+	}
+
+	/**
+	 * Sets the properties that all the RDAP objects have.
+	 */
+	private static <T extends RdapObject> T copyTo(RdapObject object, T copy) {
+		copy.setId(object.getId());
+		copy.setHandle(object.getHandle());
+		copy.setRemarks(object.getRemarks());
+		copy.setLinks(object.getLinks());
+		copy.setEvents(object.getEvents());
+		copy.setStatus(object.getStatus());
+		copy.setPort43(object.getPort43());
+		copy.setEntities(object.getEntities());
+		copy.setLang(object.getLang());
+		return copy;
+	}
+
+	public static Domain copyOf(Domain domain) {
+		Domain copy = copyTo(domain, new Domain());
+		copy.setLdhName(domain.getLdhName());
+		copy.setUnicodeName(domain.getUnicodeName());
+		copy.setVariants(domain.getVariants());
+		copy.setNameServers(domain.getNameServers());
+		copy.setSecureDNS(domain.getSecureDNS());
+		copy.setPublicIds(domain.getPublicIds());
+		copy.setIpNetwork(domain.getIpNetwork());
+		return copy;
+	}
+
+	public static Entity copyOf(Entity entity) {
+		Entity copy = copyTo(entity, new Entity());
+		copy.setvCardList(entity.getVCardList());
+		copy.setRoles(entity.getRoles());
+		copy.setPublicIds(entity.getPublicIds());
+		copy.setIpNetworks(entity.getIpNetworks());
+		copy.setAutnums(entity.getAutnums());
+		return copy;
+	}
+
+	public static Nameserver copyOf(Nameserver nameserver) {
+		Nameserver copy = copyTo(nameserver, new Nameserver());
+		copy.setLdhName(nameserver.getLdhName());
+		copy.setUnicodeName(nameserver.getUnicodeName());
+		copy.setIpAddresses(nameserver.getIpAddresses());
+		return copy;
+	}
+
+	public static Autnum copyOf(Autnum autnum) {
+		Autnum copy = copyTo(autnum, new Autnum());
+		copy.setStartAutnum(autnum.getStartAutnum());
+		copy.setEndAutnum(autnum.getEndAutnum());
+		copy.setName(autnum.getName());
+		copy.setType(autnum.getType());
+		copy.setCountry(autnum.getCountryCode());
+		return copy;
+	}
+
+	public static IpNetwork copyOf(IpNetwork ipNetwork) {
+		IpNetwork copy = copyTo(ipNetwork, new IpNetwork());
+		copy.setIpVersion(ipNetwork.getIpVersion());
+		copy.setStartAddress(ipNetwork.getStartAddress());
+		copy.setEndAddress(ipNetwork.getEndAddress());
+		copy.setPrefix(ipNetwork.getPrefix());
+		copy.setName(ipNetwork.getName());
+		copy.setType(ipNetwork.getType());
+		copy.setCountry(ipNetwork.getCountry());
+		copy.setParentHandle(ipNetwork.getParentHandle());
+		return copy;
+	}
+
+	public static Event copyOf(Event event) {
+		Event copy = new Event();
+		copy.setEventAction(event.getEventAction());
+		copy.setEventActor(event.getEventActor());
+		copy.setEventDate(event.getEventDate());
+		copy.setLinks(event.getLinks());
+		return copy;
+	}
+
+	public static Link copyOf(Link link) {
+		Link copy = new Link();
+		copy.setValue(link.getValue());
+		copy.setRel(link.getRel());
+		copy.setHref(link.getHref());
+		copy.setHreflang(link.getHreflang());
+		copy.setTitle(link.getTitle());
+		copy.setMedia(link.getMedia());
+		copy.setType(link.getType());
+		return copy;
+	}
+
+	public static Remark copyOf(Remark remark) {
+		Remark copy = new Remark();
+		copy.setTitle(remark.getTitle());
+		copy.setType(remark.getType());
+		copy.setLanguage(remark.getLanguage());
+		copy.setDescriptions(remark.getDescriptions());
+		copy.setLinks(remark.getLinks());
+		return copy;
+	}
+
+	public static PublicId copyOf(PublicId publicId) {
+		PublicId copy = new PublicId();
+		copy.setPublicId(publicId.getPublicId());
+		copy.setType(publicId.getType());
+		return copy;
+	}
+
+	public static SecureDNS copyOf(SecureDNS secureDNS) {
+		SecureDNS copy = new SecureDNS();
+		copy.setZoneSigned(secureDNS.getZoneSigned());
+		copy.setDelegationSigned(secureDNS.getDelegationSigned());
+		copy.setMaxSigLife(secureDNS.getMaxSigLife());
+		copy.setDsData(secureDNS.getDsData());
+		copy.setKeyData(secureDNS.getKeyData());
+		return copy;
+	}
+
+	public static KeyData copyOf(KeyData keyData) {
+		KeyData copy = new KeyData();
+		copy.setFlags(keyData.getFlags());
+		copy.setProtocol(keyData.getProtocol());
+		copy.setPublicKey(keyData.getPublicKey());
+		copy.setAlgorithm(keyData.getAlgorithm());
+		copy.setEvents(keyData.getEvents());
+		copy.setLinks(keyData.getLinks());
+		return copy;
+	}
+
+	public static DsData copyOf(DsData dsData) {
+		DsData copy = new DsData();
+		copy.setKeytag(dsData.getKeytag());
+		copy.setAlgorithm(dsData.getAlgorithm());
+		copy.setDigest(dsData.getDigest());
+		copy.setDigestType(dsData.getDigestType());
+		copy.setEvents(dsData.getEvents());
+		copy.setLinks(dsData.getLinks());
+		return copy;
+	}
+
+	public static Variant copyOf(Variant variant) {
+		Variant copy = new Variant();
+		copy.setRelations(variant.getRelations());
+		copy.setIdnTable(variant.getIdnTable());
+		copy.setVariantNames(variant.getVariantNames());
+		return copy;
+	}
+
+	public static VariantName copyOf(VariantName variantName) {
+		VariantName copy = new VariantName();
+		copy.setLdhName(variantName.getLdhName());
+		copy.setUnicodeName(variantName.getUnicodeName());
+		return copy;
+	}
+
+	public static VCard copyOf(VCard vcard) {
+		VCard copy = new VCard();
+		copy.setName(vcard.getName());
+		copy.setCompanyName(vcard.getCompanyName());
+		copy.setCompanyURL(vcard.getCompanyURL());
+		copy.setEmail(vcard.getEmail());
+		copy.setVoice(vcard.getVoice());
+		copy.setCellphone(vcard.getCellphone());
+		copy.setFax(vcard.getFax());
+		copy.setJobTitle(vcard.getJobTitle());
+		copy.setPostalInfo(vcard.getPostalInfo());
+		return copy;
+	}
+
+	public static VCardPostalInfo copyOf(VCardPostalInfo postalInfo) {
+		VCardPostalInfo copy = new VCardPostalInfo();
+		copy.setType(postalInfo.getType());
+		copy.setStreet1(postalInfo.getStreet1());
+		copy.setStreet2(postalInfo.getStreet2());
+		copy.setStreet3(postalInfo.getStreet3());
+		copy.setPostalCode(postalInfo.getPostalCode());
+		copy.setCity(postalInfo.getCity());
+		copy.setState(postalInfo.getState());
+		copy.setCountry(postalInfo.getCountry());
+		return copy;
+	}
+
+	public static NameserverIpAddressesStruct copyOf(NameserverIpAddressesStruct ipAddresses) {
+		NameserverIpAddressesStruct copy = new NameserverIpAddressesStruct();
+		copy.setIpv4Adresses(ipAddresses.getIpv4Adresses());
+		copy.setIpv6Adresses(ipAddresses.getIpv6Adresses());
+		return copy;
+	}
+
+}
@@ -4,7 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,6 +13,8 @@ import java.util.Set;
 
 import javax.servlet.ServletContext;
 
+import org.apache.shiro.subject.Subject;
+
 import mx.nic.rdap.core.catalog.RemarkType;
 import mx.nic.rdap.core.catalog.Role;
 import mx.nic.rdap.core.catalog.Status;
@@ -22,13 +24,36 @@ import mx.nic.rdap.core.db.Remark;
 import mx.nic.rdap.server.catalog.PrivacyStatus;
 import mx.nic.rdap.server.configuration.RdapConfiguration;
 import mx.nic.rdap.server.listener.RdapInitializer;
+import mx.nic.rdap.server.privacy.PrivacyField;
+import mx.nic.rdap.server.privacy.PrivacyFields.AutnumField;
+import mx.nic.rdap.server.privacy.PrivacyFields.DomainField;
+import mx.nic.rdap.server.privacy.PrivacyFields.DsDataField;
+import mx.nic.rdap.server.privacy.PrivacyFields.EntityField;
+import mx.nic.rdap.server.privacy.PrivacyFields.EventField;
+import mx.nic.rdap.server.privacy.PrivacyFields.IpNetworkField;
+import mx.nic.rdap.server.privacy.PrivacyFields.KeyDataField;
+import mx.nic.rdap.server.privacy.PrivacyFields.LinkField;
+import mx.nic.rdap.server.privacy.PrivacyFields.NameserverField;
+import mx.nic.rdap.server.privacy.PrivacyFields.PublicIdField;
+import mx.nic.rdap.server.privacy.PrivacyFields.RemarkField;
+import mx.nic.rdap.server.privacy.PrivacyFields.SecureDnsField;
+import mx.nic.rdap.server.privacy.PrivacyFields.VCardField;
+import mx.nic.rdap.server.privacy.PrivacyFields.VariantField;
+import mx.nic.rdap.server.privacy.PrivacyPlan;
 import mx.nic.rdap.server.privacy.PrivacySetting;
 import mx.nic.rdap.server.privacy.PrivacySettingsFactory;
+import mx.nic.rdap.server.privacy.SubjectSnapshot;
+import mx.nic.rdap.server.privacy.VisibilityClass;
 
 public class PrivacyUtil {
 
 	private static Map<String, Map<String, PrivacySetting>> OBJECTS_PRIVACY_SETTING = new HashMap<>();
 
+	/**
+	 * The same settings of {@link #OBJECTS_PRIVACY_SETTING}, compiled for the privacy filters
+	 */
+	private static Map<String, PrivacyPlan<?>> OBJECTS_PRIVACY_PLAN = new HashMap<>();
+
 	// ***** Names of the properties files *****
 	public static final String ENTITY = "entity";
 	public static final String ENTITY_PUBLIC_ID = "entity_public_id";
@@ -94,60 +119,74 @@ public class PrivacyUtil {
 
 
 	public static void loadAllPrivacySettings() throws IOException {
-		loadObjectPrivacySettings(ENTITY);
-		loadObjectPrivacySettings(ENTITY_PUBLIC_ID);
-		loadObjectPrivacySettings(ENTITY_LINKS);
-		loadObjectPrivacySettings(ENTITY_EVENTS);
-		loadObjectPrivacySettings(ENTITY_REMARKS);
-
-		loadObjectPrivacySettings(VCARD);
-
-		loadObjectPrivacySettings(DOMAIN);
-		loadObjectPrivacySettings(DOMAIN_PUBLIC_ID);
-		loadObjectPrivacySettings(DOMAIN_VARIANTS);
-		loadObjectPrivacySettings(DOMAIN_LINKS);
-		loadObjectPrivacySettings(DOMAIN_EVENTS);
-		loadObjectPrivacySettings(DOMAIN_REMARKS);
-		loadObjectPrivacySettings(SECURE_DNS);
-		loadObjectPrivacySettings(DS_DATA);
-		loadObjectPrivacySettings(KEY_DATA);
-
-		loadObjectPrivacySettings(NAMESERVER);
-		loadObjectPrivacySettings(NAMESERVER_LINKS);
-		loadObjectPrivacySettings(NAMESERVER_EVENTS);
-		loadObjectPrivacySettings(NAMESERVER_REMARKS);
-
-		loadObjectPrivacySettings(AUTNUM);
-		loadObjectPrivacySettings(AUTNUM_LINKS);
-		loadObjectPrivacySettings(AUTNUM_EVENTS);
-		loadObjectPrivacySettings(AUTNUM_REMARKS);
-
-		loadObjectPrivacySettings(IP_NETWORK);
-		loadObjectPrivacySettings(IP_NETWORK_LINKS);
-		loadObjectPrivacySettings(IP_NETWORK_EVENTS);
-		loadObjectPrivacySettings(IP_NETWORK_REMARKS);
-
-		loadObjectPrivacySettings(DOMAIN_EVENTS_LINKS);
-		loadObjectPrivacySettings(DOMAIN_REMARKS_LINKS);
-		loadObjectPrivacySettings(KEY_DATA_EVENTS);
-		loadObjectPrivacySettings(KEY_DATA_EVENTS_LINKS);
-		loadObjectPrivacySettings(KEY_DATA_LINKS);
-		loadObjectPrivacySettings(DS_DATA_EVENTS);
-		loadObjectPrivacySettings(DS_DATA_EVENTS_LINKS);
-		loadObjectPrivacySettings(DS_DATA_LINKS);
-
-		loadObjectPrivacySettings(NAMESERVER_EVENTS_LINKS);
-		loadObjectPrivacySettings(NAMESERVER_REMARKS_LINKS);
-
-		loadObjectPrivacySettings(IP_NETWORK_EVENTS_LINKS);
-		loadObjectPrivacySettings(IP_NETWORK_REMARKS_LINKS);
-
-		loadObjectPrivacySettings(AUTNUM_EVENTS_LINKS);
-		loadObjectPrivacySettings(AUTNUM_REMARKS_LINKS);
-
-		loadObjectPrivacySettings(ENTITY_EVENTS_LINKS);
-		loadObjectPrivacySettings(ENTITY_REMARKS_LINKS);
+		loadObjectPrivacySettings(ENTITY, EntityField.class);
+		loadObjectPrivacySettings(ENTITY_PUBLIC_ID, PublicIdField.class);
+		loadObjectPrivacySettings(ENTITY_LINKS, LinkField.class);
+		loadObjectPrivacySettings(ENTITY_EVENTS, EventField.class);
+		loadObjectPrivacySettings(ENTITY_REMARKS, RemarkField.class);
+
+		loadObjectPrivacySettings(VCARD, VCardField.class);
+
+		loadObjectPrivacySettings(DOMAIN, DomainField.class);
+		loadObjectPrivacySettings(DOMAIN_PUBLIC_ID, PublicIdField.class);
+		loadObjectPrivacySettings(DOMAIN_VARIANTS, VariantField.class);
+		loadObjectPrivacySettings(DOMAIN_LINKS, LinkField.class);
+		loadObjectPrivacySettings(DOMAIN_EVENTS, EventField.class);
+		loadObjectPrivacySettings(DOMAIN_REMARKS, RemarkField.class);
+		loadObjectPrivacySettings(SECURE_DNS, SecureDnsField.class);
+		loadObjectPrivacySettings(DS_DATA, DsDataField.class);
+		loadObjectPrivacySettings(KEY_DATA, KeyDataField.class);
+
+		loadObjectPrivacySettings(NAMESERVER, NameserverField.class);
+		loadObjectPrivacySettings(NAMESERVER_LINKS, LinkField.class);
+		loadObjectPrivacySettings(NAMESERVER_EVENTS, EventField.class);
+		loadObjectPrivacySettings(NAMESERVER_REMARKS, RemarkField.class);
+
+		loadObjectPrivacySettings(AUTNUM, AutnumField.class);
+		loadObjectPrivacySettings(AUTNUM_LINKS, LinkField.class);
+		loadObjectPrivacySettings(AUTNUM_EVENTS, EventField.class);
+		loadObjectPrivacySettings(AUTNUM_REMARKS, RemarkField.class);
+
+		loadObjectPrivacySettings(IP_NETWORK, IpNetworkField.class);
+		loadObjectPrivacySettings(IP_NETWORK_LINKS, LinkField.class);
+		loadObjectPrivacySettings(IP_NETWORK_EVENTS, EventField.class);
+		loadObjectPrivacySettings(IP_NETWORK_REMARKS, RemarkField.class);
+
+		loadObjectPrivacySettings(DOMAIN_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(DOMAIN_REMARKS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(KEY_DATA_EVENTS, EventField.class);
+		loadObjectPrivacySettings(KEY_DATA_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(KEY_DATA_LINKS, LinkField.class);
+		loadObjectPrivacySettings(DS_DATA_EVENTS, EventField.class);
+		loadObjectPrivacySettings(DS_DATA_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(DS_DATA_LINKS, LinkField.class);
+
+		loadObjectPrivacySettings(NAMESERVER_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(NAMESERVER_REMARKS_LINKS, LinkField.class);
+
+		loadObjectPrivacySettings(IP_NETWORK_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(IP_NETWORK_REMARKS_LINKS, LinkField.class);
+
+		loadObjectPrivacySettings(AUTNUM_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(AUTNUM_REMARKS_LINKS, LinkField.class);
+
+		loadObjectPrivacySettings(ENTITY_EVENTS_LINKS, LinkField.class);
+		loadObjectPrivacySettings(ENTITY_REMARKS_LINKS, LinkField.class);
+
+		VisibilityClass.clear();
+	}
 
+	/**
+	 * Returns a value that identifies what the <code>subject</code> is allowed to see: two subjects with the same
+	 * visibility class see exactly the same values of any object after the privacy filters are applied.
+	 * 
+	 * @param subject
+	 *            Subject of the request
+	 * @return the visibility class of <code>subject</code>
+	 * @see SubjectSnapshot#getVisibilityKey()
+	 */
+	public static String getVisibilityClass(Subject subject) {
+		return SubjectSnapshot.of(subject).getVisibilityKey();
 	}
 	
 	private static void loadUserPrivacySettings(String fileName, Properties properties) throws IOException {
@@ -179,7 +218,8 @@ public class PrivacyUtil {
 		}
 	}
 
-	private static void loadObjectPrivacySettings(String objectName) throws IOException {
+	private static <E extends Enum<E> & PrivacyField> void loadObjectPrivacySettings(String objectName,
+			Class<E> fieldsType) throws IOException {
 		Properties properties = new Properties();
 		ClassLoader classLoader = PrivacyUtil.class.getClassLoader();
 		HashMap<String, PrivacySetting> objectProperties = new HashMap<>();
@@ -266,6 +306,19 @@ public class PrivacyUtil {
 		}
 
 		OBJECTS_PRIVACY_SETTING.put(objectName, Collections.unmodifiableMap(objectProperties));
+		OBJECTS_PRIVACY_PLAN.put(objectName, new PrivacyPlan<>(fieldsType, objectProperties));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E extends Enum<E> & PrivacyField> PrivacyPlan<E> getPrivacyPlan(String objectName) {
+		return (PrivacyPlan<E>) OBJECTS_PRIVACY_PLAN.get(objectName);
+	}
+
+	/**
+	 * @return the compiled privacy settings of every object and nested element
+	 */
+	public static Collection<PrivacyPlan<?>> getPrivacyPlans() {
+		return Collections.unmodifiableCollection(OBJECTS_PRIVACY_PLAN.values());
 	}
 
 	public static Map<String, PrivacySetting> getEntityPrivacySettings() {
@@ -440,24 +493,193 @@ public class PrivacyUtil {
 		return OBJECTS_PRIVACY_SETTING.get(ENTITY_REMARKS_LINKS);
 	}
 
+	public static PrivacyPlan<EntityField> getEntityPrivacyPlan() {
+		return getPrivacyPlan(ENTITY);
+	}
+
+	public static PrivacyPlan<PublicIdField> getEntityPublicIdsPrivacyPlan() {
+		return getPrivacyPlan(ENTITY_PUBLIC_ID);
+	}
+
+	public static PrivacyPlan<LinkField> getEntityLinkPrivacyPlan() {
+		return getPrivacyPlan(ENTITY_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getEntityEventPrivacyPlan() {
+		return getPrivacyPlan(ENTITY_EVENTS);
+	}
+
+	public static PrivacyPlan<RemarkField> getEntityRemarkPrivacyPlan() {
+		return getPrivacyPlan(ENTITY_REMARKS);
+	}
+
+	public static PrivacyPlan<VCardField> getVCardPrivacyPlan() {
+		return getPrivacyPlan(VCARD);
+	}
+
+	public static PrivacyPlan<DomainField> getDomainPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN);
+	}
+
+	public static PrivacyPlan<PublicIdField> getDomainPublicIdsPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_PUBLIC_ID);
+	}
+
+	public static PrivacyPlan<VariantField> getDomainVariantsPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_VARIANTS);
+	}
+
+	public static PrivacyPlan<LinkField> getDomainLinkPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getDomainEventPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_EVENTS);
+	}
+
+	public static PrivacyPlan<RemarkField> getDomainRemarkPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_REMARKS);
+	}
+
+	public static PrivacyPlan<SecureDnsField> getSecureDnsPrivacyPlan() {
+		return getPrivacyPlan(SECURE_DNS);
+	}
+
+	public static PrivacyPlan<DsDataField> getDsDataPrivacyPlan() {
+		return getPrivacyPlan(DS_DATA);
+	}
+
+	public static PrivacyPlan<KeyDataField> getKeyDataPrivacyPlan() {
+		return getPrivacyPlan(KEY_DATA);
+	}
+
+	public static PrivacyPlan<NameserverField> getNameserverPrivacyPlan() {
+		return getPrivacyPlan(NAMESERVER);
+	}
+
+	public static PrivacyPlan<LinkField> getNameserverLinkPrivacyPlan() {
+		return getPrivacyPlan(NAMESERVER_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getNameserverEventPrivacyPlan() {
+		return getPrivacyPlan(NAMESERVER_EVENTS);
+	}
+
+	public static PrivacyPlan<RemarkField> getNameserverRemarkPrivacyPlan() {
+		return getPrivacyPlan(NAMESERVER_REMARKS);
+	}
+
+	public static PrivacyPlan<AutnumField> getAutnumPrivacyPlan() {
+		return getPrivacyPlan(AUTNUM);
+	}
+
+	public static PrivacyPlan<LinkField> getAutnumLinkPrivacyPlan() {
+		return getPrivacyPlan(AUTNUM_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getAutnumEventPrivacyPlan() {
+		return getPrivacyPlan(AUTNUM_EVENTS);
+	}
+
+	public static PrivacyPlan<RemarkField> getAutnumRemarkPrivacyPlan() {
+		return getPrivacyPlan(AUTNUM_REMARKS);
+	}
+
+	public static PrivacyPlan<IpNetworkField> getIpNetworkPrivacyPlan() {
+		return getPrivacyPlan(IP_NETWORK);
+	}
+
+	public static PrivacyPlan<LinkField> getIpNetworkLinkPrivacyPlan() {
+		return getPrivacyPlan(IP_NETWORK_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getIpNetworkEventPrivacyPlan() {
+		return getPrivacyPlan(IP_NETWORK_EVENTS);
+	}
+
+	public static PrivacyPlan<RemarkField> getIpNetworkRemarkPrivacyPlan() {
+		return getPrivacyPlan(IP_NETWORK_REMARKS);
+	}
+
+	public static PrivacyPlan<LinkField> getDomainEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getDomainRemarksLinksPrivacyPlan() {
+		return getPrivacyPlan(DOMAIN_REMARKS_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getKeyDataEventsPrivacyPlan() {
+		return getPrivacyPlan(KEY_DATA_EVENTS);
+	}
+
+	public static PrivacyPlan<LinkField> getKeyDataEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(KEY_DATA_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getKeyDataLinksPrivacyPlan() {
+		return getPrivacyPlan(KEY_DATA_LINKS);
+	}
+
+	public static PrivacyPlan<EventField> getDsDataEventsPrivacyPlan() {
+		return getPrivacyPlan(DS_DATA_EVENTS);
+	}
+
+	public static PrivacyPlan<LinkField> getDsDataEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(DS_DATA_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getDsDataLinksPrivacyPlan() {
+		return getPrivacyPlan(DS_DATA_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getNameserverEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(NAMESERVER_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getNameserverRemarksLinksPrivacyPlan() {
+		return getPrivacyPlan(NAMESERVER_REMARKS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getIpNetworkEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(IP_NETWORK_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getIpNetworkRemarksLinksPrivacyPlan() {
+		return getPrivacyPlan(IP_NETWORK_REMARKS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getAutnumEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(AUTNUM_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getAutnumRemarksLinksPrivacyPlan() {
+		return getPrivacyPlan(AUTNUM_REMARKS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getEntityEventsLinksPrivacyPlan() {
+		return getPrivacyPlan(ENTITY_EVENTS_LINKS);
+	}
+
+	public static PrivacyPlan<LinkField> getEntityRemarksLinksPrivacyPlan() {
+		return getPrivacyPlan(ENTITY_REMARKS_LINKS);
+	}
+
 	/**
 	 * Adds a {@link Remark} of type {@link RemarkType} <code>OBJECT_AUTHORIZATION</code>,
 	 * and if the <code>rdapObject</code> is an instance of {@link Entity} also adds the
 	 * {@link Status} <code>Private</code>.
+	 * <p>
+	 * The lists of <code>rdapObject</code> are replaced instead of modified, since
+	 * it's usually a filtered copy that shares them with the original object.
 	 * 
 	 * @param rdapObject
 	 *             The object to modify
 	 */
 	public static void addPrivacyRemarkAndStatus(RdapObject rdapObject) {
-		if (rdapObject.getRemarks() == null) {
-			rdapObject.setRemarks(new ArrayList<Remark>());
-		}
-		rdapObject.getRemarks().add(new Remark(RemarkType.OBJECT_AUTHORIZATION));
+		rdapObject.setRemarks(CopyOnWrite.append(rdapObject.getRemarks(), new Remark(RemarkType.OBJECT_AUTHORIZATION)));
 		if (rdapObject instanceof Entity) {
-			if (rdapObject.getStatus() == null) {
-				rdapObject.setStatus(new ArrayList<Status>());
-			}
-			rdapObject.getStatus().add(Status.PRIVATE);
+			rdapObject.setStatus(CopyOnWrite.append(rdapObject.getStatus(), Status.PRIVATE));
 		}
 	}
 	/**
@@ -476,8 +698,13 @@ public class PrivacyUtil {
 			return ent.getHandle().equalsIgnoreCase(userName);
 		}
 
+		Set<Role> ownerRoles = RdapConfiguration.getOwnerRoles(object);
+		if (ownerRoles.isEmpty()) {
+			return false;
+		}
+
 		for (Entity ent : object.getEntities()) {
-			if (isEntityOwner(userName, object, ent)) {
+			if (isEntityOwner(userName, ownerRoles, ent)) {
 				return true;
 			}
 		}
@@ -486,9 +713,10 @@ public class PrivacyUtil {
 	}
 
 	/**
-	 * @return <code>true</code> if the user is owner of the Entity Object
+	 * @return <code>true</code> if the user is the Entity Object and has one of
+	 *         the <code>ownerRoles</code> of its father
 	 */
-	private static boolean isEntityOwner(String userName, RdapObject father, Entity ent) {
+	private static boolean isEntityOwner(String userName, Set<Role> ownerRoles, Entity ent) {
 		if (ent.getHandle() == null || !ent.getHandle().equalsIgnoreCase(userName)) {
 			return false;
 		}
@@ -498,7 +726,7 @@ public class PrivacyUtil {
 		}
 
 		for (Role role : ent.getRoles()) {
-			if (RdapConfiguration.isRoleAnOwner(father, role)) {
+			if (ownerRoles.contains(role)) {
 				return true;
 			}
 		}
@@ -0,0 +1,96 @@
+package mx.nic.rdap.server.cache;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ExpiringCacheTest extends TestCase {
+
+	/**
+	 * Once full, the least recently used entry is discarded.
+	 */
+	@Test
+	public void testLruEviction() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(2, 60000);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		assertEquals("A", cache.get("a"));
+
+		cache.put("c", "C");
+		assertEquals(2, cache.size());
+		assertNull(cache.get("b"));
+		assertEquals("A", cache.get("a"));
+		assertEquals("C", cache.get("c"));
+	}
+
+	@Test
+	public void testTtlExpiry() throws InterruptedException {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 20);
+		cache.put("a", "A");
+		assertEquals("A", cache.get("a"));
+
+		Thread.sleep(40);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+
+		// A new value is valid for a whole TTL again
+		cache.put("a", "A2");
+		assertEquals("A2", cache.get("a"));
+	}
+
+	/**
+	 * Once the values weigh more than the limit, the least recently used are
+	 * discarded; a value heavier than the limit isn't cached at all.
+	 */
+	@Test
+	public void testMaxWeight() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 5, 60000, String::length);
+		cache.put("a", "AA");
+		cache.put("b", "BB");
+		assertEquals("AA", cache.get("a"));
+		assertEquals(4, cache.weight());
+
+		cache.put("c", "CC");
+		assertNull(cache.get("b"));
+		assertEquals(4, cache.weight());
+
+		// Replacing a value only counts the new one
+		cache.put("a", "A");
+		assertEquals(3, cache.weight());
+
+		cache.put("d", "DDDDDD");
+		assertNull(cache.get("d"));
+		assertEquals("A", cache.get("a"));
+		assertEquals("CC", cache.get("c"));
+	}
+
+	/**
+	 * The big caches are split in segments, which never hold more than the
+	 * max size as a whole.
+	 */
+	@Test
+	public void testSegments() {
+		ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(1000, 60000);
+		for (int i = 0; i < 5000; i++) {
+			cache.put(i, i);
+		}
+		assertTrue(cache.size() <= 1000);
+		assertTrue(cache.size() > 900);
+		assertEquals(Integer.valueOf(4999), cache.get(4999));
+	}
+
+	@Test
+	public void testRemove() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000);
+		cache.put("a", "A");
+		cache.put("b", "B");
+
+		cache.remove("a");
+		assertNull(cache.get("a"));
+		assertEquals("B", cache.get("b"));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+}
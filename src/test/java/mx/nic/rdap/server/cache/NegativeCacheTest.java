@@ -0,0 +1,57 @@
+package mx.nic.rdap.server.cache;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.configuration.TestConfiguration;
+
+public class NegativeCacheTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestConfiguration.load("negative_cache_size", "10");
+		NegativeCache.init();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestConfiguration.load();
+		NegativeCache.init();
+	}
+
+	/**
+	 * The names are normalized, the rest of the objects are kept as they are.
+	 */
+	@Test
+	public void testGetKey() {
+		assertEquals("domain/example.com", NegativeCache.getKey("domain", "Example.COM."));
+		assertEquals("nameserver/ns.example.com", NegativeCache.getKey("nameserver", "NS.example.com"));
+		assertEquals("entity/XXXX", NegativeCache.getKey("entity", "XXXX"));
+		assertEquals("ip/192.0.2.0/24", NegativeCache.getKey("ip", "192.0.2.0/24"));
+	}
+
+	@Test
+	public void testInvalidate() {
+		NegativeCache.putMiss(NegativeCache.getKey("domain", "example.com"));
+		NegativeCache.putMiss(NegativeCache.getKey("entity", "XXXX"));
+		assertTrue(NegativeCache.isMiss("domain/example.com"));
+
+		NegativeCache.invalidate("domain", "EXAMPLE.com.");
+		assertFalse(NegativeCache.isMiss("domain/example.com"));
+		assertTrue(NegativeCache.isMiss("entity/XXXX"));
+
+		NegativeCache.invalidateAll();
+		assertFalse(NegativeCache.isMiss("entity/XXXX"));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		TestConfiguration.load();
+		NegativeCache.init();
+		assertFalse(NegativeCache.isEnabled());
+
+		NegativeCache.putMiss("domain/example.com");
+		assertFalse(NegativeCache.isMiss("domain/example.com"));
+	}
+
+}
@@ -0,0 +1,156 @@
+package mx.nic.rdap.server.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.configuration.TestConfiguration;
+import mx.nic.rdap.server.servlet.RenderedResponse;
+
+public class RequestCoalescerTest extends TestCase {
+
+	private static final int WAITERS = 4;
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setUp() throws Exception {
+		TestConfiguration.load("request_coalescing_enabled", "true");
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+		TestConfiguration.load();
+	}
+
+	/**
+	 * The requests that arrive while the response is being built get the same
+	 * response, built once.
+	 */
+	@Test
+	public void testSharedResult() throws Exception {
+		RenderedResponse response = RenderedResponse.ok("application/rdap+json", new byte[0]);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger builds = new AtomicInteger();
+
+		List<Future<RenderedResponse>> results = execute(() -> {
+			builds.incrementAndGet();
+			await(release);
+			return response;
+		}, release);
+
+		for (Future<RenderedResponse> result : results) {
+			assertSame(response, result.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, builds.get());
+	}
+
+	/**
+	 * If the response can't be built, every waiting request gets the
+	 * exception.
+	 */
+	@Test
+	public void testExceptionToEveryWaiter() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<RenderedResponse>> results = execute(() -> {
+			await(release);
+			throw new IllegalStateException("Failure");
+		}, release);
+
+		for (Future<RenderedResponse> result : results) {
+			try {
+				result.get(5, TimeUnit.SECONDS);
+				fail("The exception didn't reach a request");
+			} catch (ExecutionException e) {
+				assertEquals(IllegalStateException.class, e.getCause().getClass());
+				assertEquals("Failure", e.getCause().getMessage());
+			}
+		}
+	}
+
+	/**
+	 * The waiting requests give up after the coalescing timeout, even if the
+	 * asynchronous requests are disabled.
+	 */
+	@Test
+	public void testWaitTimeout() throws Exception {
+		TestConfiguration.load("request_coalescing_enabled", "true", "request_coalescing_timeout", "50");
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch building = new CountDownLatch(1);
+		Future<RenderedResponse> first = executor.submit(() -> RequestCoalescer.execute("key", () -> {
+			building.countDown();
+			await(release);
+			return RenderedResponse.ok("application/rdap+json", new byte[0]);
+		}));
+		assertTrue(building.await(5, TimeUnit.SECONDS));
+
+		try {
+			RenderedResponse waiter = RequestCoalescer.execute("key", () -> {
+				throw new AssertionError("The response was built twice");
+			});
+			assertEquals(503, waiter.getStatus());
+		} finally {
+			release.countDown();
+		}
+		assertFalse(first.get(5, TimeUnit.SECONDS).isError());
+	}
+
+	/**
+	 * Once done, the next request builds its own response.
+	 */
+	@Test
+	public void testNotCached() {
+		RenderedResponse first = RenderedResponse.ok("application/rdap+json", new byte[0]);
+		RenderedResponse second = RenderedResponse.ok("application/rdap+json", new byte[0]);
+
+		assertSame(first, RequestCoalescer.execute("key", () -> first));
+		assertSame(second, RequestCoalescer.execute("key", () -> second));
+	}
+
+	/**
+	 * Runs a request that builds the response with <code>builder</code>, and
+	 * {@link #WAITERS} requests of the same key that arrive meanwhile; then
+	 * lets <code>builder</code> finish.
+	 */
+	private List<Future<RenderedResponse>> execute(Supplier<RenderedResponse> builder, CountDownLatch release)
+			throws InterruptedException {
+		CountDownLatch building = new CountDownLatch(1);
+		List<Future<RenderedResponse>> results = new ArrayList<>();
+		results.add(executor.submit(() -> RequestCoalescer.execute("key", () -> {
+			building.countDown();
+			return builder.get();
+		})));
+		assertTrue(building.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < WAITERS; i++) {
+			results.add(executor.submit(() -> RequestCoalescer.execute("key", () -> {
+				throw new AssertionError("The response was built twice");
+			})));
+		}
+		// Give the waiters time to find the request in progress
+		Thread.sleep(100);
+		release.countDown();
+		return results;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
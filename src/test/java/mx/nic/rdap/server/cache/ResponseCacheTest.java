@@ -0,0 +1,73 @@
+package mx.nic.rdap.server.cache;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.configuration.TestConfiguration;
+import mx.nic.rdap.server.servlet.RenderedResponse;
+
+public class ResponseCacheTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestConfiguration.load("response_cache_size", "10");
+		ResponseCache.init();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestConfiguration.load();
+		ResponseCache.init();
+	}
+
+	@Test
+	public void testSuccessfulResponse() {
+		RenderedResponse response = RenderedResponse.ok("application/rdap+json",
+				"{}".getBytes(StandardCharsets.UTF_8));
+		ResponseCache.put("key", response);
+
+		assertSame(response, ResponseCache.get("key"));
+		ResponseCache.clear();
+		assertNull(ResponseCache.get("key"));
+	}
+
+	/**
+	 * The errors (eg. a data access failure) must not outlive the request.
+	 */
+	@Test
+	public void testErrorResponsesRefused() {
+		ResponseCache.put("not found", RenderedResponse.error(404, null));
+		ResponseCache.put("failure", RenderedResponse.error(500, "Failure"));
+
+		assertNull(ResponseCache.get("not found"));
+		assertNull(ResponseCache.get("failure"));
+	}
+
+	/**
+	 * The bodies of the cached responses can't exceed the max memory.
+	 */
+	@Test
+	public void testMaxMemory() throws Exception {
+		TestConfiguration.load("response_cache_size", "10", "response_cache_max_memory", "1");
+		ResponseCache.init();
+
+		byte[] body = new byte[600 * 1024];
+		ResponseCache.put("first", RenderedResponse.ok("application/rdap+json", body));
+		ResponseCache.put("second", RenderedResponse.ok("application/rdap+json", body));
+		assertNull(ResponseCache.get("first"));
+		assertNotNull(ResponseCache.get("second"));
+	}
+
+	@Test
+	public void testDisabled() throws Exception {
+		TestConfiguration.load();
+		ResponseCache.init();
+
+		assertFalse(ResponseCache.isEnabled());
+		ResponseCache.put("key", RenderedResponse.ok("application/rdap+json", new byte[0]));
+		assertNull(ResponseCache.get("key"));
+	}
+
+}
@@ -0,0 +1,37 @@
+package mx.nic.rdap.server.configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import mx.nic.rdap.db.exception.InitializationException;
+
+/**
+ * Loads the default configuration at {@link RdapConfiguration}, with some
+ * values overridden, for the tests of the classes that read it.
+ */
+public final class TestConfiguration {
+
+	private TestConfiguration() {
+		// no code.
+	}
+
+	/**
+	 * @param properties
+	 *            Keys and values that replace the defaults (eg.
+	 *            "response_cache_size", "10")
+	 */
+	public static void load(String... properties) throws IOException, InitializationException {
+		Properties configuration = new Properties();
+		try (InputStream in = TestConfiguration.class.getClassLoader()
+				.getResourceAsStream("META-INF/configuration.properties")) {
+			configuration.load(in);
+		}
+		for (int i = 0; i < properties.length; i += 2) {
+			configuration.setProperty(properties[i], properties[i + 1]);
+		}
+		RdapConfiguration.loadSystemProperties(configuration);
+		RdapConfiguration.loadRdapConfiguration();
+	}
+
+}
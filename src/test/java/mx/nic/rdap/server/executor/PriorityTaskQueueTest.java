@@ -0,0 +1,192 @@
+package mx.nic.rdap.server.executor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.executor.PriorityTaskQueue.Task;
+
+public class PriorityTaskQueueTest extends TestCase {
+
+	private static final int[] WEIGHTS = { 4, 2, 1, 1 };
+
+	/**
+	 * While every class has tasks waiting, each round of 8 tasks (the total
+	 * weight) follows the weights.
+	 */
+	@Test
+	public void testWeightedDrain() {
+		PriorityTaskQueue queue = new PriorityTaskQueue(100, WEIGHTS);
+		int[] polled = new int[WEIGHTS.length];
+		for (RequestPriority priority : RequestPriority.values()) {
+			offer(queue, priority, 40, polled);
+		}
+
+		for (int round = 1; round <= 5; round++) {
+			poll(queue, 8);
+			for (int i = 0; i < WEIGHTS.length; i++) {
+				assertEquals(WEIGHTS[i] * round, polled[i]);
+			}
+		}
+	}
+
+	/**
+	 * The share of the empty classes goes to the rest, in proportion.
+	 */
+	@Test
+	public void testEmptyClassShare() {
+		PriorityTaskQueue queue = new PriorityTaskQueue(100, WEIGHTS);
+		int[] polled = new int[WEIGHTS.length];
+		offer(queue, RequestPriority.AUTHENTICATED_LOOKUP, 30, polled);
+		offer(queue, RequestPriority.ANONYMOUS_SEARCH, 30, polled);
+
+		poll(queue, 25);
+		assertEquals(20, polled[RequestPriority.AUTHENTICATED_LOOKUP.ordinal()]);
+		assertEquals(5, polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]);
+
+		// Once the heavier class is empty, the lighter one gets everything
+		poll(queue, 35);
+		assertEquals(30, polled[RequestPriority.AUTHENTICATED_LOOKUP.ordinal()]);
+		assertEquals(30, polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]);
+		assertNull(queue.poll());
+	}
+
+	/**
+	 * A full class doesn't take the room of the others.
+	 */
+	@Test
+	public void testCapacityPerClass() {
+		PriorityTaskQueue queue = new PriorityTaskQueue(2, WEIGHTS);
+		int[] polled = new int[WEIGHTS.length];
+
+		offer(queue, RequestPriority.ANONYMOUS_SEARCH, 2, polled);
+		assertFalse(queue.offer(new Task(() -> {
+			// no code.
+		}, RequestPriority.ANONYMOUS_SEARCH)));
+		assertEquals(6, queue.remainingCapacity());
+
+		offer(queue, RequestPriority.AUTHENTICATED_LOOKUP, 2, polled);
+		assertEquals(4, queue.size());
+
+		poll(queue, 1);
+		offer(queue, RequestPriority.AUTHENTICATED_LOOKUP, 1, polled);
+	}
+
+	/**
+	 * The timed offer waits for room at the class of the task, up to the
+	 * timeout.
+	 */
+	@Test
+	public void testTimedOffer() throws InterruptedException {
+		PriorityTaskQueue queue = new PriorityTaskQueue(1, WEIGHTS);
+		int[] polled = new int[WEIGHTS.length];
+		offer(queue, RequestPriority.ANONYMOUS_SEARCH, 1, polled);
+
+		long start = System.nanoTime();
+		assertFalse(queue.offer(new Task(() -> polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]++,
+				RequestPriority.ANONYMOUS_SEARCH), 50, TimeUnit.MILLISECONDS));
+		assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+
+		// Other classes have room
+		assertTrue(queue.offer(new Task(() -> polled[RequestPriority.AUTHENTICATED_LOOKUP.ordinal()]++,
+				RequestPriority.AUTHENTICATED_LOOKUP), 0, TimeUnit.MILLISECONDS));
+
+		Thread consumer = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				return;
+			}
+			poll(queue, 2);
+		});
+		consumer.start();
+		assertTrue(queue.offer(new Task(() -> polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]++,
+				RequestPriority.ANONYMOUS_SEARCH), 10, TimeUnit.SECONDS));
+		consumer.join();
+		assertEquals(1, queue.size());
+	}
+
+	/**
+	 * Put blocks until there's room at the class of the task.
+	 */
+	@Test
+	public void testPut() throws InterruptedException {
+		PriorityTaskQueue queue = new PriorityTaskQueue(1, WEIGHTS);
+		int[] polled = new int[WEIGHTS.length];
+		queue.put(new Task(() -> polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]++,
+				RequestPriority.ANONYMOUS_SEARCH));
+
+		CountDownLatch put = new CountDownLatch(1);
+		Thread producer = new Thread(() -> {
+			try {
+				queue.put(new Task(() -> polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]++,
+						RequestPriority.ANONYMOUS_SEARCH));
+				put.countDown();
+			} catch (InterruptedException e) {
+				// Test fails below
+			}
+		});
+		producer.start();
+		assertFalse(put.await(50, TimeUnit.MILLISECONDS));
+
+		poll(queue, 1);
+		assertTrue(put.await(10, TimeUnit.SECONDS));
+		producer.join();
+		poll(queue, 1);
+		assertEquals(2, polled[RequestPriority.ANONYMOUS_SEARCH.ordinal()]);
+	}
+
+	@Test
+	public void testOnlyTasks() {
+		PriorityTaskQueue queue = new PriorityTaskQueue(2, WEIGHTS);
+		try {
+			queue.offer(() -> {
+				// no code.
+			});
+			fail("A task without class was queued");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+	@Test
+	public void testDrainTo() {
+		PriorityTaskQueue queue = new PriorityTaskQueue(100, WEIGHTS);
+		int[] polled = new int[WEIGHTS.length];
+		for (RequestPriority priority : RequestPriority.values()) {
+			offer(queue, priority, 2, polled);
+		}
+
+		List<Runnable> drained = new ArrayList<>();
+		assertEquals(3, queue.drainTo(drained, 3));
+		assertEquals(5, queue.drainTo(drained));
+		assertEquals(0, queue.size());
+		for (Runnable task : drained) {
+			task.run();
+		}
+		for (int count : polled) {
+			assertEquals(2, count);
+		}
+	}
+
+	/**
+	 * Offers <code>tasks</code> tasks of <code>priority</code>, each one counts
+	 * itself at <code>polled</code> when run.
+	 */
+	private static void offer(PriorityTaskQueue queue, RequestPriority priority, int tasks, int[] polled) {
+		for (int i = 0; i < tasks; i++) {
+			assertTrue(queue.offer(new Task(() -> polled[priority.ordinal()]++, priority)));
+		}
+	}
+
+	private static void poll(PriorityTaskQueue queue, int tasks) {
+		for (int i = 0; i < tasks; i++) {
+			queue.poll().run();
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class AimdLimitTest extends TestCase {
+
+	private static final long THRESHOLD = 1000;
+	private static final long FAST = 10;
+	private static final long SLOW = 5000;
+
+	@Test
+	public void testTryAcquire() {
+		AimdLimit limit = new AimdLimit(2, 1, 10, THRESHOLD, 0.5);
+
+		long first = limit.tryAcquire();
+		assertTrue(first != -1);
+		assertTrue(limit.tryAcquire() != -1);
+		assertEquals(-1, limit.tryAcquire());
+		assertEquals(2, limit.getInFlight());
+
+		// Unknown latency, the limit isn't adapted
+		limit.release(first, -1);
+		assertEquals(1, limit.getInFlight());
+		assertEquals(2, limit.getLimit());
+		assertTrue(limit.tryAcquire() != -1);
+	}
+
+	/**
+	 * A slow request multiplies the limit by the backoff ratio, but the
+	 * requests admitted before that decrease don't decrease it again.
+	 */
+	@Test
+	public void testMultiplicativeDecrease() throws InterruptedException {
+		AimdLimit limit = new AimdLimit(100, 1, 200, THRESHOLD, 0.5);
+		Thread.sleep(1);
+
+		long[] admitted = new long[5];
+		for (int i = 0; i < admitted.length; i++) {
+			admitted[i] = limit.tryAcquire();
+		}
+
+		limit.release(admitted[0], SLOW);
+		assertEquals(50, limit.getLimit());
+		for (int i = 1; i < admitted.length; i++) {
+			limit.release(admitted[i], SLOW);
+		}
+		assertEquals(50, limit.getLimit());
+
+		Thread.sleep(1);
+		limit.release(limit.tryAcquire(), SLOW);
+		assertEquals(25, limit.getLimit());
+	}
+
+	/**
+	 * Slow requests released at the same time decrease the limit only once.
+	 */
+	@Test
+	public void testConcurrentDecrease() throws InterruptedException {
+		for (int attempt = 0; attempt < 20; attempt++) {
+			AimdLimit limit = new AimdLimit(128, 1, 200, THRESHOLD, 0.5);
+			Thread.sleep(1);
+
+			long[] admitted = new long[8];
+			for (int i = 0; i < admitted.length; i++) {
+				admitted[i] = limit.tryAcquire();
+			}
+
+			CountDownLatch start = new CountDownLatch(1);
+			Thread[] threads = new Thread[admitted.length];
+			for (int i = 0; i < threads.length; i++) {
+				long time = admitted[i];
+				threads[i] = new Thread(() -> {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					limit.release(time, SLOW);
+				});
+				threads[i].start();
+			}
+			start.countDown();
+			for (Thread thread : threads) {
+				thread.join();
+			}
+
+			assertEquals(64, limit.getLimit());
+			assertEquals(0, limit.getInFlight());
+		}
+	}
+
+	/**
+	 * A fast request done while at least half of the limit is used adds
+	 * 1/limit to it, ie. one per round.
+	 */
+	@Test
+	public void testAdditiveIncrease() {
+		AimdLimit limit = new AimdLimit(10, 1, 100, THRESHOLD, 0.5);
+		for (int i = 0; i < 10; i++) {
+			limit.tryAcquire();
+		}
+
+		// 1/10 + 1/10.1 + ... stays below 1 for the first 10 releases
+		for (int i = 0; i < 10; i++) {
+			limit.release(limit.tryAcquire(), FAST);
+			assertEquals(10, limit.getLimit());
+		}
+		limit.release(limit.tryAcquire(), FAST);
+		assertEquals(11, limit.getLimit());
+	}
+
+	/**
+	 * A fast request done while the limit isn't being used says nothing about
+	 * a higher limit.
+	 */
+	@Test
+	public void testLowUtilisation() {
+		AimdLimit limit = new AimdLimit(10, 1, 100, THRESHOLD, 0.5);
+
+		for (int i = 0; i < 100; i++) {
+			limit.release(limit.tryAcquire(), FAST);
+		}
+		assertEquals(10, limit.getLimit());
+	}
+
+	@Test
+	public void testClamped() throws InterruptedException {
+		assertEquals(20, new AimdLimit(50, 5, 20, THRESHOLD, 0.5).getLimit());
+		assertEquals(5, new AimdLimit(1, 5, 20, THRESHOLD, 0.5).getLimit());
+
+		AimdLimit limit = new AimdLimit(20, 5, 20, THRESHOLD, 0.5);
+		for (int i = 0; i < 20; i++) {
+			limit.tryAcquire();
+		}
+		for (int i = 0; i < 100; i++) {
+			limit.release(limit.tryAcquire(), FAST);
+		}
+		assertEquals(20, limit.getLimit());
+
+		// 20, 10, then 5 instead of 2.5
+		limit = new AimdLimit(20, 5, 20, THRESHOLD, 0.5);
+		for (int i = 0; i < 3; i++) {
+			Thread.sleep(1);
+			limit.release(limit.tryAcquire(), SLOW);
+		}
+		assertEquals(5, limit.getLimit());
+	}
+
+}
@@ -0,0 +1,104 @@
+package mx.nic.rdap.server.filter;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class ClientKeyTest extends TestCase {
+
+	/**
+	 * An IPv4 address and its IPv4-mapped IPv6 form are the same client.
+	 */
+	@Test
+	public void testIpv4Mapped() {
+		ClientKey ipv4 = ClientKey.fromAddress("192.0.2.1");
+		ClientKey mapped = ClientKey.fromAddress("::ffff:192.0.2.1");
+
+		assertTrue(ipv4.isIpv4());
+		assertTrue(mapped.isIpv4());
+		assertEquals(ipv4, mapped);
+		assertEquals(ipv4.hashCode(), mapped.hashCode());
+		assertEquals(0L, ipv4.getHigh());
+		assertEquals(0xFFFFC0000201L, ipv4.getLow());
+	}
+
+	@Test
+	public void testInvalidAddresses() {
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress(null));
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress(""));
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress("256.0.0.1"));
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress("192.0.2"));
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress("192.0.2.1."));
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress("example.com"));
+		assertEquals(ClientKey.UNKNOWN, ClientKey.fromAddress("2001:db8::g"));
+	}
+
+	@Test
+	public void testIpv4Prefix() {
+		ClientKey key = ClientKey.fromAddress("192.0.2.130");
+
+		assertEquals(ClientKey.fromAddress("192.0.2.0"), key.toPrefix(24, 64));
+		assertEquals(ClientKey.fromAddress("192.0.2.128"), key.toPrefix(25, 64));
+		assertEquals(ClientKey.fromAddress("0.0.0.0"), key.toPrefix(0, 64));
+		assertSame(key, key.toPrefix(32, 64));
+		assertTrue(key.toPrefix(24, 64).isIpv4());
+	}
+
+	@Test
+	public void testIpv6Prefix() {
+		ClientKey key = ClientKey.fromAddress("2001:db8:1:2:3:4:5:6");
+
+		assertEquals(ClientKey.fromAddress("2001:db8:1:2::"), key.toPrefix(24, 64));
+		assertEquals(ClientKey.fromAddress("2001:db8::"), key.toPrefix(24, 32));
+		assertEquals(ClientKey.fromAddress("2001:db8:1:2:3::"), key.toPrefix(24, 80));
+		assertEquals(ClientKey.fromAddress("::"), key.toPrefix(24, 0));
+		assertSame(key, key.toPrefix(24, 128));
+	}
+
+	/**
+	 * Usernames and unknown addresses have no network.
+	 */
+	@Test
+	public void testPrefixWithoutAddress() {
+		ClientKey user = ClientKey.fromUsername("user");
+
+		assertSame(user, user.toPrefix(24, 64));
+		assertSame(ClientKey.UNKNOWN, ClientKey.UNKNOWN.toPrefix(24, 64));
+	}
+
+	/**
+	 * {@link ClientKey#parse(String)} reads what {@link ClientKey#toString()}
+	 * writes.
+	 */
+	@Test
+	public void testParseToString() {
+		String[] values = { "192.0.2.1", "0.0.0.0", "255.255.255.255", "2001:db8:0:0:0:0:0:1",
+				"fe80:0:0:0:ffff:ffff:abcd:ef01", "0:0:0:0:0:0:0:1", "user someone",
+				"user user 192.0.2.1" };
+		for (String value : values) {
+			ClientKey key = ClientKey.parse(value);
+			assertEquals(value, key.toString());
+			assertEquals(key, ClientKey.parse(key.toString()));
+		}
+
+		assertEquals("2001:db8:0:0:0:0:0:1", ClientKey.fromAddress("2001:DB8::1").toString());
+		assertEquals("192.0.2.1", ClientKey.fromAddress("::ffff:c000:201").toString());
+		assertEquals("unknown", ClientKey.UNKNOWN.toString());
+	}
+
+	/**
+	 * A user is never the same client as an address.
+	 */
+	@Test
+	public void testUsername() {
+		ClientKey user = ClientKey.fromUsername("192.0.2.1");
+
+		assertEquals("192.0.2.1", user.getUsername());
+		assertFalse(user.isIpv4());
+		assertFalse(user.equals(ClientKey.fromAddress("192.0.2.1")));
+		assertFalse(ClientKey.fromAddress("192.0.2.1").equals(user));
+		assertEquals(user, ClientKey.fromUsername("192.0.2.1"));
+		assertNull(ClientKey.fromAddress("192.0.2.1").getUsername());
+	}
+
+}
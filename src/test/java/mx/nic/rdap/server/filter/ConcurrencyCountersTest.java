@@ -0,0 +1,84 @@
+package mx.nic.rdap.server.filter;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.filter.ConcurrencyCounters.Admission;
+
+public class ConcurrencyCountersTest extends TestCase {
+
+	private static final ClientKey CLIENT = ClientKey.fromAddress("192.0.2.1");
+	private static final ClientKey OTHER = ClientKey.fromAddress("192.0.2.2");
+
+	@Test
+	public void testLimit() {
+		ConcurrencyCounters counters = new ConcurrencyCounters(2, 10);
+
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+		assertEquals(Admission.CLIENT_LIMIT, counters.tryAcquire(CLIENT));
+		assertFalse(counters.acquire(CLIENT));
+
+		// Other clients have their own limit
+		assertTrue(counters.acquire(OTHER));
+
+		counters.release(CLIENT);
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+	}
+
+	/**
+	 * The clients that don't fit share the overflow slots, each one with the
+	 * limit of a single client.
+	 */
+	@Test
+	public void testMaxClients() {
+		ConcurrencyCounters counters = new ConcurrencyCounters(2, 1);
+
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(OTHER));
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(OTHER));
+		assertEquals(Admission.TOO_MANY_CLIENTS, counters.tryAcquire(OTHER));
+		assertEquals(1, counters.getClientCount());
+
+		// The tracked client can still send its requests
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+
+		// Releasing the overflow makes room at the slot
+		counters.release(OTHER);
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(OTHER));
+
+		counters.release(CLIENT);
+		counters.release(CLIENT);
+		counters.release(OTHER);
+		counters.release(OTHER);
+		assertEquals(0, counters.getClientCount());
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(OTHER));
+		assertEquals(1, counters.getClientCount());
+	}
+
+	/**
+	 * The last release forgets the client, and releasing an unknown client
+	 * changes nothing.
+	 */
+	@Test
+	public void testReleaseForgetsClient() {
+		ConcurrencyCounters counters = new ConcurrencyCounters(2, 10);
+
+		counters.acquire(CLIENT);
+		counters.acquire(CLIENT);
+		assertEquals(1, counters.getClientCount());
+
+		counters.release(CLIENT);
+		assertEquals(1, counters.getClientCount());
+		counters.release(CLIENT);
+		assertEquals(0, counters.getClientCount());
+
+		counters.release(CLIENT);
+		counters.release(OTHER);
+		assertEquals(0, counters.getClientCount());
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+		assertEquals(Admission.ACCEPTED, counters.tryAcquire(CLIENT));
+		assertEquals(Admission.CLIENT_LIMIT, counters.tryAcquire(CLIENT));
+	}
+
+}
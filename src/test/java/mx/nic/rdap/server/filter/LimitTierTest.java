@@ -0,0 +1,35 @@
+package mx.nic.rdap.server.filter;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class LimitTierTest extends TestCase {
+
+	private static final ClientKey CLIENT = ClientKey.fromAddress("192.0.2.1");
+
+	/**
+	 * By default, the most expensive request fits in the budget.
+	 */
+	@Test
+	public void testDefaultBudgetBurst() {
+		LimitTier tier = LimitTier.load(new TestFilterConfig("budgetRate", "1"), "network", 0, 100, 50, "");
+
+		assertEquals(0, tier.tryAcquireRate(CLIENT, EndpointClass.SEARCH, 50));
+		assertTrue(tier.tryAcquireRate(CLIENT, EndpointClass.SEARCH, 50) > 0);
+	}
+
+	/**
+	 * A budget burst smaller than the most expensive request is raised to its
+	 * cost, otherwise the request would never be allowed.
+	 */
+	@Test
+	public void testBudgetBurstTooSmall() {
+		LimitTier tier = LimitTier.load(new TestFilterConfig("budgetRate", "1", "budgetBurst", "10"), "network", 0,
+				100, 50, "");
+
+		assertEquals(0, tier.tryAcquireRate(CLIENT, EndpointClass.SEARCH, 50));
+		assertTrue(tier.tryAcquireRate(CLIENT, EndpointClass.SEARCH, 1) > 0);
+	}
+
+}
@@ -0,0 +1,91 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class PenaltyBoxTest extends TestCase {
+
+	private static final long PERIOD = TimeUnit.MINUTES.toNanos(5);
+
+	/**
+	 * By default only the offending address is blocked, not its neighbors.
+	 */
+	@Test
+	public void testIpv4Address() {
+		PenaltyBox box = new PenaltyBox(32, 10, 10, 3, PERIOD);
+		ClientKey client = ClientKey.fromAddress("192.0.2.1");
+
+		offend(box, client, 2);
+		assertFalse(box.isBlocked(client));
+		offend(box, client, 1);
+		assertTrue(box.isBlocked(client));
+		assertFalse(box.isBlocked(ClientKey.fromAddress("192.0.2.2")));
+
+		// The edges of the address space
+		for (String address : new String[] { "0.0.0.0", "255.255.255.255" }) {
+			ClientKey key = ClientKey.fromAddress(address);
+			offend(box, key, 3);
+			assertTrue(address, box.isBlocked(key));
+		}
+	}
+
+	/**
+	 * A shorter prefix blocks the whole network.
+	 */
+	@Test
+	public void testIpv4Network() {
+		PenaltyBox box = new PenaltyBox(24, 10, 10, 1, PERIOD);
+
+		box.offend(ClientKey.fromAddress("192.0.2.1"));
+		assertTrue(box.isBlocked(ClientKey.fromAddress("192.0.2.200")));
+		assertFalse(box.isBlocked(ClientKey.fromAddress("192.0.3.1")));
+	}
+
+	@Test
+	public void testIpv6Network() {
+		PenaltyBox box = new PenaltyBox(32, 10, 10, 1, PERIOD);
+
+		box.offend(ClientKey.fromAddress("2001:db8:1:2::1"));
+		assertTrue(box.isBlocked(ClientKey.fromAddress("2001:db8:1:2::ffff")));
+		assertFalse(box.isBlocked(ClientKey.fromAddress("2001:db8:1:3::1")));
+	}
+
+	/**
+	 * Once the box holds its capacity, the next offenders aren't blocked.
+	 */
+	@Test
+	public void testCapacity() {
+		PenaltyBox box = new PenaltyBox(32, 2, 10, 1, PERIOD);
+
+		for (int i = 1; i <= 3; i++) {
+			box.offend(ClientKey.fromAddress("192.0.2." + i));
+		}
+		assertTrue(box.isBlocked(ClientKey.fromAddress("192.0.2.1")));
+		assertTrue(box.isBlocked(ClientKey.fromAddress("192.0.2.2")));
+		assertFalse(box.isBlocked(ClientKey.fromAddress("192.0.2.3")));
+	}
+
+	/**
+	 * Users and unknown addresses are never blocked.
+	 */
+	@Test
+	public void testWithoutAddress() {
+		PenaltyBox box = new PenaltyBox(32, 10, 10, 1, PERIOD);
+		ClientKey user = ClientKey.fromUsername("user");
+
+		box.offend(user);
+		box.offend(ClientKey.UNKNOWN);
+		assertFalse(box.isBlocked(user));
+		assertFalse(box.isBlocked(ClientKey.UNKNOWN));
+	}
+
+	private static void offend(PenaltyBox box, ClientKey client, int times) {
+		for (int i = 0; i < times; i++) {
+			box.offend(client);
+		}
+	}
+
+}
@@ -0,0 +1,83 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RateLimitSyncTest extends TestCase {
+
+	private static final ClientKey CLIENT = ClientKey.fromAddress("192.0.2.1");
+
+	/**
+	 * A client that spreads its requests between two nodes gets the limit
+	 * once.
+	 */
+	@Test
+	public void testLimitedOnce() {
+		LocalRateLimitStore store = new LocalRateLimitStore(true);
+		LimitTier tierA = newTier();
+		LimitTier tierB = newTier();
+		RateLimitSync nodeA = new RateLimitSync(store, "a", Collections.singletonList(tierA));
+		RateLimitSync nodeB = new RateLimitSync(store, "b", Collections.singletonList(tierB));
+		try {
+			nodeA.sync();
+			nodeB.sync();
+
+			for (int i = 0; i < 3; i++) {
+				assertEquals(0, tierA.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1));
+			}
+			nodeA.sync();
+			nodeB.sync();
+
+			// Only one of the 4 tokens of the burst is left, at both nodes
+			assertEquals(0, tierB.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1));
+			assertTrue(tierB.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1) > 0);
+			nodeB.sync();
+			nodeA.sync();
+			assertTrue(tierA.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1) > 0);
+		} finally {
+			nodeA.stop();
+			nodeB.stop();
+		}
+	}
+
+	/**
+	 * A node isn't charged its own usage, nor the usage before it joined.
+	 */
+	@Test
+	public void testLateJoiningNode() {
+		LocalRateLimitStore store = new LocalRateLimitStore(true);
+		LimitTier tierA = newTier();
+		LimitTier tierB = newTier();
+		RateLimitSync nodeA = new RateLimitSync(store, "a", Collections.singletonList(tierA));
+		RateLimitSync nodeB = new RateLimitSync(store, "b", Collections.singletonList(tierB));
+		try {
+			nodeA.sync();
+			for (int i = 0; i < 3; i++) {
+				assertEquals(0, tierA.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1));
+			}
+			nodeA.sync();
+			nodeA.sync();
+			assertEquals(0, tierA.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1));
+
+			nodeB.sync();
+			for (int i = 0; i < 4; i++) {
+				assertEquals(0, tierB.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1));
+			}
+			assertTrue(tierB.tryAcquireRate(CLIENT, EndpointClass.LOOKUP, 1) > 0);
+		} finally {
+			nodeA.stop();
+			nodeB.stop();
+		}
+	}
+
+	/**
+	 * @return a tier that allows 1 lookup per second, in bursts of 4
+	 */
+	private static LimitTier newTier() {
+		return LimitTier.load(new TestFilterConfig("lookupRate", "1", "lookupBurst", "4"), "network", 0, 100, 1, "");
+	}
+
+}
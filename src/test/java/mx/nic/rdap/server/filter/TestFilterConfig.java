@@ -0,0 +1,49 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+
+/**
+ * Init parameters of a filter, for the tests of the classes that read them.
+ */
+final class TestFilterConfig implements FilterConfig {
+
+	private final Map<String, String> parameters;
+
+	/**
+	 * @param parameters
+	 *            Names and values of the parameters (eg. "lookupRate", "1")
+	 */
+	TestFilterConfig(String... parameters) {
+		this.parameters = new HashMap<>();
+		for (int i = 0; i < parameters.length; i += 2) {
+			this.parameters.put(parameters[i], parameters[i + 1]);
+		}
+	}
+
+	@Override
+	public String getFilterName() {
+		return "RateLimitFilter";
+	}
+
+	@Override
+	public ServletContext getServletContext() {
+		return null;
+	}
+
+	@Override
+	public String getInitParameter(String name) {
+		return parameters.get(name);
+	}
+
+	@Override
+	public Enumeration<String> getInitParameterNames() {
+		return Collections.enumeration(parameters.keySet());
+	}
+
+}
@@ -0,0 +1,104 @@
+package mx.nic.rdap.server.filter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TokenBucketsTest extends TestCase {
+
+	private static final ClientKey CLIENT = ClientKey.fromAddress("192.0.2.1");
+	private static final ClientKey OTHER = ClientKey.fromAddress("192.0.2.2");
+
+	/**
+	 * The whole burst can be taken at once, the next token has to wait for
+	 * the refill.
+	 */
+	@Test
+	public void testBurst() {
+		TokenBuckets buckets = new TokenBuckets(new double[] { 1, 0 }, new int[] { 3, 0 }, 10);
+
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 1));
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 2));
+		long wait = buckets.tryAcquire(CLIENT, 0, 1);
+		assertTrue(wait > 0);
+		assertTrue(wait <= TimeUnit.SECONDS.toNanos(1));
+
+		// A refusal doesn't take tokens, nor the other buckets
+		assertEquals(wait, buckets.tryAcquire(CLIENT, 0, 1), TimeUnit.MILLISECONDS.toNanos(100));
+		assertEquals(0, buckets.tryAcquire(CLIENT, 1, 1000));
+		assertEquals(0, buckets.tryAcquire(OTHER, 0, 3));
+	}
+
+	@Test
+	public void testRefill() throws InterruptedException {
+		// A token each 10 ms
+		TokenBuckets buckets = new TokenBuckets(new double[] { 100 }, new int[] { 2 }, 10);
+
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 2));
+		assertTrue(buckets.tryAcquire(CLIENT, 0, 1) > 0);
+
+		Thread.sleep(30);
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 2));
+	}
+
+	/**
+	 * A charge takes the tokens even if there aren't enough, and the client
+	 * waits for the debt.
+	 */
+	@Test
+	public void testChargeDebt() {
+		TokenBuckets buckets = new TokenBuckets(new double[] { 1 }, new int[] { 2 }, 10);
+
+		buckets.charge(CLIENT, 0, 5);
+		long wait = buckets.tryAcquire(CLIENT, 0, 1);
+		// 5 tokens of debt + 1 requested - 2 of burst
+		assertTrue(wait > TimeUnit.SECONDS.toNanos(3));
+		assertTrue(wait <= TimeUnit.SECONDS.toNanos(4));
+	}
+
+	@Test
+	public void testRefund() {
+		TokenBuckets buckets = new TokenBuckets(new double[] { 1 }, new int[] { 2 }, 10);
+
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 2));
+		assertTrue(buckets.tryAcquire(CLIENT, 0, 1) > 0);
+		buckets.refund(CLIENT, 0, 1);
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 1));
+
+		// Nothing to give back to an unknown client
+		buckets.refund(OTHER, 0, 1);
+		assertEquals(0, buckets.tryAcquire(OTHER, 0, 2));
+	}
+
+	/**
+	 * At maxClients, the clients with full buckets are discarded to make
+	 * room, and if there aren't any the new clients use their overflow
+	 * bucket.
+	 */
+	@Test
+	public void testSweepAtMaxClients() throws InterruptedException {
+		// A token each 10 ms
+		TokenBuckets buckets = new TokenBuckets(new double[] { 100 }, new int[] { 1 }, 1);
+
+		assertEquals(0, buckets.tryAcquire(CLIENT, 0, 1));
+		assertEquals(0, buckets.tryAcquire(OTHER, 0, 1));
+		assertEquals(-1, buckets.tryAcquire(OTHER, 0, 1));
+
+		// Once the bucket of the first client is full again
+		Thread.sleep(30);
+		assertEquals(0, buckets.tryAcquire(OTHER, 0, 1));
+		assertTrue(buckets.tryAcquire(OTHER, 0, 1) > 0);
+	}
+
+	@Test
+	public void testUnlimited() {
+		TokenBuckets buckets = new TokenBuckets(new double[] { 0, 0, 0 }, new int[] { 1, 1, 1 }, 0);
+
+		assertFalse(buckets.isEnabled());
+		assertFalse(buckets.isLimited(EndpointClass.SEARCH));
+		assertEquals(0, buckets.tryAcquire(CLIENT, EndpointClass.SEARCH));
+	}
+
+}
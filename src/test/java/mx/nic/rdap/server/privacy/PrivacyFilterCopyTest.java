@@ -0,0 +1,138 @@
+package mx.nic.rdap.server.privacy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.core.db.Domain;
+import mx.nic.rdap.core.db.Entity;
+import mx.nic.rdap.core.db.Event;
+import mx.nic.rdap.core.db.Nameserver;
+import mx.nic.rdap.server.configuration.TestConfiguration;
+import mx.nic.rdap.server.util.PrivacyUtil;
+
+/**
+ * The privacy filters must never modify the objects they receive, and must
+ * share with the original the parts they don't change. The test privacy
+ * settings (at META-INF/privacy) hide the handles to the anonymous users, and
+ * the port43 of the domains to everybody.
+ */
+public class PrivacyFilterCopyTest extends TestCase {
+
+	private static final SubjectSnapshot ANONYMOUS = SubjectSnapshot.of(null);
+
+	@Override
+	protected void setUp() throws Exception {
+		// Also prepares the privacy settings factory
+		TestConfiguration.load();
+		PrivacyUtil.loadAllPrivacySettings();
+	}
+
+	@Test
+	public void testDomain() {
+		Nameserver hiddenNameserver = newNameserver("NS1", "ns1.example.com");
+		Nameserver visibleNameserver = newNameserver(null, "ns2.example.com");
+		Entity entity = newEntity("ENT1");
+		List<Nameserver> nameservers = new ArrayList<>(Arrays.asList(hiddenNameserver, visibleNameserver));
+		List<Entity> entities = new ArrayList<>(Arrays.asList(entity));
+		List<Event> events = new ArrayList<>(Arrays.asList(new Event()));
+
+		Domain domain = new Domain();
+		domain.setHandle("DOM1");
+		domain.setLdhName("example.com");
+		domain.setPort43("whois.example.com");
+		domain.setNameServers(nameservers);
+		domain.setEntities(entities);
+		domain.setEvents(events);
+
+		Domain filtered = DomainPrivacyFilter.filterDomain(domain, ANONYMOUS);
+		assertNotSame(domain, filtered);
+		assertNull(filtered.getHandle());
+		assertNull(filtered.getPort43());
+		assertEquals("example.com", filtered.getLdhName());
+		assertNull(filtered.getNameServers().get(0).getHandle());
+		assertNull(filtered.getEntities().get(0).getHandle());
+
+		// The original is untouched
+		assertEquals("DOM1", domain.getHandle());
+		assertEquals("whois.example.com", domain.getPort43());
+		assertSame(nameservers, domain.getNameServers());
+		assertSame(hiddenNameserver, nameservers.get(0));
+		assertEquals("NS1", hiddenNameserver.getHandle());
+		assertSame(entities, domain.getEntities());
+		assertEquals("ENT1", entity.getHandle());
+
+		// What didn't change is shared
+		assertSame(events, filtered.getEvents());
+		assertSame(visibleNameserver, filtered.getNameServers().get(1));
+	}
+
+	/**
+	 * An object without anything to hide isn't copied at all.
+	 */
+	@Test
+	public void testNothingHidden() {
+		Domain domain = new Domain();
+		domain.setLdhName("example.com");
+		domain.setNameServers(new ArrayList<>(Arrays.asList(newNameserver(null, "ns1.example.com"))));
+		domain.setEntities(new ArrayList<>(Arrays.asList(newEntity(null))));
+
+		assertSame(domain, DomainPrivacyFilter.filterDomain(domain, ANONYMOUS));
+	}
+
+	@Test
+	public void testEntity() {
+		Entity hiddenEntity = newEntity("ENT2");
+		Entity visibleEntity = newEntity(null);
+		List<Entity> entities = new ArrayList<>(Arrays.asList(hiddenEntity, visibleEntity));
+		Entity entity = newEntity("ENT1");
+		entity.setEntities(entities);
+
+		Entity filtered = EntityPrivacyFilter.filterEntity(entity, ANONYMOUS);
+		assertNotSame(entity, filtered);
+		assertNull(filtered.getHandle());
+		assertNull(filtered.getEntities().get(0).getHandle());
+		assertSame(visibleEntity, filtered.getEntities().get(1));
+		assertSame(entity.getVCardList(), filtered.getVCardList());
+
+		assertEquals("ENT1", entity.getHandle());
+		assertSame(entities, entity.getEntities());
+		assertEquals("ENT2", hiddenEntity.getHandle());
+		assertEquals(Arrays.asList(hiddenEntity, visibleEntity), entities);
+	}
+
+	@Test
+	public void testNameserver() {
+		Entity visibleEntity = newEntity(null);
+		List<Entity> entities = new ArrayList<>(Arrays.asList(visibleEntity));
+		Nameserver nameserver = newNameserver("NS1", "ns1.example.com");
+		nameserver.setEntities(entities);
+
+		Nameserver filtered = NameserverPrivacyFilter.filterNameserver(nameserver, ANONYMOUS);
+		assertNotSame(nameserver, filtered);
+		assertNull(filtered.getHandle());
+		assertEquals("ns1.example.com", filtered.getLdhName());
+		assertSame(entities, filtered.getEntities());
+
+		assertEquals("NS1", nameserver.getHandle());
+		assertSame(entities, nameserver.getEntities());
+	}
+
+	private static Nameserver newNameserver(String handle, String name) {
+		Nameserver nameserver = new Nameserver();
+		nameserver.setHandle(handle);
+		nameserver.setLdhName(name);
+		return nameserver;
+	}
+
+	private static Entity newEntity(String handle) {
+		Entity entity = new Entity();
+		entity.setHandle(handle);
+		entity.setvCardList(new ArrayList<>());
+		return entity;
+	}
+
+}
@@ -0,0 +1,194 @@
+package mx.nic.rdap.server.privacy;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.shiro.subject.Subject;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.configuration.TestConfiguration;
+import mx.nic.rdap.server.privacy.PrivacyFields.DomainField;
+import mx.nic.rdap.server.util.PrivacyUtil;
+
+public class PrivacyPlanTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestConfiguration.load("user_roles", "registrar, auditor");
+		PrivacyUtil.loadAllPrivacySettings();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestConfiguration.load();
+		PrivacyUtil.loadAllPrivacySettings();
+	}
+
+	/**
+	 * Every kind of setting hides the same fields that the settings hide when
+	 * they're evaluated one by one.
+	 */
+	@Test
+	public void testSameAsSettings() {
+		Map<String, PrivacySetting> settings = new HashMap<>();
+		settings.put(DomainField.HANDLE.getKey(), PrivacySettingsFactory.getSetForRoles("any"));
+		settings.put(DomainField.LDH_NAME.getKey(), PrivacySettingsFactory.getSetForRoles("none"));
+		settings.put(DomainField.UNICODE_NAME.getKey(), PrivacySettingsFactory.getSetForRoles("authenticated"));
+		settings.put(DomainField.VARIANTS.getKey(), PrivacySettingsFactory.getSetForRoles("owner"));
+		settings.put(DomainField.NAMESERVERS.getKey(), PrivacySettingsFactory.getSetForRoles("registrar"));
+		settings.put(DomainField.SECURE_DNS.getKey(), PrivacySettingsFactory.getSetForRoles("registrar", "owner"));
+		settings.put(DomainField.ENTITIES.getKey(), PrivacySettingsFactory.getSetForRoles("registrar", "auditor"));
+		settings.put(DomainField.PORT43.getKey(), PrivacySettingsFactory.getSetForRoles("auditor"));
+		// Unknown keys are ignored, and the fields without settings are visible
+		settings.put("unknown", PrivacySettingsFactory.getSetForRoles("none"));
+		PrivacyPlan<DomainField> plan = new PrivacyPlan<>(DomainField.class, settings);
+
+		for (SubjectSnapshot snapshot : getSnapshots()) {
+			for (boolean isOwner : new boolean[] { false, true }) {
+				UserInfo userInfo = new UserInfo(snapshot, isOwner);
+				long expected = 0;
+				for (DomainField field : DomainField.values()) {
+					PrivacySetting setting = settings.get(field.getKey());
+					if (setting != null && setting.isHidden(userInfo)) {
+						expected |= 1L << field.ordinal();
+					}
+				}
+
+				String user = snapshot.getRoles() + (snapshot.isAuthenticated() ? "" : " anonymous")
+						+ (isOwner ? " owner" : "");
+				assertEquals(user, expected, plan.getHiddenFields(userInfo));
+				assertEquals(user, expected, plan.computeHiddenFields(userInfo));
+			}
+		}
+	}
+
+	/**
+	 * Only the fields with a setting are configured, so only their nested
+	 * values are filtered.
+	 */
+	@Test
+	public void testConfiguredFields() {
+		Map<String, PrivacySetting> settings = new HashMap<>();
+		settings.put(DomainField.HANDLE.getKey(), PrivacySettingsFactory.getSetForRoles("any"));
+		settings.put(DomainField.ENTITIES.getKey(), PrivacySettingsFactory.getSetForRoles("none"));
+		PrivacyPlan<DomainField> plan = new PrivacyPlan<>(DomainField.class, settings);
+
+		long configured = plan.getConfiguredFields();
+		assertTrue(ObjectPrivacyFilter.isConfigured(configured, DomainField.HANDLE));
+		assertTrue(ObjectPrivacyFilter.isConfigured(configured, DomainField.ENTITIES));
+		assertFalse(ObjectPrivacyFilter.isConfigured(configured, DomainField.NAMESERVERS));
+		assertFalse(ObjectPrivacyFilter.isConfigured(configured, DomainField.REMARKS));
+
+		// The default settings configure every field
+		configured = PrivacyUtil.getDomainPrivacyPlan().getConfiguredFields();
+		for (DomainField field : DomainField.values()) {
+			assertTrue(field.getKey(), ObjectPrivacyFilter.isConfigured(configured, field));
+		}
+	}
+
+	@Test
+	public void testIsHidden() {
+		long hidden = (1L << DomainField.HANDLE.ordinal()) | (1L << DomainField.LANG.ordinal());
+
+		assertTrue(PrivacyPlan.isHidden(hidden, DomainField.HANDLE));
+		assertTrue(PrivacyPlan.isHidden(hidden, DomainField.LANG));
+		assertFalse(PrivacyPlan.isHidden(hidden, DomainField.LDH_NAME));
+	}
+
+	/**
+	 * The users with the same roles share their class, and so do the users
+	 * whose roles don't change what they see.
+	 */
+	@Test
+	public void testInterned() {
+		SubjectSnapshot first = snapshot("first", "registrar");
+		SubjectSnapshot second = snapshot("second", "registrar");
+		assertSame(first.getVisibilityClass(), second.getVisibilityClass());
+
+		// None of the loaded settings depend on the roles
+		SubjectSnapshot withoutRoles = snapshot("third");
+		assertEquals(first.getVisibilityClass().getId(), withoutRoles.getVisibilityClass().getId());
+		assertEquals(first.getVisibilityKey(), withoutRoles.getVisibilityKey());
+
+		// But the test settings hide the handles to the anonymous users
+		assertSame(VisibilityClass.getAnonymous(), SubjectSnapshot.of(null).getVisibilityClass());
+		assertFalse(VisibilityClass.getAnonymous().equals(first.getVisibilityClass()));
+	}
+
+	/**
+	 * The anonymous class is evaluated like the rest, and again whenever the
+	 * settings are loaded.
+	 */
+	@Test
+	public void testAnonymous() throws Exception {
+		SubjectSnapshot snapshot = SubjectSnapshot.of(null);
+		VisibilityClass anonymous = snapshot.getVisibilityClass();
+		assertEquals(0, anonymous.getId());
+		assertFalse(anonymous.isOwnershipRelevant());
+		for (PrivacyPlan<?> plan : PrivacyUtil.getPrivacyPlans()) {
+			UserInfo userInfo = new UserInfo(snapshot, false);
+			assertEquals(plan.computeHiddenFields(userInfo), anonymous.getHiddenFields(plan, userInfo));
+		}
+
+		PrivacyUtil.loadAllPrivacySettings();
+		assertNotSame(anonymous, snapshot.getVisibilityClass());
+		assertEquals(0, snapshot.getVisibilityClass().getId());
+	}
+
+	/**
+	 * Once the settings are loaded again, the users get new classes.
+	 */
+	@Test
+	public void testClear() throws Exception {
+		VisibilityClass before = snapshot("user", "registrar").getVisibilityClass();
+		assertSame(before, snapshot("user", "registrar").getVisibilityClass());
+
+		PrivacyUtil.loadAllPrivacySettings();
+		VisibilityClass after = snapshot("user", "registrar").getVisibilityClass();
+		assertFalse(before.equals(after));
+		assertTrue(after.getId() > before.getId());
+
+		VisibilityClass.clear();
+		assertFalse(after.equals(snapshot("user", "registrar").getVisibilityClass()));
+	}
+
+	/**
+	 * @return an anonymous user and authenticated users with every
+	 *         combination of roles
+	 */
+	private static List<SubjectSnapshot> getSnapshots() {
+		return new ArrayList<>(Arrays.asList(SubjectSnapshot.of(null), snapshot("user"),
+				snapshot("user", "registrar"), snapshot("user", "auditor"),
+				snapshot("user", "registrar", "auditor")));
+	}
+
+	/**
+	 * @return the snapshot of an authenticated subject with
+	 *         <code>roles</code>
+	 */
+	private static SubjectSnapshot snapshot(String username, String... roles) {
+		Set<String> roleSet = new HashSet<>(Arrays.asList(roles));
+		Subject subject = (Subject) Proxy.newProxyInstance(PrivacyPlanTest.class.getClassLoader(),
+				new Class<?>[] { Subject.class }, (proxy, method, args) -> {
+					switch (method.getName()) {
+					case "isAuthenticated":
+						return true;
+					case "hasRole":
+						return roleSet.contains(args[0]);
+					case "getPrincipal":
+						return username;
+					default:
+						return null;
+					}
+				});
+		return SubjectSnapshot.of(subject);
+	}
+
+}
@@ -93,4 +93,62 @@ public class AcceptHeaderTest extends TestCase {
 		assertTrue(accepts.isEmpty());
 	}
 
+	/**
+	 * Whole and padded qvalues.
+	 */
+	@Test
+	public void testQValues() {
+		String string = "application/xml;q=0.9, text/html ; q = 0.3 , application/json;level=1;q=1.0, */*;q=0";
+		AcceptHeaderFieldParser header = new AcceptHeaderFieldParser(string);
+		PriorityQueue<Accept> accepts = header.getQueue();
+
+		assertEquals("application/json", accepts.remove().getMediaRange());
+		assertEquals("application/xml", accepts.remove().getMediaRange());
+		assertEquals("text/html", accepts.remove().getMediaRange());
+		assertEquals("*/*", accepts.remove().getMediaRange());
+		assertTrue(accepts.isEmpty());
+	}
+
+	/**
+	 * Media ranges with invalid qvalues and empty elements are ignored.
+	 */
+	@Test
+	public void testMalformed() {
+		String string = "text/html;q=abc, , application/xml;q=2,application/json;q=0.5,";
+		AcceptHeaderFieldParser header = new AcceptHeaderFieldParser(string);
+		PriorityQueue<Accept> accepts = header.getQueue();
+
+		assertEquals("application/json", accepts.remove().getMediaRange());
+		assertTrue(accepts.isEmpty());
+	}
+
+	/**
+	 * A header with nothing but malformed media ranges yields nothing, so the
+	 * default renderer is used; it must not fail.
+	 */
+	@Test
+	public void testOnlyMalformed() {
+		String[] strings = { "application/json;q=", "text/html;q=1.5", "application/xml;q=-0.1", "*/*;q=NaN", "," };
+		for (String string : strings) {
+			AcceptHeaderFieldParser header = new AcceptHeaderFieldParser(string);
+			assertTrue(string, header.getQueue().isEmpty());
+		}
+	}
+
+	/**
+	 * Parameters that only look like qvalues are not qvalues.
+	 */
+	@Test
+	public void testNotQValues() {
+		String string = "text/html;quality=abc, application/json;q";
+		AcceptHeaderFieldParser header = new AcceptHeaderFieldParser(string);
+		PriorityQueue<Accept> accepts = header.getQueue();
+
+		String first = accepts.remove().getMediaRange();
+		String second = accepts.remove().getMediaRange();
+		assertTrue("text/html".equals(first) || "text/html".equals(second));
+		assertTrue("application/json".equals(first) || "application/json".equals(second));
+		assertTrue(accepts.isEmpty());
+	}
+
 }
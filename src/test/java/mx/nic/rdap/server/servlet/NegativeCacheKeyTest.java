@@ -0,0 +1,97 @@
+package mx.nic.rdap.server.servlet;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Enumeration;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.server.cache.NegativeCache;
+import mx.nic.rdap.server.configuration.TestConfiguration;
+
+public class NegativeCacheKeyTest extends TestCase {
+
+	@Override
+	protected void setUp() throws Exception {
+		TestConfiguration.load("negative_cache_size", "10");
+		NegativeCache.init();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		TestConfiguration.load();
+		NegativeCache.init();
+	}
+
+	/**
+	 * {@link NegativeCache#invalidate(String, String)} discards the miss
+	 * remembered by the servlet, however the name was written.
+	 */
+	@Test
+	public void testDomainInvalidate() throws ServletException {
+		RdapServlet servlet = init(new DomainServlet(), "domain");
+		String key = servlet.getNegativeCacheKey(request("/Example.COM."));
+		assertEquals("domain/example.com", key);
+
+		NegativeCache.putMiss(key);
+		NegativeCache.invalidate("domain", "example.com");
+		assertFalse(NegativeCache.isMiss(key));
+
+		NegativeCache.putMiss(key);
+		NegativeCache.invalidate("domain", "EXAMPLE.com.");
+		assertFalse(NegativeCache.isMiss(key));
+	}
+
+	@Test
+	public void testEntityInvalidate() throws ServletException {
+		RdapServlet servlet = init(new EntityServlet(), "entity");
+		String key = servlet.getNegativeCacheKey(request("/XXXX"));
+
+		NegativeCache.putMiss(key);
+		NegativeCache.invalidate("entity", "XXXX");
+		assertFalse(NegativeCache.isMiss(key));
+	}
+
+	private static RdapServlet init(RdapServlet servlet, String name) throws ServletException {
+		servlet.init(new ServletConfig() {
+
+			@Override
+			public String getServletName() {
+				return name;
+			}
+
+			@Override
+			public ServletContext getServletContext() {
+				return null;
+			}
+
+			@Override
+			public String getInitParameter(String parameter) {
+				return null;
+			}
+
+			@Override
+			public Enumeration<String> getInitParameterNames() {
+				return Collections.emptyEnumeration();
+			}
+
+		});
+		return servlet;
+	}
+
+	/**
+	 * @return a request that only knows its path info
+	 */
+	private static HttpServletRequest request(String pathInfo) {
+		return (HttpServletRequest) Proxy.newProxyInstance(NegativeCacheKeyTest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class },
+				(proxy, method, args) -> "getPathInfo".equals(method.getName()) ? pathInfo : null);
+	}
+
+}
@@ -0,0 +1,78 @@
+package mx.nic.rdap.server.shiro;
+
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class VerifiedCredentialsCacheTest extends TestCase {
+
+	private static final AuthenticationInfo INFO = new SimpleAuthenticationInfo("user", "hash", "realm");
+
+	/**
+	 * A verified password is remembered.
+	 */
+	@Test
+	public void testHit() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache(10, 60000);
+		cache.put("user", "secret".toCharArray(), INFO);
+
+		assertSame(INFO, cache.get("user", "secret".toCharArray()));
+	}
+
+	/**
+	 * Any other password, or another user with the same password, must be
+	 * verified again.
+	 */
+	@Test
+	public void testWrongPasswordMiss() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache(10, 60000);
+		cache.put("user", "secret".toCharArray(), INFO);
+
+		assertNull(cache.get("user", "Secret".toCharArray()));
+		assertNull(cache.get("user", "".toCharArray()));
+		assertNull(cache.get("user", null));
+		assertNull(cache.get("other", "secret".toCharArray()));
+	}
+
+	/**
+	 * Only the last verified password of a user is remembered.
+	 */
+	@Test
+	public void testLastPasswordWins() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache(10, 60000);
+		cache.put("user", "old".toCharArray(), INFO);
+		cache.put("user", "new".toCharArray(), INFO);
+
+		assertNull(cache.get("user", "old".toCharArray()));
+		assertSame(INFO, cache.get("user", "new".toCharArray()));
+	}
+
+	@Test
+	public void testInvalidate() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache(10, 60000);
+		cache.put("user", "secret".toCharArray(), INFO);
+		cache.put("other", "secret".toCharArray(), INFO);
+
+		cache.invalidate("user");
+		assertNull(cache.get("user", "secret".toCharArray()));
+		assertSame(INFO, cache.get("other", "secret".toCharArray()));
+
+		cache.invalidateAll();
+		assertNull(cache.get("other", "secret".toCharArray()));
+	}
+
+	/**
+	 * Passwords with non-ASCII characters are digested as UTF-8.
+	 */
+	@Test
+	public void testNonAsciiPassword() {
+		VerifiedCredentialsCache cache = new VerifiedCredentialsCache(10, 60000);
+		cache.put("user", "contraseña€".toCharArray(), INFO);
+
+		assertSame(INFO, cache.get("user", "contraseña€".toCharArray()));
+		assertNull(cache.get("user", "contrasena€".toCharArray()));
+	}
+
+}
@@ -0,0 +1,85 @@
+package mx.nic.rdap.server.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class CopyOnWriteTest extends TestCase {
+
+	private static class Child {
+		String name;
+		List<String> values;
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		private static Child copyOf(Child child) {
+			Child copy = new Child();
+			copy.name = child.name;
+			copy.values = child.values;
+			return copy;
+		}
+	}
+
+	/**
+	 * The original is copied once, at the first edit, and never modified.
+	 */
+	@Test
+	public void testEdit() {
+		Child original = new Child();
+		original.name = "name";
+		CopyOnWrite<Child> view = new CopyOnWrite<>(original, Child::copyOf);
+		assertSame(original, view.get());
+
+		Child copy = view.edit();
+		copy.setName(null);
+		assertSame(copy, view.edit());
+		assertSame(copy, view.get());
+		assertNull(copy.name);
+		assertEquals("name", original.name);
+	}
+
+	/**
+	 * Only a different value makes a copy.
+	 */
+	@Test
+	public void testReplace() {
+		Child original = new Child();
+		original.name = "name";
+		CopyOnWrite<Child> view = new CopyOnWrite<>(original, Child::copyOf);
+
+		view.replace(original.name, original.name, Child::setName);
+		assertSame(original, view.get());
+
+		view.replace(original.name, "other", Child::setName);
+		assertNotSame(original, view.get());
+		assertEquals("other", view.get().name);
+		assertEquals("name", original.name);
+	}
+
+	@Test
+	public void testMap() {
+		List<String> list = Arrays.asList("a", "b", "c");
+		assertSame(list, CopyOnWrite.map(list, s -> s));
+		assertNull(CopyOnWrite.map(null, s -> s));
+
+		List<String> mapped = CopyOnWrite.map(list, s -> s.equals("b") ? "B" : s);
+		assertNotSame(list, mapped);
+		assertEquals(Arrays.asList("a", "B", "c"), mapped);
+		assertSame(list.get(0), mapped.get(0));
+		assertEquals(Arrays.asList("a", "b", "c"), list);
+	}
+
+	@Test
+	public void testAppend() {
+		List<String> list = Arrays.asList("a");
+		assertEquals(Arrays.asList("a", "b"), CopyOnWrite.append(list, "b"));
+		assertEquals(Arrays.asList("a"), list);
+		assertEquals(Arrays.asList("b"), CopyOnWrite.append(null, "b"));
+	}
+
+}
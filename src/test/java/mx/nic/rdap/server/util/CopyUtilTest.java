@@ -0,0 +1,74 @@
+package mx.nic.rdap.server.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+import mx.nic.rdap.core.db.Domain;
+import mx.nic.rdap.core.db.Entity;
+import mx.nic.rdap.core.db.Event;
+import mx.nic.rdap.core.db.Nameserver;
+import mx.nic.rdap.core.db.RdapObject;
+
+public class CopyUtilTest extends TestCase {
+
+	/**
+	 * The copy has the properties of the original, and shares their values.
+	 */
+	@Test
+	public void testDomain() {
+		List<Nameserver> nameservers = new ArrayList<>();
+		List<Event> events = new ArrayList<>();
+		Domain domain = new Domain();
+		domain.setHandle("DOM1");
+		domain.setLdhName("example.com");
+		domain.setPort43("whois.example.com");
+		domain.setLang("en");
+		domain.setNameServers(nameservers);
+		domain.setEvents(events);
+
+		Domain copy = CopyUtil.copyOf(domain);
+		assertNotSame(domain, copy);
+		assertEquals("DOM1", copy.getHandle());
+		assertEquals("example.com", copy.getLdhName());
+		assertEquals("whois.example.com", copy.getPort43());
+		assertEquals("en", copy.getLang());
+		assertSame(nameservers, copy.getNameServers());
+		assertSame(events, copy.getEvents());
+	}
+
+	/**
+	 * The RDAP objects are copied by their type, as their base class.
+	 */
+	@Test
+	public void testCopyOfObject() {
+		Entity entity = new Entity();
+		entity.setHandle("ENT1");
+		RdapObject copy = CopyUtil.copyOfObject((RdapObject) entity);
+		assertEquals(Entity.class, copy.getClass());
+		assertEquals("ENT1", copy.getHandle());
+
+		Domain subclass = new Domain() {
+			// Eg. of a data access implementation
+		};
+		subclass.setLdhName("example.com");
+		Domain domain = CopyUtil.copyOfObject(subclass);
+		assertEquals(Domain.class, domain.getClass());
+		assertEquals("example.com", domain.getLdhName());
+	}
+
+	@Test
+	public void testUnknownObject() {
+		try {
+			CopyUtil.copyOfObject(new RdapObject() {
+				// Nothing
+			});
+			fail("An unknown object was copied");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+	}
+
+}